@@ -8,6 +8,7 @@ import java.util.concurrent.ThreadLocalRandom;
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 
+import util.Avalanche;
 import util.Binary;
 import util.CipherEngUtil;
 import util.CryptoTools;
@@ -27,6 +28,7 @@ public class B2Q1 {
 	 * 		3. util.CipherEngUtil
 	 * 		4. util.SymCipherEng
 	 * 		5. util.CryptoTools
+	 * 		6. util.Avalanche
 	 * </code>
 	 */
 
@@ -51,6 +53,17 @@ public class B2Q1 {
 	 */
 	private static final int MAX_RUNS = 100;
 
+	/**
+	 * Specifies whether the flip tests should be followed by a parallel avalanche analysis (see
+	 * util.Avalanche) of <code>B2Q1.ANALYSIS_RUNS</code> runs.
+	 */
+	private static final boolean ANALYSE = false;
+
+	/**
+	 * Number of runs of the avalanche analysis.
+	 */
+	private static final long ANALYSIS_RUNS = 1000000L;
+
 	/**
 	 * Prevent instantiation.
 	 */
@@ -117,5 +130,19 @@ public class B2Q1 {
 		System.out.println("An average of " + (1.0 * totalDiffBitCount / B2Q1.MAX_RUNS)
 				+ " bits in the ciphertext were changed as a result of flipping one bit in the plaintext across "
 				+ B2Q1.MAX_RUNS + " tests.\n");
+
+		// Only analyse if requested.
+		if (B2Q1.ANALYSE) {
+			final Avalanche.Result result = Avalanche.analyse(SymCipherEng.ALGO_SYM.DES, B2Q1.KEY, B2Q1.PLAINTEXT,
+					B2Q1.ANALYSIS_RUNS);
+			final long[] histogram = result.histogram();
+			for (int k = 0; k != histogram.length; ++k) {
+				if (histogram[k] != 0) {
+					System.out.println(histogram[k] + " tests changed " + k + " bit" + (k != 1 ? "s." : "."));
+				}
+			}
+			System.out.println("\nAn average of " + result.mean() + " bits (with a worst flip probability of 0.5 +- "
+					+ result.maxBias() + ") were changed across " + B2Q1.ANALYSIS_RUNS + " analysis runs.\n");
+		}
 	}
 }
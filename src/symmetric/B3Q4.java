@@ -3,10 +3,7 @@ package symmetric;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 
-import javax.crypto.BadPaddingException;
-import javax.crypto.IllegalBlockSizeException;
-
-import util.Binary;
+import util.BlockMode;
 import util.CipherEngUtil;
 import util.CryptoTools;
 import util.Hex;
@@ -20,7 +17,7 @@ import util.SymCipherEng;
 public class B3Q4 {
 	/**
 	 * Dependencies: <code>
-	 * 		1. util.Binary
+	 * 		1. util.BlockMode
 	 * 		2. util.Hex
 	 * 		3. util.CipherEngUtil
 	 * 		4. util.SymCipherEng
@@ -55,38 +52,22 @@ public class B3Q4 {
 		throw new CloneNotSupportedException();
 	}
 
-	public static void main(String[] args) throws InvalidKeyException, InvalidAlgorithmParameterException,
-			IllegalBlockSizeException, BadPaddingException {
+	public static void main(String[] args) throws InvalidKeyException, InvalidAlgorithmParameterException {
 		// Create the cipher engine with the appropriate attributes.
 		final SymCipherEng engine = new SymCipherEng(SymCipherEng.ALGO_SYM.DES, B3Q4.KEY, CipherEngUtil.OPMODE.ECB,
 				CipherEngUtil.PADDING.NoPadding);
 
-		// Decrypt the ciphertext using the engine to get the plaintext.
-		final byte[] plaintext = new byte[B3Q4.CIPHERTEXT.length];
+		// Decrypt the ciphertext in place using the engine to get the plaintext.
+		final byte[] plaintext = B3Q4.CIPHERTEXT.clone();
 
 		// York Mode of Operation:
 		/*
-		 * The first block of the plaintext was xored with the complement of the IV which is why we
-		 * initialize the previous ciphertext block to the IV.
+		 * Every plaintext block is the decryption of the current ciphertext block xored with the complement
+		 * of the previous ciphertext block (the first one with the complement of the IV), i.e., the chaining
+		 * block is the input block which is why the whole ciphertext goes through the ECB engine at once.
 		 */
-		final byte[] ciphertextBlock = new byte[SymCipherEng.DES_BLOCK_SIZE];
-		byte[] plaintextBlock = null;
-		final byte[] prev_ciphertextBlock = new byte[SymCipherEng.DES_BLOCK_SIZE];
-		System.arraycopy(B3Q4.IV, 0, prev_ciphertextBlock, 0, SymCipherEng.DES_BLOCK_SIZE);
-		for (int plaintextPos = 0; plaintextPos != plaintext.length; plaintextPos += SymCipherEng.DES_BLOCK_SIZE) {
-			// Take the next subset of the ciphertext of length DES block size (i.e., 8 bytes).
-			System.arraycopy(B3Q4.CIPHERTEXT, plaintextPos, ciphertextBlock, 0, SymCipherEng.DES_BLOCK_SIZE);
-			/*
-			 * Decrypt the current ciphertext block and then xor it with the previous ciphertext block to get
-			 * the current plaintext block. Note that it is safe to use Binary.xorEquals since Binary.comp
-			 * returns a new array.
-			 */
-			plaintextBlock = Binary.xorEquals(Binary.comp(prev_ciphertextBlock), engine.decrypt(ciphertextBlock));
-			// Copy the current plaintext block into the complete plaintext array.
-			System.arraycopy(plaintextBlock, 0, plaintext, plaintextPos, SymCipherEng.DES_BLOCK_SIZE);
-			// Update the pointer to the previous ciphertext block.
-			System.arraycopy(ciphertextBlock, 0, prev_ciphertextBlock, 0, SymCipherEng.DES_BLOCK_SIZE);
-		}
+		final BlockMode york = new BlockMode(BlockMode.NONE, BlockMode.XOR_COMP, BlockMode.FEEDBACK.INPUT);
+		engine.apply(york, false, B3Q4.IV.clone(), plaintext, 0, plaintext.length);
 
 		// Print the plaintext.
 		System.out.println("The plaintext is:\n" + CryptoTools.toString(plaintext) + "\n");
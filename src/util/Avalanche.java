@@ -0,0 +1,490 @@
+package util;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Parallel avalanche (i.e., diffusion and confusion) analysis of the SymCipherEng algorithms: every run
+ * flips a random bit of the plaintext (or of the key), encrypts a single block in ECB mode, and records
+ * which ciphertext bits changed. The runs are split over several threads, each with its own engine and
+ * buffers (so the runs themselves do not allocate, except for the key spec when flipping key bits), and
+ * the result holds the flip probability of every (input bit, output bit) pair and the histogram of the
+ * number of changed bits. <br>
+ * Bits are numbered as in Binary, i.e., bit 0 is the least significant bit of the last byte. <br>
+ * The parity bits of a DES or DESede key (i.e., the least significant bit of every key byte) are ignored
+ * by the cipher, so they are never flipped: their flip probabilities are <code>Double.NaN</code>, and they
+ * take no part in <code>Result.mean()</code> and <code>Result.maxBias()</code>.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class Avalanche {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.SymCipherEng
+	 * 		2. util.CipherEngUtil
+	 * 		3. util.ConcurrentUtil
+	 * 		4. util.Binary
+	 * </code>
+	 */
+
+	/**
+	 * The input whose bits are flipped.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	public static enum TARGET {
+		/**
+		 * Flip a plaintext bit (i.e., diffusion).
+		 */
+		PLAINTEXT,
+
+		/**
+		 * Flip a key bit (i.e., confusion), except for the parity bits of a DES or DESede key.
+		 */
+		KEY;
+	};
+
+	/**
+	 * Result of an avalanche analysis.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	public static final class Result {
+		/**
+		 * The number of runs.
+		 */
+		private final long runs;
+
+		/**
+		 * <code>flips[i]</code> is the number of runs which flipped input bit <code>i</code>.
+		 */
+		private final long[] flips;
+
+		/**
+		 * <code>changes[i][j]</code> is the number of runs which flipped input bit <code>i</code> and changed
+		 * output bit <code>j</code>.
+		 */
+		private final long[][] changes;
+
+		/**
+		 * <code>histogram[k]</code> is the number of runs which changed <code>k</code> output bits.
+		 */
+		private final long[] histogram;
+
+		/**
+		 * Construct an empty Result object of the given dimensions.
+		 * 
+		 * @param inputBits
+		 *            the given number of input bits
+		 * 
+		 * @param outputBits
+		 *            the given number of output bits
+		 */
+		private Result(int inputBits, int outputBits) {
+			this(0, new long[inputBits], new long[inputBits][outputBits], new long[outputBits + 1]);
+		}
+
+		/**
+		 * Construct a Result object from the given attributes.
+		 * 
+		 * @param runs
+		 *            the given number of runs
+		 * 
+		 * @param flips
+		 *            the given flip counts
+		 * 
+		 * @param changes
+		 *            the given change counts
+		 * 
+		 * @param histogram
+		 *            the given histogram
+		 */
+		private Result(long runs, long[] flips, long[][] changes, long[] histogram) {
+			this.runs = runs;
+			this.flips = flips;
+			this.changes = changes;
+			this.histogram = histogram;
+		}
+
+		/**
+		 * Merge the given partial results.
+		 * 
+		 * @param parts
+		 *            the given partial results (at least 1, of the same dimensions)
+		 * 
+		 * @return The merged result.
+		 */
+		private static Result merge(List<Result> parts) {
+			final Result first = parts.get(0);
+			final Result result = new Result(first.inputBits(), first.outputBits());
+			long runs = 0;
+			for (final Result part : parts) {
+				runs += part.runs;
+				for (int i = 0; i != result.flips.length; ++i) {
+					result.flips[i] += part.flips[i];
+					for (int j = 0; j != result.changes[i].length; ++j) {
+						result.changes[i][j] += part.changes[i][j];
+					}
+				}
+				for (int k = 0; k != result.histogram.length; ++k) {
+					result.histogram[k] += part.histogram[k];
+				}
+			}
+			return new Result(runs, result.flips, result.changes, result.histogram);
+		}
+
+		/**
+		 * @return <code>this.runs</code>.
+		 */
+		public long runs() {
+			return this.runs;
+		}
+
+		/**
+		 * @return The number of input bits.
+		 */
+		public int inputBits() {
+			return this.flips.length;
+		}
+
+		/**
+		 * @return The number of output bits.
+		 */
+		public int outputBits() {
+			return this.histogram.length - 1;
+		}
+
+		/**
+		 * @param inputBit
+		 *            the given input bit
+		 * 
+		 * @return The number of runs which flipped the given input bit.
+		 * 
+		 * @throws ArrayIndexOutOfBoundsException
+		 *             If <code>(inputBit < 0) || (this.inputBits() <= inputBit)</code>
+		 */
+		public long flips(int inputBit) throws ArrayIndexOutOfBoundsException {
+			return this.flips[inputBit];
+		}
+
+		/**
+		 * @param inputBit
+		 *            the given input bit
+		 * 
+		 * @param outputBit
+		 *            the given output bit
+		 * 
+		 * @return The probability that flipping the given input bit changes the given output bit (ideally
+		 *         0.5), or <code>Double.NaN</code> if the given input bit was never flipped.
+		 * 
+		 * @throws ArrayIndexOutOfBoundsException
+		 *             If an index is out of bounds
+		 */
+		public double probability(int inputBit, int outputBit) throws ArrayIndexOutOfBoundsException {
+			return (this.flips[inputBit] == 0) ? Double.NaN
+					: (((double) this.changes[inputBit][outputBit]) / this.flips[inputBit]);
+		}
+
+		/**
+		 * @return The flip probability matrix, i.e., <code>Result[i][j] = this.probability(i, j)</code>.
+		 */
+		public double[][] probabilities() {
+			final double[][] result = new double[this.inputBits()][this.outputBits()];
+			for (int i = 0; i != result.length; ++i) {
+				for (int j = 0; j != result[i].length; ++j) {
+					result[i][j] = this.probability(i, j);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * @return The histogram of the number of changed output bits, i.e., <code>Result[k]</code> is the
+		 *         number of runs which changed <code>k</code> output bits.
+		 */
+		public long[] histogram() {
+			return this.histogram.clone();
+		}
+
+		/**
+		 * @return The average number of changed output bits per run (ideally half of the output bits).
+		 */
+		public double mean() {
+			long total = 0;
+			for (int k = 0; k != this.histogram.length; ++k) {
+				total += k * this.histogram[k];
+			}
+			return (this.runs == 0) ? Double.NaN : (((double) total) / this.runs);
+		}
+
+		/**
+		 * @return The largest distance of a flip probability from 0.5 (over the input bits which were
+		 *         flipped), i.e., the worst bias of the flip probability matrix.
+		 */
+		public double maxBias() {
+			double result = 0;
+			for (int i = 0; i != this.inputBits(); ++i) {
+				for (int j = 0; (j != this.outputBits()) && (this.flips[i] != 0); ++j) {
+					result = Math.max(result, Math.abs(this.probability(i, j) - 0.5));
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Prevent instantiation.
+	 */
+	private Avalanche() {
+		// Empty by design.
+	}
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	/**
+	 * Run the avalanche analysis.
+	 * 
+	 * @param algo
+	 *            the given cipher algorithm
+	 * 
+	 * @param key
+	 *            the given cipher secret key
+	 * 
+	 * @param plaintext
+	 *            the given plaintext block, or <code>null</code> to draw a random plaintext block per run
+	 * 
+	 * @param target
+	 *            the input whose bits are flipped
+	 * 
+	 * @param runs
+	 *            the given number of runs
+	 * 
+	 * @param numThreads
+	 *            the given number of threads
+	 * 
+	 * @param seed
+	 *            the given seed of the random bits and plaintexts (the result only depends on it and on
+	 *            <code>numThreads</code>)
+	 * 
+	 * @return The result.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (key == null) || (target == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(runs < 0) || (numThreads <= 0)</code> or if <code>plaintext</code> is not a
+	 *             single block
+	 * 
+	 * @throws InvalidKeyException
+	 *             If the given key is not a valid key of the given algorithm
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static Result analyse(SymCipherEng.ALGO_SYM algo, byte[] key, byte[] plaintext, TARGET target, long runs,
+			int numThreads, long seed) throws NullPointerException, IllegalArgumentException, InvalidKeyException,
+			CancellationException {
+		if ((algo == null) || (key == null) || (target == null)) {
+			throw new NullPointerException();
+		} else if ((runs < 0) || (numThreads <= 0)) {
+			throw new IllegalArgumentException();
+		}
+		final int blockSize = Avalanche.blockSize(algo);
+		if ((plaintext != null) && (plaintext.length != blockSize)) {
+			throw new IllegalArgumentException();
+		}
+		// Fail fast on a bad key rather than in every worker.
+		final Cipher probe = Avalanche.borrow(algo);
+		try {
+			probe.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, algo.name()));
+		} finally {
+			CipherEngUtil.returnEngine(probe);
+		}
+
+		final int numTasks = (int) Math.max(1, Math.min(numThreads, runs));
+		final SplittableRandom master = new SplittableRandom(seed);
+		final List<Callable<Result>> tasks = new ArrayList<Callable<Result>>(numTasks);
+		for (int t = 0; t != numTasks; ++t) {
+			final long taskRuns = (runs * (t + 1)) / numTasks - (runs * t) / numTasks;
+			final SplittableRandom random = master.split();
+			tasks.add(() -> Avalanche.run(algo, key.clone(), (plaintext == null) ? null : plaintext.clone(), target,
+					taskRuns, random));
+		}
+		try {
+			return Result.merge(ConcurrentUtil.invokeAll(tasks, numTasks, "avalanche"));
+		} catch (IllegalStateException ex) {
+			if (ex.getCause() instanceof InvalidKeyException) {
+				throw (InvalidKeyException) ex.getCause();
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * @param algo
+	 *            the given cipher algorithm
+	 * 
+	 * @param key
+	 *            the given cipher secret key
+	 * 
+	 * @param plaintext
+	 *            the given plaintext block, or <code>null</code> to draw a random plaintext block per run
+	 * 
+	 * @param runs
+	 *            the given number of runs
+	 * 
+	 * @return The result of flipping plaintext bits on <code>ConcurrentUtil.DEFAULT_NUM_THREADS</code>
+	 *         threads with a random seed.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (key == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>runs < 0</code> or if <code>plaintext</code> is not a single block
+	 * 
+	 * @throws InvalidKeyException
+	 *             If the given key is not a valid key of the given algorithm
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static Result analyse(SymCipherEng.ALGO_SYM algo, byte[] key, byte[] plaintext, long runs)
+			throws NullPointerException, IllegalArgumentException, InvalidKeyException, CancellationException {
+		return Avalanche.analyse(algo, key, plaintext, TARGET.PLAINTEXT, runs, ConcurrentUtil.DEFAULT_NUM_THREADS,
+				ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * @param algo
+	 *            the given cipher algorithm
+	 * 
+	 * @return The block size in bytes of the given algorithm.
+	 */
+	private static int blockSize(SymCipherEng.ALGO_SYM algo) {
+		return (algo == SymCipherEng.ALGO_SYM.AES) ? SymCipherEng.AES_BLOCK_SIZE
+				: (algo == SymCipherEng.ALGO_SYM.Blowfish) ? SymCipherEng.BLOWFISH_BLOCK_SIZE
+						: SymCipherEng.DES_BLOCK_SIZE;
+	}
+
+	/**
+	 * @param algo
+	 *            the given cipher algorithm
+	 * 
+	 * @return An engine of the given algorithm in ECB mode with no padding from the engine pool.
+	 */
+	private static Cipher borrow(SymCipherEng.ALGO_SYM algo) {
+		try {
+			return CipherEngUtil.borrowEngine(algo.name(), CipherEngUtil.OPMODE.ECB, CipherEngUtil.PADDING.NoPadding);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+			throw new ExceptionInInitializerError();
+		}
+	}
+
+	/**
+	 * Body of every task of <code>Avalanche.analyse</code>.
+	 * 
+	 * @param algo
+	 *            the given cipher algorithm
+	 * 
+	 * @param key
+	 *            the given cipher secret key (owned by the task)
+	 * 
+	 * @param plaintext
+	 *            the given plaintext block (owned by the task), or <code>null</code>
+	 * 
+	 * @param target
+	 *            the input whose bits are flipped
+	 * 
+	 * @param runs
+	 *            the given number of runs
+	 * 
+	 * @param random
+	 *            the given source of randomness (owned by the task)
+	 * 
+	 * @return The partial result.
+	 * 
+	 * @throws IllegalStateException
+	 *             Wrapping the InvalidKeyException thrown by <code>Cipher.init</code>
+	 */
+	private static Result run(SymCipherEng.ALGO_SYM algo, byte[] key, byte[] plaintext, TARGET target, long runs,
+			SplittableRandom random) throws IllegalStateException {
+		final Cipher engine = Avalanche.borrow(algo);
+		try {
+			final int blockSize = Avalanche.blockSize(algo);
+			final boolean fixed = plaintext != null;
+			final byte[] input = fixed ? plaintext : new byte[blockSize];
+			final byte[] flipTarget = (target == TARGET.PLAINTEXT) ? input : key;
+			final int inputBits = Binary.BITS_PER_BYTE * flipTarget.length;
+			// The parity bits of a DES or DESede key are ignored by the cipher, so they are skipped.
+			final boolean skipParity = (target == TARGET.KEY)
+					&& ((algo == SymCipherEng.ALGO_SYM.DES) || (algo == SymCipherEng.ALGO_SYM.DESede));
+			final int perByte = skipParity ? (Binary.BITS_PER_BYTE - 1) : Binary.BITS_PER_BYTE;
+			final byte[] base = new byte[blockSize];
+			final byte[] flipped = new byte[blockSize];
+			final Result result = new Result(inputBits, Binary.BITS_PER_BYTE * blockSize);
+			final SecretKeySpec baseKey = new SecretKeySpec(key, algo.name());
+
+			engine.init(Cipher.ENCRYPT_MODE, baseKey);
+			if (fixed) {
+				engine.doFinal(input, 0, blockSize, base, 0);
+			}
+			for (long run = 0; run != runs; ++run) {
+				if (!fixed) {
+					random.nextBytes(input);
+					engine.doFinal(input, 0, blockSize, base, 0);
+				}
+				final int draw = random.nextInt(perByte * flipTarget.length);
+				final int bit = Binary.BITS_PER_BYTE * (draw / perByte) + (draw % perByte)
+						+ (skipParity ? 1 : 0);
+				final int index = flipTarget.length - 1 - bit / Binary.BITS_PER_BYTE;
+				final int mask = 1 << (bit % Binary.BITS_PER_BYTE);
+
+				flipTarget[index] ^= mask;
+				if (target == TARGET.KEY) {
+					engine.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, algo.name()));
+				}
+				engine.doFinal(input, 0, blockSize, flipped, 0);
+				flipTarget[index] ^= mask;
+				if (target == TARGET.KEY) {
+					engine.init(Cipher.ENCRYPT_MODE, baseKey);
+				}
+
+				int changed = 0;
+				final long[] changes = result.changes[bit];
+				for (int i = 0; i != blockSize; ++i) {
+					int diff = (base[i] ^ flipped[i]) & Binary.MASK_BYTE_TO_INT;
+					changed += Integer.bitCount(diff);
+					for (; diff != 0; diff &= diff - 1) {
+						++changes[Binary.BITS_PER_BYTE * (blockSize - 1 - i) + Integer.numberOfTrailingZeros(diff)];
+					}
+				}
+				++result.flips[bit];
+				++result.histogram[changed];
+			}
+			return new Result(runs, result.flips, result.changes, result.histogram);
+		} catch (InvalidKeyException ex) {
+			throw new IllegalStateException(ex);
+		} catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException ex) {
+			// Cannot happen since every call encrypts a single block into a block sized buffer.
+			throw new IllegalStateException(ex);
+		} finally {
+			CipherEngUtil.returnEngine(engine);
+		}
+	}
+}
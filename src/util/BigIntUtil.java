@@ -1,7 +1,12 @@
 package util;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -14,6 +19,7 @@ public class BigIntUtil {
 	 * Dependencies: <code>
 	 * 		1. util.InvalidModulusException
 	 * 		2. util.UndefinedInverseException
+	 * 		3. util.ConcurrentUtil
 	 * </code>
 	 */
 
@@ -88,6 +94,36 @@ public class BigIntUtil {
 	 */
 	public static final int DEFAULT_CERTAINTY = 100;
 
+	/**
+	 * Exclusive upper bound on the small primes used to sieve safe prime candidates.
+	 */
+	public static final int SIEVE_BOUND = 1 << 16;
+
+	/**
+	 * The default value for the <code>windowSize</code> argument of the
+	 * <code>probableSafePrimeSieve</code> method.
+	 */
+	public static final int DEFAULT_SIEVE_WINDOW = 1 << 12;
+
+	/**
+	 * All of the odd primes less than <code>BigIntUtil.SIEVE_BOUND</code> in increasing order.
+	 */
+	protected static final int[] SIEVE_PRIMES = BigIntUtil.oddPrimesBelow(BigIntUtil.SIEVE_BOUND);
+
+	/**
+	 * <code>BigIntUtil.SIEVE_PRIMES</code> grouped into consecutive runs whose product fits in a long.
+	 * <br>
+	 * <code>BigIntUtil.SIEVE_GROUPS[i] == { begin, end }</code> where <code>[begin, end)</code> is the
+	 * index range of the <code>i<sup>th</sup></code> group in <code>BigIntUtil.SIEVE_PRIMES</code>.
+	 */
+	protected static final int[][] SIEVE_GROUPS = BigIntUtil.sieveGroups();
+
+	/**
+	 * <code>BigIntUtil.SIEVE_GROUP_PRODUCTS[i]</code> is the product of all of the primes in the
+	 * <code>i<sup>th</sup></code> group of <code>BigIntUtil.SIEVE_GROUPS</code>.
+	 */
+	protected static final BigInteger[] SIEVE_GROUP_PRODUCTS = BigIntUtil.sieveGroupProducts();
+
 	/**
 	 * Prevent instantiation.
 	 */
@@ -100,6 +136,75 @@ public class BigIntUtil {
 		throw new CloneNotSupportedException();
 	}
 
+	/**
+	 * Sieve of Eratosthenes. <br>
+	 * Postcondition: <code>Result != null</code> <br>
+	 * Postcondition: <code>Result</code> contains all of the odd primes less than <code>bound</code> in
+	 * increasing order
+	 * 
+	 * @param bound
+	 *            the given exclusive upper bound
+	 * 
+	 * @return The resulting int array.
+	 */
+	private static int[] oddPrimesBelow(int bound) {
+		if (bound <= 3) {
+			return new int[0];
+		}
+		// 3 < bound
+
+		final boolean[] composite = new boolean[bound];
+		int count = 0;
+		for (int i = 3; i < bound; i += 2) {
+			if (!composite[i]) {
+				++count;
+				for (long j = (long) i * i; j < bound; j += 2 * i) {
+					composite[(int) j] = true;
+				}
+			}
+		}
+
+		final int[] result = new int[count];
+		for (int i = 3, index = 0; i < bound; i += 2) {
+			if (!composite[i]) {
+				result[index++] = i;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The index ranges of <code>BigIntUtil.SIEVE_PRIMES</code> whose products fit in a long.
+	 */
+	private static int[][] sieveGroups() {
+		final List<int[]> groups = new ArrayList<int[]>();
+		final int[] primes = BigIntUtil.SIEVE_PRIMES;
+		for (int begin = 0, end = 0; begin != primes.length; begin = end) {
+			long product = 1L;
+			// Absorb primes while the product does not overflow.
+			while ((end != primes.length) && (product <= (Long.MAX_VALUE / primes[end]))) {
+				product *= primes[end++];
+			}
+			groups.add(new int[] { begin, end });
+		}
+		return groups.toArray(new int[groups.size()][]);
+	}
+
+	/**
+	 * @return The products of the groups in <code>BigIntUtil.SIEVE_GROUPS</code>.
+	 */
+	private static BigInteger[] sieveGroupProducts() {
+		final BigInteger[] result = new BigInteger[BigIntUtil.SIEVE_GROUPS.length];
+		for (int i = 0; i != result.length; ++i) {
+			long product = 1L;
+			for (int j = BigIntUtil.SIEVE_GROUPS[i][0]; j != BigIntUtil.SIEVE_GROUPS[i][1]; ++j) {
+				product *= BigIntUtil.SIEVE_PRIMES[j];
+			}
+			result[i] = BigInteger.valueOf(product);
+		}
+		return result;
+	}
+
 	/**
 	 * @param n
 	 *            the given BigInteger object
@@ -184,7 +289,11 @@ public class BigIntUtil {
 		}
 		// 2 <= n
 
-		BigInteger result = n.shiftRight(1); // i.e., 1 <= result == n / 2
+		/*
+		 * Start Newton's iteration from 2^ceil(bitLength / 2), which is the smallest power of two not below
+		 * sqrt(n), rather than from n / 2 so that only a few iterations are needed for large n.
+		 */
+		BigInteger result = BigInteger.ONE.shiftLeft((n.bitLength() + 1) >>> 1); // i.e., sqrt(n) <= result
 		for (BigInteger q = n.divide(result); 0 < result.compareTo(q); /* Update inside. */) {
 			result = result.add(q).shiftRight(1); // result = (result + q) / 2
 			q = n.divide(result);
@@ -877,6 +986,72 @@ public class BigIntUtil {
 		return (n.isProbablePrime(certainty) && n.shiftRight(1).isProbablePrime(certainty));
 	}
 
+	/**
+	 * Mark the safe prime candidates which are divisible by a small prime. More specifically, for every
+	 * valid index <code>i</code>, <code>composite[i]</code> is set to <code>true</code> if either
+	 * <code>q = q0 + 2 * i</code> or <code>2 * q + 1</code> is divisible by some prime in
+	 * <code>BigIntUtil.SIEVE_PRIMES</code>. Entries which are already <code>true</code> are left as is.
+	 * <br>
+	 * Precondition: <code>(q0 != null) && (BigIntUtil.SIEVE_BOUND < q0)</code> <br>
+	 * Precondition: <code>composite != null</code>
+	 * 
+	 * @param q0
+	 *            the first candidate for the Sophie Germain prime <code>q</code>
+	 * 
+	 * @param composite
+	 *            the given sieve array
+	 */
+	protected static void sieveSafePrimeCandidates(BigInteger q0, boolean[] composite) {
+		final int length = composite.length;
+		final int[] primes = BigIntUtil.SIEVE_PRIMES;
+		for (int g = 0; g != BigIntUtil.SIEVE_GROUPS.length; ++g) {
+			// One BigInteger division per group instead of one per small prime.
+			final long groupRemainder = q0.mod(BigIntUtil.SIEVE_GROUP_PRODUCTS[g]).longValue();
+			for (int j = BigIntUtil.SIEVE_GROUPS[g][0], end = BigIntUtil.SIEVE_GROUPS[g][1]; j != end; ++j) {
+				final int r = primes[j];
+				final long q0r = groupRemainder % r;
+				final long inv2 = (r + 1) >>> 1; // 2 * inv2 == r + 1 == 1 (mod r)
+
+				// q0 + 2 * i == 0 (mod r) iff i == -q0 * inv2 (mod r)
+				for (int i = (int) ((r - q0r) % r * inv2 % r); i < length; i += r) {
+					composite[i] = true;
+				}
+				// 2 * (q0 + 2 * i) + 1 == 0 (mod r) iff i == ((r - 1) / 2 - q0) * inv2 (mod r)
+				for (int i = (int) (((r >>> 1) - q0r + r) % r * inv2 % r); i < length; i += r) {
+					composite[i] = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Precondition: <code>(q != null) && BigIntUtil.isPositive(q)</code>
+	 * 
+	 * @param q
+	 *            the given Sophie Germain prime candidate
+	 * 
+	 * @param certainty
+	 *            a measure of the uncertainty that the caller is willing to tolerate
+	 * 
+	 * @return <code>2 * q + 1</code> if both <code>q</code> and <code>2 * q + 1</code> are probably prime
+	 *         and <code>null</code> otherwise.
+	 */
+	protected static BigInteger safePrimeCandidate(BigInteger q, int certainty) {
+		final BigInteger p = q.shiftLeft(1).setBit(0); // p == 2 * q + 1
+
+		/**
+		 * If <code>q</code> and <code>p</code> are both prime, then by Euler's criterion we know that
+		 * <code>2<sup>q</sup> == 2<sup>(p - 1) / 2</sup> == (2 | p) == &plusmn;1 (mod p)</code>. This
+		 * single modular exponentiation rejects almost all of the remaining composites before paying for the
+		 * full Miller-Rabin tests.
+		 */
+		final BigInteger r = BigIntUtil.TWO.modPow(q, p);
+		if (!r.equals(BigInteger.ONE) && !r.equals(p.subtract(BigInteger.ONE))) {
+			return null;
+		}
+		return ((q.isProbablePrime(certainty) && p.isProbablePrime(certainty)) ? p : null);
+	}
+
 	/**
 	 * Returns the first integer greater than <code>n</code> that is probably a safe prime. The
 	 * probability that the BigInteger represents a safe prime number will exceed
@@ -891,20 +1066,48 @@ public class BigIntUtil {
 	 * 
 	 * @throws NullPointerException
 	 *             If <code>n == null</code>
-	 *
+	 * 
 	 * @throws ArithmeticException
 	 *             Thrown by <code>BigInteger.nextProbablePrime()</code>
 	 */
 	public static BigInteger nextProbableSafePrime(BigInteger n) throws NullPointerException, ArithmeticException {
-		for (BigInteger p = null; true; /* Update inside. */) {
-			// Find the next probable prime after n.
-			p = n.nextProbablePrime();
-			// Check if (p - 1) / 2 is prime.
-			if (p.shiftRight(1).isProbablePrime(100)) {
-				return p;
+		/*
+		 * Sieving requires every candidate to be larger than the sieve bound, so handle the small values of
+		 * n with the simple search.
+		 */
+		if (n.bitLength() <= (Integer.SIZE - Integer.numberOfLeadingZeros(BigIntUtil.SIEVE_BOUND))) {
+			for (BigInteger p = null; true; /* Update inside. */) {
+				// Find the next probable prime after n.
+				p = n.nextProbablePrime();
+				// Check if (p - 1) / 2 is prime.
+				if (p.shiftRight(1).isProbablePrime(100)) {
+					return p;
+				}
+				// Update n.
+				n = p;
+			}
+		}
+		// 2 * BigIntUtil.SIEVE_BOUND <= n
+
+		/**
+		 * Every safe prime <code>p</code> after <code>n</code> satisfies <code>n < p == 2 * q + 1</code>
+		 * with <code>q</code> odd, and so <code>(n + 1) / 2 <= q</code>. Sieve consecutive windows of odd
+		 * <code>q</code> values in increasing order so that no safe prime is skipped.
+		 */
+		BigInteger q0 = n.add(BigInteger.ONE).shiftRight(1).setBit(0);
+		final boolean[] composite = new boolean[BigIntUtil.DEFAULT_SIEVE_WINDOW];
+		final BigInteger windowStep = BigInteger.valueOf(2L * composite.length);
+		for (BigInteger p = null; true; q0 = q0.add(windowStep)) {
+			Arrays.fill(composite, false);
+			BigIntUtil.sieveSafePrimeCandidates(q0, composite);
+			for (int i = 0; i != composite.length; ++i) {
+				if (!composite[i]) {
+					p = BigIntUtil.safePrimeCandidate(q0.add(BigInteger.valueOf(2L * i)), 100);
+					if ((p != null) && (n.compareTo(p) < 0)) { // i.e., n < p
+						return p;
+					}
+				}
 			}
-			// Update n.
-			n = p;
 		}
 	}
 
@@ -995,4 +1198,151 @@ public class BigIntUtil {
 	public static BigInteger probableSafePrime(int bitLength) throws IllegalArgumentException, ArithmeticException {
 		return BigIntUtil.probableSafePrime(bitLength, BigIntUtil.DEFAULT_CERTAINTY);
 	}
+
+	/**
+	 * Constructs a randomly generated positive BigInteger that is probably a safe prime, with the
+	 * specified bitLength. The probability that the BigInteger represents a safe prime number will
+	 * exceed <code>1 - 2<sup>-certainty</sup></code>. <br>
+	 * <br>
+	 * 
+	 * Each worker thread repeatedly picks a random odd <code>q0</code> and sieves the window
+	 * <code>q0, q0 + 2, ..., q0 + 2 * (windowSize - 1)</code> so that neither <code>q</code> nor
+	 * <code>2 * q + 1</code> has a prime factor less than <code>BigIntUtil.SIEVE_BOUND</code>. Only the
+	 * survivors reach Miller-Rabin's test, and all of the workers are cancelled as soon as one of them
+	 * finds a safe prime.
+	 * 
+	 * @param bitLength
+	 *            the bit length of the returned BigInteger
+	 * 
+	 * @param certainty
+	 *            a measure of the uncertainty that the caller is willing to tolerate
+	 * 
+	 * @param numThreads
+	 *            the number of worker threads searching for a safe prime
+	 * 
+	 * @param windowSize
+	 *            the number of candidates sieved at a time by each worker thread
+	 * 
+	 * @param prng
+	 *            source of random bits used to select candidates to be tested for primality
+	 * 
+	 * @return The resulting BigInteger object.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(bitLength < 3) || (numThreads <= 0) || (windowSize <= 0)</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting for the worker threads
+	 */
+	public static BigInteger probableSafePrimeSieve(int bitLength, int certainty, int numThreads, int windowSize,
+			Random prng) throws IllegalArgumentException, CancellationException {
+		if (bitLength < 3) { // The first safe prime is 5, which requires 3 bits to represent.
+			throw new IllegalArgumentException();
+		} else if ((numThreads <= 0) || (windowSize <= 0)) {
+			throw new IllegalArgumentException();
+		}
+		// (3 <= bitLength) && (0 < numThreads) && (0 < windowSize)
+
+		/*
+		 * Every candidate q has exactly qBitLength bits and so must be larger than all of the sieving primes.
+		 * Otherwise, the sieve would reject the small safe primes themselves.
+		 */
+		final int qBitLength = bitLength - 1;
+		if ((qBitLength - 1) <= (Integer.SIZE - Integer.numberOfLeadingZeros(BigIntUtil.SIEVE_BOUND))) {
+			return BigIntUtil.probableSafePrime(bitLength, certainty, prng);
+		}
+		// BigIntUtil.SIEVE_BOUND < 2^(qBitLength - 1) <= q
+
+		final List<Callable<BigInteger>> workers = new ArrayList<Callable<BigInteger>>(numThreads);
+		for (int t = 0; t != numThreads; ++t) {
+			workers.add(() -> {
+				final Random random = (prng == null) ? ThreadLocalRandom.current() : prng;
+				final Thread current = Thread.currentThread();
+				final boolean[] composite = new boolean[windowSize];
+				BigInteger q0 = null, p = null;
+				while (!current.isInterrupted()) {
+					// Pick a random odd q0 with exactly qBitLength bits.
+					q0 = new BigInteger(qBitLength, random).setBit(qBitLength - 1).setBit(0);
+					Arrays.fill(composite, false);
+					BigIntUtil.sieveSafePrimeCandidates(q0, composite);
+
+					for (int i = 0; (i != windowSize) && !current.isInterrupted(); ++i) {
+						if (!composite[i]) {
+							final BigInteger q = q0.add(BigInteger.valueOf(2L * i));
+							if (q.bitLength() != qBitLength) {
+								break; // The rest of the window is too large.
+							} else if ((p = BigIntUtil.safePrimeCandidate(q, certainty)) != null) {
+								return p;
+							}
+						}
+					}
+				}
+				// Another worker has already found a safe prime.
+				throw new CancellationException();
+			});
+		}
+		return ConcurrentUtil.invokeAny(workers, "safe-prime");
+	}
+
+	/**
+	 * @param bitLength
+	 *            the bit length of the returned BigInteger
+	 * 
+	 * @param certainty
+	 *            a measure of the uncertainty that the caller is willing to tolerate
+	 * 
+	 * @param numThreads
+	 *            the number of worker threads searching for a safe prime
+	 * 
+	 * @return
+	 *         <code>BigIntUtil.probableSafePrimeSieve(bitLength, certainty, numThreads, BigIntUtil.DEFAULT_SIEVE_WINDOW, null)</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(bitLength < 3) || (numThreads <= 0)</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting for the worker threads
+	 */
+	public static BigInteger probableSafePrimeSieve(int bitLength, int certainty, int numThreads)
+			throws IllegalArgumentException, CancellationException {
+		return BigIntUtil.probableSafePrimeSieve(bitLength, certainty, numThreads, BigIntUtil.DEFAULT_SIEVE_WINDOW,
+				null);
+	}
+
+	/**
+	 * @param bitLength
+	 *            the bit length of the returned BigInteger
+	 * 
+	 * @param certainty
+	 *            a measure of the uncertainty that the caller is willing to tolerate
+	 * 
+	 * @return
+	 *         <code>BigIntUtil.probableSafePrimeSieve(bitLength, certainty, ConcurrentUtil.DEFAULT_NUM_THREADS)</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>bitLength < 3</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting for the worker threads
+	 */
+	public static BigInteger probableSafePrimeSieve(int bitLength, int certainty)
+			throws IllegalArgumentException, CancellationException {
+		return BigIntUtil.probableSafePrimeSieve(bitLength, certainty, ConcurrentUtil.DEFAULT_NUM_THREADS);
+	}
+
+	/**
+	 * @param bitLength
+	 *            the bit length of the returned BigInteger
+	 * 
+	 * @return <code>BigIntUtil.probableSafePrimeSieve(bitLength, BigIntUtil.DEFAULT_CERTAINTY)</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>bitLength < 3</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting for the worker threads
+	 */
+	public static BigInteger probableSafePrimeSieve(int bitLength) throws IllegalArgumentException, CancellationException {
+		return BigIntUtil.probableSafePrimeSieve(bitLength, BigIntUtil.DEFAULT_CERTAINTY);
+	}
 }
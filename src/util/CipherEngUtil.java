@@ -1,9 +1,20 @@
 package util;
 
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
  * Utility methods for Java's Cipher class wrapper types such as SymCipherEng and RSACipherEng.
@@ -16,12 +27,15 @@ public class CipherEngUtil {
 	 */
 
 	/**
-	 * All supported modes of operation.
+	 * All supported modes of operation. <br>
+	 * Note that CTR is a stream mode and so it only supports <code>PADDING.NoPadding</code>. <br>
+	 * Note that GCM (i.e., CTR with an authentication tag) only supports AES with
+	 * <code>PADDING.NoPadding</code>.
 	 * 
 	 * @author Ashkan Moatamed
 	 */
 	public static enum OPMODE {
-		ECB, CBC;
+		ECB, CBC, CTR, GCM;
 	};
 
 	/**
@@ -43,6 +57,25 @@ public class CipherEngUtil {
 	 */
 	public static final PADDING DEFAULT_PADDING = PADDING.NoPadding;
 
+	/**
+	 * The maximum number of idle Cipher objects kept by the engine pool per transformation.
+	 */
+	public static final int POOL_CAPACITY = 16;
+
+	/**
+	 * The engine pool, i.e., the idle Cipher objects keyed by transformation (see
+	 * <code>CipherEngUtil.borrowEngine</code> and <code>CipherEngUtil.returnEngine</code>). Thread-safe.
+	 */
+	private static final ConcurrentHashMap<String, ArrayBlockingQueue<Cipher>> POOL = //
+			new ConcurrentHashMap<String, ArrayBlockingQueue<Cipher>>();
+
+	/**
+	 * The public key idle RSA engines are re-initialized with (see <code>CipherEngUtil.returnEngine</code>),
+	 * i.e., the smallest accepted modulus <code>2<sup>512</sup> - 1</code> with exponent F4, or
+	 * <code>null</code> if the provider rejects it (in which case idle RSA engines are dropped).
+	 */
+	private static final PublicKey RSA_PLACEHOLDER = CipherEngUtil.rsaPlaceholder();
+
 	/**
 	 * Prevent instantiation.
 	 */
@@ -106,4 +139,149 @@ public class CipherEngUtil {
 			throws NullPointerException, NoSuchAlgorithmException, NoSuchPaddingException {
 		return Cipher.getInstance(CipherEngUtil.getAlgoName(algo, opmode, padding));
 	}
+
+	/**
+	 * Borrow a Cipher object for the given transformation from the engine pool, or create a new one (as
+	 * <code>CipherEngUtil.getEngine</code> does) if the pool has none, so that short-lived wrappers skip
+	 * the provider lookup of <code>Cipher.getInstance</code>. The result is in an unknown state and must be
+	 * initialized before use, and should be given back through <code>CipherEngUtil.returnEngine</code> once
+	 * it is no longer used.
+	 * 
+	 * @param algo
+	 *            the given algorithm
+	 * 
+	 * @param opmode
+	 *            the given mode of operation
+	 * 
+	 * @param padding
+	 *            the given padding
+	 * 
+	 * @return A Cipher object for <code>CipherEngUtil.getAlgoName(algo, opmode, padding)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (opmode == null) || (padding == null)</code>
+	 * 
+	 * @throws NoSuchAlgorithmException
+	 *             Thrown by
+	 *             <code>Cipher.getInstance(CipherEngUtil.getAlgoName(algo, opmode, padding))</code>
+	 * 
+	 * @throws NoSuchPaddingException
+	 *             Thrown by
+	 *             <code>Cipher.getInstance(CipherEngUtil.getAlgoName(algo, opmode, padding))</code>
+	 */
+	public static Cipher borrowEngine(String algo, OPMODE opmode, PADDING padding)
+			throws NullPointerException, NoSuchAlgorithmException, NoSuchPaddingException {
+		final String transformation = CipherEngUtil.getAlgoName(algo, opmode, padding);
+		final ArrayBlockingQueue<Cipher> idle = CipherEngUtil.POOL.get(transformation);
+		final Cipher result = (idle == null) ? null : idle.poll();
+		return (result == null) ? Cipher.getInstance(transformation) : result;
+	}
+
+	/**
+	 * Give the given Cipher object back to the engine pool (under its transformation, i.e.,
+	 * <code>engine.getAlgorithm()</code>). The engine is first re-initialized with a placeholder key (see
+	 * <code>CipherEngUtil.scrub</code>), so that an idle engine never keeps the key schedule of its last
+	 * user, and it is dropped if that fails or if the pool already holds
+	 * <code>CipherEngUtil.POOL_CAPACITY</code> idle engines for that transformation. The caller must not use
+	 * the engine afterwards.
+	 * 
+	 * @param engine
+	 *            the given engine
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>engine == null</code>
+	 */
+	public static void returnEngine(Cipher engine) throws NullPointerException {
+		if (CipherEngUtil.scrub(engine)) {
+			CipherEngUtil.POOL.computeIfAbsent(engine.getAlgorithm(),
+					transformation -> new ArrayBlockingQueue<Cipher>(CipherEngUtil.POOL_CAPACITY)).offer(engine);
+		}
+	}
+
+	/**
+	 * Re-initialize the given engine with a placeholder key, i.e., an all-zero secret key (in decryption
+	 * mode with an all-zero initialization vector if needed, since decryption never rejects a repeated
+	 * GCM nonce) or <code>CipherEngUtil.RSA_PLACEHOLDER</code>. This costs a key schedule of the
+	 * placeholder key, which is still far cheaper than <code>Cipher.getInstance</code>.
+	 * 
+	 * @param engine
+	 *            the given engine
+	 * 
+	 * @return <code>true</code> if the engine has been re-initialized and <code>false</code> otherwise.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>engine == null</code>
+	 */
+	private static boolean scrub(Cipher engine) throws NullPointerException {
+		final String[] parts = engine.getAlgorithm().split("/");
+		try {
+			if (parts[0].equals("RSA")) {
+				if (CipherEngUtil.RSA_PLACEHOLDER == null) {
+					return false;
+				}
+				engine.init(Cipher.ENCRYPT_MODE, CipherEngUtil.RSA_PLACEHOLDER);
+				return true;
+			}
+
+			final int keyLength;
+			switch (parts[0]) {
+			case "DES":
+				keyLength = 8;
+				break;
+			case "DESede":
+				keyLength = 24;
+				break;
+			default: // i.e., AES and Blowfish
+				keyLength = 16;
+				break;
+			}
+			final SecretKeySpec key = new SecretKeySpec(new byte[keyLength], parts[0]);
+			final String opmode = (parts.length == 1) ? OPMODE.ECB.name() : parts[1];
+			if (opmode.equals(OPMODE.ECB.name())) {
+				engine.init(Cipher.DECRYPT_MODE, key);
+			} else if (opmode.equals(OPMODE.GCM.name())) {
+				engine.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, new byte[12]));
+			} else {
+				engine.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(new byte[engine.getBlockSize()]));
+			}
+			return true;
+		} catch (GeneralSecurityException | RuntimeException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return The value of <code>CipherEngUtil.RSA_PLACEHOLDER</code>.
+	 */
+	private static PublicKey rsaPlaceholder() {
+		try {
+			final BigInteger modulus = BigInteger.ONE.shiftLeft(512).subtract(BigInteger.ONE);
+			return KeyFactory.getInstance("RSA")
+					.generatePublic(new RSAPublicKeySpec(modulus, RSAKeyGenParameterSpec.F4));
+		} catch (GeneralSecurityException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param algo
+	 *            the given algorithm
+	 * 
+	 * @param opmode
+	 *            the given mode of operation
+	 * 
+	 * @param padding
+	 *            the given padding
+	 * 
+	 * @return The number of idle Cipher objects in the engine pool for
+	 *         <code>CipherEngUtil.getAlgoName(algo, opmode, padding)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (opmode == null) || (padding == null)</code>
+	 */
+	public static int poolSize(String algo, OPMODE opmode, PADDING padding) throws NullPointerException {
+		final ArrayBlockingQueue<Cipher> idle = CipherEngUtil.POOL
+				.get(CipherEngUtil.getAlgoName(algo, opmode, padding));
+		return (idle == null) ? 0 : idle.size();
+	}
 }
@@ -0,0 +1,544 @@
+package util;
+
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+
+/**
+ * Thread-safe RSA Cipher Engine. A facade over the keys of an RSACipherEng object which can be shared
+ * by any number of threads. <br>
+ * <br>
+ * 
+ * Unlike RSACipherEng, which re-initializes its single Cipher object on every call, this facade keeps a
+ * bounded pool of initialized Cipher objects per direction and key: every call borrows one (or
+ * initializes a new one if none is idle) and gives it back afterwards, since <code>Cipher.doFinal</code>
+ * resets a Cipher object to its initialized state. The pool belongs to the facade, so no thread keeps a
+ * Cipher object holding its private key once the facade is closed. The <code>encryptAll</code> and
+ * <code>decryptAll</code> methods spread a batch of messages across the available processors.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class ConcurrentRSACipherEng implements AutoCloseable {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.RSAUtil
+	 * 		2. util.RSACipherEng
+	 * 		3. util.CipherEngUtil
+	 * 		4. util.ConcurrentUtil
+	 * </code>
+	 */
+
+	/**
+	 * Pool shared by all batch operations. Its (daemon) threads are created lazily.
+	 */
+	private static final ExecutorService BATCH_POOL = ConcurrentUtil
+			.newFixedDaemonPool(ConcurrentUtil.DEFAULT_NUM_THREADS, "rsa-cipher");
+
+	/**
+	 * Index of the Cipher object which encrypts with the public key.
+	 */
+	private static final int ENCRYPT_PUBLIC = 0;
+
+	/**
+	 * Index of the Cipher object which encrypts with the private key.
+	 */
+	private static final int ENCRYPT_PRIVATE = 1;
+
+	/**
+	 * Index of the Cipher object which decrypts with the private key.
+	 */
+	private static final int DECRYPT_PRIVATE = 2;
+
+	/**
+	 * Index of the Cipher object which decrypts with the public key.
+	 */
+	private static final int DECRYPT_PUBLIC = 3;
+
+	/**
+	 * Public key. <br>
+	 * Guaranteed to be non-<code>null</code>.
+	 */
+	private final RSAPublicKey publicKey;
+
+	/**
+	 * Private key. <br>
+	 * Guaranteed to be non-<code>null</code>.
+	 */
+	private final RSAPrivateKey privateKey;
+
+	/**
+	 * Mode of operation. <br>
+	 * Guaranteed to be non-<code>null</code>.
+	 */
+	private final CipherEngUtil.OPMODE opmode;
+
+	/**
+	 * Padding algorithm. <br>
+	 * Guaranteed to be non-<code>null</code>.
+	 */
+	private final CipherEngUtil.PADDING padding;
+
+	/**
+	 * The idle initialized Cipher objects, indexed by <code>ENCRYPT_PUBLIC</code>, ...,
+	 * <code>DECRYPT_PUBLIC</code>. Every queue holds at most <code>ConcurrentUtil.DEFAULT_NUM_THREADS</code>
+	 * Cipher objects; the surplus ones are dropped when given back.
+	 */
+	private final List<BlockingQueue<Cipher>> idle;
+
+	/**
+	 * Specifies whether <code>this.close()</code> has been called.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Construct a ConcurrentRSACipherEng object with the keys, mode of operation, and padding algorithm of
+	 * the given RSACipherEng object.
+	 * 
+	 * @param other
+	 *            the given RSACipherEng object
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>other == null</code>
+	 */
+	public ConcurrentRSACipherEng(RSACipherEng other) throws NullPointerException {
+		// Only the key material is kept (i.e., other's Cipher object is never touched).
+		this.publicKey = other.getPublicKey();
+		this.privateKey = other.getPrivateKey();
+		this.opmode = other.opmode();
+		this.padding = other.padding();
+		this.idle = new ArrayList<BlockingQueue<Cipher>>(4);
+		for (int i = 0; i != 4; ++i) {
+			this.idle.add(new ArrayBlockingQueue<Cipher>(ConcurrentUtil.DEFAULT_NUM_THREADS));
+		}
+		this.closed = false;
+	}
+
+	/**
+	 * Since the facade can be shared by any number of threads, there is no need for a copy ctor.
+	 */
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	/**
+	 * Drop all of the idle Cipher objects. Every later operation throws an IllegalStateException, and the
+	 * Cipher objects of the operations in progress are dropped once they complete. Closing an already
+	 * closed object has no effect.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		for (final BlockingQueue<Cipher> queue : this.idle) {
+			queue.clear();
+		}
+	}
+
+	/**
+	 * @return A new RSACipherEng object with the keys, mode of operation, and padding algorithm of the
+	 *         calling object (which should be closed by the caller).
+	 */
+	public RSACipherEng getEngine() {
+		try {
+			return new RSACipherEng(new KeyPair(this.publicKey, this.privateKey), this.opmode, this.padding);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+			throw new ExceptionInInitializerError();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return RSAUtil.toString(this.publicKey.getModulus(), this.publicKey.getPublicExponent(),
+				this.privateKey.getPrivateExponent());
+	}
+
+	/**
+	 * @param index
+	 *            the given Cipher object index
+	 * 
+	 * @return An idle Cipher object with the given index, or a newly initialized one if there is none.
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If the calling object is closed
+	 */
+	private Cipher borrow(int index) throws InvalidKeyException, IllegalStateException {
+		if (this.closed) {
+			throw new IllegalStateException("The cipher engine is closed.");
+		}
+		final Cipher result = this.idle.get(index).poll();
+		if (result != null) {
+			return result;
+		}
+		final Cipher engine;
+		try {
+			engine = CipherEngUtil.getEngine(RSAUtil.ALGORITHM, this.opmode, this.padding);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+			throw new ExceptionInInitializerError();
+		}
+		final int mode = (index < ConcurrentRSACipherEng.DECRYPT_PRIVATE) ? Cipher.ENCRYPT_MODE
+				: Cipher.DECRYPT_MODE;
+		final Key key = ((index == ConcurrentRSACipherEng.ENCRYPT_PUBLIC)
+				|| (index == ConcurrentRSACipherEng.DECRYPT_PUBLIC)) ? this.publicKey : this.privateKey;
+		engine.init(mode, key);
+		return engine;
+	}
+
+	/**
+	 * Give the given Cipher object back to the idle ones, unless the calling object is closed or there are
+	 * enough idle ones already.
+	 * 
+	 * @param index
+	 *            the given Cipher object index
+	 * 
+	 * @param engine
+	 *            the given Cipher object
+	 */
+	private void giveBack(int index, Cipher engine) {
+		final BlockingQueue<Cipher> queue = this.idle.get(index);
+		if (queue.offer(engine) && this.closed) { // i.e., closed meanwhile
+			queue.clear();
+		}
+	}
+
+	/**
+	 * @param index
+	 *            the given Cipher object index
+	 * 
+	 * @param in
+	 *            the given byte array
+	 * 
+	 * @return <code>doFinal(in)</code> of a Cipher object with the given index.
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(in)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(in)</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If the calling object is closed
+	 */
+	private byte[] apply(int index, byte[] in)
+			throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException, IllegalStateException {
+		final Cipher engine = this.borrow(index);
+		try {
+			return engine.doFinal(in);
+		} finally {
+			// doFinal resets the Cipher object to its initialized state, even if it fails.
+			this.giveBack(index, engine);
+		}
+	}
+
+	/**
+	 * Encrypt the given plaintext byte array.
+	 * 
+	 * @param p
+	 *            the given plaintext byte array
+	 * 
+	 * @param publicKey
+	 *            specifies whether the public key should be applied to the given plaintext byte array
+	 * 
+	 * @return The encrypted ciphertext byte array.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>p == null</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(p)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(p)</code>
+	 */
+	public byte[] encrypt(byte[] p, boolean publicKey)
+			throws NullPointerException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		return this.apply(publicKey ? ConcurrentRSACipherEng.ENCRYPT_PUBLIC : ConcurrentRSACipherEng.ENCRYPT_PRIVATE,
+				p);
+	}
+
+	/**
+	 * @param p
+	 *            the given plaintext byte array
+	 * 
+	 * @return <code>this.encrypt(p, true)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>p == null</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(p)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(p)</code>
+	 */
+	public byte[] encrypt(byte[] p)
+			throws NullPointerException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+		return this.encrypt(p, true);
+	}
+
+	/**
+	 * Decrypt the given ciphertext byte array.
+	 * 
+	 * @param c
+	 *            the given ciphertext byte array
+	 * 
+	 * @param privateKey
+	 *            specifies whether the private key should be applied to the given ciphertext byte array
+	 * 
+	 * @return The decrypted plaintext byte array.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>c == null</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(c)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(c)</code>
+	 */
+	public byte[] decrypt(byte[] c, boolean privateKey)
+			throws NullPointerException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+		return this.apply(privateKey ? ConcurrentRSACipherEng.DECRYPT_PRIVATE : ConcurrentRSACipherEng.DECRYPT_PUBLIC,
+				c);
+	}
+
+	/**
+	 * @param c
+	 *            the given ciphertext byte array
+	 * 
+	 * @return <code>this.decrypt(c, true)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>c == null</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(c)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(c)</code>
+	 */
+	public byte[] decrypt(byte[] c)
+			throws NullPointerException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+		return this.decrypt(c, true);
+	}
+
+	/**
+	 * Encrypt all of the given plaintext byte arrays, spreading them across the available processors. <br>
+	 * Postcondition: <code>Result != null</code> <br>
+	 * Postcondition: <code>Result.length == ps.length</code> <br>
+	 * Postcondition: <code>Result[i] == this.encrypt(ps[i], publicKey)</code>
+	 * 
+	 * @param ps
+	 *            the given plaintext byte arrays
+	 * 
+	 * @param publicKey
+	 *            specifies whether the public key should be applied to the given plaintext byte arrays
+	 * 
+	 * @return The encrypted ciphertext byte arrays.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>ps == null</code> or if <code>ps</code> contains a <code>null</code> element
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[][] encryptAll(byte[][] ps, boolean publicKey) throws NullPointerException, InvalidKeyException,
+			IllegalBlockSizeException, BadPaddingException, CancellationException {
+		return this.applyAll(ps, true, publicKey);
+	}
+
+	/**
+	 * @param ps
+	 *            the given plaintext byte arrays
+	 * 
+	 * @return <code>this.encryptAll(ps, true)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>ps == null</code> or if <code>ps</code> contains a <code>null</code> element
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[][] encryptAll(byte[][] ps) throws NullPointerException, InvalidKeyException,
+			IllegalBlockSizeException, BadPaddingException, CancellationException {
+		return this.encryptAll(ps, true);
+	}
+
+	/**
+	 * Decrypt all of the given ciphertext byte arrays, spreading them across the available processors.
+	 * <br>
+	 * Postcondition: <code>Result != null</code> <br>
+	 * Postcondition: <code>Result.length == cs.length</code> <br>
+	 * Postcondition: <code>Result[i] == this.decrypt(cs[i], privateKey)</code>
+	 * 
+	 * @param cs
+	 *            the given ciphertext byte arrays
+	 * 
+	 * @param privateKey
+	 *            specifies whether the private key should be applied to the given ciphertext byte arrays
+	 * 
+	 * @return The decrypted plaintext byte arrays.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>cs == null</code> or if <code>cs</code> contains a <code>null</code> element
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[][] decryptAll(byte[][] cs, boolean privateKey) throws NullPointerException, InvalidKeyException,
+			IllegalBlockSizeException, BadPaddingException, CancellationException {
+		return this.applyAll(cs, false, privateKey);
+	}
+
+	/**
+	 * @param cs
+	 *            the given ciphertext byte arrays
+	 * 
+	 * @return <code>this.decryptAll(cs, true)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>cs == null</code> or if <code>cs</code> contains a <code>null</code> element
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[][] decryptAll(byte[][] cs) throws NullPointerException, InvalidKeyException,
+			IllegalBlockSizeException, BadPaddingException, CancellationException {
+		return this.decryptAll(cs, true);
+	}
+
+	/**
+	 * @param in
+	 *            the given byte arrays
+	 * 
+	 * @param encrypt
+	 *            specifies whether to encrypt (or decrypt) the given byte arrays
+	 * 
+	 * @param flag
+	 *            the <code>publicKey</code> (if encrypting) or <code>privateKey</code> (if decrypting) flag
+	 * 
+	 * @return The encrypted (or decrypted) byte arrays.
+	 */
+	private byte[][] applyAll(byte[][] in, boolean encrypt, boolean flag) throws NullPointerException,
+			InvalidKeyException, IllegalBlockSizeException, BadPaddingException, CancellationException {
+		for (final byte[] m : in) {
+			if (m == null) {
+				throw new NullPointerException();
+			}
+		}
+		// in does not contain a null element
+
+		final byte[][] result = new byte[in.length][];
+		final int numChunks = Math.min(ConcurrentUtil.DEFAULT_NUM_THREADS, in.length);
+		if (numChunks <= 1) { // i.e., no point in handing the work over to the pool
+			for (int i = 0; i != in.length; ++i) {
+				result[i] = encrypt ? this.encrypt(in[i], flag) : this.decrypt(in[i], flag);
+			}
+			return result;
+		}
+		// 1 < numChunks
+
+		// Contiguous chunks so that every worker thread borrows its Cipher objects from the idle ones.
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numChunks);
+		for (int c = 0; c != numChunks; ++c) {
+			final int lo = (int) (((long) in.length * c) / numChunks);
+			final int hi = (int) (((long) in.length * (c + 1)) / numChunks);
+			tasks.add(() -> {
+				for (int i = lo; i != hi; ++i) {
+					result[i] = encrypt ? this.encrypt(in[i], flag) : this.decrypt(in[i], flag);
+				}
+				return null;
+			});
+		}
+		try {
+			ConcurrentUtil.invokeAll(ConcurrentRSACipherEng.BATCH_POOL, tasks);
+		} catch (IllegalStateException ex) {
+			// Unwrap the checked exceptions that ConcurrentUtil.unchecked wrapped.
+			final Throwable cause = ex.getCause();
+			if (cause instanceof InvalidKeyException) {
+				throw (InvalidKeyException) cause;
+			} else if (cause instanceof IllegalBlockSizeException) {
+				throw (IllegalBlockSizeException) cause;
+			} else if (cause instanceof BadPaddingException) {
+				throw (BadPaddingException) cause;
+			}
+			throw ex;
+		}
+		return result;
+	}
+}
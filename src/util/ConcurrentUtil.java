@@ -0,0 +1,295 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Utility concurrency methods shared by the multi-threaded algorithms of this package.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class ConcurrentUtil {
+	/**
+	 * No dependencies.
+	 */
+
+	/**
+	 * The default number of worker threads (i.e., the number of available processors).
+	 */
+	public static final int DEFAULT_NUM_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Prevent instantiation.
+	 */
+	private ConcurrentUtil() {
+		// Empty by design.
+	}
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	/**
+	 * @param name
+	 *            the given thread name prefix
+	 * 
+	 * @return A ThreadFactory which creates daemon threads named <code>name + "-" + i</code> where
+	 *         <code>i</code> is the one-based index of the created thread.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>name == null</code>
+	 */
+	public static ThreadFactory daemonThreadFactory(String name) throws NullPointerException {
+		if (name == null) {
+			throw new NullPointerException();
+		}
+
+		final AtomicInteger count = new AtomicInteger();
+		return (r) -> {
+			final Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+			// Daemon threads so that an idle pool never prevents the JVM from exiting.
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * @param numThreads
+	 *            the given number of threads
+	 * 
+	 * @param name
+	 *            the given thread name prefix
+	 * 
+	 * @return
+	 *         <code>Executors.newFixedThreadPool(numThreads, ConcurrentUtil.daemonThreadFactory(name))</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>name == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>numThreads <= 0</code>
+	 */
+	public static ExecutorService newFixedDaemonPool(int numThreads, String name)
+			throws NullPointerException, IllegalArgumentException {
+		return Executors.newFixedThreadPool(numThreads, ConcurrentUtil.daemonThreadFactory(name));
+	}
+
+	/**
+	 * @param cause
+	 *            the given cause
+	 * 
+	 * @return <code>cause</code> if it is a RuntimeException and otherwise
+	 *         <code>new IllegalStateException(cause)</code>.
+	 * 
+	 * @throws Error
+	 *             If <code>cause instanceof Error</code>
+	 */
+	public static RuntimeException unchecked(Throwable cause) throws Error {
+		if (cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		} else if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new IllegalStateException(cause);
+	}
+
+	/**
+	 * Execute all of the given tasks on a new fixed pool (one thread per task) and return the result of
+	 * the first one that completes successfully. All of the other tasks are cancelled (i.e., interrupted)
+	 * as soon as one completes successfully.
+	 * 
+	 * @param tasks
+	 *            the given tasks
+	 * 
+	 * @param name
+	 *            the given thread name prefix
+	 * 
+	 * @return The result of the first task that completed successfully.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(tasks == null) || (name == null)</code> or if <code>tasks</code> contains a
+	 *             <code>null</code> element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>tasks.isEmpty()</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static <T> T invokeAny(List<? extends Callable<T>> tasks, String name)
+			throws NullPointerException, IllegalArgumentException, CancellationException {
+		if (tasks.isEmpty()) {
+			throw new IllegalArgumentException();
+		}
+		// !tasks.isEmpty()
+
+		final ExecutorService pool = ConcurrentUtil.newFixedDaemonPool(tasks.size(), name);
+		try {
+			return pool.invokeAny(tasks);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		} catch (ExecutionException ex) {
+			// All of the tasks failed so propagate the failure of one of them.
+			throw ConcurrentUtil.unchecked(ex.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Execute all of the given tasks on the given pool and wait for all of them to complete. If any task
+	 * fails, then all of the remaining tasks are cancelled and the failure is propagated.
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @param tasks
+	 *            the given tasks
+	 * 
+	 * @return The results of the tasks in the same order as <code>tasks</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(pool == null) || (tasks == null)</code> or if <code>tasks</code> contains a
+	 *             <code>null</code> element
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static <T> List<T> invokeAll(ExecutorService pool, List<? extends Callable<T>> tasks)
+			throws NullPointerException, CancellationException {
+		final List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+		try {
+			for (final Callable<T> task : tasks) {
+				futures.add(pool.submit(task));
+			}
+			final List<T> result = new ArrayList<T>(futures.size());
+			for (final Future<T> future : futures) {
+				result.add(future.get());
+			}
+			return result;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		} catch (ExecutionException ex) {
+			throw ConcurrentUtil.unchecked(ex.getCause());
+		} finally {
+			// Cancel whatever is still running (i.e., nothing unless a task failed).
+			for (final Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Execute all of the given tasks on a new fixed pool and wait for all of them to complete.
+	 * 
+	 * @param tasks
+	 *            the given tasks
+	 * 
+	 * @param numThreads
+	 *            the given number of threads
+	 * 
+	 * @param name
+	 *            the given thread name prefix
+	 * 
+	 * @return <code>ConcurrentUtil.invokeAll(pool, tasks)</code> where <code>pool</code> is a new fixed
+	 *         pool which is shut down before returning.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(tasks == null) || (name == null)</code> or if <code>tasks</code> contains a
+	 *             <code>null</code> element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>numThreads <= 0</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int numThreads, String name)
+			throws NullPointerException, IllegalArgumentException, CancellationException {
+		final ExecutorService pool = ConcurrentUtil.newFixedDaemonPool(numThreads, name);
+		try {
+			return ConcurrentUtil.invokeAll(pool, tasks);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Apply the given action to every index in <code>[from, to)</code> by splitting the range into at most
+	 * <code>numChunks</code> contiguous chunks of (nearly) equal length, executing one task per chunk on
+	 * the given pool, and waiting for all of them to complete.
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @param from
+	 *            the given first index (inclusive)
+	 * 
+	 * @param to
+	 *            the given last index (exclusive)
+	 * 
+	 * @param numChunks
+	 *            the given maximum number of chunks
+	 * 
+	 * @param action
+	 *            the given action
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(pool == null) || (action == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(to < from) || (numChunks <= 0)</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static void parallelFor(ExecutorService pool, int from, int to, int numChunks, IntConsumer action)
+			throws NullPointerException, IllegalArgumentException, CancellationException {
+		if ((to < from) || (numChunks <= 0)) {
+			throw new IllegalArgumentException();
+		} else if ((pool == null) || (action == null)) {
+			throw new NullPointerException();
+		}
+		// (from <= to) && (0 < numChunks)
+
+		final int length = to - from;
+		if (length == 0) {
+			return;
+		}
+		// 0 < length
+		numChunks = Math.min(numChunks, length);
+		if (numChunks == 1) { // i.e., no point in handing the work over to the pool
+			for (int i = from; i != to; ++i) {
+				action.accept(i);
+			}
+			return;
+		}
+		// 1 < numChunks
+
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numChunks);
+		for (int c = 0; c != numChunks; ++c) {
+			// Compute in long to avoid overflow for huge ranges.
+			final int lo = from + (int) (((long) length * c) / numChunks);
+			final int hi = from + (int) (((long) length * (c + 1)) / numChunks);
+			tasks.add(() -> {
+				for (int i = lo; i != hi; ++i) {
+					action.accept(i);
+				}
+				return null;
+			});
+		}
+		ConcurrentUtil.invokeAll(pool, tasks);
+	}
+}
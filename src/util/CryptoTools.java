@@ -691,7 +691,7 @@ public class CryptoTools {
 	 * 
 	 * @throws IOException
 	 *             Thrown by <code>new FileInputStream(filename)</code>,
-	 *             <code>FileInputStream.read()</code>, and <code>FileInputStream.close()</code>
+	 *             <code>FileInputStream.readAllBytes()</code>, and <code>FileInputStream.close()</code>
 	 */
 	public static byte[] fileToBytes(String filename) throws NullPointerException, FileNotFoundException, IOException {
 		if (filename == null) {
@@ -699,12 +699,8 @@ public class CryptoTools {
 		}
 
 		try (final FileInputStream fis = new FileInputStream(filename)) {
-			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			for (int b = 0; (b = fis.read()) != -1; /* Update inside. */) {
-				baos.write(b);
-			}
-			fis.close();
-			return baos.toByteArray();
+			// Read in bulk rather than one byte at a time.
+			return fis.readAllBytes();
 		}
 	}
 
@@ -0,0 +1,702 @@
+package util;
+
+/**
+ * Bitsliced pure Java DES core which evaluates 64 instances (lanes) of DES per pass on long words. A
+ * 64-bit block (or key) is held as 64 slices, where slice <code>i</code> holds bit <code>i + 1</code>
+ * (in the DES numbering, i.e., starting at the most significant bit) of every lane, and bit
+ * <code>j</code> of every slice belongs to lane <code>j</code>. The permutations (i.e., the initial and
+ * final permutations, the expansion, P, and the whole key schedule) are then free renamings of slices,
+ * and every S-box is a boolean gate network: the four outputs are OR-AND sums of the 16 minterms of
+ * four of the inputs, each gated by a function of the two remaining inputs. The round function and the
+ * gate networks are straight-line code generated from the DES tables (with E and P folded into the slice
+ * indices), so that the S-boxes run on registers only. <br>
+ * Since the key schedule costs nothing, trying 64 keys at once (see <code>DESBitslice.matches</code>)
+ * avoids the per key schedule, init, and allocation cost of <code>javax.crypto</code>.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class DESBitslice {
+	/**
+	 * No dependencies.
+	 */
+
+	/**
+	 * The number of lanes per pass.
+	 */
+	public static final int LANES = Long.SIZE;
+
+	/**
+	 * The number of slices of a block (or key).
+	 */
+	public static final int SLICES = 64;
+
+	/**
+	 * The number of rounds.
+	 */
+	private static final int ROUNDS = 16;
+
+	/**
+	 * The initial permutation.
+	 */
+	private static final byte[] IP = { 58, 50, 42, 34, 26, 18, 10, 2, 60, 52, 44, 36, 28, 20, 12, 4, 62, 54, 46,
+			38, 30, 22, 14, 6, 64, 56, 48, 40, 32, 24, 16, 8, 57, 49, 41, 33, 25, 17, 9, 1, 59, 51, 43, 35, 27, 19,
+			11, 3, 61, 53, 45, 37, 29, 21, 13, 5, 63, 55, 47, 39, 31, 23, 15, 7 };
+
+	/**
+	 * The permuted choice 1 of the key schedule.
+	 */
+	private static final byte[] PC1 = { 57, 49, 41, 33, 25, 17, 9, 1, 58, 50, 42, 34, 26, 18, 10, 2, 59, 51, 43,
+			35, 27, 19, 11, 3, 60, 52, 44, 36, 63, 55, 47, 39, 31, 23, 15, 7, 62, 54, 46, 38, 30, 22, 14, 6, 61, 53,
+			45, 37, 29, 21, 13, 5, 28, 20, 12, 4 };
+
+	/**
+	 * The permuted choice 2 of the key schedule.
+	 */
+	private static final byte[] PC2 = { 14, 17, 11, 24, 1, 5, 3, 28, 15, 6, 21, 10, 23, 19, 12, 4, 26, 8, 16, 7,
+			27, 20, 13, 2, 41, 52, 31, 37, 47, 55, 30, 40, 51, 45, 33, 48, 44, 49, 39, 56, 34, 53, 46, 42, 50, 36,
+			29, 32 };
+
+	/**
+	 * The left rotations of the key schedule.
+	 */
+	private static final byte[] SHIFTS = { 1, 1, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 1 };
+
+	/**
+	 * The final permutation (i.e., the inverse of the initial permutation), 0-based.
+	 */
+	private static final byte[] FP = new byte[DESBitslice.SLICES];
+
+	/**
+	 * <code>KEY_BITS[r][j]</code> is the key slice of bit <code>j</code> of the subkey of round
+	 * <code>r</code>.
+	 */
+	private static final byte[][] KEY_BITS = new byte[DESBitslice.ROUNDS][48];
+
+	static {
+		for (int i = 0; i != DESBitslice.SLICES; ++i) {
+			DESBitslice.FP[DESBitslice.IP[i] - 1] = (byte) i;
+		}
+
+		// Run the key schedule on slice indices instead of bits.
+		final byte[] c = new byte[28];
+		final byte[] d = new byte[28];
+		for (int i = 0; i != 28; ++i) {
+			c[i] = (byte) (DESBitslice.PC1[i] - 1);
+			d[i] = (byte) (DESBitslice.PC1[28 + i] - 1);
+		}
+		for (int r = 0, shift = 0; r != DESBitslice.ROUNDS; ++r) {
+			shift += DESBitslice.SHIFTS[r];
+			for (int j = 0; j != 48; ++j) {
+				final int bit = DESBitslice.PC2[j] - 1;
+				DESBitslice.KEY_BITS[r][j] = (bit < 28) ? c[(bit + shift) % 28] : d[(bit - 28 + shift) % 28];
+			}
+		}
+
+	}
+
+	/**
+	 * Prevent instantiation.
+	 */
+	private DESBitslice() {
+		// Empty by design.
+	}
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	/**
+	 * Encrypt the given block slices in place with the given key slices.
+	 * 
+	 * @param key
+	 *            the given key slices (64 slices, where the parity slices are ignored)
+	 * 
+	 * @param block
+	 *            the given block slices (64 slices)
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(key == null) || (block == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(key.length != 64) || (block.length != 64)</code>
+	 */
+	public static void encryptSlices(long[] key, long[] block) throws NullPointerException, IllegalArgumentException {
+		DESBitslice.crypt(key, block, false);
+	}
+
+	/**
+	 * Decrypt the given block slices in place with the given key slices.
+	 * 
+	 * @param key
+	 *            the given key slices (64 slices, where the parity slices are ignored)
+	 * 
+	 * @param block
+	 *            the given block slices (64 slices)
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(key == null) || (block == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(key.length != 64) || (block.length != 64)</code>
+	 */
+	public static void decryptSlices(long[] key, long[] block) throws NullPointerException, IllegalArgumentException {
+		DESBitslice.crypt(key, block, true);
+	}
+
+	/**
+	 * Encrypt every given block with the key of the same lane.
+	 * 
+	 * @param keys
+	 *            the given keys (as big-endian longs, at most 64)
+	 * 
+	 * @param blocks
+	 *            the given plaintext blocks (as big-endian longs)
+	 * 
+	 * @return The ciphertext blocks.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(keys == null) || (blocks == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(64 < keys.length) || (keys.length != blocks.length)</code>
+	 */
+	public static long[] encrypt(long[] keys, long[] blocks) throws NullPointerException, IllegalArgumentException {
+		if ((DESBitslice.LANES < keys.length) || (keys.length != blocks.length)) {
+			throw new IllegalArgumentException();
+		}
+		final long[] key = DESBitslice.slice(keys);
+		final long[] block = DESBitslice.slice(blocks);
+		DESBitslice.encryptSlices(key, block);
+		final long[] result = new long[blocks.length];
+		DESBitslice.unslice(block, result);
+		return result;
+	}
+
+	/**
+	 * Decrypt every given block with the key of the same lane.
+	 * 
+	 * @param keys
+	 *            the given keys (as big-endian longs, at most 64)
+	 * 
+	 * @param blocks
+	 *            the given ciphertext blocks (as big-endian longs)
+	 * 
+	 * @return The plaintext blocks.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(keys == null) || (blocks == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(64 < keys.length) || (keys.length != blocks.length)</code>
+	 */
+	public static long[] decrypt(long[] keys, long[] blocks) throws NullPointerException, IllegalArgumentException {
+		if ((DESBitslice.LANES < keys.length) || (keys.length != blocks.length)) {
+			throw new IllegalArgumentException();
+		}
+		final long[] key = DESBitslice.slice(keys);
+		final long[] block = DESBitslice.slice(blocks);
+		DESBitslice.decryptSlices(key, block);
+		final long[] result = new long[blocks.length];
+		DESBitslice.unslice(block, result);
+		return result;
+	}
+
+	/**
+	 * @param key
+	 *            the given key slices (64 slices)
+	 * 
+	 * @param plaintext
+	 *            the given plaintext block (as a big-endian long)
+	 * 
+	 * @param ciphertext
+	 *            the given ciphertext block (as a big-endian long)
+	 * 
+	 * @return The mask of the lanes whose key encrypts <code>plaintext</code> to <code>ciphertext</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>key == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>key.length != 64</code>
+	 */
+	public static long matches(long[] key, long plaintext, long ciphertext)
+			throws NullPointerException, IllegalArgumentException {
+		return DESBitslice.matches(key, plaintext, ciphertext, new long[DESBitslice.SLICES]);
+	}
+
+	/**
+	 * Same as <code>DESBitslice.matches(key, plaintext, ciphertext)</code> except that the state is kept in
+	 * the given work slices, so that a caller trying many groups of 64 keys allocates nothing per group.
+	 * 
+	 * @param key
+	 *            the given key slices (64 slices)
+	 * 
+	 * @param plaintext
+	 *            the given plaintext block (as a big-endian long)
+	 * 
+	 * @param ciphertext
+	 *            the given ciphertext block (as a big-endian long)
+	 * 
+	 * @param work
+	 *            the given work slices (64 slices, overwritten)
+	 * 
+	 * @return The mask of the lanes whose key encrypts <code>plaintext</code> to <code>ciphertext</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(key == null) || (work == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(key.length != 64) || (work.length != 64)</code>
+	 */
+	public static long matches(long[] key, long plaintext, long ciphertext, long[] work)
+			throws NullPointerException, IllegalArgumentException {
+		if ((key.length != DESBitslice.SLICES) || (work.length != DESBitslice.SLICES)) {
+			throw new IllegalArgumentException();
+		}
+		// The initial permutation of the broadcast plaintext.
+		for (int i = 0; i != DESBitslice.SLICES; ++i) {
+			work[i] = -((plaintext >>> (64 - DESBitslice.IP[i])) & 1);
+		}
+		DESBitslice.rounds(key, work, false);
+		long diff = 0;
+		for (int i = 0; i != DESBitslice.SLICES; ++i) {
+			diff |= DESBitslice.preOutput(work, DESBitslice.FP[i]) ^ -((ciphertext >>> (63 - i)) & 1);
+		}
+		return ~diff;
+	}
+
+	/**
+	 * Transpose the given words (one per lane) into the given slices.
+	 * 
+	 * @param words
+	 *            the given words (as big-endian longs, at most 64, where missing lanes are 0)
+	 * 
+	 * @param slices
+	 *            the given slices (64 slices)
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(words == null) || (slices == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(64 < words.length) || (slices.length != 64)</code>
+	 */
+	public static void slice(long[] words, long[] slices) throws NullPointerException, IllegalArgumentException {
+		if ((DESBitslice.LANES < words.length) || (slices.length != DESBitslice.SLICES)) {
+			throw new IllegalArgumentException();
+		}
+		for (int i = 0; i != DESBitslice.SLICES; ++i) {
+			long slice = 0;
+			for (int j = 0; j != words.length; ++j) {
+				slice |= ((words[j] >>> (63 - i)) & 1) << j;
+			}
+			slices[i] = slice;
+		}
+	}
+
+	/**
+	 * @param words
+	 *            the given words (as big-endian longs, at most 64, where missing lanes are 0)
+	 * 
+	 * @return The slices of the given words.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>words == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>64 < words.length</code>
+	 */
+	public static long[] slice(long[] words) throws NullPointerException, IllegalArgumentException {
+		final long[] result = new long[DESBitslice.SLICES];
+		DESBitslice.slice(words, result);
+		return result;
+	}
+
+	/**
+	 * Transpose the given slices back into the given words (one per lane).
+	 * 
+	 * @param slices
+	 *            the given slices (64 slices)
+	 * 
+	 * @param words
+	 *            the given words (at most 64)
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(slices == null) || (words == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(slices.length != 64) || (64 < words.length)</code>
+	 */
+	public static void unslice(long[] slices, long[] words) throws NullPointerException, IllegalArgumentException {
+		if ((slices.length != DESBitslice.SLICES) || (DESBitslice.LANES < words.length)) {
+			throw new IllegalArgumentException();
+		}
+		for (int j = 0; j != words.length; ++j) {
+			long word = 0;
+			for (int i = 0; i != DESBitslice.SLICES; ++i) {
+				word = (word << 1) | ((slices[i] >>> j) & 1);
+			}
+			words[j] = word;
+		}
+	}
+
+	/**
+	 * Store the slices of the given word repeated in every lane into the given slices.
+	 * 
+	 * @param word
+	 *            the given word (as a big-endian long)
+	 * 
+	 * @param slices
+	 *            the given slices (64 slices)
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>slices == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>slices.length != 64</code>
+	 */
+	public static void broadcast(long word, long[] slices) throws NullPointerException, IllegalArgumentException {
+		if (slices.length != DESBitslice.SLICES) {
+			throw new IllegalArgumentException();
+		}
+		for (int i = 0; i != DESBitslice.SLICES; ++i) {
+			slices[i] = -((word >>> (63 - i)) & 1);
+		}
+	}
+
+	/**
+	 * Body of <code>DESBitslice.encryptSlices</code> and <code>DESBitslice.decryptSlices</code>.
+	 * 
+	 * @param key
+	 *            the given key slices
+	 * 
+	 * @param block
+	 *            the given block slices
+	 * 
+	 * @param decrypt
+	 *            specifies whether to run the key schedule backwards
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(key == null) || (block == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(key.length != 64) || (block.length != 64)</code>
+	 */
+	private static void crypt(long[] key, long[] block, boolean decrypt)
+			throws NullPointerException, IllegalArgumentException {
+		if ((key.length != DESBitslice.SLICES) || (block.length != DESBitslice.SLICES)) {
+			throw new IllegalArgumentException();
+		}
+		final long[] lr = new long[DESBitslice.SLICES];
+		for (int i = 0; i != DESBitslice.SLICES; ++i) {
+			lr[i] = block[DESBitslice.IP[i] - 1];
+		}
+		DESBitslice.rounds(key, lr, decrypt);
+		for (int i = 0; i != DESBitslice.SLICES; ++i) {
+			block[i] = DESBitslice.preOutput(lr, DESBitslice.FP[i]);
+		}
+	}
+
+	/**
+	 * Run the 16 rounds on the given state in place.
+	 * 
+	 * @param key
+	 *            the given key slices
+	 * 
+	 * @param lr
+	 *            the given state, i.e., the left half of the permuted block at <code>[0, 32)</code> and its
+	 *            right half at <code>[32, 64)</code>
+	 * 
+	 * @param decrypt
+	 *            specifies whether to run the key schedule backwards
+	 */
+	private static void rounds(long[] key, long[] lr, boolean decrypt) {
+		// Instead of swapping the halves after every round, swap the offsets of the halves.
+		int l = 0, r = 32;
+		for (int round = 0; round != DESBitslice.ROUNDS; ++round) {
+			DESBitslice.round(key, DESBitslice.KEY_BITS[decrypt ? (DESBitslice.ROUNDS - 1 - round) : round], lr, l, r);
+			final int tmp = l;
+			l = r;
+			r = tmp;
+		}
+	}
+
+	/**
+	 * Precondition: <code>lr</code> went through <code>DESBitslice.rounds</code>
+	 * 
+	 * @param lr
+	 *            the given state
+	 * 
+	 * @param j
+	 *            the given 0-based index of the pre-output slice
+	 * 
+	 * @return The pre-output slice of the given index. Since the last round does not swap, the pre-output
+	 *         is (right half, left half).
+	 */
+	private static long preOutput(long[] lr, int j) {
+		return (j < 32) ? lr[32 + j] : lr[j - 32];
+	}
+
+	/**
+	 * One round: <code>(l, r) = (l ^ P(S(E(r) ^ subkey)), r)</code>, where the caller swaps the halves.
+	 * 
+	 * @param key
+	 *            the given key slices
+	 * 
+	 * @param subkey
+	 *            the key slices of the subkey of the round
+	 * 
+	 * @param lr
+	 *            the given state
+	 * 
+	 * @param l
+	 *            the offset of the left half in <code>lr</code>
+	 * 
+	 * @param r
+	 *            the offset of the right half in <code>lr</code>
+	 */
+	private static void round(long[] key, byte[] subkey, long[] lr, int l, int r) {
+		DESBitslice.s1(lr[r + 31] ^ key[subkey[0]], lr[r + 0] ^ key[subkey[1]], lr[r + 1] ^ key[subkey[2]],
+				lr[r + 2] ^ key[subkey[3]], lr[r + 3] ^ key[subkey[4]], lr[r + 4] ^ key[subkey[5]], lr, l);
+		DESBitslice.s2(lr[r + 3] ^ key[subkey[6]], lr[r + 4] ^ key[subkey[7]], lr[r + 5] ^ key[subkey[8]],
+				lr[r + 6] ^ key[subkey[9]], lr[r + 7] ^ key[subkey[10]], lr[r + 8] ^ key[subkey[11]], lr, l);
+		DESBitslice.s3(lr[r + 7] ^ key[subkey[12]], lr[r + 8] ^ key[subkey[13]], lr[r + 9] ^ key[subkey[14]],
+				lr[r + 10] ^ key[subkey[15]], lr[r + 11] ^ key[subkey[16]], lr[r + 12] ^ key[subkey[17]], lr, l);
+		DESBitslice.s4(lr[r + 11] ^ key[subkey[18]], lr[r + 12] ^ key[subkey[19]], lr[r + 13] ^ key[subkey[20]],
+				lr[r + 14] ^ key[subkey[21]], lr[r + 15] ^ key[subkey[22]], lr[r + 16] ^ key[subkey[23]], lr, l);
+		DESBitslice.s5(lr[r + 15] ^ key[subkey[24]], lr[r + 16] ^ key[subkey[25]], lr[r + 17] ^ key[subkey[26]],
+				lr[r + 18] ^ key[subkey[27]], lr[r + 19] ^ key[subkey[28]], lr[r + 20] ^ key[subkey[29]], lr, l);
+		DESBitslice.s6(lr[r + 19] ^ key[subkey[30]], lr[r + 20] ^ key[subkey[31]], lr[r + 21] ^ key[subkey[32]],
+				lr[r + 22] ^ key[subkey[33]], lr[r + 23] ^ key[subkey[34]], lr[r + 24] ^ key[subkey[35]], lr, l);
+		DESBitslice.s7(lr[r + 23] ^ key[subkey[36]], lr[r + 24] ^ key[subkey[37]], lr[r + 25] ^ key[subkey[38]],
+				lr[r + 26] ^ key[subkey[39]], lr[r + 27] ^ key[subkey[40]], lr[r + 28] ^ key[subkey[41]], lr, l);
+		DESBitslice.s8(lr[r + 27] ^ key[subkey[42]], lr[r + 28] ^ key[subkey[43]], lr[r + 29] ^ key[subkey[44]],
+				lr[r + 30] ^ key[subkey[45]], lr[r + 31] ^ key[subkey[46]], lr[r + 0] ^ key[subkey[47]], lr, l);
+	}
+
+	/**
+	 * Evaluate the gate network of S-box 1 on the given input slices (in DES order, i.e., the row bits are
+	 * <code>a</code> and <code>f</code>), and XOR its outputs into the left half of the given state at their
+	 * positions after P.
+	 * 
+	 * @param a
+	 *            the first input slice
+	 * 
+	 * @param b
+	 *            the second input slice
+	 * 
+	 * @param c
+	 *            the third input slice
+	 * 
+	 * @param d
+	 *            the fourth input slice
+	 * 
+	 * @param e
+	 *            the fifth input slice
+	 * 
+	 * @param f
+	 *            the sixth input slice
+	 * 
+	 * @param lr
+	 *            the given state
+	 * 
+	 * @param l
+	 *            the offset of the left half in <code>lr</code>
+	 */
+	private static void s1(long a, long b, long c, long d, long e, long f, long[] lr, int l) {
+		final long na = ~a, nb = ~b, nc = ~c, nd = ~d, ne = ~e, nf = ~f;
+		final long r0 = na & nf, r1 = na & f, r2 = a & nf, r3 = a & f;
+		final long c0 = nb & nc, c1 = nb & c, c2 = b & nc, c3 = b & c;
+		final long m0 = r0 & c0, m1 = r0 & c1, m2 = r0 & c2, m3 = r0 & c3;
+		final long m4 = r1 & c0, m5 = r1 & c1, m6 = r1 & c2, m7 = r1 & c3;
+		final long m8 = r2 & c0, m9 = r2 & c1, m10 = r2 & c2, m11 = r2 & c3;
+		final long m12 = r3 & c0, m13 = r3 & c1, m14 = r3 & c2, m15 = r3 & c3;
+		final long g1 = nd & ne, g2 = nd & e, g3 = nd, g4 = d & ne;
+		final long g5 = ne, g6 = d ^ e, g7 = ~(d & e), g8 = d & e;
+		final long g9 = ~(d ^ e), g10 = e, g11 = ~(d & ne), g12 = d;
+		final long g13 = ~(nd & e), g14 = d | e;
+		lr[l + 8] ^= (g2 & (m3 | m4 | m11 | m13)) | (g5 & (m0 | m5)) | (g7 & (m10 | m12)) | (g9 & (m7 | m9 | m15))
+				| (g10 & (m2 | m14)) | (g12 & m8) | (g13 & m6) | (g14 & m1);
+		lr[l + 16] ^= (g2 & (m1 | m7)) | (g3 & (m9 | m12)) | (g4 & m11) | (g5 & (m5 | m8)) | (g6 & m6) | (g7 & m0)
+				| (g9 & (m3 | m13 | m14)) | (g11 & m10) | (g12 & (m2 | m15)) | (g14 & m4);
+		lr[l + 22] ^= (g1 & m0) | (g3 & (m5 | m11)) | (g4 & (m7 | m8)) | (g5 & m15) | (g6 & m4) | (g7 & (m1 | m2))
+				| (g8 & (m3 | m13)) | (g9 & (m10 | m12)) | (g11 & m6) | (g14 & (m9 | m14));
+		lr[l + 30] ^= (g1 & (m2 | m12)) | (g2 & m8) | (g5 & m11) | (g6 & (m1 | m4)) | (g7 & (m7 | m14))
+				| (g8 & (m6 | m15)) | (g9 & m9) | (g11 & m3) | (g12 & (m0 | m5)) | (g13 & m10) | (g14 & m13);
+	}
+
+	/**
+	 * Same as <code>DESBitslice.s1</code> for S-box 2.
+	 */
+	private static void s2(long a, long b, long c, long d, long e, long f, long[] lr, int l) {
+		final long na = ~a, nb = ~b, nc = ~c, nd = ~d, ne = ~e, nf = ~f;
+		final long r0 = na & nf, r1 = na & f, r2 = a & nf, r3 = a & f;
+		final long c0 = nb & nc, c1 = nb & c, c2 = b & nc, c3 = b & c;
+		final long m0 = r0 & c0, m1 = r0 & c1, m2 = r0 & c2, m3 = r0 & c3;
+		final long m4 = r1 & c0, m5 = r1 & c1, m6 = r1 & c2, m7 = r1 & c3;
+		final long m8 = r2 & c0, m9 = r2 & c1, m10 = r2 & c2, m11 = r2 & c3;
+		final long m12 = r3 & c0, m13 = r3 & c1, m14 = r3 & c2, m15 = r3 & c3;
+		final long g1 = nd & ne, g2 = nd & e, g3 = nd, g4 = d & ne;
+		final long g5 = ne, g6 = d ^ e, g7 = ~(d & e), g8 = d & e;
+		final long g9 = ~(d ^ e), g10 = e, g11 = ~(d & ne), g12 = d;
+		final long g13 = ~(nd & e), g14 = d | e;
+		lr[l + 12] ^= (g2 & (m1 | m4 | m13)) | (g5 & m9) | (g6 & (m7 | m10)) | (g7 & m12)
+				| (g9 & (m2 | m3 | m6 | m11 | m14)) | (g10 & m8) | (g12 & m15) | (g13 & (m0 | m5));
+		lr[l + 27] ^= (g1 & (m6 | m12)) | (g5 & m3) | (g6 & (m8 | m9 | m13 | m15)) | (g8 & m11)
+				| (g9 & (m0 | m1 | m5 | m7)) | (g10 & m2) | (g13 & m10) | (g14 & (m4 | m14));
+		lr[l + 1] ^= (g1 & m9) | (g4 & (m12 | m15)) | (g5 & m7) | (g6 & m2) | (g7 & (m1 | m14)) | (g8 & (m3 | m6 | m10))
+				| (g9 & (m0 | m4)) | (g11 & (m5 | m13)) | (g14 & (m8 | m11));
+		lr[l + 17] ^= (g1 & (m5 | m10)) | (g3 & (m0 | m13)) | (g4 & (m3 | m6)) | (g5 & m14) | (g6 & m1) | (g9 & m12)
+				| (g10 & m15) | (g11 & (m2 | m4 | m11)) | (g12 & (m8 | m9)) | (g14 & m7);
+	}
+
+	/**
+	 * Same as <code>DESBitslice.s1</code> for S-box 3.
+	 */
+	private static void s3(long a, long b, long c, long d, long e, long f, long[] lr, int l) {
+		final long na = ~a, nb = ~b, nc = ~c, nd = ~d, ne = ~e, nf = ~f;
+		final long r0 = na & nf, r1 = na & f, r2 = a & nf, r3 = a & f;
+		final long c0 = nb & nc, c1 = nb & c, c2 = b & nc, c3 = b & c;
+		final long m0 = r0 & c0, m1 = r0 & c1, m2 = r0 & c2, m3 = r0 & c3;
+		final long m4 = r1 & c0, m5 = r1 & c1, m6 = r1 & c2, m7 = r1 & c3;
+		final long m8 = r2 & c0, m9 = r2 & c1, m10 = r2 & c2, m11 = r2 & c3;
+		final long m12 = r3 & c0, m13 = r3 & c1, m14 = r3 & c2, m15 = r3 & c3;
+		final long g1 = nd & ne, g2 = nd & e, g3 = nd, g4 = d & ne;
+		final long g5 = ne, g6 = d ^ e, g7 = ~(d & e), g8 = d & e;
+		final long g9 = ~(d ^ e), g10 = e, g11 = ~(d & ne), g12 = d;
+		final long g13 = ~(nd & e), g14 = d | e;
+		lr[l + 23] ^= (g3 & m9) | (g4 & m1) | (g6 & (m2 | m11 | m12 | m13 | m14)) | (g7 & m7) | (g8 & m5)
+				| (g9 & (m3 | m4 | m8 | m10 | m15)) | (g10 & m6) | (g13 & m0);
+		lr[l + 15] ^= (g2 & (m3 | m9)) | (g3 & m4) | (g4 & m12) | (g5 & m7) | (g6 & m5) | (g7 & (m8 | m14))
+				| (g8 & (m0 | m10)) | (g9 & m13) | (g10 & m15) | (g12 & m6) | (g13 & (m1 | m11)) | (g14 & m2);
+		lr[l + 29] ^= (g2 & (m4 | m8 | m12)) | (g5 & (m3 | m10 | m15)) | (g6 & (m7 | m9)) | (g7 & m1) | (g8 & m2)
+				| (g9 & (m0 | m6 | m13)) | (g13 & m5) | (g14 & (m11 | m14));
+		lr[l + 5] ^= (g1 & (m3 | m5)) | (g3 & (m10 | m15)) | (g4 & (m0 | m6)) | (g5 & m12) | (g6 & m9)
+				| (g9 & (m8 | m11)) | (g10 & (m13 | m14)) | (g11 & (m2 | m4)) | (g14 & (m1 | m7));
+	}
+
+	/**
+	 * Same as <code>DESBitslice.s1</code> for S-box 4.
+	 */
+	private static void s4(long a, long b, long c, long d, long e, long f, long[] lr, int l) {
+		final long na = ~a, nb = ~b, nc = ~c, nd = ~d, ne = ~e, nf = ~f;
+		final long r0 = na & nf, r1 = na & f, r2 = a & nf, r3 = a & f;
+		final long c0 = nb & nc, c1 = nb & c, c2 = b & nc, c3 = b & c;
+		final long m0 = r0 & c0, m1 = r0 & c1, m2 = r0 & c2, m3 = r0 & c3;
+		final long m4 = r1 & c0, m5 = r1 & c1, m6 = r1 & c2, m7 = r1 & c3;
+		final long m8 = r2 & c0, m9 = r2 & c1, m10 = r2 & c2, m11 = r2 & c3;
+		final long m12 = r3 & c0, m13 = r3 & c1, m14 = r3 & c2, m15 = r3 & c3;
+		final long g1 = nd & ne, g2 = nd & e, g3 = nd, g4 = d & ne;
+		final long g5 = ne, g6 = d ^ e, g7 = ~(d & e), g8 = d & e;
+		final long g9 = ~(d ^ e), g10 = e, g11 = ~(d & ne), g12 = d;
+		final long g13 = ~(nd & e), g14 = d | e;
+		lr[l + 25] ^= (g2 & (m5 | m12)) | (g4 & (m2 | m11)) | (g5 & m8) | (g6 & m0) | (g7 & m4) | (g8 & m6)
+				| (g9 & (m10 | m14 | m15)) | (g11 & (m3 | m9)) | (g12 & m1) | (g13 & m13) | (g14 & m7);
+		lr[l + 19] ^= (g2 & (m1 | m8)) | (g3 & m5) | (g4 & (m7 | m13)) | (g6 & m14) | (g7 & m0) | (g8 & m2)
+				| (g9 & (m4 | m10 | m11)) | (g10 & m12) | (g11 & (m6 | m15)) | (g13 & m9) | (g14 & m3);
+		lr[l + 9] ^= (g1 & m13) | (g2 & (m2 | m11)) | (g3 & m8) | (g4 & m4) | (g6 & (m6 | m7 | m9)) | (g8 & m14)
+				| (g9 & m3) | (g10 & m1) | (g11 & (m5 | m12)) | (g13 & (m0 | m10)) | (g14 & m15);
+		lr[l + 0] ^= (g1 & m11) | (g2 & (m6 | m15)) | (g3 & m12) | (g4 & (m1 | m8)) | (g6 & m13) | (g7 & m10)
+				| (g9 & (m2 | m3 | m7)) | (g10 & m5) | (g11 & m0) | (g13 & (m4 | m14)) | (g14 & m9);
+	}
+
+	/**
+	 * Same as <code>DESBitslice.s1</code> for S-box 5.
+	 */
+	private static void s5(long a, long b, long c, long d, long e, long f, long[] lr, int l) {
+		final long na = ~a, nb = ~b, nc = ~c, nd = ~d, ne = ~e, nf = ~f;
+		final long r0 = na & nf, r1 = na & f, r2 = a & nf, r3 = a & f;
+		final long c0 = nb & nc, c1 = nb & c, c2 = b & nc, c3 = b & c;
+		final long m0 = r0 & c0, m1 = r0 & c1, m2 = r0 & c2, m3 = r0 & c3;
+		final long m4 = r1 & c0, m5 = r1 & c1, m6 = r1 & c2, m7 = r1 & c3;
+		final long m8 = r2 & c0, m9 = r2 & c1, m10 = r2 & c2, m11 = r2 & c3;
+		final long m12 = r3 & c0, m13 = r3 & c1, m14 = r3 & c2, m15 = r3 & c3;
+		final long g1 = nd & ne, g2 = nd & e, g3 = nd, g4 = d & ne;
+		final long g5 = ne, g6 = d ^ e, g7 = ~(d & e), g8 = d & e;
+		final long g9 = ~(d ^ e), g10 = e, g11 = ~(d & ne), g12 = d;
+		final long g13 = ~(nd & e), g14 = d | e;
+		lr[l + 7] ^= (g1 & m15) | (g2 & m0) | (g4 & m5) | (g6 & (m1 | m7)) | (g7 & (m10 | m12)) | (g8 & (m8 | m11))
+				| (g9 & m2) | (g10 & (m13 | m14)) | (g11 & (m4 | m9)) | (g12 & m6) | (g13 & m3);
+		lr[l + 13] ^= (g1 & m8) | (g3 & m14) | (g5 & (m3 | m6)) | (g6 & (m0 | m9 | m15)) | (g7 & m5) | (g8 & m7)
+				| (g9 & (m1 | m4 | m11)) | (g10 & (m2 | m13)) | (g12 & m12) | (g13 & m10);
+		lr[l + 24] ^= (g1 & (m0 | m10)) | (g2 & m5) | (g3 & m14) | (g4 & m3) | (g5 & m9) | (g6 & m13) | (g7 & m4)
+				| (g9 & (m7 | m12 | m15)) | (g10 & m8) | (g11 & m11) | (g12 & (m2 | m6)) | m1;
+		lr[l + 2] ^= (g2 & (m4 | m11)) | (g3 & m7) | (g5 & (m1 | m6)) | (g6 & m9) | (g8 & m0) | (g9 & (m3 | m12 | m13))
+				| (g10 & m14) | (g11 & m10) | (g12 & (m8 | m15)) | (g14 & (m2 | m5));
+	}
+
+	/**
+	 * Same as <code>DESBitslice.s1</code> for S-box 6.
+	 */
+	private static void s6(long a, long b, long c, long d, long e, long f, long[] lr, int l) {
+		final long na = ~a, nb = ~b, nc = ~c, nd = ~d, ne = ~e, nf = ~f;
+		final long r0 = na & nf, r1 = na & f, r2 = a & nf, r3 = a & f;
+		final long c0 = nb & nc, c1 = nb & c, c2 = b & nc, c3 = b & c;
+		final long m0 = r0 & c0, m1 = r0 & c1, m2 = r0 & c2, m3 = r0 & c3;
+		final long m4 = r1 & c0, m5 = r1 & c1, m6 = r1 & c2, m7 = r1 & c3;
+		final long m8 = r2 & c0, m9 = r2 & c1, m10 = r2 & c2, m11 = r2 & c3;
+		final long m12 = r3 & c0, m13 = r3 & c1, m14 = r3 & c2, m15 = r3 & c3;
+		final long g1 = nd & ne, g2 = nd & e, g3 = nd, g4 = d & ne;
+		final long g5 = ne, g6 = d ^ e, g7 = ~(d & e), g8 = d & e;
+		final long g9 = ~(d ^ e), g10 = e, g11 = ~(d & ne), g12 = d;
+		final long g13 = ~(nd & e), g14 = d | e;
+		lr[l + 3] ^= (g2 & m2) | (g3 & (m4 | m14)) | (g6 & (m5 | m9 | m11)) | (g7 & m8) | (g8 & (m10 | m12))
+				| (g9 & (m1 | m3)) | (g10 & m7) | (g12 & (m6 | m15)) | (g13 & (m0 | m13));
+		lr[l + 28] ^= (g4 & (m1 | m9)) | (g5 & m10) | (g6 & (m4 | m13)) | (g7 & m3) | (g9 & (m0 | m12 | m15))
+				| (g10 & (m2 | m11 | m14)) | (g11 & m5) | (g13 & m6) | (g14 & m8);
+		lr[l + 10] ^= (g1 & (m5 | m15)) | (g4 & m2) | (g6 & (m1 | m7 | m8 | m12)) | (g9 & (m6 | m9 | m10))
+				| (g11 & (m3 | m4 | m14)) | (g12 & (m0 | m11 | m13));
+		lr[l + 18] ^= (g1 & (m1 | m10)) | (g2 & (m4 | m12)) | (g6 & (m2 | m6 | m7)) | (g7 & (m11 | m13))
+				| (g8 & (m9 | m15)) | (g10 & m0) | (g13 & (m5 | m8 | m14)) | (g14 & m3);
+	}
+
+	/**
+	 * Same as <code>DESBitslice.s1</code> for S-box 7.
+	 */
+	private static void s7(long a, long b, long c, long d, long e, long f, long[] lr, int l) {
+		final long na = ~a, nb = ~b, nc = ~c, nd = ~d, ne = ~e, nf = ~f;
+		final long r0 = na & nf, r1 = na & f, r2 = a & nf, r3 = a & f;
+		final long c0 = nb & nc, c1 = nb & c, c2 = b & nc, c3 = b & c;
+		final long m0 = r0 & c0, m1 = r0 & c1, m2 = r0 & c2, m3 = r0 & c3;
+		final long m4 = r1 & c0, m5 = r1 & c1, m6 = r1 & c2, m7 = r1 & c3;
+		final long m8 = r2 & c0, m9 = r2 & c1, m10 = r2 & c2, m11 = r2 & c3;
+		final long m12 = r3 & c0, m13 = r3 & c1, m14 = r3 & c2, m15 = r3 & c3;
+		final long g1 = nd & ne, g2 = nd & e, g3 = nd, g4 = d & ne;
+		final long g5 = ne, g6 = d ^ e, g7 = ~(d & e), g8 = d & e;
+		final long g9 = ~(d ^ e), g10 = e, g11 = ~(d & ne), g12 = d;
+		final long g13 = ~(nd & e), g14 = d | e;
+		lr[l + 31] ^= (g2 & m3) | (g4 & (m11 | m13)) | (g5 & m4) | (g6 & (m2 | m7)) | (g9 & (m6 | m9 | m14 | m15))
+				| (g10 & (m0 | m5)) | (g11 & m10) | (g12 & m8) | (g13 & m1) | (g14 & m12);
+		lr[l + 11] ^= (g1 & m5) | (g2 & m11) | (g5 & (m3 | m12)) | (g6 & m10) | (g9 & (m0 | m1 | m4 | m15))
+				| (g10 & (m2 | m7 | m8 | m13 | m14)) | (g13 & (m6 | m9));
+		lr[l + 21] ^= (g1 & m1) | (g3 & (m6 | m12)) | (g4 & m8) | (g6 & m3) | (g7 & (m10 | m15))
+				| (g8 & (m5 | m11 | m14)) | (g9 & m2) | (g11 & m7) | (g12 & (m4 | m13)) | (g14 & (m0 | m9));
+		lr[l + 6] ^= (g2 & (m0 | m7 | m10)) | (g4 & m15) | (g6 & (m5 | m6 | m9 | m11 | m12)) | (g9 & (m1 | m3 | m13))
+				| (g11 & m14) | (g13 & (m2 | m4 | m8));
+	}
+
+	/**
+	 * Same as <code>DESBitslice.s1</code> for S-box 8.
+	 */
+	private static void s8(long a, long b, long c, long d, long e, long f, long[] lr, int l) {
+		final long na = ~a, nb = ~b, nc = ~c, nd = ~d, ne = ~e, nf = ~f;
+		final long r0 = na & nf, r1 = na & f, r2 = a & nf, r3 = a & f;
+		final long c0 = nb & nc, c1 = nb & c, c2 = b & nc, c3 = b & c;
+		final long m0 = r0 & c0, m1 = r0 & c1, m2 = r0 & c2, m3 = r0 & c3;
+		final long m4 = r1 & c0, m5 = r1 & c1, m6 = r1 & c2, m7 = r1 & c3;
+		final long m8 = r2 & c0, m9 = r2 & c1, m10 = r2 & c2, m11 = r2 & c3;
+		final long m12 = r3 & c0, m13 = r3 & c1, m14 = r3 & c2, m15 = r3 & c3;
+		final long g1 = nd & ne, g2 = nd & e, g3 = nd, g4 = d & ne;
+		final long g5 = ne, g6 = d ^ e, g7 = ~(d & e), g8 = d & e;
+		final long g9 = ~(d ^ e), g10 = e, g11 = ~(d & ne), g12 = d;
+		final long g13 = ~(nd & e), g14 = d | e;
+		lr[l + 4] ^= (g1 & m5) | (g2 & m8) | (g4 & (m3 | m12)) | (g5 & m0) | (g6 & (m1 | m7)) | (g7 & (m9 | m14))
+				| (g8 & m15) | (g9 & (m6 | m11)) | (g11 & m2) | (g12 & m10) | (g14 & (m4 | m13));
+		lr[l + 26] ^= (g2 & m7) | (g3 & (m1 | m14)) | (g5 & (m8 | m11)) | (g6 & (m4 | m9 | m15)) | (g7 & m6) | (g8 & m2)
+				| (g9 & (m0 | m13)) | (g10 & m10) | (g12 & (m5 | m12)) | (g13 & m3);
+		lr[l + 14] ^= (g1 & m14) | (g2 & (m0 | m4 | m13)) | (g3 & (m8 | m11)) | (g6 & m10) | (g7 & (m1 | m5))
+				| (g8 & m3) | (g10 & m7) | (g12 & (m6 | m9)) | (g13 & (m2 | m12 | m15));
+		lr[l + 20] ^= (g1 & (m0 | m9)) | (g4 & m7) | (g5 & m14) | (g6 & (m2 | m5)) | (g7 & (m4 | m11))
+				| (g8 & (m10 | m13)) | (g9 & m3) | (g10 & (m6 | m12)) | (g11 & (m8 | m15)) | (g14 & m1);
+	}
+}
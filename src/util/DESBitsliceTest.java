@@ -0,0 +1,173 @@
+package util;
+
+import static org.junit.Assert.assertTrue;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit4 tests for DESBitslice.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class DESBitsliceTest {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.DESBitslice
+	 * 		2. util.SymCipherEng
+	 * 		3. util.CipherEngUtil
+	 * 		4. util.DESKeySearch
+	 * 		5. util.Hex
+	 * </code>
+	 */
+
+	private static final boolean PRINT = false;
+
+	/**
+	 * @param word
+	 *            the given word
+	 * 
+	 * @return The given word as 8 big-endian bytes (unlike <code>DESKeySearch.toBytes</code>, without
+	 *         setting the parity bits).
+	 */
+	private static byte[] toBytes(long word) {
+		final byte[] result = new byte[SymCipherEng.DES_BLOCK_SIZE];
+		for (int i = result.length - 1; i != -1; --i, word >>>= Byte.SIZE) {
+			result[i] = (byte) word;
+		}
+		return result;
+	}
+
+	/**
+	 * @param key
+	 *            the given key
+	 * 
+	 * @param block
+	 *            the given plaintext block
+	 * 
+	 * @return The ciphertext block of SymCipherEng in DES/ECB/NoPadding.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encrypt</code>
+	 */
+	private static long reference(long key, long block) throws GeneralSecurityException {
+		try (SymCipherEng eng = new SymCipherEng(SymCipherEng.ALGO_SYM.DES, DESBitsliceTest.toBytes(key),
+				CipherEngUtil.OPMODE.ECB, CipherEngUtil.PADDING.NoPadding)) {
+			return DESKeySearch.toLong(eng.encrypt(DESBitsliceTest.toBytes(block)));
+		}
+	}
+
+	/**
+	 * Testing DESBitslice::encrypt(long[], long[]) on the FIPS 81 example.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test01() {
+		final long[] ciphertext = DESBitslice.encrypt(new long[] { 0x133457799BBCDFF1L },
+				new long[] { 0x0123456789ABCDEFL });
+		assertTrue("Correct ciphertext", ciphertext[0] == 0x85E813540F0AB405L);
+
+		if (DESBitsliceTest.PRINT) {
+			System.out.println("test01");
+			System.out.println("0123456789abcdef encrypted is " + Hex.toString(ciphertext[0]));
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Testing DESBitslice::encrypt(long[], long[]) bit for bit against SymCipherEng on 64 random lanes.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encrypt</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test02() throws GeneralSecurityException {
+		final Random random = new Random(44);
+		final long[] keys = new long[DESBitslice.LANES];
+		final long[] plaintexts = new long[DESBitslice.LANES];
+		for (int j = 0; j != DESBitslice.LANES; ++j) {
+			keys[j] = random.nextLong();
+			plaintexts[j] = random.nextLong();
+		}
+		final long[] ciphertexts = DESBitslice.encrypt(keys, plaintexts);
+		for (int j = 0; j != DESBitslice.LANES; ++j) {
+			assertTrue("Correct ciphertext of lane " + j,
+					ciphertexts[j] == DESBitsliceTest.reference(keys[j], plaintexts[j]));
+		}
+
+		if (DESBitsliceTest.PRINT) {
+			System.out.println("test02");
+			System.out.println("64 lanes agree with SymCipherEng");
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Testing DESBitslice::encrypt(long[], long[]) with fewer lanes than 64.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encrypt</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test03() throws GeneralSecurityException {
+		final long[] keys = { 0x0000000000000000L, 0xFFFFFFFFFFFFFFFFL, 0x0123456789ABCDEFL };
+		final long[] plaintexts = { 0xFFFFFFFFFFFFFFFFL, 0x0000000000000000L, 0x4E6F772069732074L };
+		final long[] ciphertexts = DESBitslice.encrypt(keys, plaintexts);
+		assertTrue("Correct number of ciphertexts", ciphertexts.length == keys.length);
+		for (int j = 0; j != keys.length; ++j) {
+			assertTrue("Correct ciphertext of lane " + j,
+					ciphertexts[j] == DESBitsliceTest.reference(keys[j], plaintexts[j]));
+		}
+	}
+
+	/**
+	 * Testing DESBitslice::decryptSlices(long[], long[]).
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test04() {
+		final Random random = new Random(4);
+		final long[] keys = new long[DESBitslice.LANES];
+		final long[] plaintexts = new long[DESBitslice.LANES];
+		for (int j = 0; j != DESBitslice.LANES; ++j) {
+			keys[j] = random.nextLong();
+			plaintexts[j] = random.nextLong();
+		}
+		final long[] key = DESBitslice.slice(keys);
+		final long[] block = DESBitslice.slice(DESBitslice.encrypt(keys, plaintexts));
+		DESBitslice.decryptSlices(key, block);
+		final long[] decrypted = new long[DESBitslice.LANES];
+		DESBitslice.unslice(block, decrypted);
+		assertTrue("Correct decrypted blocks", Arrays.equals(decrypted, plaintexts));
+	}
+
+	/**
+	 * Testing DESBitslice::matches(long[], long, long).
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encrypt</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test05() throws GeneralSecurityException {
+		final long[] keys = new long[DESBitslice.LANES];
+		for (int j = 0; j != DESBitslice.LANES; ++j) {
+			keys[j] = 0x133457799BBCDF80L | (j << 1); // Only lane 0x70 >>> 1 holds the key.
+		}
+		final long plaintext = 0x0123456789ABCDEFL;
+		final long ciphertext = DESBitsliceTest.reference(0x133457799BBCDFF1L, plaintext);
+		final long mask = DESBitslice.matches(DESBitslice.slice(keys), plaintext, ciphertext);
+		assertTrue("Correct match mask", mask == (1L << (0x70 >>> 1)));
+
+		if (DESBitsliceTest.PRINT) {
+			System.out.println("test05");
+			System.out.println("match mask is " + Hex.toString(mask));
+			System.out.println();
+		}
+	}
+}
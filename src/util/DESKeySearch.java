@@ -0,0 +1,811 @@
+package util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Multi-threaded known-plaintext DES key search over a restricted key space (i.e., a key whose known
+ * bits are given by a mask). The remaining key space is split into blocks which the worker threads take
+ * in order, and all of the workers stop at the first key which maps every known plaintext block to its
+ * ciphertext block. The search reports its speed (in keys per second) and can be checkpointed to a file
+ * and resumed from it. <br>
+ * If there are at least 6 free bits, every worker tries 64 keys per pass with DESBitslice, where the
+ * lowest 6 free bits select the lane; otherwise, every worker tries one key at a time with its own Cipher
+ * object in ECB mode.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class DESKeySearch {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.SymCipherEng
+	 * 		2. util.CipherEngUtil
+	 * 		3. util.ConcurrentUtil
+	 * 		4. util.DESBitslice
+	 * </code>
+	 */
+
+	/**
+	 * The parity bits of a DES key (as a big-endian long), i.e., the least significant bit of every byte,
+	 * which DES ignores.
+	 */
+	public static final long PARITY_MASK = 0x0101010101010101L;
+
+	/**
+	 * The number of keys of the blocks taken by the worker threads (a multiple of
+	 * <code>DESBitslice.LANES</code>).
+	 */
+	public static final int BLOCK_SIZE = 1 << 14;
+
+	/**
+	 * The default interval in milliseconds between two progress reports (and checkpoints).
+	 */
+	public static final long DEFAULT_REPORT_MILLIS = 5000;
+
+	/**
+	 * The number of free bits which select the lane of a key in the bitsliced search.
+	 */
+	private static final int LANE_BITS = Integer.numberOfTrailingZeros(DESBitslice.LANES);
+
+	/**
+	 * <code>LANE_SLICES[t]</code> is the key slice of the lanes whose index has bit <code>t</code> set.
+	 */
+	private static final long[] LANE_SLICES = { 0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+			0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L };
+
+	/**
+	 * The magic number at the start of every checkpoint file.
+	 */
+	private static final int CHECKPOINT_MAGIC = 0x44455343; // i.e., "DESC"
+
+	/**
+	 * Restricted DES key space: the keys (as big-endian longs) which agree with the known bits on the
+	 * known mask. Since DES ignores the parity bits, they are never part of the free bits, so
+	 * parity-equivalent keys are enumerated once.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	public static final class KeySpace {
+		/**
+		 * The known bits mask.
+		 */
+		private final long mask;
+
+		/**
+		 * The known bits. <br>
+		 * <code>(this.bits & ~this.mask) == 0</code>.
+		 */
+		private final long bits;
+
+		/**
+		 * The free bits mask, i.e., <code>~(this.mask | DESKeySearch.PARITY_MASK)</code>.
+		 */
+		private final long free;
+
+		/**
+		 * Construct a KeySpace object from the given attributes.
+		 * 
+		 * @param mask
+		 *            the given known bits mask
+		 * 
+		 * @param bits
+		 *            the given known bits (the bits outside of <code>mask</code> are ignored)
+		 */
+		public KeySpace(long mask, long bits) {
+			this.mask = mask;
+			this.bits = bits & mask;
+			this.free = ~(mask | DESKeySearch.PARITY_MASK);
+		}
+
+		/**
+		 * Construct a KeySpace object from the given attributes.
+		 * 
+		 * @param mask
+		 *            the given known bits mask (8 bytes)
+		 * 
+		 * @param bits
+		 *            the given known bits (8 bytes)
+		 * 
+		 * @throws NullPointerException
+		 *             If <code>(mask == null) || (bits == null)</code>
+		 * 
+		 * @throws IllegalArgumentException
+		 *             If <code>(mask.length != 8) || (bits.length != 8)</code>
+		 */
+		public KeySpace(byte[] mask, byte[] bits) throws NullPointerException, IllegalArgumentException {
+			this(DESKeySearch.toLong(mask), DESKeySearch.toLong(bits));
+		}
+
+		/**
+		 * @return <code>this.mask</code>.
+		 */
+		public long mask() {
+			return this.mask;
+		}
+
+		/**
+		 * @return <code>this.bits</code>.
+		 */
+		public long bits() {
+			return this.bits;
+		}
+
+		/**
+		 * @return The number of free (i.e., unknown non-parity) bits.
+		 */
+		public int freeBits() {
+			return Long.bitCount(this.free);
+		}
+
+		/**
+		 * Postcondition: <code>(0 < Result) && (Result <= 2<sup>56</sup>)</code>
+		 * 
+		 * @return The number of keys.
+		 */
+		public long size() {
+			return 1L << this.freeBits();
+		}
+
+		/**
+		 * @param index
+		 *            the given index in <code>[0, this.size())</code>
+		 * 
+		 * @return The key of the given index, i.e., the known bits with the bits of <code>index</code>
+		 *         scattered over the free bits (in increasing order of significance).
+		 */
+		public long key(long index) {
+			long result = this.bits;
+			for (long m = this.free; (m != 0) && (index != 0); m &= m - 1, index >>>= 1) {
+				if ((index & 1) != 0) {
+					result |= Long.lowestOneBit(m);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * @param key
+		 *            the given key
+		 * 
+		 * @return The key following the given key in the calling key space (wrapping around), i.e., the
+		 *         free bits incremented as a single counter.
+		 */
+		public long next(long key) {
+			return this.bits | (((key & this.free) - this.free) & this.free);
+		}
+
+		/**
+		 * @param key
+		 *            the given key
+		 * 
+		 * @return <code>true</code> if the given key agrees with the known bits.
+		 */
+		public boolean contains(long key) {
+			return (key & this.mask & ~DESKeySearch.PARITY_MASK) == (this.bits & ~DESKeySearch.PARITY_MASK);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("mask %016X, bits %016X, %d free bits", this.mask, this.bits, this.freeBits());
+		}
+	}
+
+	/**
+	 * The key space.
+	 */
+	private final KeySpace space;
+
+	/**
+	 * The known plaintext blocks (8 bytes each).
+	 */
+	private final byte[][] plaintexts;
+
+	/**
+	 * The known ciphertext blocks (8 bytes each).
+	 */
+	private final byte[][] ciphertexts;
+
+	/**
+	 * The known plaintext blocks as big-endian longs.
+	 */
+	private final long[] plainWords;
+
+	/**
+	 * The known ciphertext blocks as big-endian longs.
+	 */
+	private final long[] cipherWords;
+
+	/**
+	 * The number of keys tested by the last (or current) search.
+	 */
+	private final AtomicLong tested = new AtomicLong();
+
+	/**
+	 * The index of the next block to be taken by a worker.
+	 */
+	private final AtomicLong next = new AtomicLong();
+
+	/**
+	 * The first index of the block in progress of every worker, or <code>Long.MAX_VALUE</code> if none.
+	 */
+	private volatile AtomicLongArray inProgress = new AtomicLongArray(0);
+
+	/**
+	 * The start time (as given by <code>System.nanoTime()</code>) of the last (or current) search.
+	 */
+	private volatile long startNanos = 0;
+
+	/**
+	 * The end time (as given by <code>System.nanoTime()</code>) of the last search, or 0 while searching.
+	 */
+	private volatile long endNanos = 0;
+
+	/**
+	 * Construct a DESKeySearch object from the given attributes.
+	 * 
+	 * @param space
+	 *            the given key space
+	 * 
+	 * @param plaintexts
+	 *            the given known plaintext blocks (8 bytes each)
+	 * 
+	 * @param ciphertexts
+	 *            the given known ciphertext blocks (8 bytes each) in the same order
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(space == null) || (plaintexts == null) || (ciphertexts == null)</code> or if
+	 *             they contain a <code>null</code> element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(plaintexts.length == 0) || (plaintexts.length != ciphertexts.length)</code> or
+	 *             if a block is not 8 bytes long
+	 */
+	public DESKeySearch(KeySpace space, byte[][] plaintexts, byte[][] ciphertexts)
+			throws NullPointerException, IllegalArgumentException {
+		if (space == null) {
+			throw new NullPointerException();
+		} else if ((plaintexts.length == 0) || (plaintexts.length != ciphertexts.length)) {
+			throw new IllegalArgumentException();
+		}
+		this.space = space;
+		this.plaintexts = new byte[plaintexts.length][];
+		this.ciphertexts = new byte[ciphertexts.length][];
+		this.plainWords = new long[plaintexts.length];
+		this.cipherWords = new long[ciphertexts.length];
+		for (int i = 0; i != plaintexts.length; ++i) {
+			this.plainWords[i] = DESKeySearch.toLong(this.plaintexts[i] = plaintexts[i].clone());
+			this.cipherWords[i] = DESKeySearch.toLong(this.ciphertexts[i] = ciphertexts[i].clone());
+		}
+	}
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	/**
+	 * @return <code>this.space</code>.
+	 */
+	public KeySpace space() {
+		return this.space;
+	}
+
+	/**
+	 * @return The number of keys tested by the last (or current) search.
+	 */
+	public long keysTested() {
+		return this.tested.get();
+	}
+
+	/**
+	 * @return The duration in nanoseconds of the last (or current) search.
+	 */
+	public long elapsedNanos() {
+		final long end = this.endNanos;
+		return ((end == 0) ? System.nanoTime() : end) - this.startNanos;
+	}
+
+	/**
+	 * @return The speed of the last (or current) search in keys per second.
+	 */
+	public double keysPerSecond() {
+		final long elapsed = this.elapsedNanos();
+		return (elapsed <= 0) ? 0 : (this.tested.get() * 1e9 / elapsed);
+	}
+
+	/**
+	 * @return The checkpoint of the last (or current) search, i.e., the index below which every key has
+	 *         been tested, so that resuming from it never misses a key (and retests at most one block per
+	 *         worker).
+	 */
+	public long checkpoint() {
+		long result = Math.min(this.next.get(), this.space.size());
+		final AtomicLongArray blocks = this.inProgress;
+		for (int i = 0; i != blocks.length(); ++i) {
+			result = Math.min(result, blocks.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Search the key space starting at the given index with the given number of worker threads, and
+	 * stop all of them at the first key which maps every known plaintext block to its ciphertext block.
+	 * Every <code>reportMillis</code> milliseconds, the checkpoint is written to the given checkpoint file
+	 * (if not <code>null</code>) and the progress is printed (if <code>print</code>).
+	 * 
+	 * @param start
+	 *            the given start index in <code>[0, this.space().size()]</code> (rounded down to a multiple
+	 *            of <code>DESBitslice.LANES</code> in the bitsliced search)
+	 * 
+	 * @param numThreads
+	 *            the given number of worker threads
+	 * 
+	 * @param checkpointFile
+	 *            the given checkpoint file (may be <code>null</code>)
+	 * 
+	 * @param reportMillis
+	 *            the given interval in milliseconds between two progress reports
+	 * 
+	 * @param print
+	 *            specifies whether to print the progress
+	 * 
+	 * @return The key found (8 bytes with odd parity), or <code>null</code> if there is none in
+	 *         <code>[start, this.space().size())</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(start < 0) || (this.space().size() < start) || (numThreads <= 0) || (reportMillis <= 0)</code>
+	 * 
+	 * @throws IOException
+	 *             If the checkpoint file cannot be written
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting (the checkpoint is still written)
+	 */
+	public byte[] search(long start, int numThreads, Path checkpointFile, long reportMillis, boolean print)
+			throws IllegalArgumentException, IOException, CancellationException {
+		if ((start < 0) || (this.space.size() < start) || (numThreads <= 0) || (reportMillis <= 0)) {
+			throw new IllegalArgumentException();
+		}
+		if (this.bitsliced()) {
+			start -= start % DESBitslice.LANES;
+		}
+		this.tested.set(0);
+		this.next.set(start);
+		final AtomicLongArray blocks = new AtomicLongArray(numThreads);
+		for (int i = 0; i != numThreads; ++i) {
+			blocks.set(i, Long.MAX_VALUE);
+		}
+		this.inProgress = blocks;
+		this.endNanos = 0;
+		this.startNanos = System.nanoTime();
+		if (print) {
+			System.out.println("Searching " + (this.space.size() - start) + " DES keys (" + this.space.toString()
+					+ ") with " + numThreads + " threads from index " + start + ".\n");
+		}
+
+		final AtomicReference<byte[]> found = new AtomicReference<byte[]>();
+		final ExecutorService pool = ConcurrentUtil.newFixedDaemonPool(numThreads, "des-key-search");
+		final List<Future<?>> futures = new ArrayList<Future<?>>(numThreads);
+		try {
+			for (int i = 0; i != numThreads; ++i) {
+				final int worker = i;
+				futures.add(pool.submit(() -> {
+					this.work(worker, found);
+					return null;
+				}));
+			}
+			pool.shutdown();
+			while (!pool.awaitTermination(reportMillis, TimeUnit.MILLISECONDS)) {
+				this.report(checkpointFile, print);
+			}
+			for (final Future<?> future : futures) {
+				future.get(); // Propagate the failure of a worker (if any).
+			}
+		} catch (InterruptedException ex) {
+			pool.shutdownNow();
+			// The checkpoint stays valid since the blocks in progress are still below it.
+			this.endNanos = System.nanoTime();
+			this.report(checkpointFile, print);
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		} catch (ExecutionException ex) {
+			throw ConcurrentUtil.unchecked(ex.getCause());
+		} finally {
+			pool.shutdownNow();
+			this.endNanos = System.nanoTime();
+		}
+
+		this.report(checkpointFile, print);
+		final byte[] result = found.get();
+		if (print) {
+			System.out.println((result == null) ? "No key found.\n"
+					: ("Found key " + Hex.toString(result) + " after " + this.tested.get() + " keys.\n"));
+		}
+		return result;
+	}
+
+	/**
+	 * @param numThreads
+	 *            the given number of worker threads
+	 * 
+	 * @return <code>this.search(0, numThreads, null, DESKeySearch.DEFAULT_REPORT_MILLIS, false)</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>numThreads <= 0</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[] search(int numThreads) throws IllegalArgumentException, CancellationException {
+		try {
+			return this.search(0, numThreads, null, DESKeySearch.DEFAULT_REPORT_MILLIS, false);
+		} catch (IOException ex) {
+			// Cannot happen since there is no checkpoint file.
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * @return <code>this.search(ConcurrentUtil.DEFAULT_NUM_THREADS)</code>.
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[] search() throws CancellationException {
+		return this.search(ConcurrentUtil.DEFAULT_NUM_THREADS);
+	}
+
+	/**
+	 * Resume the search from the checkpoint saved in the given checkpoint file (or start it if the file
+	 * does not exist), keeping the checkpoint file up to date.
+	 * 
+	 * @param checkpointFile
+	 *            the given checkpoint file
+	 * 
+	 * @param numThreads
+	 *            the given number of worker threads
+	 * 
+	 * @param print
+	 *            specifies whether to print the progress
+	 * 
+	 * @return The key found (8 bytes with odd parity), or <code>null</code> if there is none in the rest of
+	 *         the key space.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>checkpointFile == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>numThreads <= 0</code>
+	 * 
+	 * @throws IOException
+	 *             If the checkpoint file cannot be read or written, or if it belongs to a different key
+	 *             space
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[] resume(Path checkpointFile, int numThreads, boolean print)
+			throws NullPointerException, IllegalArgumentException, IOException, CancellationException {
+		long start = 0;
+		if (Files.exists(checkpointFile)) {
+			try (DataInputStream in = new DataInputStream(Files.newInputStream(checkpointFile))) {
+				if ((in.readInt() != DESKeySearch.CHECKPOINT_MAGIC) || (in.readLong() != this.space.mask)
+						|| (in.readLong() != this.space.bits)) {
+					throw new IOException("The checkpoint file belongs to a different key space.");
+				}
+				start = in.readLong();
+			}
+			if ((start < 0) || (this.space.size() < start)) {
+				throw new IOException("Corrupted checkpoint file.");
+			}
+		}
+		return this.search(start, numThreads, checkpointFile, DESKeySearch.DEFAULT_REPORT_MILLIS, print);
+	}
+
+	/**
+	 * Body of every worker: take the next block until the key space is exhausted or a key is found.
+	 * 
+	 * @param worker
+	 *            the index of the worker
+	 * 
+	 * @param found
+	 *            the key found (set by the first worker which finds one)
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws ShortBufferException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 */
+	private void work(int worker, AtomicReference<byte[]> found)
+			throws InvalidKeyException, ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		final boolean bitsliced = this.bitsliced();
+		Cipher engine = null;
+		if (!bitsliced) {
+			try {
+				engine = CipherEngUtil.borrowEngine(SymCipherEng.ALGO_SYM.DES.name(), CipherEngUtil.OPMODE.ECB,
+						CipherEngUtil.PADDING.NoPadding);
+			} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+				throw new ExceptionInInitializerError();
+			}
+		}
+		try {
+			final long size = this.space.size();
+			final AtomicLongArray blocks = this.inProgress;
+			while ((found.get() == null) && !Thread.currentThread().isInterrupted()) {
+				// Publish a lower bound of the block before claiming it, so that this.checkpoint() never
+				// sees this.next past a claimed block which is not published yet.
+				blocks.set(worker, this.next.get());
+				final long first = this.next.getAndAdd(DESKeySearch.BLOCK_SIZE);
+				if (size <= first) {
+					blocks.set(worker, Long.MAX_VALUE);
+					break;
+				}
+				// first < size
+				blocks.set(worker, first);
+				final long count = Math.min(DESKeySearch.BLOCK_SIZE, size - first);
+				if (bitsliced) {
+					this.testBitsliced(first, count, found);
+				} else {
+					this.test(engine, first, count, found);
+				}
+				this.tested.addAndGet(count);
+				blocks.set(worker, Long.MAX_VALUE);
+			}
+		} finally {
+			if (engine != null) {
+				CipherEngUtil.returnEngine(engine);
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the key space is searched with DESBitslice, i.e., if it has at least 6
+	 *         free bits.
+	 */
+	private boolean bitsliced() {
+		return DESKeySearch.LANE_BITS <= this.space.freeBits();
+	}
+
+	/**
+	 * Test the keys of the given block one at a time with the given engine.
+	 * 
+	 * @param engine
+	 *            the given engine (DES/ECB/NoPadding)
+	 * 
+	 * @param first
+	 *            the index of the first key of the block
+	 * 
+	 * @param count
+	 *            the number of keys of the block
+	 * 
+	 * @param found
+	 *            the key found (set by the first worker which finds one)
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws ShortBufferException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 */
+	private void test(Cipher engine, long first, long count, AtomicReference<byte[]> found)
+			throws InvalidKeyException, ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		final byte[] keyBytes = new byte[SymCipherEng.DES_BLOCK_SIZE];
+		final byte[] output = new byte[SymCipherEng.DES_BLOCK_SIZE];
+		long key = this.space.key(first);
+		for (long i = 0; (i != count) && (found.get() == null); ++i, key = this.space.next(key)) {
+			DESKeySearch.toBytes(key, keyBytes);
+			engine.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(keyBytes, SymCipherEng.ALGO_SYM.DES.name()));
+			engine.doFinal(this.plaintexts[0], 0, SymCipherEng.DES_BLOCK_SIZE, output, 0);
+			if (Arrays.equals(output, this.ciphertexts[0]) && this.matches(engine, output)) {
+				found.compareAndSet(null, keyBytes.clone());
+			}
+		}
+	}
+
+	/**
+	 * Test the keys of the given block 64 at a time with DESBitslice, where the lowest 6 free bits of a
+	 * key select its lane (so that the key slices are either constant or a lane pattern).
+	 * 
+	 * @param first
+	 *            the index of the first key of the block (a multiple of <code>DESBitslice.LANES</code>)
+	 * 
+	 * @param count
+	 *            the number of keys of the block (a multiple of <code>DESBitslice.LANES</code>)
+	 * 
+	 * @param found
+	 *            the key found (set by the first worker which finds one)
+	 */
+	private void testBitsliced(long first, long count, AtomicReference<byte[]> found) {
+		final long[] key = new long[DESBitslice.SLICES];
+		final long[] work = new long[DESBitslice.SLICES];
+		for (long group = first, end = first + count; (group != end)
+				&& (found.get() == null); group += DESBitslice.LANES) {
+			DESBitslice.broadcast(this.space.key(group), key);
+			long free = this.space.free;
+			for (int t = 0; t != DESKeySearch.LANE_BITS; ++t, free &= free - 1) {
+				key[63 - Long.numberOfTrailingZeros(free)] = DESKeySearch.LANE_SLICES[t];
+			}
+			long lanes = DESBitslice.matches(key, this.plainWords[0], this.cipherWords[0], work);
+			for (; lanes != 0; lanes &= lanes - 1) {
+				final long candidate = this.space.key(group + Long.numberOfTrailingZeros(lanes));
+				if (this.matches(candidate)) {
+					found.compareAndSet(null, DESKeySearch.toBytes(candidate));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param engine
+	 *            the given engine (initialized with the candidate key)
+	 * 
+	 * @param output
+	 *            the given output buffer
+	 * 
+	 * @return <code>true</code> if the candidate key also maps every other known plaintext block to its
+	 *         ciphertext block.
+	 * 
+	 * @throws ShortBufferException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 */
+	private boolean matches(Cipher engine, byte[] output)
+			throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		for (int i = 1; i != this.plaintexts.length; ++i) {
+			engine.doFinal(this.plaintexts[i], 0, SymCipherEng.DES_BLOCK_SIZE, output, 0);
+			if (!Arrays.equals(output, this.ciphertexts[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param key
+	 *            the given candidate key
+	 * 
+	 * @return <code>true</code> if the candidate key also maps every other known plaintext block to its
+	 *         ciphertext block.
+	 */
+	private boolean matches(long key) {
+		for (int i = 1; i != this.plainWords.length; ++i) {
+			final long[] ciphertext = DESBitslice.encrypt(new long[] { key }, new long[] { this.plainWords[i] });
+			if (ciphertext[0] != this.cipherWords[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write the checkpoint to the given checkpoint file (if not <code>null</code>) and print the progress
+	 * (if <code>print</code>).
+	 * 
+	 * @param checkpointFile
+	 *            the given checkpoint file (may be <code>null</code>)
+	 * 
+	 * @param print
+	 *            specifies whether to print the progress
+	 * 
+	 * @throws IOException
+	 *             If the checkpoint file cannot be written
+	 */
+	private void report(Path checkpointFile, boolean print) throws IOException {
+		final long checkpoint = this.checkpoint();
+		if (checkpointFile != null) {
+			// Write to a temporary file and then move it, so the checkpoint file is never half written.
+			final Path parent = checkpointFile.toAbsolutePath().getParent();
+			final Path tmp = Files.createTempFile(parent, checkpointFile.getFileName().toString(), ".tmp");
+			try {
+				try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+					out.writeInt(DESKeySearch.CHECKPOINT_MAGIC);
+					out.writeLong(this.space.mask);
+					out.writeLong(this.space.bits);
+					out.writeLong(checkpoint);
+				}
+				Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		}
+		if (print) {
+			System.out.println(String.format("Tested %d keys in %.1f s (%.0f keys/s), checkpoint at index %d.\n",
+					this.tested.get(), this.elapsedNanos() / 1e9, this.keysPerSecond(), checkpoint));
+		}
+	}
+
+	/**
+	 * @param key
+	 *            the given key (8 bytes)
+	 * 
+	 * @return The given key as a big-endian long.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>key == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>key.length != 8</code>
+	 */
+	public static long toLong(byte[] key) throws NullPointerException, IllegalArgumentException {
+		if (key.length != SymCipherEng.DES_BLOCK_SIZE) {
+			throw new IllegalArgumentException();
+		}
+		long result = 0;
+		for (final byte b : key) {
+			result = (result << Byte.SIZE) | (b & 0xFF);
+		}
+		return result;
+	}
+
+	/**
+	 * Store the given key into the given array as 8 big-endian bytes with odd parity (as DES keys are
+	 * conventionally written).
+	 * 
+	 * @param key
+	 *            the given key
+	 * 
+	 * @param result
+	 *            the given array (of at least 8 bytes)
+	 */
+	private static void toBytes(long key, byte[] result) {
+		for (int i = SymCipherEng.DES_BLOCK_SIZE - 1; i != -1; --i, key >>>= Byte.SIZE) {
+			final int b = (int) key & 0xFE;
+			// Set the parity bit so that every byte has an odd number of ones.
+			result[i] = (byte) (b | ((Integer.bitCount(b) & 1) ^ 1));
+		}
+	}
+
+	/**
+	 * @param key
+	 *            the given key
+	 * 
+	 * @return The given key as 8 big-endian bytes with odd parity.
+	 */
+	public static byte[] toBytes(long key) {
+		final byte[] result = new byte[SymCipherEng.DES_BLOCK_SIZE];
+		DESKeySearch.toBytes(key, result);
+		return result;
+	}
+}
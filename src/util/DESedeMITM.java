@@ -0,0 +1,579 @@
+package util;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Meet-in-the-middle attack engine against two-key DESede (i.e., <code>C = E_k1(D_k2(E_k1(P)))</code>)
+ * over restricted key spaces, for auditing purposes. Since both ends of two-key DESede depend on
+ * <code>k1</code>, the engine uses the chosen plaintext attack of Merkle and Hellman, which meets at the
+ * intermediate value 0: for every <code>k2</code>, the table stores <code>D_k2(0)</code>, and for every
+ * <code>k1</code>, the plaintext <code>P = D_k1(0)</code> is submitted to the encryption oracle and
+ * <code>D_k1(C)</code> is looked up in the table. <br>
+ * The table is an open addressing hash table in a memory-mapped temporary file (so it lives off the heap
+ * and may be larger than it), built and probed by several threads with DESBitslice (64 keys per pass).
+ * When the table of the whole <code>k2</code> space does not fit in the given memory budget, the
+ * <code>k2</code> space is split into passes, each of which probes the whole <code>k1</code> space again,
+ * so halving the memory doubles the time. <br>
+ * Note that Java only releases a mapping once it is garbage collected, so the disk space and the memory
+ * of the table of a call may outlive the call (see <code>Table.close</code>), and back-to-back calls may
+ * briefly hold more than one memory budget.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class DESedeMITM {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.DESBitslice
+	 * 		2. util.DESKeySearch
+	 * 		3. util.SymCipherEng
+	 * 		4. util.ConcurrentUtil
+	 * </code>
+	 */
+
+	/**
+	 * The size in bytes of a table slot (i.e., the meet value and the key index plus 1, where 0 marks an
+	 * empty slot).
+	 */
+	public static final int SLOT_SIZE = 2 * Long.BYTES;
+
+	/**
+	 * The default memory budget in bytes.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 1L << 30;
+
+	/**
+	 * The smallest memory budget in bytes.
+	 */
+	public static final long MIN_MEMORY_BUDGET = DESBitslice.LANES * 2 * DESedeMITM.SLOT_SIZE;
+
+	/**
+	 * The number of slots of a mapped segment as a power of 2 (i.e., 1 GiB per segment).
+	 */
+	private static final int SEGMENT_BITS = 26;
+
+	/**
+	 * The plaintext used to verify the candidate key pairs.
+	 */
+	private static final long VERIFY_PLAINTEXT = 0x0123456789ABCDEFL;
+
+	/**
+	 * View of the table segments as long arrays, for the atomic claim of a slot.
+	 */
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.nativeOrder());
+
+	/**
+	 * The key space of <code>k1</code>.
+	 */
+	private final DESKeySearch.KeySpace space1;
+
+	/**
+	 * The key space of <code>k2</code>.
+	 */
+	private final DESKeySearch.KeySpace space2;
+
+	/**
+	 * The encryption oracle (block to block as big-endian longs).
+	 */
+	private final LongUnaryOperator oracle;
+
+	/**
+	 * Construct a DESedeMITM object from the given attributes.
+	 * 
+	 * @param space1
+	 *            the given key space of <code>k1</code>
+	 * 
+	 * @param space2
+	 *            the given key space of <code>k2</code>
+	 * 
+	 * @param oracle
+	 *            the given encryption oracle (block to block as big-endian longs), which must be thread
+	 *            safe
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(space1 == null) || (space2 == null) || (oracle == null)</code>
+	 */
+	public DESedeMITM(DESKeySearch.KeySpace space1, DESKeySearch.KeySpace space2, LongUnaryOperator oracle)
+			throws NullPointerException {
+		if ((space1 == null) || (space2 == null) || (oracle == null)) {
+			throw new NullPointerException();
+		}
+		this.space1 = space1;
+		this.space2 = space2;
+		this.oracle = oracle;
+	}
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	/**
+	 * @param eng
+	 *            the given engine (DESede in ECB mode with no padding)
+	 * 
+	 * @return An encryption oracle backed by the given engine (serialized on it).
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>eng == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the given engine is not DESede in ECB mode with no padding
+	 */
+	public static LongUnaryOperator oracle(SymCipherEng eng) throws NullPointerException, IllegalArgumentException {
+		if ((eng.algo() != SymCipherEng.ALGO_SYM.DESede) || (eng.opmode() != CipherEngUtil.OPMODE.ECB)
+				|| (eng.padding() != CipherEngUtil.PADDING.NoPadding)) {
+			throw new IllegalArgumentException();
+		}
+		return (block) -> {
+			final byte[] p = new byte[SymCipherEng.DES_BLOCK_SIZE];
+			for (int i = p.length - 1; i != -1; --i, block >>>= Byte.SIZE) {
+				p[i] = (byte) block;
+			}
+			try {
+				synchronized (eng) {
+					return DESKeySearch.toLong(eng.encrypt(p));
+				}
+			} catch (GeneralSecurityException ex) {
+				throw new IllegalStateException(ex);
+			}
+		};
+	}
+
+	/**
+	 * @param memoryBudget
+	 *            the given memory budget in bytes
+	 * 
+	 * @return The number of table slots of a pass (a power of 2), i.e., twice the number of
+	 *         <code>k2</code> keys per pass rounded up, but within the given memory budget.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>memoryBudget < DESedeMITM.MIN_MEMORY_BUDGET</code>
+	 */
+	public long slots(long memoryBudget) throws IllegalArgumentException {
+		if (memoryBudget < DESedeMITM.MIN_MEMORY_BUDGET) {
+			throw new IllegalArgumentException();
+		}
+		final long max = Long.highestOneBit(memoryBudget / DESedeMITM.SLOT_SIZE);
+		final long size = this.space2.size();
+		return ((max >>> 1) < size) ? max : Math.max(2, Long.highestOneBit(2 * size - 1) << 1);
+	}
+
+	/**
+	 * @param memoryBudget
+	 *            the given memory budget in bytes
+	 * 
+	 * @return The number of passes over the <code>k1</code> key space, i.e., the time factor of the given
+	 *         memory budget.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>memoryBudget < DESedeMITM.MIN_MEMORY_BUDGET</code>
+	 */
+	public long passes(long memoryBudget) throws IllegalArgumentException {
+		final long perPass = this.slots(memoryBudget) >>> 1;
+		return (this.space2.size() + perPass - 1) / perPass;
+	}
+
+	/**
+	 * Run the attack.
+	 * 
+	 * @param memoryBudget
+	 *            the given memory budget in bytes of the mapped table
+	 * 
+	 * @param dir
+	 *            the directory of the temporary table file
+	 * 
+	 * @param numThreads
+	 *            the given number of threads
+	 * 
+	 * @param print
+	 *            specifies whether to print the progress
+	 * 
+	 * @return The key found (24 bytes, i.e., <code>k1 || k2 || k1</code> with odd parity, as used by
+	 *         DESede), or <code>null</code> if there is none in the key spaces.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>dir == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(memoryBudget < DESedeMITM.MIN_MEMORY_BUDGET) || (numThreads <= 0)</code>
+	 * 
+	 * @throws IOException
+	 *             If the table file cannot be created or mapped
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[] attack(long memoryBudget, Path dir, int numThreads, boolean print)
+			throws NullPointerException, IllegalArgumentException, IOException, CancellationException {
+		if (numThreads <= 0) {
+			throw new IllegalArgumentException();
+		}
+		final long slots = this.slots(memoryBudget);
+		final long perPass = slots >>> 1;
+		final long passes = this.passes(memoryBudget);
+		final long verifyCiphertext = this.oracle.applyAsLong(DESedeMITM.VERIFY_PLAINTEXT);
+		if (print) {
+			System.out.println("Meet-in-the-middle over " + this.space1.size() + " x " + this.space2.size()
+					+ " keys with a table of " + (slots * DESedeMITM.SLOT_SIZE) + " bytes in " + passes
+					+ " passes.\n");
+		}
+
+		final AtomicReference<long[]> found = new AtomicReference<long[]>();
+		final ExecutorService pool = ConcurrentUtil.newFixedDaemonPool(numThreads, "desede-mitm");
+		try (Table table = new Table(dir, slots)) {
+			for (long pass = 0; (pass != passes) && (found.get() == null); ++pass) {
+				final long start = System.nanoTime();
+				final long lo = pass * perPass;
+				final long hi = Math.min(lo + perPass, this.space2.size());
+				if (pass != 0) {
+					table.clear();
+				}
+				DESedeMITM.forEachGroup(pool, numThreads, lo, hi, found, (first, n) -> this.build(table, first, n));
+				DESedeMITM.forEachGroup(pool, numThreads, 0, this.space1.size(), found,
+						(first, n) -> this.probe(table, first, n, verifyCiphertext, found));
+				if (print) {
+					System.out.println(String.format("Pass %d of %d (k2 indices [%d, %d)) took %.1f s.\n", pass + 1,
+							passes, lo, hi, (System.nanoTime() - start) / 1e9));
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		final long[] keys = found.get();
+		if (keys == null) {
+			if (print) {
+				System.out.println("No key found.\n");
+			}
+			return null;
+		}
+		final byte[] result = new byte[3 * SymCipherEng.DES_BLOCK_SIZE];
+		System.arraycopy(DESKeySearch.toBytes(keys[0]), 0, result, 0, SymCipherEng.DES_BLOCK_SIZE);
+		System.arraycopy(DESKeySearch.toBytes(keys[1]), 0, result, SymCipherEng.DES_BLOCK_SIZE,
+				SymCipherEng.DES_BLOCK_SIZE);
+		System.arraycopy(result, 0, result, 2 * SymCipherEng.DES_BLOCK_SIZE, SymCipherEng.DES_BLOCK_SIZE);
+		if (print) {
+			System.out.println("Found key " + Hex.toString(result) + ".\n");
+		}
+		return result;
+	}
+
+	/**
+	 * @return <code>this.attack(DESedeMITM.DEFAULT_MEMORY_BUDGET, tmp, ConcurrentUtil.DEFAULT_NUM_THREADS, false)</code>,
+	 *         where <code>tmp</code> is the default temporary directory.
+	 * 
+	 * @throws IOException
+	 *             If the table file cannot be created or mapped
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[] attack() throws IOException, CancellationException {
+		return this.attack(DESedeMITM.DEFAULT_MEMORY_BUDGET, Path.of(System.getProperty("java.io.tmpdir")),
+				ConcurrentUtil.DEFAULT_NUM_THREADS, false);
+	}
+
+	/**
+	 * Action on a group of at most 64 consecutive key indices.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	@FunctionalInterface
+	private static interface GroupAction {
+		/**
+		 * @param first
+		 *            the first key index of the group
+		 * 
+		 * @param n
+		 *            the number of keys of the group (at most 64)
+		 */
+		void apply(long first, int n);
+	}
+
+	/**
+	 * Split <code>[lo, hi)</code> into one contiguous range per thread and apply the given action to every
+	 * group of at most 64 indices, until a key is found.
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @param numThreads
+	 *            the given number of threads
+	 * 
+	 * @param lo
+	 *            the first index
+	 * 
+	 * @param hi
+	 *            the end index
+	 * 
+	 * @param found
+	 *            the key pair found (if any)
+	 * 
+	 * @param action
+	 *            the given action
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	private static void forEachGroup(ExecutorService pool, int numThreads, long lo, long hi,
+			AtomicReference<long[]> found, GroupAction action) throws CancellationException {
+		final long groups = (hi - lo + DESBitslice.LANES - 1) / DESBitslice.LANES;
+		final int numChunks = (int) Math.min(numThreads, Math.max(1, groups));
+		ConcurrentUtil.parallelFor(pool, 0, numChunks, numChunks, (c) -> {
+			// Compute the chunk bounds in groups to keep every group but the last one full.
+			final long end = Math.min(hi, lo + ((groups * (c + 1)) / numChunks) * DESBitslice.LANES);
+			for (long first = lo + ((groups * c) / numChunks) * DESBitslice.LANES; (first < end)
+					&& (found.get() == null); first += DESBitslice.LANES) {
+				action.apply(first, (int) Math.min(DESBitslice.LANES, end - first));
+			}
+		});
+	}
+
+	/**
+	 * @param space
+	 *            the given key space
+	 * 
+	 * @param first
+	 *            the first key index
+	 * 
+	 * @param n
+	 *            the number of keys (at most 64)
+	 * 
+	 * @return The keys <code>[first, first + n)</code> of the given key space.
+	 */
+	private static long[] keys(DESKeySearch.KeySpace space, long first, int n) {
+		final long[] result = new long[n];
+		for (int j = 0; j != n; ++j) {
+			result[j] = space.key(first + j);
+		}
+		return result;
+	}
+
+	/**
+	 * Insert <code>D_k2(0)</code> of the given <code>k2</code> keys into the given table.
+	 * 
+	 * @param table
+	 *            the given table
+	 * 
+	 * @param first
+	 *            the first <code>k2</code> key index
+	 * 
+	 * @param n
+	 *            the number of keys (at most 64)
+	 */
+	private void build(Table table, long first, int n) {
+		final long[] values = DESBitslice.decrypt(DESedeMITM.keys(this.space2, first, n), new long[n]);
+		for (int j = 0; j != n; ++j) {
+			table.insert(values[j], first + j);
+		}
+	}
+
+	/**
+	 * Probe the given table with <code>D_k1(C)</code> of the given <code>k1</code> keys, where
+	 * <code>C</code> is the oracle ciphertext of <code>P = D_k1(0)</code>, and verify the candidates.
+	 * 
+	 * @param table
+	 *            the given table
+	 * 
+	 * @param first
+	 *            the first <code>k1</code> key index
+	 * 
+	 * @param n
+	 *            the number of keys (at most 64)
+	 * 
+	 * @param verifyCiphertext
+	 *            the oracle ciphertext of <code>DESedeMITM.VERIFY_PLAINTEXT</code>
+	 * 
+	 * @param found
+	 *            the key pair found (set by the first thread which finds one)
+	 */
+	private void probe(Table table, long first, int n, long verifyCiphertext, AtomicReference<long[]> found) {
+		final long[] keys = DESedeMITM.keys(this.space1, first, n);
+		final long[] blocks = DESBitslice.decrypt(keys, new long[n]);
+		for (int j = 0; j != n; ++j) {
+			blocks[j] = this.oracle.applyAsLong(blocks[j]);
+		}
+		final long[] values = DESBitslice.decrypt(keys, blocks);
+		for (int j = 0; j != n; ++j) {
+			final long k1 = keys[j];
+			table.probe(values[j], (index) -> {
+				final long k2 = this.space2.key(index);
+				if (DESedeMITM.encrypt(k1, k2, DESedeMITM.VERIFY_PLAINTEXT) == verifyCiphertext) {
+					found.compareAndSet(null, new long[] { k1, k2 });
+				}
+			});
+		}
+	}
+
+	/**
+	 * @param k1
+	 *            the given first key
+	 * 
+	 * @param k2
+	 *            the given second key
+	 * 
+	 * @param block
+	 *            the given plaintext block
+	 * 
+	 * @return <code>E_k1(D_k2(E_k1(block)))</code>.
+	 */
+	private static long encrypt(long k1, long k2, long block) {
+		final long[] key1 = { k1 };
+		block = DESBitslice.encrypt(key1, new long[] { block })[0];
+		block = DESBitslice.decrypt(new long[] { k2 }, new long[] { block })[0];
+		return DESBitslice.encrypt(key1, new long[] { block })[0];
+	}
+
+	/**
+	 * Open addressing hash table with linear probing in a memory-mapped temporary file, where a slot is
+	 * claimed atomically so that several threads may insert at once. The probes must not overlap with the
+	 * inserts. <br>
+	 * The file is opened with <code>StandardOpenOption.DELETE_ON_CLOSE</code> and its channel is closed
+	 * right after the mapping, so it is deleted by the platform once nothing refers to it (i.e., at once
+	 * on Unix, where the mappings keep the unlinked file alive, and once the mappings are released on
+	 * Windows). Either way, its disk space is only freed once the mappings are garbage collected.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	private static final class Table implements AutoCloseable {
+		/**
+		 * The mapped segments of the file, or <code>null</code> once the table is closed.
+		 */
+		private MappedByteBuffer[] segments;
+
+		/**
+		 * The number of slots minus 1.
+		 */
+		private final long mask;
+
+		/**
+		 * The number of bits of a slot hash.
+		 */
+		private final int bits;
+
+		/**
+		 * Construct a Table object of the given number of slots in a new temporary file of the given
+		 * directory.
+		 * 
+		 * @param dir
+		 *            the given directory
+		 * 
+		 * @param slots
+		 *            the given number of slots (a power of 2)
+		 * 
+		 * @throws IOException
+		 *             If the file cannot be created or mapped
+		 */
+		Table(Path dir, long slots) throws IOException {
+			this.mask = slots - 1;
+			this.bits = Long.numberOfTrailingZeros(slots);
+			final long segmentSlots = Math.min(slots, 1L << DESedeMITM.SEGMENT_BITS);
+			this.segments = new MappedByteBuffer[(int) (slots / segmentSlots)];
+
+			final Path file = Files.createTempFile(dir, "desede-mitm", ".table");
+			final FileChannel channel;
+			try {
+				channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+						StandardOpenOption.DELETE_ON_CLOSE);
+			} catch (IOException | RuntimeException ex) {
+				Files.deleteIfExists(file); // Nothing is mapped yet.
+				throw ex;
+			}
+			try (FileChannel c = channel) {
+				// A mapping stays valid after its channel is closed; the new file is sparse and zeroed.
+				for (int i = 0; i != this.segments.length; ++i) {
+					this.segments[i] = c.map(FileChannel.MapMode.READ_WRITE, i * segmentSlots * DESedeMITM.SLOT_SIZE,
+							segmentSlots * DESedeMITM.SLOT_SIZE);
+					this.segments[i].order(ByteOrder.nativeOrder());
+				}
+			}
+		}
+
+		/**
+		 * @param value
+		 *            the given meet value
+		 * 
+		 * @return The home slot of the given meet value.
+		 */
+		private long home(long value) {
+			return (this.bits == 0) ? 0 : ((value * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - this.bits));
+		}
+
+		/**
+		 * Insert the given entry (claiming the first free slot from the home slot on).
+		 * 
+		 * @param value
+		 *            the given meet value
+		 * 
+		 * @param index
+		 *            the given key index
+		 */
+		void insert(long value, long index) {
+			for (long slot = this.home(value);; slot = (slot + 1) & this.mask) {
+				final MappedByteBuffer segment = this.segments[(int) (slot >>> DESedeMITM.SEGMENT_BITS)];
+				final int offset = (int) (slot & ((1L << DESedeMITM.SEGMENT_BITS) - 1)) * DESedeMITM.SLOT_SIZE;
+				if (DESedeMITM.LONGS.compareAndSet(segment, offset + Long.BYTES, 0L, index + 1)) {
+					segment.putLong(offset, value);
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Pass the key index of every entry of the given meet value to the given action.
+		 * 
+		 * @param value
+		 *            the given meet value
+		 * 
+		 * @param action
+		 *            the given action
+		 */
+		void probe(long value, LongConsumer action) {
+			for (long slot = this.home(value);; slot = (slot + 1) & this.mask) {
+				final MappedByteBuffer segment = this.segments[(int) (slot >>> DESedeMITM.SEGMENT_BITS)];
+				final int offset = (int) (slot & ((1L << DESedeMITM.SEGMENT_BITS) - 1)) * DESedeMITM.SLOT_SIZE;
+				final long index = segment.getLong(offset + Long.BYTES);
+				if (index == 0) {
+					return;
+				} else if (segment.getLong(offset) == value) {
+					action.accept(index - 1);
+				}
+			}
+		}
+
+		/**
+		 * Empty every slot.
+		 */
+		void clear() {
+			for (final MappedByteBuffer segment : this.segments) {
+				for (int offset = 0; offset != segment.capacity(); offset += DESedeMITM.SLOT_SIZE) {
+					segment.putLong(offset + Long.BYTES, 0);
+				}
+			}
+		}
+
+		/**
+		 * Drop the mappings, which (and so the disk space of the file) are released once they are garbage
+		 * collected. The table must not be used afterwards.
+		 */
+		@Override
+		public void close() {
+			this.segments = null;
+		}
+	}
+}
@@ -1,16 +1,28 @@
 package util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * A simple wrapper over Java's MessageDigest class.
+ * A simple thread-safe wrapper over Java's MessageDigest class.
  * 
  * @author Ashkan Moatamed
  */
 public class Digester {
 	/**
-	 * No dependencies.
+	 * Dependencies: <code>
+	 * 		1. util.ConcurrentUtil
+	 * </code>
 	 */
 
 	/**
@@ -53,6 +65,16 @@ public class Digester {
 		};
 	};
 
+	/**
+	 * The size in bytes of the buffer used to read streams and channels.
+	 */
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The size in bytes of the windows in which files are memory-mapped.
+	 */
+	public static final int MAP_SIZE = 1 << 26;
+
 	/**
 	 * @param algo
 	 *            the given hashing algorithm
@@ -71,9 +93,172 @@ public class Digester {
 	}
 
 	/**
-	 * Hashing digesters.
+	 * Hashing digesters of the calling thread, i.e., <code>DIGESTERS.get()[algo.ordinal()]</code> is the
+	 * digester of <code>algo</code> (or <code>null</code> if not yet used by the calling thread). Since a
+	 * MessageDigest is stateful, every thread gets its own instances, which it then reuses without any
+	 * provider lookup or synchronization.
 	 */
-	protected static MessageDigest[] digesters = null;
+	private static final ThreadLocal<MessageDigest[]> DIGESTERS = ThreadLocal
+			.withInitial(() -> new MessageDigest[ALGO_HASH.values().length]);
+
+	/**
+	 * Read buffer of the calling thread (of <code>Digester.BUFFER_SIZE</code> bytes), reused across calls.
+	 */
+	private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal
+			.withInitial(() -> ByteBuffer.allocate(Digester.BUFFER_SIZE));
+
+	/**
+	 * Incremental digest of data which arrives in pieces. Not thread-safe; every Incremental object owns its
+	 * digester.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	public static final class Incremental {
+		/**
+		 * The hashing algorithm.
+		 */
+		private final ALGO_HASH algo;
+
+		/**
+		 * The digester.
+		 */
+		private final MessageDigest digester;
+
+		/**
+		 * The number of bytes digested since the last finish.
+		 */
+		private long length = 0;
+
+		/**
+		 * Construct an Incremental object of the given hashing algorithm.
+		 * 
+		 * @param algo
+		 *            the given hashing algorithm
+		 * 
+		 * @throws NullPointerException
+		 *             If <code>algo == null</code>
+		 */
+		public Incremental(ALGO_HASH algo) throws NullPointerException {
+			this.digester = Digester.getMessageDigest(this.algo = algo);
+		}
+
+		/**
+		 * @return <code>this.algo</code>.
+		 */
+		public ALGO_HASH algo() {
+			return this.algo;
+		}
+
+		/**
+		 * @return The number of bytes digested since the last finish.
+		 */
+		public long length() {
+			return this.length;
+		}
+
+		/**
+		 * @param data
+		 *            the given byte array
+		 * 
+		 * @return <code>this</code>.
+		 * 
+		 * @throws NullPointerException
+		 *             If <code>data == null</code>
+		 */
+		public Incremental update(byte[] data) throws NullPointerException {
+			return this.update(data, 0, data.length);
+		}
+
+		/**
+		 * @param data
+		 *            the given byte array
+		 * 
+		 * @param offset
+		 *            the offset of the range in <code>data</code>
+		 * 
+		 * @param length
+		 *            the length of the range
+		 * 
+		 * @return <code>this</code>.
+		 * 
+		 * @throws NullPointerException
+		 *             If <code>data == null</code>
+		 * 
+		 * @throws IllegalArgumentException
+		 *             If the range is out of bounds
+		 */
+		public Incremental update(byte[] data, int offset, int length)
+				throws NullPointerException, IllegalArgumentException {
+			this.digester.update(data, offset, length);
+			this.length += length;
+			return this;
+		}
+
+		/**
+		 * Digest the remaining bytes of the given buffer (whose position then reaches its limit).
+		 * 
+		 * @param data
+		 *            the given buffer
+		 * 
+		 * @return <code>this</code>.
+		 * 
+		 * @throws NullPointerException
+		 *             If <code>data == null</code>
+		 */
+		public Incremental update(ByteBuffer data) throws NullPointerException {
+			this.length += data.remaining();
+			this.digester.update(data);
+			return this;
+		}
+
+		/**
+		 * Digest the rest of the given stream (which is not closed).
+		 * 
+		 * @param in
+		 *            the given stream
+		 * 
+		 * @return <code>this</code>.
+		 * 
+		 * @throws NullPointerException
+		 *             If <code>in == null</code>
+		 * 
+		 * @throws IOException
+		 *             If an I/O error occurs
+		 */
+		public Incremental update(InputStream in) throws NullPointerException, IOException {
+			this.length += Digester.update(this.digester, in);
+			return this;
+		}
+
+		/**
+		 * Digest the rest of the given channel (which is not closed).
+		 * 
+		 * @param in
+		 *            the given channel
+		 * 
+		 * @return <code>this</code>.
+		 * 
+		 * @throws NullPointerException
+		 *             If <code>in == null</code>
+		 * 
+		 * @throws IOException
+		 *             If an I/O error occurs
+		 */
+		public Incremental update(ReadableByteChannel in) throws NullPointerException, IOException {
+			this.length += Digester.update(this.digester, in);
+			return this;
+		}
+
+		/**
+		 * Complete the digest and reset the calling object for a new one.
+		 * 
+		 * @return The digest of the bytes digested since the last finish.
+		 */
+		public byte[] finish() {
+			this.length = 0;
+			return this.digester.digest();
+		}
+	}
 
 	/**
 	 * Prevent instantiation.
@@ -88,46 +273,230 @@ public class Digester {
 	}
 
 	/**
-	 * Initialize <code>Digester.digesters[algo.ordinal()]</code> using the following:
+	 * @param algo
+	 *            the given hashing algorithm
 	 * 
-	 * <pre>
-	 * <code>
-	 * if (Digester.digesters == null) {
-	 * 	Digester.digesters = new MessageDigest[ALGO_HASH.values().length];
-	 * }
-	 * 
-	 * final int index = algo.ordinal();
-	 * if (Digester.digesters[index] == null) {
-	 * 	Digester.digesters[index] = Digester.getMessageDigest(algo);
-	 * }
-	 * </code>
-	 * </pre>
+	 * @return The digester of the given algorithm owned by the calling thread (reset, i.e., ready for a new
+	 *         digest).
 	 * 
+	 * @throws NullPointerException
+	 *             If <code>algo == null</code>
+	 */
+	protected static MessageDigest digester(ALGO_HASH algo) throws NullPointerException {
+		final MessageDigest[] digesters = Digester.DIGESTERS.get();
+		final int index = algo.ordinal();
+		MessageDigest result = digesters[index];
+		if (result == null) {
+			// Executed at most once per thread and algorithm.
+			result = digesters[index] = Digester.getMessageDigest(algo);
+		} else {
+			result.reset();
+		}
+		return result;
+	}
+
+	/**
 	 * @param algo
 	 *            the given hashing algorithm
 	 * 
 	 * @param data
 	 *            the given byte array
 	 * 
-	 * @return <code>Digester.digesters[algo.ordinal()].digest(data)</code>.
+	 * @return The digest of the given byte array, computed by the digester of the calling thread.
 	 * 
 	 * @throws NullPointerException
 	 *             If <code>(algo == null) || (data == null)</code>
 	 */
 	public static byte[] digest(ALGO_HASH algo, byte[] data) throws NullPointerException {
-		// Construct Digester.digesters if needed. Executed at most once.
-		if (Digester.digesters == null) {
-			Digester.digesters = new MessageDigest[ALGO_HASH.values().length];
+		if (data == null) {
+			throw new NullPointerException();
 		}
+		return Digester.digester(algo).digest(data);
+	}
 
-		// Construct Digester.digesters[index] if needed. Executed at most once.
-		final int index = algo.ordinal();
-		MessageDigest digester = Digester.digesters[index];
-		if (digester == null) {
-			digester = Digester.digesters[index] = Digester.getMessageDigest(algo);
+	/**
+	 * Digest the rest of the given stream (which is not closed) through a reused buffer.
+	 * 
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param in
+	 *            the given stream
+	 * 
+	 * @return The digest.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (in == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	public static byte[] digest(ALGO_HASH algo, InputStream in) throws NullPointerException, IOException {
+		final MessageDigest digester = Digester.digester(algo);
+		Digester.update(digester, in);
+		return digester.digest();
+	}
+
+	/**
+	 * Digest the rest of the given channel (which is not closed) through a reused buffer.
+	 * 
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param in
+	 *            the given channel
+	 * 
+	 * @return The digest.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (in == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	public static byte[] digest(ALGO_HASH algo, ReadableByteChannel in) throws NullPointerException, IOException {
+		final MessageDigest digester = Digester.digester(algo);
+		Digester.update(digester, in);
+		return digester.digest();
+	}
+
+	/**
+	 * Digest the given file, memory-mapped in windows of <code>Digester.MAP_SIZE</code> bytes (so that it
+	 * never goes through the heap).
+	 * 
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param file
+	 *            the given file
+	 * 
+	 * @return The digest.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (file == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	public static byte[] digest(ALGO_HASH algo, Path file) throws NullPointerException, IOException {
+		final MessageDigest digester = Digester.digester(algo);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			for (long position = 0; position < size; position += Digester.MAP_SIZE) {
+				digester.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(Digester.MAP_SIZE, size - position)));
+			}
+		}
+		return digester.digest();
+	}
+
+	/**
+	 * Feed the rest of the given stream to the given digester through the buffer of the calling thread.
+	 * 
+	 * @param digester
+	 *            the given digester
+	 * 
+	 * @param in
+	 *            the given stream
+	 * 
+	 * @return The number of bytes read.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>in == null</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	private static long update(MessageDigest digester, InputStream in) throws NullPointerException, IOException {
+		final byte[] buffer = Digester.BUFFERS.get().array();
+		long result = 0;
+		for (int n; (n = in.read(buffer)) != -1;) {
+			digester.update(buffer, 0, n);
+			result += n;
+		}
+		return result;
+	}
+
+	/**
+	 * Feed the rest of the given channel to the given digester through the buffer of the calling thread.
+	 * 
+	 * @param digester
+	 *            the given digester
+	 * 
+	 * @param in
+	 *            the given channel
+	 * 
+	 * @return The number of bytes read.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>in == null</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	private static long update(MessageDigest digester, ReadableByteChannel in)
+			throws NullPointerException, IOException {
+		final ByteBuffer buffer = Digester.BUFFERS.get();
+		long result = 0;
+		buffer.clear();
+		for (int n; (n = in.read(buffer)) != -1;) {
+			buffer.flip();
+			digester.update(buffer);
+			buffer.clear();
+			result += n;
 		}
+		return result;
+	}
 
-		// Compute and return the digested byte[].
-		return digester.digest(data);
+	/**
+	 * Digest the given byte arrays in parallel.
+	 * 
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param data
+	 *            the given byte arrays
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @return The digests, i.e., <code>Result[i] = Digester.digest(algo, data[i])</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (data == null) || (pool == null)</code> or if
+	 *             <code>data</code> contains a <code>null</code> element
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static byte[][] digestAll(ALGO_HASH algo, byte[][] data, ExecutorService pool)
+			throws NullPointerException, CancellationException {
+		if ((algo == null) || (pool == null)) {
+			throw new NullPointerException();
+		}
+		final byte[][] result = new byte[data.length][];
+		ConcurrentUtil.parallelFor(pool, 0, data.length, ConcurrentUtil.DEFAULT_NUM_THREADS,
+				(i) -> result[i] = Digester.digest(algo, data[i]));
+		return result;
+	}
+
+	/**
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param data
+	 *            the given byte arrays
+	 * 
+	 * @return <code>Digester.digestAll(algo, data, ForkJoinPool.commonPool())</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (data == null)</code> or if <code>data</code> contains a
+	 *             <code>null</code> element
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static byte[][] digestAll(ALGO_HASH algo, byte[][] data) throws NullPointerException, CancellationException {
+		return Digester.digestAll(algo, data, ForkJoinPool.commonPool());
 	}
 }
@@ -0,0 +1,410 @@
+package util;
+
+import java.security.InvalidParameterException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Pool of pre-generated RSA key pairs. <br>
+ * <br>
+ * 
+ * For every registered key size, the pool keeps a target number of fresh key pairs which are refilled
+ * by a bounded background executor, so that <code>take</code> usually returns immediately instead of
+ * paying for the key generation on the calling thread. When the pool is empty, <code>take</code> either
+ * waits (up to a timeout) for a pending generation or falls back to generating the key pair on the
+ * calling thread. The fill level and hit/miss counters are exposed for monitoring.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class KeyPairPool implements AutoCloseable {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.RSAUtil
+	 * 		2. util.ConcurrentUtil
+	 * </code>
+	 */
+
+	/**
+	 * The default value for the <code>target</code> argument of the <code>register</code> method.
+	 */
+	public static final int DEFAULT_TARGET = 4;
+
+	/**
+	 * The default number of background generation threads (i.e., half of the available processors so that
+	 * the refills never starve the request threads).
+	 */
+	public static final int DEFAULT_NUM_THREADS = Math.max(1, ConcurrentUtil.DEFAULT_NUM_THREADS / 2);
+
+	/**
+	 * Background generation executor.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Source of randomness for the key generation. <br>
+	 * May be <code>null</code> (i.e., the provider's default).
+	 */
+	private final SecureRandom random;
+
+	/**
+	 * Fresh key pairs per key size. <br>
+	 * Guarded by <code>this</code>.
+	 */
+	private final Map<Integer, ArrayDeque<KeyPair>> pairs = new HashMap<Integer, ArrayDeque<KeyPair>>();
+
+	/**
+	 * Target number of fresh key pairs per registered key size. <br>
+	 * Guarded by <code>this</code>.
+	 */
+	private final Map<Integer, Integer> targets = new HashMap<Integer, Integer>();
+
+	/**
+	 * Number of background generations submitted but not yet completed per key size. <br>
+	 * Guarded by <code>this</code>.
+	 */
+	private final Map<Integer, Integer> pending = new HashMap<Integer, Integer>();
+
+	/**
+	 * Number of key pairs generated in the background. <br>
+	 * Guarded by <code>this</code>.
+	 */
+	private long numGenerated = 0;
+
+	/**
+	 * Number of <code>take</code> calls served from the pool (possibly after waiting). <br>
+	 * Guarded by <code>this</code>.
+	 */
+	private long numHits = 0;
+
+	/**
+	 * Number of <code>take</code> calls which fell back to generating on the calling thread. <br>
+	 * Guarded by <code>this</code>.
+	 */
+	private long numMisses = 0;
+
+	/**
+	 * Indicates whether <code>this</code> has been closed. <br>
+	 * Guarded by <code>this</code>.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Construct an empty KeyPairPool object.
+	 * 
+	 * @param numThreads
+	 *            the maximum number of background generation threads
+	 * 
+	 * @param random
+	 *            the source of randomness (<code>null</code> for the provider's default)
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>numThreads <= 0</code>
+	 */
+	public KeyPairPool(int numThreads, SecureRandom random) throws IllegalArgumentException {
+		this.executor = ConcurrentUtil.newFixedDaemonPool(numThreads, "key-pair-pool");
+		this.random = random;
+	}
+
+	/**
+	 * Construct an empty KeyPairPool object.
+	 * 
+	 * @param numThreads
+	 *            the maximum number of background generation threads
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>numThreads <= 0</code>
+	 */
+	public KeyPairPool(int numThreads) throws IllegalArgumentException {
+		this(numThreads, null);
+	}
+
+	/**
+	 * Construct an empty KeyPairPool object with <code>KeyPairPool.DEFAULT_NUM_THREADS</code> background
+	 * generation threads.
+	 */
+	public KeyPairPool() {
+		this(KeyPairPool.DEFAULT_NUM_THREADS);
+	}
+
+	/**
+	 * Since a pool owns its executor, there is no sensible copy ctor.
+	 */
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	@Override
+	protected void finalize() { // semi-dtor
+		this.close();
+	}
+
+	/**
+	 * Stop the background generation. Key pairs which are already in the pool can still be taken, and
+	 * <code>take</code> falls back to generating on the calling thread once they run out.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			this.closed = true;
+			this.notifyAll(); // Wake up the waiting callers so that they fall back.
+		}
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * Request that the pool keeps <code>target</code> fresh key pairs of the given key size and start
+	 * refilling it in the background.
+	 * 
+	 * @param keySize
+	 *            the given key size (i.e., modulus length in bits)
+	 * 
+	 * @param target
+	 *            the given target number of fresh key pairs
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(keySize <= 0) || (target < 0)</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If <code>this</code> has been closed
+	 */
+	public synchronized void register(int keySize, int target) throws IllegalArgumentException, IllegalStateException {
+		if ((keySize <= 0) || (target < 0)) {
+			throw new IllegalArgumentException();
+		} else if (this.closed) {
+			throw new IllegalStateException();
+		}
+		this.targets.put(keySize, target);
+		this.refill(keySize);
+	}
+
+	/**
+	 * @param keySize
+	 *            the given key size (i.e., modulus length in bits)
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>keySize <= 0</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If <code>this</code> has been closed
+	 * 
+	 * @see #register(int, int)
+	 */
+	public void register(int keySize) throws IllegalArgumentException, IllegalStateException {
+		this.register(keySize, KeyPairPool.DEFAULT_TARGET);
+	}
+
+	/**
+	 * Submit enough background generations to bring the given key size up to its target. <br>
+	 * Precondition: <code>Thread.holdsLock(this)</code>
+	 * 
+	 * @param keySize
+	 *            the given key size
+	 */
+	private void refill(int keySize) {
+		final Integer target = this.targets.get(keySize);
+		if ((target == null) || this.closed) {
+			return;
+		}
+		// Count the pending generations so that a slow refill is not submitted over and over again.
+		for (int missing = target - this.size(keySize) - this.pending(keySize); 0 < missing; --missing) {
+			try {
+				this.executor.execute(() -> this.generateInBackground(keySize));
+			} catch (RejectedExecutionException ex) {
+				return; // Closed concurrently.
+			}
+			this.pending.merge(keySize, 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Body of a background generation task.
+	 * 
+	 * @param keySize
+	 *            the given key size
+	 */
+	private void generateInBackground(int keySize) {
+		KeyPair pair = null;
+		try {
+			pair = this.generate(keySize);
+		} finally {
+			synchronized (this) {
+				this.pending.merge(keySize, -1, Integer::sum);
+				if (pair != null) {
+					this.pairs.computeIfAbsent(keySize, (k) -> new ArrayDeque<KeyPair>()).addLast(pair);
+					++this.numGenerated;
+					this.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param keySize
+	 *            the given key size
+	 * 
+	 * @return A key pair of the given key size generated on the calling thread.
+	 * 
+	 * @throws InvalidParameterException
+	 *             Thrown by <code>KeyPairGenerator.initialize(keySize)</code>
+	 */
+	private KeyPair generate(int keySize) throws InvalidParameterException {
+		// KeyPairGenerator is not thread-safe, so every generation uses its own (cheap to get) instance.
+		final KeyPairGenerator generator = RSAUtil.getKeyPairGenerator();
+		if (this.random == null) {
+			generator.initialize(keySize);
+		} else {
+			generator.initialize(keySize, this.random);
+		}
+		return generator.generateKeyPair();
+	}
+
+	/**
+	 * Remove and return a fresh key pair of the given key size. If the pool is empty and a background
+	 * generation of that size is pending, then wait for it for at most <code>timeoutMillis</code>
+	 * milliseconds. Otherwise (or once the timeout expires), fall back to generating the key pair on the
+	 * calling thread. Either way, the background refill of the key size is resumed. <br>
+	 * Postcondition: <code>Result != null</code>
+	 * 
+	 * @param keySize
+	 *            the given key size (i.e., modulus length in bits)
+	 * 
+	 * @param timeoutMillis
+	 *            the maximum number of milliseconds to wait for a pending generation
+	 * 
+	 * @return The resulting KeyPair object.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>timeoutMillis < 0</code>
+	 * 
+	 * @throws InvalidParameterException
+	 *             If the key pair was generated on the calling thread and
+	 *             <code>KeyPairGenerator.initialize(keySize)</code> threw it
+	 */
+	public KeyPair take(int keySize, long timeoutMillis) throws IllegalArgumentException, InvalidParameterException {
+		if (timeoutMillis < 0) {
+			throw new IllegalArgumentException();
+		}
+		// 0 <= timeoutMillis
+
+		synchronized (this) {
+			final long deadline = System.currentTimeMillis() + timeoutMillis;
+			try {
+				while (true) {
+					final ArrayDeque<KeyPair> deque = this.pairs.get(keySize);
+					final KeyPair result = (deque == null) ? null : deque.pollFirst();
+					if (result != null) {
+						++this.numHits;
+						return result;
+					}
+					// Waiting only makes sense while a generation of this size is on its way.
+					final long remaining = deadline - System.currentTimeMillis();
+					if ((remaining <= 0) || this.closed || (this.pending(keySize) == 0)) {
+						++this.numMisses;
+						break;
+					}
+					this.wait(remaining);
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				++this.numMisses;
+			} finally {
+				this.refill(keySize);
+			}
+		}
+		return this.generate(keySize);
+	}
+
+	/**
+	 * @param keySize
+	 *            the given key size (i.e., modulus length in bits)
+	 * 
+	 * @return <code>this.take(keySize, 0)</code> (i.e., never waits for a pending generation).
+	 * 
+	 * @throws InvalidParameterException
+	 *             If the key pair was generated on the calling thread and
+	 *             <code>KeyPairGenerator.initialize(keySize)</code> threw it
+	 */
+	public KeyPair take(int keySize) throws InvalidParameterException {
+		return this.take(keySize, 0);
+	}
+
+	/**
+	 * @param keySize
+	 *            the given key size
+	 * 
+	 * @return The number of fresh key pairs of the given key size.
+	 */
+	public synchronized int size(int keySize) {
+		final ArrayDeque<KeyPair> deque = this.pairs.get(keySize);
+		return ((deque == null) ? 0 : deque.size());
+	}
+
+	/**
+	 * @param keySize
+	 *            the given key size
+	 * 
+	 * @return The target number of fresh key pairs of the given key size (0 if it is not registered).
+	 */
+	public synchronized int target(int keySize) {
+		return this.targets.getOrDefault(keySize, 0);
+	}
+
+	/**
+	 * @param keySize
+	 *            the given key size
+	 * 
+	 * @return The number of pending background generations of the given key size.
+	 */
+	public synchronized int pending(int keySize) {
+		return this.pending.getOrDefault(keySize, 0);
+	}
+
+	/**
+	 * @return The number of key pairs generated in the background so far.
+	 */
+	public synchronized long getNumGenerated() {
+		return this.numGenerated;
+	}
+
+	/**
+	 * @return The number of <code>take</code> calls served from the pool so far.
+	 */
+	public synchronized long getNumHits() {
+		return this.numHits;
+	}
+
+	/**
+	 * @return The number of <code>take</code> calls which fell back to generating on the calling thread
+	 *         so far.
+	 */
+	public synchronized long getNumMisses() {
+		return this.numMisses;
+	}
+
+	/**
+	 * @return A summary of the fill levels and counters, e.g.,
+	 *         <code>"{2048: 3/4 (+1 pending)} generated=9, hits=5, misses=1"</code>.
+	 */
+	@Override
+	public synchronized String toString() {
+		final StringBuilder result = new StringBuilder("{");
+		for (final Map.Entry<Integer, Integer> e : this.targets.entrySet()) {
+			final int keySize = e.getKey();
+			if (result.length() != 1) {
+				result.append(", ");
+			}
+			result.append(keySize).append(": ").append(this.size(keySize)).append('/').append(e.getValue())
+					.append(" (+").append(this.pending(keySize)).append(" pending)");
+		}
+		return result.append("} generated=").append(this.numGenerated).append(", hits=").append(this.numHits)
+				.append(", misses=").append(this.numMisses).toString();
+	}
+}
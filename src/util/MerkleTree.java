@@ -0,0 +1,532 @@
+package util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import util.Digester.ALGO_HASH;
+
+/**
+ * Merkle tree digest of large inputs: the input is split into leaves of a fixed size which are hashed in
+ * parallel, and the interior nodes are combined level by level up to the root. As in RFC 6962, a leaf
+ * hash is <code>H(0x00 || leaf)</code> and an interior node hash is <code>H(0x01 || left || right)</code>;
+ * the last node of a level without a sibling is promoted unchanged to the next level. Beside the root,
+ * the tree yields inclusion proofs of its leaves, and updating one leaf only rehashes its path to the
+ * root. Not thread-safe.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class MerkleTree {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.Digester
+	 * 		2. util.ConcurrentUtil
+	 * </code>
+	 */
+
+	/**
+	 * The default size in bytes of a leaf.
+	 */
+	public static final int DEFAULT_LEAF_SIZE = 1 << 20;
+
+	/**
+	 * The prefix of the hash of a leaf.
+	 */
+	private static final byte LEAF_PREFIX = 0x00;
+
+	/**
+	 * The prefix of the hash of an interior node.
+	 */
+	private static final byte NODE_PREFIX = 0x01;
+
+	/**
+	 * The minimum number of interior nodes hashed by one task.
+	 */
+	private static final int MIN_NODES_PER_TASK = 1 << 10;
+
+	/**
+	 * Read buffer of the calling thread (of <code>Digester.BUFFER_SIZE</code> bytes), reused across calls.
+	 */
+	private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal
+			.withInitial(() -> ByteBuffer.allocate(Digester.BUFFER_SIZE));
+
+	/**
+	 * The hashing algorithm.
+	 */
+	private final ALGO_HASH algo;
+
+	/**
+	 * The size in bytes of a leaf.
+	 */
+	private final int leafSize;
+
+	/**
+	 * The hashes of the levels, from the leaves (<code>this.levels[0]</code>) to the root
+	 * (<code>this.levels[this.levels.length - 1][0]</code>).
+	 */
+	private final byte[][][] levels;
+
+	/**
+	 * Construct a MerkleTree object of the given leaf hashes, and hash its interior nodes.
+	 * 
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param leafSize
+	 *            the given size in bytes of a leaf
+	 * 
+	 * @param leaves
+	 *            the given (non-empty) leaf hashes
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	private MerkleTree(ALGO_HASH algo, int leafSize, byte[][] leaves, ExecutorService pool)
+			throws CancellationException {
+		this.algo = algo;
+		this.leafSize = leafSize;
+
+		int numLevels = 1;
+		for (int size = leaves.length; size != 1; size = (size + 1) >>> 1) {
+			++numLevels;
+		}
+		this.levels = new byte[numLevels][][];
+		this.levels[0] = leaves;
+		for (int k = 1; k != numLevels; ++k) {
+			final int size = (this.levels[k - 1].length + 1) >>> 1;
+			this.levels[k] = new byte[size][];
+			final int level = k;
+			ConcurrentUtil.parallelFor(pool, 0, size,
+					Math.min(ConcurrentUtil.DEFAULT_NUM_THREADS, 1 + size / MerkleTree.MIN_NODES_PER_TASK),
+					i -> this.rehash(level, i));
+		}
+	}
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	/**
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param data
+	 *            the given byte array
+	 * 
+	 * @param leafSize
+	 *            the given size in bytes of a leaf
+	 * 
+	 * @param pool
+	 *            the given pool which hashes the leaves and the interior nodes
+	 * 
+	 * @return The Merkle tree of the given byte array (of a single empty leaf if
+	 *         <code>data.length == 0</code>).
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (data == null) || (pool == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>leafSize <= 0</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static MerkleTree build(ALGO_HASH algo, byte[] data, int leafSize, ExecutorService pool)
+			throws NullPointerException, IllegalArgumentException, CancellationException {
+		if ((algo == null) || (pool == null)) {
+			throw new NullPointerException();
+		}
+		final byte[][] leaves = new byte[MerkleTree.leafCount(data.length, leafSize)][];
+		ConcurrentUtil.parallelFor(pool, 0, leaves.length, ConcurrentUtil.DEFAULT_NUM_THREADS, i -> {
+			final int offset = i * leafSize;
+			leaves[i] = MerkleTree.leafHash(algo, data, offset, Math.min(leafSize, data.length - offset));
+		});
+		return new MerkleTree(algo, leafSize, leaves, pool);
+	}
+
+	/**
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param data
+	 *            the given byte array
+	 * 
+	 * @return
+	 *         <code>MerkleTree.build(algo, data, MerkleTree.DEFAULT_LEAF_SIZE, ForkJoinPool.commonPool())</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (data == null)</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static MerkleTree build(ALGO_HASH algo, byte[] data) throws NullPointerException, CancellationException {
+		return MerkleTree.build(algo, data, MerkleTree.DEFAULT_LEAF_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Build the Merkle tree of the given file, whose leaves are read by positional reads of the threads of
+	 * the given pool.
+	 * 
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param file
+	 *            the given file
+	 * 
+	 * @param leafSize
+	 *            the given size in bytes of a leaf
+	 * 
+	 * @param pool
+	 *            the given pool which hashes the leaves and the interior nodes
+	 * 
+	 * @return The Merkle tree of the given file (of a single empty leaf if the file is empty).
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (file == null) || (pool == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>leafSize <= 0</code> or if the file has more than <code>Integer.MAX_VALUE</code>
+	 *             leaves
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static MerkleTree build(ALGO_HASH algo, Path file, int leafSize, ExecutorService pool)
+			throws NullPointerException, IllegalArgumentException, IOException, CancellationException {
+		if ((algo == null) || (pool == null)) {
+			throw new NullPointerException();
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			final byte[][] leaves = new byte[MerkleTree.leafCount(size, leafSize)][];
+			ConcurrentUtil.parallelFor(pool, 0, leaves.length, ConcurrentUtil.DEFAULT_NUM_THREADS, i -> {
+				final MessageDigest digester = Digester.digester(algo);
+				digester.update(MerkleTree.LEAF_PREFIX);
+				final ByteBuffer buffer = MerkleTree.BUFFERS.get();
+				final long end = Math.min(size, (long) (i + 1) * leafSize);
+				try {
+					for (long position = (long) i * leafSize; position < end;) {
+						buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+						final int n = channel.read(buffer, position);
+						if (n == -1) { // i.e., the file shrank meanwhile
+							throw new IOException("Unexpected end of file " + file);
+						}
+						position += n;
+						digester.update(buffer.flip());
+					}
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+				leaves[i] = digester.digest();
+			});
+			return new MerkleTree(algo, leafSize, leaves, pool);
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/**
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param file
+	 *            the given file
+	 * 
+	 * @return
+	 *         <code>MerkleTree.build(algo, file, MerkleTree.DEFAULT_LEAF_SIZE, ForkJoinPool.commonPool())</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (file == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the file has more than <code>Integer.MAX_VALUE</code> leaves
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static MerkleTree build(ALGO_HASH algo, Path file)
+			throws NullPointerException, IllegalArgumentException, IOException, CancellationException {
+		return MerkleTree.build(algo, file, MerkleTree.DEFAULT_LEAF_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @return The hashing algorithm.
+	 */
+	public ALGO_HASH algo() {
+		return this.algo;
+	}
+
+	/**
+	 * @return The size in bytes of a leaf.
+	 */
+	public int leafSize() {
+		return this.leafSize;
+	}
+
+	/**
+	 * @return The number of leaves.
+	 */
+	public int leafCount() {
+		return this.levels[0].length;
+	}
+
+	/**
+	 * @return The root hash.
+	 */
+	public byte[] root() {
+		return this.levels[this.levels.length - 1][0].clone();
+	}
+
+	/**
+	 * @param index
+	 *            the given leaf index
+	 * 
+	 * @return The hash of the leaf of the given index.
+	 * 
+	 * @throws IndexOutOfBoundsException
+	 *             If <code>(index < 0) || (this.leafCount() <= index)</code>
+	 */
+	public byte[] leaf(int index) throws IndexOutOfBoundsException {
+		return this.levels[0][index].clone();
+	}
+
+	/**
+	 * @param index
+	 *            the given leaf index
+	 * 
+	 * @return The inclusion proof of the leaf of the given index, i.e., the hashes of the siblings on its
+	 *         path to the root from the bottom up (levels where the path has no sibling are skipped).
+	 * 
+	 * @throws IndexOutOfBoundsException
+	 *             If <code>(index < 0) || (this.leafCount() <= index)</code>
+	 */
+	public byte[][] proof(int index) throws IndexOutOfBoundsException {
+		if ((index < 0) || (this.leafCount() <= index)) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		final byte[][] siblings = new byte[this.levels.length - 1][];
+		int count = 0;
+		for (int k = 0; k != this.levels.length - 1; ++k, index >>>= 1) {
+			final int sibling = index ^ 1;
+			if (sibling < this.levels[k].length) {
+				siblings[count++] = this.levels[k][sibling].clone();
+			}
+		}
+		final byte[][] result = new byte[count][];
+		System.arraycopy(siblings, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Replace the leaf of the given index, and rehash its path to the root only.
+	 * 
+	 * @param index
+	 *            the given leaf index
+	 * 
+	 * @param data
+	 *            the given byte array
+	 * 
+	 * @param offset
+	 *            the offset of the new leaf in <code>data</code>
+	 * 
+	 * @param length
+	 *            the length of the new leaf
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>data == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>this.leafSize() < length</code> or if the range is out of bounds
+	 * 
+	 * @throws IndexOutOfBoundsException
+	 *             If <code>(index < 0) || (this.leafCount() <= index)</code>
+	 */
+	public void update(int index, byte[] data, int offset, int length)
+			throws NullPointerException, IllegalArgumentException, IndexOutOfBoundsException {
+		if ((index < 0) || (this.leafCount() <= index)) {
+			throw new IndexOutOfBoundsException(index);
+		} else if (this.leafSize < length) {
+			throw new IllegalArgumentException();
+		}
+		this.levels[0][index] = MerkleTree.leafHash(this.algo, data, offset, length);
+		for (int k = 1; k != this.levels.length; ++k) {
+			index >>>= 1;
+			this.rehash(k, index);
+		}
+	}
+
+	/**
+	 * @param index
+	 *            the given leaf index
+	 * 
+	 * @param data
+	 *            the given new leaf
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>data == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>this.leafSize() < data.length</code>
+	 * 
+	 * @throws IndexOutOfBoundsException
+	 *             If <code>(index < 0) || (this.leafCount() <= index)</code>
+	 */
+	public void update(int index, byte[] data)
+			throws NullPointerException, IllegalArgumentException, IndexOutOfBoundsException {
+		this.update(index, data, 0, data.length);
+	}
+
+	/**
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param root
+	 *            the given root hash
+	 * 
+	 * @param index
+	 *            the given leaf index
+	 * 
+	 * @param leafCount
+	 *            the given number of leaves of the tree
+	 * 
+	 * @param leaf
+	 *            the given leaf
+	 * 
+	 * @param proof
+	 *            the given inclusion proof, as returned by <code>proof(index)</code>
+	 * 
+	 * @return <code>true</code> if and only if the given proof proves that the given leaf is the leaf of the
+	 *         given index of a tree of the given number of leaves and of the given root.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algo == null) || (root == null) || (leaf == null) || (proof == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(index < 0) || (leafCount <= index)</code>
+	 */
+	public static boolean verify(ALGO_HASH algo, byte[] root, int index, int leafCount, byte[] leaf,
+			byte[][] proof) throws NullPointerException, IllegalArgumentException {
+		if ((index < 0) || (leafCount <= index)) {
+			throw new IllegalArgumentException();
+		} else if ((root == null) || (proof == null)) {
+			throw new NullPointerException();
+		}
+		byte[] hash = MerkleTree.leafHash(algo, leaf, 0, leaf.length);
+		int count = 0;
+		for (int size = leafCount; size != 1; size = (size + 1) >>> 1, index >>>= 1) {
+			if ((index & 1) == 1) {
+				if (count == proof.length) {
+					return false;
+				}
+				hash = MerkleTree.nodeHash(algo, proof[count++], hash);
+			} else if (index + 1 < size) {
+				if (count == proof.length) {
+					return false;
+				}
+				hash = MerkleTree.nodeHash(algo, hash, proof[count++]);
+			}
+		}
+		return (count == proof.length) && MessageDigest.isEqual(hash, root);
+	}
+
+	/**
+	 * Recompute the hash of the node of the given index of the given level from its children.
+	 * 
+	 * @param level
+	 *            the given level (at least 1)
+	 * 
+	 * @param index
+	 *            the given node index
+	 */
+	private void rehash(int level, int index) {
+		final byte[][] children = this.levels[level - 1];
+		final int left = index << 1;
+		this.levels[level][index] = (left + 1 < children.length)
+				? MerkleTree.nodeHash(this.algo, children[left], children[left + 1])
+				: children[left]; // promoted unchanged (never mutated, so sharing is safe)
+	}
+
+	/**
+	 * @param length
+	 *            the given input length
+	 * 
+	 * @param leafSize
+	 *            the given size in bytes of a leaf
+	 * 
+	 * @return The number of leaves of an input of the given length (at least 1).
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>leafSize <= 0</code> or if the number of leaves exceeds
+	 *             <code>Integer.MAX_VALUE</code>
+	 */
+	private static int leafCount(long length, int leafSize) throws IllegalArgumentException {
+		if (leafSize <= 0) {
+			throw new IllegalArgumentException();
+		}
+		final long result = Math.max(1, (length + leafSize - 1) / leafSize);
+		if (Integer.MAX_VALUE < result) {
+			throw new IllegalArgumentException();
+		}
+		return (int) result;
+	}
+
+	/**
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param data
+	 *            the given byte array
+	 * 
+	 * @param offset
+	 *            the offset of the leaf in <code>data</code>
+	 * 
+	 * @param length
+	 *            the length of the leaf
+	 * 
+	 * @return <code>H(0x00 || leaf)</code>, computed by the digester of the calling thread.
+	 */
+	private static byte[] leafHash(ALGO_HASH algo, byte[] data, int offset, int length) {
+		final MessageDigest digester = Digester.digester(algo);
+		digester.update(MerkleTree.LEAF_PREFIX);
+		digester.update(data, offset, length);
+		return digester.digest();
+	}
+
+	/**
+	 * @param algo
+	 *            the given hashing algorithm
+	 * 
+	 * @param left
+	 *            the given left child hash
+	 * 
+	 * @param right
+	 *            the given right child hash
+	 * 
+	 * @return <code>H(0x01 || left || right)</code>, computed by the digester of the calling thread.
+	 */
+	private static byte[] nodeHash(ALGO_HASH algo, byte[] left, byte[] right) {
+		final MessageDigest digester = Digester.digester(algo);
+		digester.update(MerkleTree.NODE_PREFIX);
+		digester.update(left);
+		digester.update(right);
+		return digester.digest();
+	}
+}
@@ -0,0 +1,145 @@
+package util;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import util.Digester.ALGO_HASH;
+
+/**
+ * JUnit4 tests for MerkleTree, against the SHA-256 test vectors of RFC 6962 (as used by Certificate
+ * Transparency).
+ * 
+ * @author Ashkan Moatamed
+ */
+public class MerkleTreeTest {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.MerkleTree
+	 * 		2. util.Digester
+	 * 		3. util.Hex
+	 * </code>
+	 */
+
+	private static final boolean PRINT = false;
+
+	/**
+	 * The leaves of the test vectors, as hex strings.
+	 */
+	private static final String[] LEAVES = { "", "00", "10", "2021", "3031", "40414243", "5051525354555657",
+			"606162636465666768696a6b6c6d6e6f" };
+
+	/**
+	 * The roots of the trees of the first 1, 2, ..., 8 leaves, as hex strings.
+	 */
+	private static final String[] ROOTS = { "6e340b9cffb37a989ca544e6bb780a2c78901d3fb33738768511a30617afa01d",
+			"fac54203e7cc696cf0dfcb42c92a1d9dbaf70ad9e621f4bd8d98662f00e3c125",
+			"aeb6bcfe274b70a14fb067a5e5578264db0fa9b51af5e0ba159158f329e06e77",
+			"d37ee418976dd95753c1c73862b9398fa2a2cf9b4ff0fdfe8b30cd95209614b7",
+			"4e3bbb1f7b478dcfe71fb631631519a3bca12c9aefca1612bfce4c13a86264d4",
+			"76e67dadbcdf1e10e1b74ddc608abd2f98dfb16fbce75277b5232a127f2087ef",
+			"ddb89be403809e325750d3d263cd78929c2942b7942a34b77e122c9594a74c8c",
+			"5dc9da79a70659a9ad559cb701ded9a2ab9d823aad2f4960cfe370eff4604328" };
+
+	/**
+	 * The inclusion proofs (audit paths) of some leaves, as <code>{ leaf count, leaf index }</code>.
+	 */
+	private static final int[][] PROOF_CASES = { { 8, 0 }, { 7, 3 }, { 7, 6 }, { 5, 4 }, { 3, 2 } };
+
+	/**
+	 * The inclusion proofs of <code>MerkleTreeTest.PROOF_CASES</code> in the same order, as hex strings.
+	 */
+	private static final String[][] PROOFS = {
+			{ "96a296d224f285c67bee93c30f8a309157f0daa35dc5b87e410b78630a09cfc7",
+					"5f083f0a1a33ca076a95279832580db3e0ef4584bdff1f54c8a360f50de3031e",
+					"6b47aaf29ee3c2af9af889bc1fb9254dabd31177f16232dd6aab035ca39bf6e4" },
+			{ "0298d122906dcfc10892cb53a73992fc5b9f493ea4c9badb27b791b4127a7fe7",
+					"fac54203e7cc696cf0dfcb42c92a1d9dbaf70ad9e621f4bd8d98662f00e3c125",
+					"837dbb152e9b079010717e84e865da4ebc0fa198a806d59d31bf15accef22d0e" },
+			{ "0ebc5d3437fbe2db158b9f126a1d118e308181031d0a949f8dededebc558ef6a",
+					"d37ee418976dd95753c1c73862b9398fa2a2cf9b4ff0fdfe8b30cd95209614b7" },
+			{ "d37ee418976dd95753c1c73862b9398fa2a2cf9b4ff0fdfe8b30cd95209614b7" },
+			{ "fac54203e7cc696cf0dfcb42c92a1d9dbaf70ad9e621f4bd8d98662f00e3c125" } };
+
+	/**
+	 * The leaf size of the test trees (the longest test leaf is 16 bytes).
+	 */
+	private static final int LEAF_SIZE = 16;
+
+	/**
+	 * @param leafCount
+	 *            the given number of leaves
+	 * 
+	 * @return The tree of the first <code>leafCount</code> leaves of the test vectors, built as a tree of
+	 *         <code>leafCount</code> zero leaves and then updated leaf by leaf (since the test leaves have
+	 *         different lengths).
+	 */
+	private static MerkleTree tree(int leafCount) {
+		final MerkleTree result = MerkleTree.build(ALGO_HASH.SHA_256, new byte[leafCount * MerkleTreeTest.LEAF_SIZE],
+				MerkleTreeTest.LEAF_SIZE, ForkJoinPool.commonPool());
+		for (int i = 0; i != leafCount; ++i) {
+			result.update(i, Hex.toBytes(MerkleTreeTest.LEAVES[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Testing MerkleTree::root() of the trees of the first 1, 2, ..., 8 leaves of the test vectors, which
+	 * covers perfect trees and trees whose last node is promoted at one or more levels.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test01() {
+		for (int n = 1; n <= MerkleTreeTest.ROOTS.length; ++n) {
+			final MerkleTree tree = MerkleTreeTest.tree(n);
+			assertTrue("Correct leafCount", tree.leafCount() == n);
+			assertTrue("Correct root", Arrays.equals(tree.root(), Hex.toBytes(MerkleTreeTest.ROOTS[n - 1])));
+
+			if (MerkleTreeTest.PRINT) {
+				System.out.println("test01 root of " + n + " leaves is " + Hex.toString(tree.root()));
+			}
+		}
+	}
+
+	/**
+	 * Testing MerkleTree::proof(int) against the audit paths of the test vectors, and
+	 * MerkleTree::verify(...) on the proof of every leaf of every tree, as well as on a wrong leaf, a wrong
+	 * index, and a truncated proof.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test02() {
+		for (int c = 0; c != MerkleTreeTest.PROOF_CASES.length; ++c) {
+			final byte[][] proof = MerkleTreeTest.tree(MerkleTreeTest.PROOF_CASES[c][0])
+					.proof(MerkleTreeTest.PROOF_CASES[c][1]);
+			boolean equal = proof.length == MerkleTreeTest.PROOFS[c].length;
+			for (int i = 0; equal && (i != proof.length); ++i) {
+				equal = Arrays.equals(proof[i], Hex.toBytes(MerkleTreeTest.PROOFS[c][i]));
+			}
+			assertTrue("Correct proof", equal);
+		}
+
+		for (int n = 1; n <= MerkleTreeTest.ROOTS.length; ++n) {
+			final MerkleTree tree = MerkleTreeTest.tree(n);
+			final byte[] root = tree.root();
+			for (int m = 0; m != n; ++m) {
+				final byte[] leaf = Hex.toBytes(MerkleTreeTest.LEAVES[m]);
+				final byte[][] proof = tree.proof(m);
+				assertTrue("Proof verified", MerkleTree.verify(ALGO_HASH.SHA_256, root, m, n, leaf, proof));
+
+				final byte[] wrongLeaf = Arrays.copyOf(leaf, leaf.length + 1);
+				assertTrue("Wrong leaf rejected",
+						!MerkleTree.verify(ALGO_HASH.SHA_256, root, m, n, wrongLeaf, proof));
+				if (1 < n) {
+					assertTrue("Wrong index rejected",
+							!MerkleTree.verify(ALGO_HASH.SHA_256, root, (m + 1) % n, n, leaf, proof));
+					assertTrue("Truncated proof rejected", !MerkleTree.verify(ALGO_HASH.SHA_256, root, m, n, leaf,
+							Arrays.copyOf(proof, proof.length - 1)));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,494 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import util.Digester.ALGO_HASH;
+
+/**
+ * Single pass multi-algorithm hashing: every chunk of the data is read once and fed to the digesters of
+ * several hashing algorithms, and the digests come back as an <code>EnumMap&lt;ALGO_HASH, byte[]&gt;</code>.
+ * In the threaded mode, every algorithm runs on its own thread, and the reader hands the chunks over
+ * through a ring of <code>MultiDigester.RING_SIZE</code> reused read-only buffers, each of which returns
+ * to the reader once every algorithm has digested it.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class MultiDigester {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.Digester
+	 * 		2. util.ConcurrentUtil
+	 * </code>
+	 */
+
+	/**
+	 * The size in bytes of a chunk of the threaded mode.
+	 */
+	public static final int CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * The number of chunk buffers of the threaded mode.
+	 */
+	public static final int RING_SIZE = 4;
+
+	/**
+	 * The digesters.
+	 */
+	private final EnumMap<ALGO_HASH, MessageDigest> digesters = new EnumMap<ALGO_HASH, MessageDigest>(
+			ALGO_HASH.class);
+
+	/**
+	 * Construct a MultiDigester object of the given hashing algorithms.
+	 * 
+	 * @param algos
+	 *            the given hashing algorithms
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>algos == null</code> or if it contains <code>null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>algos.isEmpty()</code>
+	 */
+	public MultiDigester(Set<ALGO_HASH> algos) throws NullPointerException, IllegalArgumentException {
+		for (final ALGO_HASH algo : MultiDigester.algos(algos)) {
+			this.digesters.put(algo, Digester.getMessageDigest(algo));
+		}
+	}
+
+	/**
+	 * Construct a MultiDigester object of the given hashing algorithms.
+	 * 
+	 * @param first
+	 *            the given first hashing algorithm
+	 * 
+	 * @param rest
+	 *            the given other hashing algorithms
+	 * 
+	 * @throws NullPointerException
+	 *             If an algorithm is <code>null</code>
+	 */
+	public MultiDigester(ALGO_HASH first, ALGO_HASH... rest) throws NullPointerException {
+		this(EnumSet.of(first, rest));
+	}
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	/**
+	 * @return The hashing algorithms.
+	 */
+	public Set<ALGO_HASH> algos() {
+		return EnumSet.copyOf(this.digesters.keySet());
+	}
+
+	/**
+	 * @param data
+	 *            the given byte array
+	 * 
+	 * @param offset
+	 *            the offset of the range in <code>data</code>
+	 * 
+	 * @param length
+	 *            the length of the range
+	 * 
+	 * @return <code>this</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>data == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the range is out of bounds
+	 */
+	public MultiDigester update(byte[] data, int offset, int length)
+			throws NullPointerException, IllegalArgumentException {
+		for (final MessageDigest digester : this.digesters.values()) {
+			digester.update(data, offset, length);
+		}
+		return this;
+	}
+
+	/**
+	 * @param data
+	 *            the given byte array
+	 * 
+	 * @return <code>this.update(data, 0, data.length)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>data == null</code>
+	 */
+	public MultiDigester update(byte[] data) throws NullPointerException {
+		return this.update(data, 0, data.length);
+	}
+
+	/**
+	 * Digest the remaining bytes of the given buffer (whose position then reaches its limit).
+	 * 
+	 * @param data
+	 *            the given buffer
+	 * 
+	 * @return <code>this</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>data == null</code>
+	 */
+	public MultiDigester update(ByteBuffer data) throws NullPointerException {
+		final int position = data.position();
+		for (final MessageDigest digester : this.digesters.values()) {
+			data.position(position);
+			digester.update(data);
+		}
+		return this;
+	}
+
+	/**
+	 * Complete the digests and reset the calling object for new ones.
+	 * 
+	 * @return The digests.
+	 */
+	public EnumMap<ALGO_HASH, byte[]> finish() {
+		final EnumMap<ALGO_HASH, byte[]> result = new EnumMap<ALGO_HASH, byte[]>(ALGO_HASH.class);
+		for (final EnumMap.Entry<ALGO_HASH, MessageDigest> entry : this.digesters.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().digest());
+		}
+		return result;
+	}
+
+	/**
+	 * @param algos
+	 *            the given hashing algorithms
+	 * 
+	 * @param data
+	 *            the given byte array
+	 * 
+	 * @return The digests of the given byte array.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algos == null) || (data == null)</code> or if <code>algos</code> contains
+	 *             <code>null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>algos.isEmpty()</code>
+	 */
+	public static EnumMap<ALGO_HASH, byte[]> digest(Set<ALGO_HASH> algos, byte[] data)
+			throws NullPointerException, IllegalArgumentException {
+		if (data == null) {
+			throw new NullPointerException();
+		}
+		final EnumMap<ALGO_HASH, byte[]> result = new EnumMap<ALGO_HASH, byte[]>(ALGO_HASH.class);
+		for (final ALGO_HASH algo : MultiDigester.algos(algos)) {
+			result.put(algo, Digester.digester(algo).digest(data));
+		}
+		return result;
+	}
+
+	/**
+	 * Digest the given file in a single pass, memory-mapped in windows of <code>Digester.MAP_SIZE</code>
+	 * bytes, each of which is fed to every digester.
+	 * 
+	 * @param algos
+	 *            the given hashing algorithms
+	 * 
+	 * @param file
+	 *            the given file
+	 * 
+	 * @param threaded
+	 *            specifies whether every algorithm runs on its own thread
+	 * 
+	 * @return The digests of the given file.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algos == null) || (file == null)</code> or if <code>algos</code> contains
+	 *             <code>null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>algos.isEmpty()</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static EnumMap<ALGO_HASH, byte[]> digest(Set<ALGO_HASH> algos, Path file, boolean threaded)
+			throws NullPointerException, IllegalArgumentException, IOException, CancellationException {
+		if (threaded) {
+			try (InputStream in = Files.newInputStream(file)) {
+				return MultiDigester.digest(algos, in, true);
+			}
+		}
+		final EnumSet<ALGO_HASH> set = MultiDigester.algos(algos);
+		final List<MessageDigest> digesters = new ArrayList<MessageDigest>(set.size());
+		for (final ALGO_HASH algo : set) {
+			digesters.add(Digester.digester(algo));
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			for (long position = 0; position < size; position += Digester.MAP_SIZE) {
+				final ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(Digester.MAP_SIZE, size - position));
+				for (final MessageDigest digester : digesters) {
+					window.rewind();
+					digester.update(window);
+				}
+			}
+		}
+		return MultiDigester.finish(set, digesters);
+	}
+
+	/**
+	 * Digest the rest of the given stream (which is not closed) in a single pass.
+	 * 
+	 * @param algos
+	 *            the given hashing algorithms
+	 * 
+	 * @param in
+	 *            the given stream
+	 * 
+	 * @param threaded
+	 *            specifies whether every algorithm runs on its own thread
+	 * 
+	 * @return The digests of the rest of the given stream.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(algos == null) || (in == null)</code> or if <code>algos</code> contains
+	 *             <code>null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>algos.isEmpty()</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static EnumMap<ALGO_HASH, byte[]> digest(Set<ALGO_HASH> algos, InputStream in, boolean threaded)
+			throws NullPointerException, IllegalArgumentException, IOException, CancellationException {
+		final EnumSet<ALGO_HASH> set = MultiDigester.algos(algos);
+		if (in == null) {
+			throw new NullPointerException();
+		} else if (threaded && (1 < set.size())) {
+			return MultiDigester.digestThreaded(set, in);
+		}
+		final List<MessageDigest> digesters = new ArrayList<MessageDigest>(set.size());
+		for (final ALGO_HASH algo : set) {
+			digesters.add(Digester.digester(algo));
+		}
+		final byte[] buffer = new byte[Digester.BUFFER_SIZE];
+		for (int n; (n = in.read(buffer)) != -1;) {
+			for (final MessageDigest digester : digesters) {
+				digester.update(buffer, 0, n);
+			}
+		}
+		return MultiDigester.finish(set, digesters);
+	}
+
+	/**
+	 * Chunk buffer of the ring of the threaded mode.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	private static final class Slot {
+		/**
+		 * The end of the stream marker, shared by all of the calls (and never modified).
+		 */
+		static final Slot END = new Slot(0);
+
+		/**
+		 * The data.
+		 */
+		final byte[] data;
+
+		/**
+		 * The number of bytes of the data, or -1 for the end of the stream.
+		 */
+		int length;
+
+		/**
+		 * The number of digesters which have not digested the data yet.
+		 */
+		final AtomicInteger pending = new AtomicInteger();
+
+		/**
+		 * Construct a Slot object of the given capacity.
+		 * 
+		 * @param capacity
+		 *            the given capacity in bytes (0 for the end of the stream marker)
+		 */
+		Slot(int capacity) {
+			this.data = new byte[capacity];
+			this.length = (capacity == 0) ? -1 : 0;
+		}
+	}
+
+	/**
+	 * Body of <code>MultiDigester.digest(algos, in, true)</code>: the calling thread reads the chunks into
+	 * free slots and passes every one of them to the queue of every algorithm thread, and the last thread
+	 * to digest a slot frees it. <br>
+	 * An algorithm thread that fails keeps taking (and freeing) its slots without digesting them until the
+	 * end of the stream marker, so that the reader never waits for a slot forever, and then rethrows the
+	 * failure. The reader stops reading as soon as any algorithm thread has failed.
+	 * 
+	 * @param algos
+	 *            the given hashing algorithms
+	 * 
+	 * @param in
+	 *            the given stream
+	 * 
+	 * @return The digests of the rest of the given stream.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	private static EnumMap<ALGO_HASH, byte[]> digestThreaded(EnumSet<ALGO_HASH> algos, InputStream in)
+			throws IOException, CancellationException {
+		final BlockingQueue<Slot> free = new ArrayBlockingQueue<Slot>(MultiDigester.RING_SIZE);
+		for (int i = 0; i != MultiDigester.RING_SIZE; ++i) {
+			free.add(new Slot(MultiDigester.CHUNK_SIZE));
+		}
+
+		final ExecutorService pool = ConcurrentUtil.newFixedDaemonPool(algos.size(), "multi-digester");
+		final List<BlockingQueue<Slot>> queues = new ArrayList<BlockingQueue<Slot>>(algos.size());
+		final List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>(algos.size());
+		final AtomicBoolean failed = new AtomicBoolean();
+		try {
+			for (final ALGO_HASH algo : algos) {
+				// Room for every slot plus the end marker, so that the reader never blocks on a queue.
+				final BlockingQueue<Slot> queue = new ArrayBlockingQueue<Slot>(MultiDigester.RING_SIZE + 1);
+				queues.add(queue);
+				futures.add(pool.submit(() -> {
+					MessageDigest digester = null;
+					Throwable failure = null;
+					try {
+						digester = Digester.digester(algo);
+					} catch (Throwable ex) {
+						failure = ex;
+						failed.set(true);
+					}
+					for (Slot slot; (slot = queue.take()).length != -1;) {
+						try {
+							if (failure == null) {
+								digester.update(slot.data, 0, slot.length);
+							}
+						} catch (Throwable ex) {
+							failure = ex;
+							failed.set(true);
+						} finally {
+							// Free the slot even if digesting it failed.
+							if (slot.pending.decrementAndGet() == 0) {
+								free.add(slot);
+							}
+						}
+					}
+					if (failure != null) {
+						throw ConcurrentUtil.unchecked(failure);
+					}
+					return digester.digest();
+				}));
+			}
+
+			try {
+				while (!failed.get()) {
+					final Slot slot = free.take();
+					final int n = in.readNBytes(slot.data, 0, slot.data.length);
+					if (n == 0) {
+						break;
+					}
+					slot.length = n;
+					slot.pending.set(queues.size());
+					for (final BlockingQueue<Slot> queue : queues) {
+						queue.add(slot);
+					}
+				}
+			} finally {
+				// Stop every algorithm thread, even if reading failed.
+				for (final BlockingQueue<Slot> queue : queues) {
+					queue.add(Slot.END);
+				}
+			}
+
+			final EnumMap<ALGO_HASH, byte[]> result = new EnumMap<ALGO_HASH, byte[]>(ALGO_HASH.class);
+			int i = 0;
+			for (final ALGO_HASH algo : algos) {
+				result.put(algo, futures.get(i++).get());
+			}
+			return result;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		} catch (ExecutionException ex) {
+			throw ConcurrentUtil.unchecked(ex.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param algos
+	 *            the given hashing algorithms
+	 * 
+	 * @param digesters
+	 *            the digesters of the given hashing algorithms in the same order
+	 * 
+	 * @return The digests.
+	 */
+	private static EnumMap<ALGO_HASH, byte[]> finish(EnumSet<ALGO_HASH> algos, List<MessageDigest> digesters) {
+		final EnumMap<ALGO_HASH, byte[]> result = new EnumMap<ALGO_HASH, byte[]>(ALGO_HASH.class);
+		int i = 0;
+		for (final ALGO_HASH algo : algos) {
+			result.put(algo, digesters.get(i++).digest());
+		}
+		return result;
+	}
+
+	/**
+	 * @param algos
+	 *            the given hashing algorithms
+	 * 
+	 * @return A copy of the given hashing algorithms (in ordinal order).
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>algos == null</code> or if it contains <code>null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>algos.isEmpty()</code>
+	 */
+	private static EnumSet<ALGO_HASH> algos(Set<ALGO_HASH> algos) throws NullPointerException, IllegalArgumentException {
+		if (algos.isEmpty()) {
+			throw new IllegalArgumentException();
+		}
+		final EnumSet<ALGO_HASH> result = EnumSet.noneOf(ALGO_HASH.class);
+		for (final ALGO_HASH algo : algos) {
+			if (algo == null) {
+				throw new NullPointerException();
+			}
+			result.add(algo);
+		}
+		return result;
+	}
+}
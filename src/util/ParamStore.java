@@ -0,0 +1,892 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Persistent store of expensive to generate cryptographic parameters (i.e., safe primes,
+ * Diffie-Hellman groups, and RSA keys). <br>
+ * <br>
+ * 
+ * The parameters are kept in a compact binary file which is read in a single call on load, and every
+ * stored value is re-validated cheaply (i.e., without a full primality test) before being handed out. A
+ * background refill thread keeps a target number of fresh entries for every registered key so that
+ * callers get parameters without waiting for the generation. <br>
+ * <br>
+ * 
+ * File format (big-endian): <code>
+ * 		int MAGIC, int VERSION, int entryCount,
+ * 		entryCount times { byte type, int bitLength, int certainty, byte valueCount,
+ * 			valueCount times { int byteLength, byte[byteLength] BigInteger.toByteArray() } },
+ * 		any number of removals { byte type, int bitLength, int certainty,
+ * 			int byteLength, byte[byteLength] BigInteger.toByteArray() of the first value of the entry }
+ * </code> <br>
+ * The removals are appended by <code>this.take</code> and dropped by the next save, which rewrites the
+ * whole file. A version 1 file (which has no removals) is still read.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class ParamStore implements AutoCloseable {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.BigIntUtil
+	 * 		2. util.RSAUtil
+	 * 		3. util.RSA
+	 * 		4. util.ConcurrentUtil
+	 * </code>
+	 */
+
+	/**
+	 * File magic number (i.e., <code>"PARS"</code> in ASCII).
+	 */
+	public static final int MAGIC = 0x50415253;
+
+	/**
+	 * File format version.
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * The size in bytes of a removal record before its value bytes.
+	 */
+	private static final int REMOVAL_HEADER_SIZE = 13;
+
+	/**
+	 * The default value for the <code>target</code> argument of the <code>register</code> method.
+	 */
+	public static final int DEFAULT_TARGET = 4;
+
+	/**
+	 * The maximum time in milliseconds <code>this.close()</code> waits for the background refill thread,
+	 * whose generation in progress (e.g., of an RSA key) may ignore interrupts.
+	 */
+	public static final long CLOSE_TIMEOUT_MILLIS = 1000L;
+
+	/**
+	 * All supported parameter types.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	public static enum TYPE {
+		/**
+		 * Values: <code>{ p }</code> where <code>p</code> is a safe prime.
+		 */
+		SAFE_PRIME,
+		/**
+		 * Values: <code>{ p, g }</code> where <code>p</code> is a safe prime and <code>g</code> generates
+		 * the subgroup of prime order <code>(p - 1) / 2</code>.
+		 */
+		DH_GROUP,
+		/**
+		 * Values: <code>{ n, e, d, p, q }</code>.
+		 */
+		RSA_KEY;
+	};
+
+	/**
+	 * Store key. Immutable.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	public static final class Key {
+		/**
+		 * Parameter type. <br>
+		 * Guaranteed to be non-<code>null</code>.
+		 */
+		public final TYPE type;
+
+		/**
+		 * Bit length of the parameter (i.e., of the prime or of the modulus).
+		 */
+		public final int bitLength;
+
+		/**
+		 * Primality certainty the parameter was generated with.
+		 */
+		public final int certainty;
+
+		/**
+		 * Construct a Key object from the given attributes.
+		 * 
+		 * @param type
+		 *            the given parameter type
+		 * 
+		 * @param bitLength
+		 *            the given bit length
+		 * 
+		 * @param certainty
+		 *            the given primality certainty
+		 * 
+		 * @throws NullPointerException
+		 *             If <code>type == null</code>
+		 * 
+		 * @throws IllegalArgumentException
+		 *             If <code>bitLength < 3</code>
+		 */
+		public Key(TYPE type, int bitLength, int certainty) throws NullPointerException, IllegalArgumentException {
+			if (type == null) {
+				throw new NullPointerException();
+			} else if (bitLength < 3) {
+				throw new IllegalArgumentException();
+			}
+			this.type = type;
+			this.bitLength = bitLength;
+			this.certainty = certainty;
+		}
+
+		/**
+		 * Since this class is immutable, there is no need for a copy ctor.
+		 */
+
+		@Override
+		public String toString() {
+			return "(" + this.type + ", " + this.bitLength + ", " + this.certainty + ")";
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + this.bitLength;
+			result = prime * result + this.certainty;
+			result = prime * result + this.type.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return ((this.type == other.type) && (this.bitLength == other.bitLength)
+					&& (this.certainty == other.certainty));
+		}
+	}
+
+	/**
+	 * Backing file. <br>
+	 * Guaranteed to be non-<code>null</code>.
+	 */
+	private final Path file;
+
+	/**
+	 * Fresh entries per key. Guarded by <code>this</code>.
+	 */
+	private final Map<Key, ArrayDeque<BigInteger[]>> entries;
+
+	/**
+	 * Target number of fresh entries per registered key. Guarded by <code>this</code>.
+	 */
+	private final Map<Key, Integer> targets;
+
+	/**
+	 * Specifies whether the in-memory entries differ from the backing file. Guarded by <code>this</code>.
+	 */
+	private boolean dirty;
+
+	/**
+	 * Serialises the calls to <code>this.save()</code>, so that an older snapshot never replaces a newer
+	 * one in the backing file.
+	 */
+	private final Object saveLock = new Object();
+
+	/**
+	 * Specifies whether <code>this.close()</code> has been called. Guarded by <code>this</code>.
+	 */
+	private boolean closed;
+
+	/**
+	 * Background refill thread. <br>
+	 * May be <code>null</code>. Guarded by <code>this</code>.
+	 */
+	private Thread refiller;
+
+	/**
+	 * Construct a ParamStore object backed by the given file, and load all of the valid entries stored
+	 * in it (if it exists).
+	 * 
+	 * @param file
+	 *            the given backing file
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>file == null</code>
+	 * 
+	 * @throws IOException
+	 *             If the backing file exists but cannot be read or is not a parameter store file
+	 */
+	public ParamStore(Path file) throws NullPointerException, IOException {
+		if (file == null) {
+			throw new NullPointerException();
+		}
+		this.file = file;
+		this.entries = new HashMap<Key, ArrayDeque<BigInteger[]>>();
+		this.targets = new LinkedHashMap<Key, Integer>();
+		this.dirty = this.closed = false;
+		this.refiller = null;
+		this.load();
+	}
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	/**
+	 * Load all of the valid entries of the backing file (if it exists) which have not been removed.
+	 * 
+	 * @throws IOException
+	 *             If the backing file exists but cannot be read or is not a parameter store file
+	 */
+	private void load() throws IOException {
+		if (!Files.exists(this.file)) {
+			return;
+		}
+		// The file is small and read once, so a plain read is cheaper than a mapping (which would also
+		// keep the file open until it is garbage collected, and so block its replacement on Windows).
+		final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.file));
+		if (!buffer.hasRemaining()) {
+			return;
+		}
+
+		try {
+			final int magic = buffer.getInt(), version = buffer.getInt();
+			if ((magic != ParamStore.MAGIC) || ((version != 1) && (version != ParamStore.VERSION))) {
+				throw new IOException(this.file + " is not a parameter store file!");
+			}
+			final int entryCount = buffer.getInt();
+			final List<Key> keys = new ArrayList<Key>();
+			final List<BigInteger[]> values = new ArrayList<BigInteger[]>();
+			boolean dropped = false;
+			for (int i = 0; i != entryCount; ++i) {
+				final Key key = ParamStore.readKey(buffer);
+				final BigInteger[] v = new BigInteger[buffer.get()];
+				for (int j = 0; j != v.length; ++j) {
+					v[j] = this.readValue(buffer);
+				}
+
+				// Only keep the entries which pass the cheap re-validation.
+				if ((key != null) && ParamStore.isValid(key, v)) {
+					keys.add(key);
+					values.add(v);
+				} else {
+					dropped = true;
+				}
+			}
+
+			/*
+			 * A crash while appending a removal may leave a partial record at the end of the file, but that
+			 * removal was never acknowledged (i.e., its entry was never handed out), so it is ignored.
+			 */
+			final Map<Key, Set<BigInteger>> removed = new HashMap<Key, Set<BigInteger>>();
+			while (ParamStore.REMOVAL_HEADER_SIZE <= buffer.remaining()) {
+				final Key key = ParamStore.readKey(buffer);
+				final int length = buffer.getInt();
+				if ((length <= 0) || (buffer.remaining() < length)) {
+					break;
+				}
+				final byte[] bytes = new byte[length];
+				buffer.get(bytes);
+				if (key != null) {
+					removed.computeIfAbsent(key, k -> new HashSet<BigInteger>()).add(new BigInteger(bytes));
+				}
+			}
+
+			synchronized (this) {
+				for (int i = 0; i != keys.size(); ++i) {
+					final Key key = keys.get(i);
+					final BigInteger[] v = values.get(i);
+					final Set<BigInteger> set = removed.get(key);
+					if ((set != null) && set.contains(v[0])) {
+						dropped = true;
+					} else {
+						this.deque(key).addLast(v);
+					}
+				}
+				this.dirty = dropped;
+			}
+		} catch (BufferUnderflowException | NegativeArraySizeException | NumberFormatException ex) {
+			throw new IOException(this.file + " is truncated or corrupted!", ex);
+		}
+	}
+
+	/**
+	 * Read the <code>{ byte type, int bitLength, int certainty }</code> part of an entry or of a removal.
+	 * 
+	 * @param buffer
+	 *            the given buffer
+	 * 
+	 * @return The key read, or <code>null</code> if it is not a valid key.
+	 * 
+	 * @throws BufferUnderflowException
+	 *             If <code>buffer</code> is exhausted
+	 */
+	private static Key readKey(ByteBuffer buffer) throws BufferUnderflowException {
+		final int ordinal = buffer.get();
+		final int bitLength = buffer.getInt(), certainty = buffer.getInt();
+		final TYPE[] types = TYPE.values();
+		return (((0 <= ordinal) && (ordinal < types.length) && (3 <= bitLength))
+				? new Key(types[ordinal], bitLength, certainty)
+				: null);
+	}
+
+	/**
+	 * Read the <code>{ int byteLength, byte[byteLength] BigInteger.toByteArray() }</code> value of an
+	 * entry.
+	 * 
+	 * @param buffer
+	 *            the given buffer
+	 * 
+	 * @return The value read.
+	 * 
+	 * @throws IOException
+	 *             If the byte length is invalid
+	 * 
+	 * @throws BufferUnderflowException
+	 *             If <code>buffer</code> is exhausted
+	 */
+	private BigInteger readValue(ByteBuffer buffer) throws IOException, BufferUnderflowException {
+		final int length = buffer.getInt();
+		if ((length <= 0) || (buffer.remaining() < length)) {
+			throw new IOException(this.file + " is truncated or corrupted!");
+		}
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new BigInteger(bytes);
+	}
+
+	/**
+	 * Write all of the fresh entries to the backing file if they have changed since the last save. The
+	 * new content is forced to the storage device before it atomically replaces the backing file, and the
+	 * directory is then forced too, so that a crash (or a power loss) never leaves a partially written
+	 * store behind. Note that some platforms (e.g., Windows) cannot force a directory, in which case a
+	 * power loss right after the save may bring back the previous store.
+	 * 
+	 * @throws IOException
+	 *             If the backing file cannot be written
+	 */
+	public void save() throws IOException {
+		synchronized (this.saveLock) {
+			this.saveSnapshot();
+		}
+	}
+
+	/**
+	 * Body of <code>this.save()</code>. <br>
+	 * Precondition: <code>Thread.holdsLock(this.saveLock)</code>
+	 * 
+	 * @throws IOException
+	 *             If the backing file cannot be written
+	 */
+	private void saveSnapshot() throws IOException {
+		// Take a snapshot so that the (slow) I/O happens outside of the lock.
+		final List<Key> keys = new ArrayList<Key>();
+		final List<BigInteger[]> values = new ArrayList<BigInteger[]>();
+		synchronized (this) {
+			if (!this.dirty) {
+				return;
+			}
+			for (final Map.Entry<Key, ArrayDeque<BigInteger[]>> e : this.entries.entrySet()) {
+				for (final BigInteger[] v : e.getValue()) {
+					keys.add(e.getKey());
+					values.add(v);
+				}
+			}
+			this.dirty = false;
+		}
+
+		final Path parent = this.file.toAbsolutePath().getParent();
+		final Path tmp = Files.createTempFile(parent, this.file.getFileName().toString(), ".tmp");
+		try {
+			try (final FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE);
+					final DataOutputStream dos = new DataOutputStream(
+							new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+				dos.writeInt(ParamStore.MAGIC);
+				dos.writeInt(ParamStore.VERSION);
+				dos.writeInt(keys.size());
+				for (int i = 0; i != keys.size(); ++i) {
+					final Key key = keys.get(i);
+					final BigInteger[] v = values.get(i);
+					dos.writeByte(key.type.ordinal());
+					dos.writeInt(key.bitLength);
+					dos.writeInt(key.certainty);
+					dos.writeByte(v.length);
+					for (final BigInteger n : v) {
+						final byte[] bytes = n.toByteArray();
+						dos.writeInt(bytes.length);
+						dos.write(bytes);
+					}
+				}
+				// Otherwise the move may reach the storage device before the data it refers to.
+				dos.flush();
+				channel.force(true);
+			}
+			Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			ParamStore.force(parent);
+		} catch (IOException ex) {
+			Files.deleteIfExists(tmp);
+			synchronized (this) {
+				this.dirty = true;
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * Force the given directory (i.e., the entries moved into it) to the storage device, where the
+	 * platform supports it.
+	 * 
+	 * @param directory
+	 *            the given directory
+	 */
+	private static void force(Path directory) {
+		try (final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException ex) {
+			// The platform cannot open a directory (e.g., Windows).
+		}
+	}
+
+	/**
+	 * Append the removal of the given entry to the backing file and force it to the storage device, so
+	 * that the next load skips the entry even after a crash. Nothing is appended if the backing file does
+	 * not exist, since the entry has then never been saved. <br>
+	 * Precondition: <code>Thread.holdsLock(this.saveLock)</code> (so that the backing file is not being
+	 * replaced)
+	 * 
+	 * @param key
+	 *            the key of the given entry
+	 * 
+	 * @param values
+	 *            the given entry
+	 * 
+	 * @throws IOException
+	 *             If the backing file cannot be written
+	 */
+	private void appendRemoval(Key key, BigInteger[] values) throws IOException {
+		if (!Files.exists(this.file)) {
+			return;
+		}
+		final byte[] bytes = values[0].toByteArray();
+		final ByteBuffer record = ByteBuffer.allocate(ParamStore.REMOVAL_HEADER_SIZE + bytes.length);
+		record.put((byte) key.type.ordinal()).putInt(key.bitLength).putInt(key.certainty);
+		record.putInt(bytes.length).put(bytes).flip();
+		try (final FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND)) {
+			while (record.hasRemaining()) {
+				channel.write(record);
+			}
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Stop the background refill thread (if any) and save the fresh entries. Since the generation in
+	 * progress (e.g., of an RSA key) may ignore interrupts, the refill thread is only waited for
+	 * <code>ParamStore.CLOSE_TIMEOUT_MILLIS</code> milliseconds; after that, the generation completes on
+	 * the (daemon) refill thread and its entry is discarded.
+	 * 
+	 * @throws IOException
+	 *             If the backing file cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		final Thread t;
+		synchronized (this) {
+			this.closed = true;
+			t = this.refiller;
+			this.refiller = null;
+			this.notifyAll();
+		}
+		if (t != null) {
+			t.interrupt();
+			try {
+				t.join(ParamStore.CLOSE_TIMEOUT_MILLIS);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		this.save();
+	}
+
+	/**
+	 * Precondition: <code>Thread.holdsLock(this)</code>
+	 * 
+	 * @param key
+	 *            the given key
+	 * 
+	 * @return The deque of fresh entries for the given key.
+	 */
+	private ArrayDeque<BigInteger[]> deque(Key key) {
+		ArrayDeque<BigInteger[]> result = this.entries.get(key);
+		if (result == null) {
+			this.entries.put(key, result = new ArrayDeque<BigInteger[]>());
+		}
+		return result;
+	}
+
+	/**
+	 * @param key
+	 *            the given key
+	 * 
+	 * @return The number of fresh entries for the given key.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>key == null</code>
+	 */
+	public synchronized int size(Key key) throws NullPointerException {
+		final ArrayDeque<BigInteger[]> deque = this.entries.get(key);
+		return ((deque == null) ? 0 : deque.size());
+	}
+
+	/**
+	 * Request that the background refill thread keeps <code>target</code> fresh entries for the given
+	 * key. The refill thread is started if it is not already running.
+	 * 
+	 * @param key
+	 *            the given key
+	 * 
+	 * @param target
+	 *            the given target number of fresh entries
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>key == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>target < 0</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If <code>this</code> has been closed
+	 */
+	public synchronized void register(Key key, int target)
+			throws NullPointerException, IllegalArgumentException, IllegalStateException {
+		if (key == null) {
+			throw new NullPointerException();
+		} else if (target < 0) {
+			throw new IllegalArgumentException();
+		} else if (this.closed) {
+			throw new IllegalStateException();
+		}
+		this.targets.put(key, target);
+
+		if (this.refiller == null) {
+			this.refiller = ConcurrentUtil.daemonThreadFactory("param-store").newThread(this::refill);
+			this.refiller.start();
+		}
+		this.notifyAll();
+	}
+
+	/**
+	 * @param key
+	 *            the given key
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>key == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>key.bitLength < 3</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If <code>this</code> has been closed
+	 * 
+	 * @see #register(Key, int)
+	 */
+	public void register(Key key) throws NullPointerException, IllegalArgumentException, IllegalStateException {
+		this.register(key, ParamStore.DEFAULT_TARGET);
+	}
+
+	/**
+	 * Body of the background refill thread. Generates one entry at a time for the first registered key
+	 * which is below its target, saving the store after every generated entry, and sleeps while all of the
+	 * targets are met.
+	 */
+	private void refill() {
+		try {
+			while (true) {
+				Key next = null;
+				synchronized (this) {
+					while (!this.closed && ((next = this.nextToRefill()) == null)) {
+						this.wait();
+					}
+					if (this.closed) {
+						return;
+					}
+				}
+
+				// Generate outside of the lock so that callers are never blocked by the generation.
+				final BigInteger[] values = ParamStore.generate(next);
+				synchronized (this) {
+					if (this.closed) {
+						return; // Closed while generating, so the entry is discarded.
+					}
+					this.deque(next).addLast(values);
+					this.dirty = true;
+				}
+				try {
+					this.save();
+				} catch (IOException ex) {
+					// Keep the entry in memory and retry the save after the next generation.
+				}
+			}
+		} catch (InterruptedException | CancellationException ex) {
+			// Closed while waiting or generating.
+		}
+	}
+
+	/**
+	 * Precondition: <code>Thread.holdsLock(this)</code>
+	 * 
+	 * @return The first registered key which is below its target or <code>null</code> if there is none.
+	 */
+	private Key nextToRefill() {
+		for (final Map.Entry<Key, Integer> e : this.targets.entrySet()) {
+			final ArrayDeque<BigInteger[]> deque = this.entries.get(e.getKey());
+			if (((deque == null) ? 0 : deque.size()) < e.getValue()) {
+				return e.getKey();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remove and return a fresh entry for the given key. If there is no fresh entry, then one is
+	 * generated on the calling thread. Either way, the refill thread is woken up if the key is
+	 * registered. <br>
+	 * The removal of an RSA key is appended to the backing file (and forced to the storage device) before
+	 * it is returned, so that the same private key is never handed out twice, even across a crash (see
+	 * <code>this.save()</code> for the platform caveat); if the removal cannot be appended, then the stored
+	 * key is dropped and a freshly generated one is returned instead. The removal of a safe prime or a
+	 * group (which are public) is only saved with the next save, so such an entry may be handed out again
+	 * after a crash. <br>
+	 * Postcondition: <code>Result != null</code>
+	 * 
+	 * @param key
+	 *            the given key
+	 * 
+	 * @return The resulting BigInteger array (see <code>ParamStore.TYPE</code> for its layout).
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>key == null</code>
+	 */
+	public BigInteger[] take(Key key) throws NullPointerException {
+		final BigInteger[] result;
+		synchronized (this) {
+			final ArrayDeque<BigInteger[]> deque = this.deque(key);
+			result = deque.pollFirst();
+			if (this.targets.containsKey(key)) {
+				this.notifyAll();
+			}
+			if (result != null) {
+				this.dirty = true;
+			}
+		}
+		if (result == null) {
+			return ParamStore.generate(key);
+		} else if (key.type == TYPE.RSA_KEY) {
+			// Append the removal rather than rewriting the whole store (which the next save compacts).
+			try {
+				synchronized (this.saveLock) {
+					this.appendRemoval(key, result);
+				}
+			} catch (IOException ex) {
+				return ParamStore.generate(key);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param bitLength
+	 *            the bit length of the safe prime
+	 * 
+	 * @param certainty
+	 *            a measure of the uncertainty that the caller is willing to tolerate
+	 * 
+	 * @return <code>this.take(new Key(TYPE.SAFE_PRIME, bitLength, certainty))[0]</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>bitLength < 3</code>
+	 */
+	public BigInteger safePrime(int bitLength, int certainty) throws IllegalArgumentException {
+		return this.take(new Key(TYPE.SAFE_PRIME, bitLength, certainty))[0];
+	}
+
+	/**
+	 * Postcondition: <code>Result != null</code> <br>
+	 * Postcondition: <code>Result.length == 2</code> <br>
+	 * Postcondition: <code>Result[0] == p</code> <br>
+	 * Postcondition: <code>Result[1] == g</code>
+	 * 
+	 * @param bitLength
+	 *            the bit length of the group modulus
+	 * 
+	 * @param certainty
+	 *            a measure of the uncertainty that the caller is willing to tolerate
+	 * 
+	 * @return <code>this.take(new Key(TYPE.DH_GROUP, bitLength, certainty))</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>bitLength < 3</code>
+	 */
+	public BigInteger[] dhGroup(int bitLength, int certainty) throws IllegalArgumentException {
+		return this.take(new Key(TYPE.DH_GROUP, bitLength, certainty));
+	}
+
+	/**
+	 * @param keySize
+	 *            the bit length of the cipher modulus
+	 * 
+	 * @return <code>RSA.knownFactors(p, q, e)</code> where <code>{ n, e, d, p, q }</code> is
+	 *         <code>this.take(new Key(TYPE.RSA_KEY, keySize, 0))</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>keySize < 3</code>
+	 */
+	public RSA rsa(int keySize) throws IllegalArgumentException {
+		final BigInteger[] values = this.take(new Key(TYPE.RSA_KEY, keySize, 0));
+		return RSA.knownFactors(values[3], values[4], values[1]);
+	}
+
+	/**
+	 * Postcondition: <code>Result != null</code>
+	 * 
+	 * @param key
+	 *            the given key
+	 * 
+	 * @return A freshly generated entry for the given key.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>key == null</code>
+	 */
+	protected static BigInteger[] generate(Key key) throws NullPointerException {
+		switch (key.type) {
+		case SAFE_PRIME:
+			return new BigInteger[] { BigIntUtil.probableSafePrimeSieve(key.bitLength, key.certainty) };
+		case DH_GROUP: {
+			final BigInteger p = BigIntUtil.probableSafePrimeSieve(key.bitLength, key.certainty);
+			return new BigInteger[] { p, ParamStore.subgroupGenerator(p) };
+		}
+		case RSA_KEY: {
+			// Use a private generator since RSAUtil.keyGenerator is not safe to share across threads.
+			final KeyPairGenerator generator = RSAUtil.getKeyPairGenerator();
+			generator.initialize(key.bitLength);
+			final KeyPair pair = generator.generateKeyPair();
+			final BigInteger[] ned = RSAUtil.getKeys(pair);
+			final RSAPrivateCrtKey crt = (RSAPrivateCrtKey) pair.getPrivate();
+			return new BigInteger[] { ned[0], ned[1], ned[2], crt.getPrimeP(), crt.getPrimeQ() };
+		}
+		default:
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * Precondition: <code>p</code> is a safe prime
+	 * 
+	 * @param p
+	 *            the given safe prime
+	 * 
+	 * @return The smallest <code>g</code> in <code>[2, p - 1]</code> which generates the subgroup of
+	 *         prime order <code>(p - 1) / 2</code>.
+	 */
+	protected static BigInteger subgroupGenerator(BigInteger p) {
+		final BigInteger q = p.shiftRight(1);
+		// Any quadratic residue other than 1 generates the subgroup of prime order q.
+		for (BigInteger g = BigIntUtil.TWO; true; g = g.add(BigInteger.ONE)) {
+			if (g.modPow(q, p).equals(BigInteger.ONE)) {
+				return g;
+			}
+		}
+	}
+
+	/**
+	 * Cheap re-validation of a stored entry. Safe primes are checked with a single Euler criterion
+	 * exponentiation instead of full Miller-Rabin tests, and RSA keys are checked with multiplications and
+	 * divisions only.
+	 * 
+	 * @param key
+	 *            the given key
+	 * 
+	 * @param values
+	 *            the given entry
+	 * 
+	 * @return <code>true</code> if the given entry is consistent with the given key and
+	 *         <code>false</code> otherwise.
+	 */
+	protected static boolean isValid(Key key, BigInteger[] values) {
+		switch (key.type) {
+		case SAFE_PRIME:
+			return ((values.length == 1) && ParamStore.isValidSafePrime(values[0], key.bitLength));
+		case DH_GROUP: {
+			if ((values.length != 2) || !ParamStore.isValidSafePrime(values[0], key.bitLength)) {
+				return false;
+			}
+			final BigInteger p = values[0], g = values[1];
+			if ((g.compareTo(BigInteger.ONE) <= 0) || (p.compareTo(g) <= 0)) { // i.e., (g <= 1) || (p <= g)
+				return false;
+			}
+			// 1 < g < p
+			return g.modPow(p.shiftRight(1), p).equals(BigInteger.ONE);
+		}
+		case RSA_KEY: {
+			if (values.length != 5) {
+				return false;
+			}
+			final BigInteger n = values[0], e = values[1], d = values[2], p = values[3], q = values[4];
+			if ((n.bitLength() != key.bitLength) || !p.multiply(q).equals(n)) {
+				return false;
+			}
+			// e * d == 1 (mod lcm(p - 1, q - 1)) iff (p - 1) and (q - 1) both divide e * d - 1.
+			final BigInteger ed_minus_1 = e.multiply(d).subtract(BigInteger.ONE);
+			return ((ed_minus_1.signum() == 1) && (ed_minus_1.mod(p.subtract(BigInteger.ONE)).signum() == 0)
+					&& (ed_minus_1.mod(q.subtract(BigInteger.ONE)).signum() == 0));
+		}
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @param p
+	 *            the given safe prime candidate
+	 * 
+	 * @param bitLength
+	 *            the expected bit length
+	 * 
+	 * @return <code>true</code> if <code>p</code> has the expected bit length and passes Euler's
+	 *         criterion for base 2 and <code>false</code> otherwise.
+	 */
+	private static boolean isValidSafePrime(BigInteger p, int bitLength) {
+		if (p.bitLength() != bitLength) {
+			return false;
+		} else if (p.equals(BigIntUtil.FIVE)) {
+			return true;
+		} else if (!p.testBit(0) || !p.testBit(1)) { // i.e., p != 3 (mod 4)
+			return false; // Every safe prime other than 5 is 3 (mod 4).
+		}
+		final BigInteger r = BigIntUtil.TWO.modPow(p.shiftRight(1), p);
+		return (r.equals(BigInteger.ONE) || r.equals(p.subtract(BigInteger.ONE)));
+	}
+}
@@ -1,6 +1,12 @@
 package util;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * RSA cipher.
@@ -11,9 +17,24 @@ public class RSA {
 	/**
 	 * Dependencies: <code>
 	 * 		1. util.RSAUtil
+	 * 		2. util.ConcurrentUtil
 	 * </code>
 	 */
 
+	/**
+	 * The minimum bit length of the cipher modulus for which the concurrent private-key operation
+	 * actually runs the CRT exponentiations on separate threads. Below it, the hand-off to the pool costs
+	 * more than the exponentiation it saves.
+	 */
+	public static final int CONCURRENT_THRESHOLD = 4096;
+
+	/**
+	 * Pool shared by all concurrent private-key operations. Its (daemon) threads are created lazily, so
+	 * it costs nothing unless a concurrent operation is actually requested.
+	 */
+	private static final ExecutorService CRT_POOL = ConcurrentUtil
+			.newFixedDaemonPool(ConcurrentUtil.DEFAULT_NUM_THREADS, "rsa-crt");
+
 	/**
 	 * One of the two prime factors of the cipher modulus. <br>
 	 * May be <code>null</code>. <br>
@@ -65,6 +86,27 @@ public class RSA {
 	 */
 	private BigInteger qInv;
 
+	/**
+	 * The additional prime factors <code>r<sub>3</sub>, ..., r<sub>u</sub></code> of a multi-prime
+	 * cipher modulus (see RFC 8017). <br>
+	 * May be <code>null</code>. <br>
+	 * <code>(this.otherPrimes != null) implies (this.p != null)</code>.
+	 */
+	private BigInteger[] otherPrimes;
+
+	/**
+	 * <code>this.otherExps[i] == this.d (mod (this.otherPrimes[i] - 1))</code>. <br>
+	 * <code>(this.otherExps == null) == (this.otherPrimes == null)</code>.
+	 */
+	private BigInteger[] otherExps;
+
+	/**
+	 * <code>this.otherCoeffs[i] == 1 / (this.p * this.q * this.otherPrimes[0] * ... * this.otherPrimes[i - 1]) (mod this.otherPrimes[i])</code>.
+	 * <br>
+	 * <code>(this.otherCoeffs == null) == (this.otherPrimes == null)</code>.
+	 */
+	private BigInteger[] otherCoeffs;
+
 	/**
 	 * Construct an RSA object with the given p, q, and e.
 	 * 
@@ -135,6 +177,83 @@ public class RSA {
 		this.dP = this.d.mod(p_minus_1);
 		this.dQ = this.d.mod(q_minus_1);
 		this.qInv = this.q.modInverse(this.p);
+
+		// Set otherPrimes, otherExps, and otherCoeffs.
+		this.otherPrimes = this.otherExps = this.otherCoeffs = null;
+	}
+
+	/**
+	 * Construct a multi-prime RSA object (see RFC 8017) with the given primes and e. Note that
+	 * <code>primes[0]</code> and <code>primes[1]</code> play the role of <code>p</code> and
+	 * <code>q</code> respectively, and so when <code>primes.length == 2</code> the constructed object is
+	 * identical to the one constructed by the p-q-e ctor.
+	 * 
+	 * @param primes
+	 *            the prime factors of the cipher modulus
+	 * 
+	 * @param e
+	 *            the given cipher public key
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(primes == null) || (e == null)</code> or if <code>primes</code> contains a
+	 *             <code>null</code> element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(primes.length < 2) || (primes[i] <= 1) || (primes[i] == primes[j]) || (e <= 0)
+	 *             || (phi <= e)</code> for some valid <code>i != j</code>
+	 * 
+	 * @throws ArithmeticException
+	 *             If <code>(gcd(e, phi) != 1) || (gcd(primes[i], primes[j]) != 1)</code> for some valid
+	 *             <code>i != j</code>
+	 */
+	protected RSA(BigInteger[] primes, BigInteger e)
+			throws NullPointerException, IllegalArgumentException, ArithmeticException {
+		if (e.signum() != 1) { // i.e., e <= 0
+			throw new IllegalArgumentException();
+		}
+		// 0 < e
+		// Compute the value of Euler's totient function for the cipher modulus.
+		final BigInteger phi = RSAUtil.phi(primes);
+		// (2 <= primes.length) && (1 < primes[i]) && (primes[i] != primes[j])
+		if (phi.compareTo(e) <= 0) { // i.e., phi <= e
+			throw new IllegalArgumentException();
+		}
+		// e < phi
+
+		// Set p and q.
+		this.p = primes[0];
+		this.q = primes[1];
+
+		// Set n, e, and d.
+		BigInteger n = this.p.multiply(this.q);
+		for (int i = 2; i != primes.length; ++i) {
+			n = n.multiply(primes[i]);
+		}
+		this.n = n;
+		this.e = e;
+		this.d = this.e.modInverse(phi);
+
+		// Set dP, dQ, and qInv.
+		this.dP = this.d.mod(this.p.subtract(BigInteger.ONE));
+		this.dQ = this.d.mod(this.q.subtract(BigInteger.ONE));
+		this.qInv = this.q.modInverse(this.p);
+
+		// Set otherPrimes, otherExps, and otherCoeffs.
+		if (primes.length == 2) {
+			this.otherPrimes = this.otherExps = this.otherCoeffs = null;
+			return;
+		}
+		final int length = primes.length - 2;
+		this.otherPrimes = new BigInteger[length];
+		this.otherExps = new BigInteger[length];
+		this.otherCoeffs = new BigInteger[length];
+		BigInteger product = this.p.multiply(this.q); // product == r_1 * ... * r_(i - 1)
+		for (int i = 0; i != length; ++i) {
+			final BigInteger r = this.otherPrimes[i] = primes[i + 2];
+			this.otherExps[i] = this.d.mod(r.subtract(BigInteger.ONE));
+			this.otherCoeffs[i] = product.modInverse(r);
+			product = product.multiply(r);
+		}
 	}
 
 	/**
@@ -175,6 +294,7 @@ public class RSA {
 
 		// Set p, q, dP, dQ, and qInv.
 		this.p = this.q = this.dP = this.dQ = this.qInv = null;
+		this.otherPrimes = this.otherExps = this.otherCoeffs = null;
 
 		// Set n, e, and d.
 		this.n = n;
@@ -213,6 +333,7 @@ public class RSA {
 
 		// Set p, q, dP, dQ, and qInv.
 		this.p = this.q = this.dP = this.dQ = this.qInv = null;
+		this.otherPrimes = this.otherExps = this.otherCoeffs = null;
 
 		// Set n, e, and d.
 		this.n = n;
@@ -233,6 +354,7 @@ public class RSA {
 	protected void finalize() { // semi-dtor
 		this.n = this.e = this.d = null;
 		this.p = this.q = this.dP = this.dQ = this.qInv = null;
+		this.otherPrimes = this.otherExps = this.otherCoeffs = null;
 	}
 
 	/**
@@ -263,6 +385,34 @@ public class RSA {
 		return new RSA(p, q, e, null, null);
 	}
 
+	/**
+	 * RSA static factory: construct a multi-prime RSA object with the given primes and e.
+	 * 
+	 * @param primes
+	 *            the prime factors of the cipher modulus
+	 * 
+	 * @param e
+	 *            the given cipher public key
+	 * 
+	 * @return The resulting RSA object.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(primes == null) || (e == null)</code> or if <code>primes</code> contains a
+	 *             <code>null</code> element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(primes.length < 2) || (primes[i] <= 1) || (primes[i] == primes[j]) || (e <= 0)
+	 *             || (phi <= e)</code> for some valid <code>i != j</code>
+	 * 
+	 * @throws ArithmeticException
+	 *             If <code>(gcd(e, phi) != 1) || (gcd(primes[i], primes[j]) != 1)</code> for some valid
+	 *             <code>i != j</code>
+	 */
+	public static RSA knownFactors(BigInteger[] primes, BigInteger e)
+			throws NullPointerException, IllegalArgumentException, ArithmeticException {
+		return new RSA(primes, e);
+	}
+
 	/**
 	 * RSA static factory: construct an RSA object with the given phi, n, and e.
 	 * 
@@ -381,7 +531,11 @@ public class RSA {
 	}
 
 	/**
-	 * Apply the requested key (either public or private) to the given message.
+	 * Apply the requested key (either public or private) to the given message. When
+	 * <code>concurrent</code> is set, the modulus has at least <code>RSA.CONCURRENT_THRESHOLD</code> bits,
+	 * the prime factors are known, and more than one processor is available, the independent CRT
+	 * exponentiations of the private-key operation (one per prime factor) run on separate threads before
+	 * being recombined.
 	 * 
 	 * @param m
 	 *            the given message
@@ -389,6 +543,9 @@ public class RSA {
 	 * @param publicKey
 	 *            specifies whether the public key should be applied to the given message
 	 * 
+	 * @param concurrent
+	 *            specifies whether the CRT exponentiations may run concurrently
+	 * 
 	 * @return The resulting BigInteger object.
 	 * 
 	 * @throws NullPointerException
@@ -399,9 +556,12 @@ public class RSA {
 	 * 
 	 * @throws ArithmeticException
 	 *             If <code>gcd(m, this.n) != 1</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting for a concurrent exponentiation
 	 */
-	public BigInteger apply(BigInteger m, boolean publicKey)
-			throws NullPointerException, IllegalArgumentException, ArithmeticException {
+	public BigInteger apply(BigInteger m, boolean publicKey, boolean concurrent)
+			throws NullPointerException, IllegalArgumentException, ArithmeticException, CancellationException {
 		if (m.signum() != 1) { // i.e, m <= 0
 			throw new IllegalArgumentException();
 		}
@@ -428,14 +588,37 @@ public class RSA {
 			 * 4. <code>this.qInv != null</code>. <br>
 			 * 
 			 * Therefore, we can do the following: <br>
-			 * 1. <code>m = [(mP - mQ) * this.q * this.qInv + mQ] (mod this.n)</code>.
+			 * 1. <code>m = [(mP - mQ) * this.q * this.qInv + mQ] (mod this.p * this.q)</code>. <br>
+			 * 2. Extend <code>m</code> to the remaining primes (if any).
 			 */
 
-			final BigInteger mP = m.modPow(this.dP, this.p);
-			final BigInteger mQ = m.modPow(this.dQ, this.q);
+			final BigInteger[] residues = (concurrent && (RSA.CONCURRENT_THRESHOLD <= this.n.bitLength())
+					&& (1 < ConcurrentUtil.DEFAULT_NUM_THREADS)) ? this.residuesConcurrent(m)
+					: this.residues(m);
+			final BigInteger mP = residues[0];
+			final BigInteger mQ = residues[1];
 			BigInteger result = mP.subtract(mQ);
 			result = result.multiply(this.q).multiply(this.qInv);
-			result = result.add(mQ).mod(this.n);
+			if (this.otherPrimes == null) {
+				result = result.add(mQ).mod(this.n);
+				return result;
+			}
+			BigInteger product = this.p.multiply(this.q);
+			result = result.add(mQ).mod(product);
+
+			/**
+			 * Garner's recombination for the remaining primes (see RFC 8017 Section 5.1.2). At the start of
+			 * every iteration, <code>result</code> is the answer modulo <code>product</code>, and so
+			 * <code>result + product * h</code> is the answer modulo <code>product * r</code> where
+			 * <code>h == (m<sup>d_i</sup> - result) * t_i (mod r)</code>.
+			 */
+			for (int i = 0; i != this.otherPrimes.length; ++i) {
+				final BigInteger r = this.otherPrimes[i];
+				final BigInteger mR = residues[i + 2];
+				final BigInteger h = mR.subtract(result).multiply(this.otherCoeffs[i]).mod(r);
+				result = result.add(product.multiply(h));
+				product = product.multiply(r);
+			}
 			return result;
 		}
 
@@ -446,6 +629,91 @@ public class RSA {
 		return m.modPow(this.d, this.n);
 	}
 
+	/**
+	 * Apply the requested key (either public or private) to the given message.
+	 * 
+	 * @param m
+	 *            the given message
+	 * 
+	 * @param publicKey
+	 *            specifies whether the public key should be applied to the given message
+	 * 
+	 * @return <code>this.apply(m, publicKey, false)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>m == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>m <= 0</code>
+	 * 
+	 * @throws ArithmeticException
+	 *             If <code>gcd(m, this.n) != 1</code>
+	 */
+	public BigInteger apply(BigInteger m, boolean publicKey)
+			throws NullPointerException, IllegalArgumentException, ArithmeticException {
+		return this.apply(m, publicKey, false);
+	}
+
+	/**
+	 * Precondition: <code>(this.p != null) && (0 < m)</code>.
+	 * 
+	 * @param m
+	 *            the given message
+	 * 
+	 * @return The CRT residues <code>m<sup>d_i</sup> (mod r_i)</code> in the order
+	 *         <code>this.p, this.q, this.otherPrimes[0], ...</code>.
+	 */
+	private BigInteger[] residues(BigInteger m) {
+		final int numOthers = (this.otherPrimes == null) ? 0 : this.otherPrimes.length;
+		final BigInteger[] result = new BigInteger[numOthers + 2];
+		result[0] = m.modPow(this.dP, this.p);
+		result[1] = m.modPow(this.dQ, this.q);
+		for (int i = 0; i != numOthers; ++i) {
+			result[i + 2] = m.modPow(this.otherExps[i], this.otherPrimes[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Same as <code>this.residues(m)</code> except that every residue but the first is computed on
+	 * <code>RSA.CRT_POOL</code> while the calling thread computes the first one.
+	 * 
+	 * @param m
+	 *            the given message
+	 * 
+	 * @return <code>this.residues(m)</code>.
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	private BigInteger[] residuesConcurrent(BigInteger m) throws CancellationException {
+		final int numOthers = (this.otherPrimes == null) ? 0 : this.otherPrimes.length;
+		final BigInteger[] result = new BigInteger[numOthers + 2];
+		final List<Future<BigInteger>> futures = new ArrayList<Future<BigInteger>>(numOthers + 1);
+		try {
+			futures.add(RSA.CRT_POOL.submit(() -> m.modPow(this.dQ, this.q)));
+			for (int i = 0; i != numOthers; ++i) {
+				final BigInteger r = this.otherPrimes[i], dR = this.otherExps[i];
+				futures.add(RSA.CRT_POOL.submit(() -> m.modPow(dR, r)));
+			}
+			result[0] = m.modPow(this.dP, this.p);
+			for (int i = 0; i != futures.size(); ++i) {
+				result[i + 1] = futures.get(i).get();
+			}
+			return result;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		} catch (ExecutionException ex) {
+			throw ConcurrentUtil.unchecked(ex.getCause());
+		} finally {
+			// Cancel whatever is still running (i.e., nothing unless the calling thread was interrupted).
+			for (final Future<BigInteger> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
 	/**
 	 * @param m
 	 *            the given message
@@ -1,12 +1,16 @@
 package util;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.KeyFactory;
+import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
+import java.security.spec.RSAMultiPrimePrivateCrtKeySpec;
+import java.security.spec.RSAOtherPrimeInfo;
 import java.security.spec.RSAPrivateKeySpec;
 import java.security.spec.RSAPublicKeySpec;
 
@@ -14,13 +18,15 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 
 /**
- * RSA Cipher Engine. A simple wrapper over Java's Cipher class which only supports the RSA Cipher.
+ * RSA Cipher Engine. A simple wrapper over Java's Cipher class which only supports the RSA Cipher. <br>
+ * The engine is borrowed from the engine pool of CipherEngUtil and given back by <code>close</code>.
  * 
  * @author Ashkan Moatamed
  */
-public class RSACipherEng {
+public class RSACipherEng implements AutoCloseable {
 	/**
 	 * Dependencies: <code>
 	 * 		1. util.RSAUtil
@@ -121,10 +127,10 @@ public class RSACipherEng {
 	 *             If <code>(p <= 1) || (q <= 1) || (p == q) || (e <= 0) || (phi <= e)</code>
 	 * 
 	 * @throws NoSuchAlgorithmException
-	 *             Thrown by <code>CipherEngUtil.getEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
+	 *             Thrown by <code>CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
 	 * 
 	 * @throws NoSuchPaddingException
-	 *             Thrown by <code>CipherEngUtil.getEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
+	 *             Thrown by <code>CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
 	 * 
 	 * @throws ArithmeticException
 	 *             If <code>gcd(e, phi) != 1</code>
@@ -150,7 +156,7 @@ public class RSACipherEng {
 		// e < phi
 
 		// The following is meant to be an assignment of this.engine, this.opmode, and this.padding.
-		this.engine = CipherEngUtil.getEngine(RSAUtil.ALGORITHM, this.opmode = opmode, this.padding = padding);
+		this.engine = CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, this.opmode = opmode, this.padding = padding);
 
 		// Set n, e, and d.
 		this.n = p.multiply(q);
@@ -163,6 +169,94 @@ public class RSACipherEng {
 				.generatePrivate(new RSAPrivateKeySpec(this.n, this.d));
 	}
 
+	/**
+	 * Construct a multi-prime RSACipherEng object (see RFC 8017) from the given attributes. When
+	 * <code>primes.length == 2</code>, the constructed object is identical to the one constructed by the
+	 * p-q-e ctor. Otherwise, the private key is generated from an RSAMultiPrimePrivateCrtKeySpec so that
+	 * providers which support multi-prime keys can use the Chinese Remainder Theorem (providers which do
+	 * not, such as SunRsaSign, fall back to using the private exponent directly).
+	 * 
+	 * @param primes
+	 *            the prime factors of the cipher modulus
+	 * 
+	 * @param e
+	 *            the given cipher public key
+	 * 
+	 * @param opmode
+	 *            the given mode of operation
+	 * 
+	 * @param padding
+	 *            the given padding algorithm
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(primes == null) || (e == null) || (opmode == null) || (padding == null)</code>
+	 *             or if <code>primes</code> contains a <code>null</code> element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(primes.length < 2) || (primes[i] <= 1) || (primes[i] == primes[j]) || (e <= 0)
+	 *             || (phi <= e)</code> for some valid <code>i != j</code>
+	 * 
+	 * @throws NoSuchAlgorithmException
+	 *             Thrown by <code>CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
+	 * 
+	 * @throws NoSuchPaddingException
+	 *             Thrown by <code>CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
+	 * 
+	 * @throws ArithmeticException
+	 *             If <code>(gcd(e, phi) != 1) || (gcd(primes[i], primes[j]) != 1)</code> for some valid
+	 *             <code>i != j</code>
+	 * 
+	 * @throws InvalidKeySpecException
+	 *             Thrown by
+	 *             <code>RSACipherEng.KEY_FACTORY.generatePublic(new RSAPublicKeySpec(n, e))</code> or
+	 *             <code>RSACipherEng.KEY_FACTORY.generatePrivate(spec)</code>
+	 */
+	protected RSACipherEng(BigInteger[] primes, BigInteger e, CipherEngUtil.OPMODE opmode,
+			CipherEngUtil.PADDING padding) throws NullPointerException, IllegalArgumentException,
+			NoSuchAlgorithmException, NoSuchPaddingException, ArithmeticException, InvalidKeySpecException {
+		if (e.signum() != 1) { // i.e., e <= 0
+			throw new IllegalArgumentException();
+		}
+		// 0 < e
+		final BigInteger phi = RSAUtil.phi(primes);
+		// (2 <= primes.length) && (1 < primes[i]) && (primes[i] != primes[j])
+		if (phi.compareTo(e) <= 0) { // i.e., phi <= e
+			throw new IllegalArgumentException();
+		}
+		// e < phi
+
+		// The following is meant to be an assignment of this.engine, this.opmode, and this.padding.
+		this.engine = CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, this.opmode = opmode, this.padding = padding);
+
+		// Set n, e, and d.
+		BigInteger n = primes[0];
+		for (int i = 1; i != primes.length; ++i) {
+			n = n.multiply(primes[i]);
+		}
+		this.n = n;
+		this.e = e;
+		this.d = this.e.modInverse(phi);
+
+		// Set publicKey and privateKey.
+		this.publicKey = (RSAPublicKey) RSACipherEng.KEY_FACTORY.generatePublic(new RSAPublicKeySpec(this.n, this.e));
+		if (primes.length == 2) {
+			this.privateKey = (RSAPrivateKey) RSACipherEng.KEY_FACTORY
+					.generatePrivate(new RSAPrivateKeySpec(this.n, this.d));
+			return;
+		}
+		final BigInteger p = primes[0], q = primes[1];
+		final RSAOtherPrimeInfo[] others = new RSAOtherPrimeInfo[primes.length - 2];
+		BigInteger product = p.multiply(q);
+		for (int i = 0; i != others.length; ++i) {
+			final BigInteger r = primes[i + 2];
+			others[i] = new RSAOtherPrimeInfo(r, this.d.mod(r.subtract(BigInteger.ONE)), product.modInverse(r));
+			product = product.multiply(r);
+		}
+		this.privateKey = (RSAPrivateKey) RSACipherEng.KEY_FACTORY.generatePrivate(
+				new RSAMultiPrimePrivateCrtKeySpec(this.n, this.e, this.d, p, q, this.d.mod(p.subtract(BigInteger.ONE)),
+						this.d.mod(q.subtract(BigInteger.ONE)), q.modInverse(p), others));
+	}
+
 	/**
 	 * Construct an RSACipherEng object from the given attributes.
 	 * 
@@ -192,10 +286,10 @@ public class RSACipherEng {
 	 *             If <code>(phi <= 0) || (n <= 0) || (e <= 0) || (n <= phi) || (phi <= e)</code>
 	 * 
 	 * @throws NoSuchAlgorithmException
-	 *             Thrown by <code>CipherEngUtil.getEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
+	 *             Thrown by <code>CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
 	 * 
 	 * @throws NoSuchPaddingException
-	 *             Thrown by <code>CipherEngUtil.getEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
+	 *             Thrown by <code>CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
 	 * 
 	 * @throws ArithmeticException
 	 *             If <code>gcd(e, phi) != 1</code>
@@ -219,7 +313,7 @@ public class RSACipherEng {
 		// i.e., (0 < e) && (e < phi) && (phi < n)
 
 		// The following is meant to be an assignment of this.engine, this.opmode, and this.padding.
-		this.engine = CipherEngUtil.getEngine(RSAUtil.ALGORITHM, this.opmode = opmode, this.padding = padding);
+		this.engine = CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, this.opmode = opmode, this.padding = padding);
 
 		// Set n, e, and d.
 		this.n = n;
@@ -258,10 +352,10 @@ public class RSACipherEng {
 	 *             If <code>(n <= 0) || (e <= 0) || (d <= 0) || (n <= e) || (n <= d)</code>
 	 * 
 	 * @throws NoSuchAlgorithmException
-	 *             Thrown by <code>CipherEngUtil.getEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
+	 *             Thrown by <code>CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
 	 * 
 	 * @throws NoSuchPaddingException
-	 *             Thrown by <code>CipherEngUtil.getEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
+	 *             Thrown by <code>CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
 	 * 
 	 * @throws InvalidKeySpecException
 	 *             Thrown by
@@ -282,7 +376,7 @@ public class RSACipherEng {
 		// i.e., (0 < e) && (0 < d) && (max(e, d) < n)
 
 		// The following is meant to be an assignment of this.engine, this.opmode, and this.padding.
-		this.engine = CipherEngUtil.getEngine(RSAUtil.ALGORITHM, this.opmode = opmode, this.padding = padding);
+		this.engine = CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, this.opmode = opmode, this.padding = padding);
 
 		// Set n, e, and d.
 		this.n = n;
@@ -295,6 +389,48 @@ public class RSACipherEng {
 				.generatePrivate(new RSAPrivateKeySpec(this.n, this.d));
 	}
 
+	/**
+	 * Construct an RSACipherEng object from the given key pair (e.g., one taken from a KeyPairPool). The
+	 * keys of the pair are used as they are, so a CRT private key keeps its CRT parameters.
+	 * 
+	 * @param pair
+	 *            the given key pair
+	 * 
+	 * @param opmode
+	 *            the given mode of operation
+	 * 
+	 * @param padding
+	 *            the given padding algorithm
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(pair == null) || (opmode == null) || (padding == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If
+	 *             <code>(!(pair.getPublic() instanceof RSAPublicKey)) || (!(pair.getPrivate() instanceof RSAPrivateKey))</code>
+	 * 
+	 * @throws NoSuchAlgorithmException
+	 *             Thrown by <code>CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
+	 * 
+	 * @throws NoSuchPaddingException
+	 *             Thrown by <code>CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, padding)</code>
+	 */
+	protected RSACipherEng(KeyPair pair, CipherEngUtil.OPMODE opmode, CipherEngUtil.PADDING padding)
+			throws NullPointerException, IllegalArgumentException, NoSuchAlgorithmException, NoSuchPaddingException {
+		// Set n, e, and d (RSAUtil.getKeys checks the key types).
+		final BigInteger[] keys = RSAUtil.getKeys(pair);
+		this.n = keys[0];
+		this.e = keys[1];
+		this.d = keys[2];
+
+		// The following is meant to be an assignment of this.engine, this.opmode, and this.padding.
+		this.engine = CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, this.opmode = opmode, this.padding = padding);
+
+		// Set publicKey and privateKey.
+		this.publicKey = (RSAPublicKey) pair.getPublic();
+		this.privateKey = (RSAPrivateKey) pair.getPrivate();
+	}
+
 	/**
 	 * Copy ctor.
 	 * 
@@ -305,7 +441,12 @@ public class RSACipherEng {
 	 *             If <code>other == null</code>
 	 */
 	public RSACipherEng(RSACipherEng other) throws NullPointerException {
-		this.engine = other.engine; // Since Cipher is singleton (accessed through getInstance).
+		// A Cipher object is stateful, so the copy borrows its own engine.
+		try {
+			this.engine = CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, other.opmode, other.padding);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+			throw new ExceptionInInitializerError();
+		}
 		this.n = other.n; // Since attribute is immutable, we can do a shallow copy.
 		this.e = other.e; // Since attribute is immutable, we can do a shallow copy.
 		this.d = other.d; // Since attribute is immutable, we can do a shallow copy.
@@ -330,6 +471,32 @@ public class RSACipherEng {
 		this.padding = null;
 	}
 
+	/**
+	 * Give the calling object's engine back to the engine pool of CipherEngUtil. Every later operation
+	 * throws an IllegalStateException, except for setting the mode of operation or the padding algorithm
+	 * which borrows a new engine. Closing an already closed object has no effect.
+	 */
+	@Override
+	public void close() {
+		if (this.engine != null) {
+			CipherEngUtil.returnEngine(this.engine);
+			this.engine = null;
+		}
+	}
+
+	/**
+	 * @return <code>this.engine</code>.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the calling object is closed
+	 */
+	private Cipher engine() throws IllegalStateException {
+		if (this.engine == null) {
+			throw new IllegalStateException("The cipher engine is closed.");
+		}
+		return this.engine;
+	}
+
 	/**
 	 * RSACipherEng static factory: construct an RSACipherEng object from the given attributes.
 	 * 
@@ -444,6 +611,122 @@ public class RSACipherEng {
 		return RSACipherEng.knownFactors(p, q, e, CipherEngUtil.DEFAULT_MODE);
 	}
 
+	/**
+	 * RSACipherEng static factory: construct a multi-prime RSACipherEng object from the given
+	 * attributes.
+	 * 
+	 * @param primes
+	 *            the prime factors of the cipher modulus
+	 * 
+	 * @param e
+	 *            the given cipher public key
+	 * 
+	 * @param opmode
+	 *            the given mode of operation
+	 * 
+	 * @param padding
+	 *            the given padding algorithm
+	 * 
+	 * @return The resulting RSACipherEng object.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(primes == null) || (e == null) || (opmode == null) || (padding == null)</code>
+	 *             or if <code>primes</code> contains a <code>null</code> element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(primes.length < 2) || (primes[i] <= 1) || (primes[i] == primes[j]) || (e <= 0)
+	 *             || (phi <= e)</code> for some valid <code>i != j</code>
+	 * 
+	 * @throws ArithmeticException
+	 *             If <code>(gcd(e, phi) != 1) || (gcd(primes[i], primes[j]) != 1)</code> for some valid
+	 *             <code>i != j</code>
+	 * 
+	 * @throws InvalidKeySpecException
+	 *             Thrown by
+	 *             <code>RSACipherEng.KEY_FACTORY.generatePublic(new RSAPublicKeySpec(n, e))</code> or
+	 *             <code>RSACipherEng.KEY_FACTORY.generatePrivate(spec)</code>
+	 */
+	public static RSACipherEng knownFactors(BigInteger[] primes, BigInteger e, CipherEngUtil.OPMODE opmode,
+			CipherEngUtil.PADDING padding)
+			throws NullPointerException, IllegalArgumentException, ArithmeticException, InvalidKeySpecException {
+		try {
+			return new RSACipherEng(primes, e, opmode, padding);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+			throw new ExceptionInInitializerError();
+		}
+	}
+
+	/**
+	 * RSACipherEng static factory: construct a multi-prime RSACipherEng object from the given
+	 * attributes.
+	 * 
+	 * @param primes
+	 *            the prime factors of the cipher modulus
+	 * 
+	 * @param e
+	 *            the given cipher public key
+	 * 
+	 * @param opmode
+	 *            the given mode of operation
+	 * 
+	 * @return The resulting RSACipherEng object.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(primes == null) || (e == null) || (opmode == null)</code> or if
+	 *             <code>primes</code> contains a <code>null</code> element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(primes.length < 2) || (primes[i] <= 1) || (primes[i] == primes[j]) || (e <= 0)
+	 *             || (phi <= e)</code> for some valid <code>i != j</code>
+	 * 
+	 * @throws ArithmeticException
+	 *             If <code>(gcd(e, phi) != 1) || (gcd(primes[i], primes[j]) != 1)</code> for some valid
+	 *             <code>i != j</code>
+	 * 
+	 * @throws InvalidKeySpecException
+	 *             Thrown by
+	 *             <code>RSACipherEng.KEY_FACTORY.generatePublic(new RSAPublicKeySpec(n, e))</code> or
+	 *             <code>RSACipherEng.KEY_FACTORY.generatePrivate(spec)</code>
+	 */
+	public static RSACipherEng knownFactors(BigInteger[] primes, BigInteger e, CipherEngUtil.OPMODE opmode)
+			throws NullPointerException, IllegalArgumentException, ArithmeticException, InvalidKeySpecException {
+		return RSACipherEng.knownFactors(primes, e, opmode, CipherEngUtil.DEFAULT_PADDING);
+	}
+
+	/**
+	 * RSACipherEng static factory: construct a multi-prime RSACipherEng object from the given
+	 * attributes.
+	 * 
+	 * @param primes
+	 *            the prime factors of the cipher modulus
+	 * 
+	 * @param e
+	 *            the given cipher public key
+	 * 
+	 * @return The resulting RSACipherEng object.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(primes == null) || (e == null)</code> or if <code>primes</code> contains a
+	 *             <code>null</code> element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(primes.length < 2) || (primes[i] <= 1) || (primes[i] == primes[j]) || (e <= 0)
+	 *             || (phi <= e)</code> for some valid <code>i != j</code>
+	 * 
+	 * @throws ArithmeticException
+	 *             If <code>(gcd(e, phi) != 1) || (gcd(primes[i], primes[j]) != 1)</code> for some valid
+	 *             <code>i != j</code>
+	 * 
+	 * @throws InvalidKeySpecException
+	 *             Thrown by
+	 *             <code>RSACipherEng.KEY_FACTORY.generatePublic(new RSAPublicKeySpec(n, e))</code> or
+	 *             <code>RSACipherEng.KEY_FACTORY.generatePrivate(spec)</code>
+	 */
+	public static RSACipherEng knownFactors(BigInteger[] primes, BigInteger e)
+			throws NullPointerException, IllegalArgumentException, ArithmeticException, InvalidKeySpecException {
+		return RSACipherEng.knownFactors(primes, e, CipherEngUtil.DEFAULT_MODE);
+	}
+
 	/**
 	 * RSACipherEng static factory: construct an RSACipherEng object from the given attributes.
 	 * 
@@ -663,6 +946,78 @@ public class RSACipherEng {
 		return RSACipherEng.knownKeys(n, e, d, CipherEngUtil.DEFAULT_MODE);
 	}
 
+	/**
+	 * RSACipherEng static factory: construct an RSACipherEng object from the given key pair.
+	 * 
+	 * @param pair
+	 *            the given key pair (e.g., one taken from a KeyPairPool)
+	 * 
+	 * @param opmode
+	 *            the given mode of operation
+	 * 
+	 * @param padding
+	 *            the given padding algorithm
+	 * 
+	 * @return The resulting RSACipherEng object.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(pair == null) || (opmode == null) || (padding == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If
+	 *             <code>(!(pair.getPublic() instanceof RSAPublicKey)) || (!(pair.getPrivate() instanceof RSAPrivateKey))</code>
+	 */
+	public static RSACipherEng knownKeys(KeyPair pair, CipherEngUtil.OPMODE opmode, CipherEngUtil.PADDING padding)
+			throws NullPointerException, IllegalArgumentException {
+		try {
+			return new RSACipherEng(pair, opmode, padding);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+			throw new ExceptionInInitializerError();
+		}
+	}
+
+	/**
+	 * RSACipherEng static factory: construct an RSACipherEng object from the given key pair.
+	 * 
+	 * @param pair
+	 *            the given key pair (e.g., one taken from a KeyPairPool)
+	 * 
+	 * @param opmode
+	 *            the given mode of operation
+	 * 
+	 * @return The resulting RSACipherEng object.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(pair == null) || (opmode == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If
+	 *             <code>(!(pair.getPublic() instanceof RSAPublicKey)) || (!(pair.getPrivate() instanceof RSAPrivateKey))</code>
+	 */
+	public static RSACipherEng knownKeys(KeyPair pair, CipherEngUtil.OPMODE opmode)
+			throws NullPointerException, IllegalArgumentException {
+		return RSACipherEng.knownKeys(pair, opmode, CipherEngUtil.DEFAULT_PADDING);
+	}
+
+	/**
+	 * RSACipherEng static factory: construct an RSACipherEng object from the given key pair.
+	 * 
+	 * @param pair
+	 *            the given key pair (e.g., one taken from a KeyPairPool)
+	 * 
+	 * @return The resulting RSACipherEng object.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>pair == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If
+	 *             <code>(!(pair.getPublic() instanceof RSAPublicKey)) || (!(pair.getPrivate() instanceof RSAPrivateKey))</code>
+	 */
+	public static RSACipherEng knownKeys(KeyPair pair) throws NullPointerException, IllegalArgumentException {
+		return RSACipherEng.knownKeys(pair, CipherEngUtil.DEFAULT_MODE);
+	}
+
 	/**
 	 * @return <code>this.n</code>.
 	 */
@@ -684,6 +1039,20 @@ public class RSACipherEng {
 		return this.d;
 	}
 
+	/**
+	 * @return <code>this.publicKey</code>.
+	 */
+	public RSAPublicKey getPublicKey() {
+		return this.publicKey;
+	}
+
+	/**
+	 * @return <code>this.privateKey</code>.
+	 */
+	public RSAPrivateKey getPrivateKey() {
+		return this.privateKey;
+	}
+
 	/**
 	 * @return <code>this.opmode</code>.
 	 */
@@ -701,9 +1070,10 @@ public class RSACipherEng {
 	 *             If <code>opmode == null</code>
 	 */
 	public void opmode(CipherEngUtil.OPMODE opmode) throws NullPointerException {
+		this.close(); // Give the current engine back before borrowing the new one.
 		// The following is meant to be an assignment of this.engine and this.opmode.
 		try {
-			this.engine = CipherEngUtil.getEngine(RSAUtil.ALGORITHM, opmode, this.padding);
+			this.engine = CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, opmode, this.padding);
 		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
 			throw new ExceptionInInitializerError();
 		}
@@ -727,9 +1097,10 @@ public class RSACipherEng {
 	 *             If <code>padding == null</code>
 	 */
 	public void padding(CipherEngUtil.PADDING padding) throws NullPointerException {
+		this.close(); // Give the current engine back before borrowing the new one.
 		// The following is meant to be an assignment of this.engine and this.padding.
 		try {
-			this.engine = CipherEngUtil.getEngine(RSAUtil.ALGORITHM, this.opmode, padding);
+			this.engine = CipherEngUtil.borrowEngine(RSAUtil.ALGORITHM, this.opmode, padding);
 		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
 			throw new ExceptionInInitializerError();
 		}
@@ -812,7 +1183,7 @@ public class RSACipherEng {
 	 */
 	public byte[] encrypt(byte[] p, boolean publicKey)
 			throws NullPointerException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
-		this.engine.init(Cipher.ENCRYPT_MODE, publicKey ? this.publicKey : this.privateKey);
+		this.engine().init(Cipher.ENCRYPT_MODE, publicKey ? this.publicKey : this.privateKey);
 		return this.engine.doFinal(p);
 	}
 
@@ -921,7 +1292,7 @@ public class RSACipherEng {
 	 */
 	public byte[] decrypt(byte[] c, boolean privateKey)
 			throws NullPointerException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
-		this.engine.init(Cipher.DECRYPT_MODE, privateKey ? this.privateKey : this.publicKey);
+		this.engine().init(Cipher.DECRYPT_MODE, privateKey ? this.privateKey : this.publicKey);
 		return this.engine.doFinal(c);
 	}
 
@@ -1003,4 +1374,146 @@ public class RSACipherEng {
 			throws NullPointerException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
 		return this.decrypt(c, true);
 	}
+
+	/**
+	 * Encrypt the remaining bytes of the given input buffer into the given output buffer without any
+	 * intermediate copy (i.e., through <code>Cipher.doFinal(ByteBuffer, ByteBuffer)</code>). On return,
+	 * the position of <code>in</code> is its limit and the position of <code>out</code> has advanced by
+	 * the number of bytes written.
+	 * 
+	 * @param in
+	 *            the given plaintext buffer
+	 * 
+	 * @param out
+	 *            the given ciphertext buffer
+	 * 
+	 * @param publicKey
+	 *            specifies whether the public key should be applied to the given plaintext buffer
+	 * 
+	 * @return The number of bytes written to <code>out</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by
+	 *             <code>Cipher.init(Cipher.ENCRYPT_MODE, publicKey ? this.publicKey : this.privateKey)</code>
+	 * 
+	 * @throws ShortBufferException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 */
+	public int encrypt(ByteBuffer in, ByteBuffer out, boolean publicKey) throws NullPointerException,
+			InvalidKeyException, ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		if ((in == null) || (out == null)) {
+			throw new NullPointerException();
+		}
+		this.engine().init(Cipher.ENCRYPT_MODE, publicKey ? this.publicKey : this.privateKey);
+		return this.engine.doFinal(in, out);
+	}
+
+	/**
+	 * @param in
+	 *            the given plaintext buffer
+	 * 
+	 * @param out
+	 *            the given ciphertext buffer
+	 * 
+	 * @return <code>this.encrypt(in, out, true)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init(Cipher.ENCRYPT_MODE, this.publicKey)</code>
+	 * 
+	 * @throws ShortBufferException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 */
+	public int encrypt(ByteBuffer in, ByteBuffer out) throws NullPointerException, InvalidKeyException,
+			ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		return this.encrypt(in, out, true);
+	}
+
+	/**
+	 * Decrypt the remaining bytes of the given input buffer into the given output buffer without any
+	 * intermediate copy (i.e., through <code>Cipher.doFinal(ByteBuffer, ByteBuffer)</code>). On return,
+	 * the position of <code>in</code> is its limit and the position of <code>out</code> has advanced by
+	 * the number of bytes written.
+	 * 
+	 * @param in
+	 *            the given ciphertext buffer
+	 * 
+	 * @param out
+	 *            the given plaintext buffer
+	 * 
+	 * @param privateKey
+	 *            specifies whether the private key should be applied to the given ciphertext buffer
+	 * 
+	 * @return The number of bytes written to <code>out</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by
+	 *             <code>Cipher.init(Cipher.DECRYPT_MODE, privateKey ? this.privateKey : this.publicKey)</code>
+	 * 
+	 * @throws ShortBufferException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 */
+	public int decrypt(ByteBuffer in, ByteBuffer out, boolean privateKey) throws NullPointerException,
+			InvalidKeyException, ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		if ((in == null) || (out == null)) {
+			throw new NullPointerException();
+		}
+		this.engine().init(Cipher.DECRYPT_MODE, privateKey ? this.privateKey : this.publicKey);
+		return this.engine.doFinal(in, out);
+	}
+
+	/**
+	 * @param in
+	 *            the given ciphertext buffer
+	 * 
+	 * @param out
+	 *            the given plaintext buffer
+	 * 
+	 * @return <code>this.decrypt(in, out, true)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init(Cipher.DECRYPT_MODE, this.privateKey)</code>
+	 * 
+	 * @throws ShortBufferException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 */
+	public int decrypt(ByteBuffer in, ByteBuffer out) throws NullPointerException, InvalidKeyException,
+			ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		return this.decrypt(in, out, true);
+	}
 }
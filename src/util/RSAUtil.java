@@ -1,6 +1,13 @@
 package util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.InvalidParameterException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
@@ -10,8 +17,14 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Utility RSA methods.
@@ -22,6 +35,7 @@ public class RSAUtil {
 	/**
 	 * Dependencies: <code>
 	 * 		1. util.BigIntUtil
+	 * 		2. util.ConcurrentUtil
 	 * </code>
 	 */
 
@@ -36,6 +50,29 @@ public class RSAUtil {
 	 */
 	public static final int DEFAULT_MAX_NUM_ITERS = 100;
 
+	/**
+	 * The default value for the <code>memoryBudget</code> argument of the <code>batchGCD</code> method
+	 * (i.e., 256 MiB of tree levels kept in memory).
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+
+	/**
+	 * The default value for the <code>maxIters</code> argument of the <code>fermatFactor</code> method.
+	 */
+	public static final long DEFAULT_FERMAT_MAX_ITERS = 1L << 24;
+
+	/**
+	 * The moduli of the quadratic-residue filters used by the <code>fermatFactor</code> method. Together
+	 * they reject about 99% of the non-squares before any full square root is computed.
+	 */
+	private static final int[] QR_MODULI = { 64, 63, 65, 11 };
+
+	/**
+	 * <code>RSAUtil.QR_TABLES[k][r]</code> is <code>true</code> if and only if <code>r</code> is a square
+	 * modulo <code>RSAUtil.QR_MODULI[k]</code>.
+	 */
+	private static final boolean[][] QR_TABLES = RSAUtil.qrTables(RSAUtil.QR_MODULI);
+
 	/**
 	 * @return <code>KeyPairGenerator.getInstance(RSAUtil.ALGORITHM)</code>.
 	 */
@@ -231,6 +268,46 @@ public class RSAUtil {
 		return p_minus_1.multiply(q_minus_1);
 	}
 
+	/**
+	 * Multi-prime version of <code>RSAUtil.phi(BigInteger, BigInteger)</code> (see RFC 8017).
+	 * 
+	 * @param primes
+	 *            the prime factors of the cipher modulus
+	 * 
+	 * @return <code>(primes[0] - 1) * (primes[1] - 1) * ... * (primes[primes.length - 1] - 1)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>primes == null</code> or if <code>primes</code> contains a <code>null</code>
+	 *             element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(primes.length < 2) || (primes[i] <= 1) || (primes[i] == primes[j])</code> for
+	 *             some valid <code>i != j</code>
+	 */
+	public static BigInteger phi(BigInteger[] primes) throws NullPointerException, IllegalArgumentException {
+		if (primes.length < 2) {
+			throw new IllegalArgumentException();
+		}
+		// 2 <= primes.length
+
+		BigInteger result = BigInteger.ONE, r_minus_1 = null;
+		for (int i = 0; i != primes.length; ++i) {
+			// Save r - 1 and ensure that it is positive.
+			r_minus_1 = primes[i].subtract(BigInteger.ONE);
+			if (r_minus_1.signum() != 1) { // i.e., r - 1 <= 0
+				throw new IllegalArgumentException();
+			}
+			// 1 < r
+			for (int j = 0; j != i; ++j) {
+				if (primes[i].equals(primes[j])) { // i.e., primes[i] == primes[j]
+					throw new IllegalArgumentException();
+				}
+			}
+			result = result.multiply(r_minus_1);
+		}
+		return result;
+	}
+
 	/**
 	 * @param phi
 	 *            the given value of Euler's totient function for the cipher modulus
@@ -619,4 +696,657 @@ public class RSAUtil {
 			throws NullPointerException, IllegalArgumentException {
 		return RSAUtil.primeFactors(n, e, d, RSAUtil.DEFAULT_MAX_NUM_ITERS);
 	}
+
+	/**
+	 * Find every modulus which shares a prime factor with at least one other given modulus by using
+	 * Bernstein's batch GCD: <br>
+	 * 1. Build the product tree of the moduli (i.e., the root is <code>N = n_0 * ... * n_(k-1)</code>).
+	 * <br>
+	 * 2. Push <code>N</code> down the tree as a remainder tree of <code>N (mod x * x)</code> for every
+	 * node <code>x</code>, so that the leaves are <code>z_i = N (mod n_i * n_i)</code>. <br>
+	 * 3. <code>gcd(z_i / n_i, n_i) == gcd(N / n_i, n_i)</code> is the product of the prime factors
+	 * <code>n_i</code> shares with the other moduli. <br>
+	 * <br>
+	 * 
+	 * Every level of both trees is computed in parallel. Once the levels kept in memory would exceed
+	 * <code>memoryBudget</code> bytes, further levels are written to temporary files in
+	 * <code>spillDir</code> and read back (then deleted) when the remainder tree needs them. <br>
+	 * <br>
+	 * 
+	 * When both prime factors of <code>n_i</code> are shared (i.e., <code>gcd == n_i</code>), the
+	 * factors are recovered by a pairwise GCD against the other affected moduli. Moduli which occur more
+	 * than once in <code>moduli</code> cannot be factored that way and are not reported unless one of their
+	 * factors is shared with a different modulus.
+	 * 
+	 * Postcondition: <code>Result != null</code> <br>
+	 * Postcondition: <code>Result</code> is sorted by index
+	 * 
+	 * @param moduli
+	 *            the given cipher moduli
+	 * 
+	 * @param numThreads
+	 *            the given number of threads
+	 * 
+	 * @param memoryBudget
+	 *            the given maximum number of bytes of tree levels to keep in memory
+	 * 
+	 * @param spillDir
+	 *            the directory for spilled tree levels (<code>null</code> for the default temporary-file
+	 *            directory)
+	 * 
+	 * @return The moduli which share a factor with another one, together with their prime factors.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>moduli == null</code> or if <code>moduli</code> contains a <code>null</code>
+	 *             element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(moduli[i] <= 1) || (numThreads <= 0) || (memoryBudget < 0)</code> for some
+	 *             valid <code>i</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs while spilling a tree level
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting for a level to be computed
+	 */
+	public static List<SharedFactor> batchGCD(BigInteger[] moduli, int numThreads, long memoryBudget, Path spillDir)
+			throws NullPointerException, IllegalArgumentException, IOException, CancellationException {
+		if ((numThreads <= 0) || (memoryBudget < 0)) {
+			throw new IllegalArgumentException();
+		}
+		for (final BigInteger n : moduli) {
+			if (n.compareTo(BigInteger.ONE) <= 0) { // i.e., n <= 1
+				throw new IllegalArgumentException();
+			}
+		}
+		// (1 < moduli[i]) && (0 < numThreads) && (0 <= memoryBudget)
+
+		final List<SharedFactor> result = new ArrayList<SharedFactor>();
+		if (moduli.length < 2) { // i.e., nothing to share with
+			return result;
+		}
+		// 2 <= moduli.length
+
+		/*
+		 * levels[k] is level k of the product tree (level 0 being the moduli) or null if it was spilled to
+		 * spills[k].
+		 */
+		final List<BigInteger[]> levels = new ArrayList<BigInteger[]>();
+		final List<Path> spills = new ArrayList<Path>();
+		final ExecutorService pool = ConcurrentUtil.newFixedDaemonPool(numThreads, "batch-gcd");
+		try {
+			// Build the product tree.
+			BigInteger[] level = moduli.clone();
+			long kept = 0;
+			while (level.length != 1) {
+				final BigInteger[] lower = level, upper = new BigInteger[(lower.length + 1) >>> 1];
+				ConcurrentUtil.parallelFor(pool, 0, upper.length, numThreads, (i) -> {
+					final int j = i << 1;
+					upper[i] = (j + 1 < lower.length) ? lower[j].multiply(lower[j + 1]) : lower[j];
+				});
+				// Keep the lower level in memory if it fits in the budget and otherwise spill it.
+				final long size = RSAUtil.sizeOf(lower);
+				if (size <= memoryBudget - kept) {
+					kept += size;
+					levels.add(lower);
+					spills.add(null);
+				} else {
+					levels.add(null);
+					spills.add(RSAUtil.spill(lower, spillDir));
+				}
+				level = upper;
+			}
+			// level.length == 1 (i.e., level is the root)
+
+			// Push the root down the remainder tree.
+			BigInteger[] rems = level;
+			for (int k = levels.size() - 1; k != -1; --k) {
+				final BigInteger[] nodes = (levels.get(k) != null) ? levels.get(k) : RSAUtil.unspill(spills.get(k));
+				levels.set(k, null); // Release the level since it is no longer needed after this iteration.
+				final BigInteger[] upper = rems, lower = new BigInteger[nodes.length];
+				ConcurrentUtil.parallelFor(pool, 0, lower.length, numThreads, (i) -> {
+					final BigInteger x = nodes[i];
+					lower[i] = upper[i >>> 1].mod(x.multiply(x));
+				});
+				rems = lower;
+			}
+			// rems[i] == N (mod moduli[i] * moduli[i])
+
+			// Compute the shared factors at the leaves.
+			final BigInteger[] gcds = new BigInteger[moduli.length], leaves = rems;
+			ConcurrentUtil.parallelFor(pool, 0, gcds.length, numThreads, (i) -> {
+				final BigInteger n = moduli[i];
+				gcds[i] = leaves[i].divide(n).gcd(n);
+			});
+
+			for (int i = 0; i != gcds.length; ++i) {
+				BigInteger g = gcds[i];
+				final BigInteger n = moduli[i];
+				if (g.equals(BigInteger.ONE)) { // i.e., no shared factor
+					continue;
+				} else if (g.equals(n)) {
+					/*
+					 * Every factor of n is shared, possibly with different moduli. Any other modulus sharing a
+					 * factor with n but not equal to n is among the moduli with a non-trivial gcd, so it
+					 * suffices to look for a proper divisor among the other moduli with a non-trivial gcd.
+					 */
+					g = null;
+					for (int j = 0; (j != gcds.length) && (g == null); ++j) {
+						if ((j != i) && !gcds[j].equals(BigInteger.ONE) && !moduli[j].equals(n)) {
+							final BigInteger d = n.gcd(moduli[j]);
+							if (!d.equals(BigInteger.ONE) && !d.equals(n)) { // i.e., 1 < d < n
+								g = d;
+							}
+						}
+					}
+					if (g == null) { // i.e., n only occurs as a duplicate
+						continue;
+					}
+				}
+				// 1 < g < n
+				final BigInteger q = g, p = n.divide(g);
+				result.add((q.compareTo(p) <= 0) ? new SharedFactor(i, n, q, p) : new SharedFactor(i, n, p, q));
+			}
+			return result;
+		} finally {
+			pool.shutdownNow();
+			for (final Path path : spills) {
+				if (path != null) {
+					Files.deleteIfExists(path);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Postcondition: <code>Result != null</code> <br>
+	 * Postcondition: <code>Result</code> is sorted by index
+	 * 
+	 * @param moduli
+	 *            the given cipher moduli
+	 * 
+	 * @param numThreads
+	 *            the given number of threads
+	 * 
+	 * @return
+	 *         <code>RSAUtil.batchGCD(moduli, numThreads, RSAUtil.DEFAULT_MEMORY_BUDGET, null)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>moduli == null</code> or if <code>moduli</code> contains a <code>null</code>
+	 *             element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(moduli[i] <= 1) || (numThreads <= 0)</code> for some valid <code>i</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs while spilling a tree level
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting for a level to be computed
+	 */
+	public static List<SharedFactor> batchGCD(BigInteger[] moduli, int numThreads)
+			throws NullPointerException, IllegalArgumentException, IOException, CancellationException {
+		return RSAUtil.batchGCD(moduli, numThreads, RSAUtil.DEFAULT_MEMORY_BUDGET, null);
+	}
+
+	/**
+	 * Postcondition: <code>Result != null</code> <br>
+	 * Postcondition: <code>Result</code> is sorted by index
+	 * 
+	 * @param moduli
+	 *            the given cipher moduli
+	 * 
+	 * @return <code>RSAUtil.batchGCD(moduli, ConcurrentUtil.DEFAULT_NUM_THREADS)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>moduli == null</code> or if <code>moduli</code> contains a <code>null</code>
+	 *             element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>moduli[i] <= 1</code> for some valid <code>i</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs while spilling a tree level
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting for a level to be computed
+	 */
+	public static List<SharedFactor> batchGCD(BigInteger[] moduli)
+			throws NullPointerException, IllegalArgumentException, IOException, CancellationException {
+		return RSAUtil.batchGCD(moduli, ConcurrentUtil.DEFAULT_NUM_THREADS);
+	}
+
+	/**
+	 * Factor the given modulus with Fermat's method, i.e., search for the smallest <code>a</code> such
+	 * that <code>a * a - n == b * b</code> starting from <code>a == ceil(sqrt(n))</code>, and then
+	 * <code>n == (a - b) * (a + b)</code>. The number of candidates needed grows with
+	 * <code>(q - p)<sup>2</sup> / (8 * sqrt(n))</code>, so it quickly recovers primes which were
+	 * generated too close together. <br>
+	 * <br>
+	 * 
+	 * Every candidate <code>b * b</code> is first checked against quadratic-residue filters modulo
+	 * <code>RSAUtil.QR_MODULI</code>, which are updated incrementally with int arithmetic only, and the
+	 * full square root is only computed for the survivors. The candidate range is interleaved across
+	 * <code>numThreads</code> threads and the search stops as soon as one of them succeeds. <br>
+	 * <br>
+	 * 
+	 * Postcondition: <code>(Result != null) implies (Result.length == 2)</code> <br>
+	 * Postcondition: <code>(Result != null) implies (Result[0] <= Result[1])</code> <br>
+	 * Postcondition: <code>(Result != null) implies (Result[0] * Result[1] == n)</code> <br>
+	 * Postcondition: <code>(Result == null)</code> if no non-trivial factorization was found within
+	 * <code>maxIters</code> candidates
+	 * 
+	 * @param n
+	 *            the given cipher modulus
+	 * 
+	 * @param maxIters
+	 *            the maximum number of candidates to examine
+	 * 
+	 * @param numThreads
+	 *            the given number of threads
+	 * 
+	 * @return The resulting BigInteger array.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>n == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(n <= 3) || (maxIters <= 0) || (numThreads <= 0)</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static BigInteger[] fermatFactor(BigInteger n, long maxIters, int numThreads)
+			throws NullPointerException, IllegalArgumentException, CancellationException {
+		if (n.compareTo(BigInteger.valueOf(3)) <= 0) { // i.e., n <= 3
+			throw new IllegalArgumentException();
+		} else if ((maxIters <= 0) || (numThreads <= 0)) {
+			throw new IllegalArgumentException();
+		}
+		// (3 < n) && (0 < maxIters) && (0 < numThreads)
+
+		// Fermat's method needs an odd modulus (and an even one is trivial to factor anyway).
+		if (!n.testBit(0)) { // i.e., BigIntUtil.isEven(n)
+			return new BigInteger[] { BigIntUtil.TWO, n.shiftRight(1) };
+		}
+		// n % 2 == 1
+
+		final BigInteger a0 = BigIntUtil.sqrt(n, false); // i.e., ceil(sqrt(n))
+		if (numThreads == 1) { // i.e., no point in handing the work over to a pool
+			return RSAUtil.fermatSearch(n, a0, 0, 1, maxIters, null);
+		}
+		// 1 < numThreads
+
+		final int stride = (int) Math.min(numThreads, maxIters);
+		final AtomicReference<BigInteger[]> found = new AtomicReference<BigInteger[]>();
+		final List<Callable<Void>> workers = new ArrayList<Callable<Void>>(stride);
+		for (int w = 0; w != stride; ++w) {
+			final int offset = w;
+			workers.add(() -> {
+				final BigInteger[] factors = RSAUtil.fermatSearch(n, a0, offset, stride, maxIters, found);
+				if (factors != null) {
+					found.compareAndSet(null, factors);
+				}
+				return null;
+			});
+		}
+		ConcurrentUtil.invokeAll(workers, stride, "fermat");
+		return found.get();
+	}
+
+	/**
+	 * Postcondition: <code>(Result != null) implies (Result.length == 2)</code> <br>
+	 * Postcondition: <code>(Result != null) implies (Result[0] <= Result[1])</code> <br>
+	 * Postcondition: <code>(Result != null) implies (Result[0] * Result[1] == n)</code>
+	 * 
+	 * @param n
+	 *            the given cipher modulus
+	 * 
+	 * @param maxIters
+	 *            the maximum number of candidates to examine
+	 * 
+	 * @return <code>RSAUtil.fermatFactor(n, maxIters, 1)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>n == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(n <= 3) || (maxIters <= 0)</code>
+	 */
+	public static BigInteger[] fermatFactor(BigInteger n, long maxIters)
+			throws NullPointerException, IllegalArgumentException {
+		return RSAUtil.fermatFactor(n, maxIters, 1);
+	}
+
+	/**
+	 * Postcondition: <code>(Result != null) implies (Result.length == 2)</code> <br>
+	 * Postcondition: <code>(Result != null) implies (Result[0] <= Result[1])</code> <br>
+	 * Postcondition: <code>(Result != null) implies (Result[0] * Result[1] == n)</code>
+	 * 
+	 * @param n
+	 *            the given cipher modulus
+	 * 
+	 * @return <code>RSAUtil.fermatFactor(n, RSAUtil.DEFAULT_FERMAT_MAX_ITERS)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>n == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>n <= 3</code>
+	 */
+	public static BigInteger[] fermatFactor(BigInteger n) throws NullPointerException, IllegalArgumentException {
+		return RSAUtil.fermatFactor(n, RSAUtil.DEFAULT_FERMAT_MAX_ITERS);
+	}
+
+	/**
+	 * Apply <code>RSAUtil.fermatFactor(moduli[i], maxIters)</code> to every given modulus. The moduli (not
+	 * the candidate ranges) are split across <code>numThreads</code> threads since that keeps every thread
+	 * busy without any coordination.
+	 * 
+	 * Postcondition: <code>Result != null</code> <br>
+	 * Postcondition: <code>Result.length == moduli.length</code> <br>
+	 * Postcondition: <code>Result[i] == RSAUtil.fermatFactor(moduli[i], maxIters)</code>
+	 * 
+	 * @param moduli
+	 *            the given cipher moduli
+	 * 
+	 * @param maxIters
+	 *            the maximum number of candidates to examine per modulus
+	 * 
+	 * @param numThreads
+	 *            the given number of threads
+	 * 
+	 * @return The resulting BigInteger arrays.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>moduli == null</code> or if <code>moduli</code> contains a <code>null</code>
+	 *             element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(moduli[i] <= 3) || (maxIters <= 0) || (numThreads <= 0)</code> for some valid
+	 *             <code>i</code>
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static BigInteger[][] fermatFactor(BigInteger[] moduli, long maxIters, int numThreads)
+			throws NullPointerException, IllegalArgumentException, CancellationException {
+		if ((maxIters <= 0) || (numThreads <= 0)) {
+			throw new IllegalArgumentException();
+		}
+		for (final BigInteger n : moduli) {
+			if (n.compareTo(BigInteger.valueOf(3)) <= 0) { // i.e., n <= 3
+				throw new IllegalArgumentException();
+			}
+		}
+		// (3 < moduli[i]) && (0 < maxIters) && (0 < numThreads)
+
+		final BigInteger[][] result = new BigInteger[moduli.length][];
+		final ExecutorService pool = ConcurrentUtil.newFixedDaemonPool(numThreads, "fermat");
+		try {
+			ConcurrentUtil.parallelFor(pool, 0, moduli.length, numThreads,
+					(i) -> result[i] = RSAUtil.fermatFactor(moduli[i], maxIters));
+		} finally {
+			pool.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Examine the candidates <code>a == a0 + t</code> for <code>t == offset, offset + stride, ...</code>
+	 * below <code>maxIters</code>. <br>
+	 * <br>
+	 * 
+	 * Precondition: <code>(n % 2 == 1) && (3 < n) && (a0 == ceil(sqrt(n)))</code> <br>
+	 * Precondition: <code>(0 <= offset) && (offset < stride) && (stride <= maxIters)</code>
+	 * 
+	 * @param n
+	 *            the given cipher modulus
+	 * 
+	 * @param a0
+	 *            the first candidate
+	 * 
+	 * @param offset
+	 *            the given offset of the first candidate examined by this search
+	 * 
+	 * @param stride
+	 *            the given distance between consecutive candidates examined by this search
+	 * 
+	 * @param maxIters
+	 *            the maximum number of candidates (over all of the searches)
+	 * 
+	 * @param found
+	 *            set by another search once it succeeds (may be <code>null</code>)
+	 * 
+	 * @return <code>{ a - b, a + b }</code> for the first candidate <code>a</code> such that
+	 *         <code>a * a - n == b * b</code> and <code>1 < a - b</code>, or <code>null</code> if there is
+	 *         no such candidate or another search succeeded first.
+	 */
+	private static BigInteger[] fermatSearch(BigInteger n, BigInteger a0, long offset, long stride, long maxIters,
+			AtomicReference<BigInteger[]> found) {
+		/**
+		 * For every filter modulus <code>M</code>, <code>r == (a * a - n) (mod M)</code> and stepping from
+		 * <code>a</code> to <code>a + stride</code> adds <code>delta == 2 * a * stride + stride * stride
+		 * (mod M)</code> to <code>r</code>, while <code>delta</code> itself grows by
+		 * <code>2 * stride * stride (mod M)</code>. Therefore, every step only costs a few int additions.
+		 */
+		final int numFilters = RSAUtil.QR_MODULI.length;
+		final int[] r = new int[numFilters], delta = new int[numFilters], step = new int[numFilters];
+		for (int k = 0; k != numFilters; ++k) {
+			final int m = RSAUtil.QR_MODULI[k];
+			final long a = (a0.mod(BigInteger.valueOf(m)).longValue() + offset) % m;
+			final long s = stride % m;
+			r[k] = (int) Math.floorMod(a * a - n.mod(BigInteger.valueOf(m)).longValue(), (long) m);
+			delta[k] = (int) ((2 * a * s + s * s) % m);
+			step[k] = (int) ((2 * s * s) % m);
+		}
+
+		for (long t = offset; t < maxIters; t += stride) {
+			// Check whether another search succeeded (or the search was cancelled) every so often.
+			if (((t / stride) & 0xFFF) == 0) {
+				if (((found != null) && (found.get() != null)) || Thread.currentThread().isInterrupted()) {
+					return null;
+				}
+			}
+			boolean candidate = true;
+			for (int k = 0; k != numFilters; ++k) {
+				candidate &= RSAUtil.QR_TABLES[k][r[k]];
+				final int m = RSAUtil.QR_MODULI[k];
+				if ((r[k] += delta[k]) >= m) {
+					r[k] -= m;
+				}
+				if ((delta[k] += step[k]) >= m) {
+					delta[k] -= m;
+				}
+			}
+			if (!candidate) {
+				continue;
+			}
+			// a * a - n passed every filter so compute the full square root.
+			final BigInteger a = a0.add(BigInteger.valueOf(t));
+			final BigInteger b2 = a.multiply(a).subtract(n);
+			final BigInteger b = BigIntUtil.sqrt(b2, true);
+			if (b.multiply(b).equals(b2)) {
+				final BigInteger p = a.subtract(b);
+				// p == 1 means that the trivial factorization was reached (i.e., n is prime).
+				return p.equals(BigInteger.ONE) ? null : new BigInteger[] { p, a.add(b) };
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param moduli
+	 *            the given filter moduli
+	 * 
+	 * @return The quadratic-residue tables of the given filter moduli.
+	 */
+	private static boolean[][] qrTables(int[] moduli) {
+		final boolean[][] result = new boolean[moduli.length][];
+		for (int k = 0; k != moduli.length; ++k) {
+			final int m = moduli[k];
+			result[k] = new boolean[m];
+			for (int x = 0; x != m; ++x) {
+				result[k][(x * x) % m] = true;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param level
+	 *            the given tree level
+	 * 
+	 * @return An estimate of the number of bytes the given tree level occupies in memory.
+	 */
+	private static long sizeOf(BigInteger[] level) {
+		// Count the magnitude plus a rough per-object overhead.
+		long result = 0;
+		for (final BigInteger x : level) {
+			result += (x.bitLength() >>> 3) + 64;
+		}
+		return result;
+	}
+
+	/**
+	 * Write the given tree level to a new temporary file.
+	 * 
+	 * @param level
+	 *            the given tree level
+	 * 
+	 * @param dir
+	 *            the given directory (<code>null</code> for the default temporary-file directory)
+	 * 
+	 * @return The path of the temporary file.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	private static Path spill(BigInteger[] level, Path dir) throws IOException {
+		final Path result = (dir == null) ? Files.createTempFile("batch-gcd-", ".lvl")
+				: Files.createTempFile(dir, "batch-gcd-", ".lvl");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(result)))) {
+			out.writeInt(level.length);
+			for (final BigInteger x : level) {
+				final byte[] bytes = x.toByteArray();
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		} catch (IOException ex) {
+			Files.deleteIfExists(result);
+			throw ex;
+		}
+		return result;
+	}
+
+	/**
+	 * @param path
+	 *            the path of a temporary file written by <code>RSAUtil.spill</code>
+	 * 
+	 * @return The tree level stored in the given temporary file.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	private static BigInteger[] unspill(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			final BigInteger[] result = new BigInteger[in.readInt()];
+			for (int i = 0; i != result.length; ++i) {
+				final byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				result[i] = new BigInteger(bytes);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Class that represents a modulus found to share a prime factor with another modulus. The recovered
+	 * factors can be passed to <code>RSA.knownFactors(this.getP(), this.getQ(), e)</code> to reconstruct
+	 * the private key. <br>
+	 * <br>
+	 * 
+	 * It's main usage is for the return type of <code>RSAUtil::batchGCD</code>.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	public static class SharedFactor {
+		/**
+		 * The index of the modulus in the array given to <code>RSAUtil::batchGCD</code>.
+		 */
+		public final int index;
+
+		/**
+		 * The modulus.
+		 */
+		private final BigInteger n;
+
+		/**
+		 * The smaller prime factor of the modulus.
+		 */
+		private final BigInteger p;
+
+		/**
+		 * The larger prime factor of the modulus.
+		 */
+		private final BigInteger q;
+
+		/**
+		 * Construct a SharedFactor object from the given attributes.
+		 * 
+		 * @param index
+		 *            the given index
+		 * 
+		 * @param n
+		 *            the given modulus
+		 * 
+		 * @param p
+		 *            the given smaller prime factor
+		 * 
+		 * @param q
+		 *            the given larger prime factor
+		 */
+		public SharedFactor(int index, BigInteger n, BigInteger p, BigInteger q) {
+			this.index = index;
+			this.n = n;
+			this.p = p;
+			this.q = q;
+		}
+
+		/**
+		 * Since this class is immutable, there is no need for a copy ctor.
+		 */
+
+		@Override
+		protected Object clone() throws CloneNotSupportedException { // semi-copy
+			throw new CloneNotSupportedException();
+		}
+
+		/**
+		 * @return <code>this.n</code>.
+		 */
+		public BigInteger getN() {
+			return this.n;
+		}
+
+		/**
+		 * @return <code>this.p</code>.
+		 */
+		public BigInteger getP() {
+			return this.p;
+		}
+
+		/**
+		 * @return <code>this.q</code>.
+		 */
+		public BigInteger getQ() {
+			return this.q;
+		}
+
+		@Override
+		public String toString() {
+			return this.index + ": " + this.n + " = " + this.p + " * " + this.q;
+		}
+	}
 }
@@ -0,0 +1,690 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+
+/**
+ * Seekable encrypted file. The plaintext is split into chunks of a fixed size, and every chunk is
+ * encrypted independently with AES-GCM under its own random nonce, so chunks are encrypted and
+ * decrypted in parallel and any range is read by decrypting only the chunks covering it. <br>
+ * The file layout is the following (all integers are big-endian):
+ * 
+ * <pre>
+ * <code>
+ * header: magic (4 bytes) | version (1 byte) | reserved (3 bytes) | chunk size (4 bytes) | plaintext length (8 bytes)
+ * index:  the nonce of every chunk (SymCipherEng.GCM_NONCE_LENGTH bytes each)
+ * chunks: the ciphertext of every chunk followed by its authentication tag
+ * </code>
+ * </pre>
+ * 
+ * Every chunk is authenticated along with the header and its own index (as additional authenticated
+ * data), so a modified header, a modified chunk, or swapped chunks are detected when the affected
+ * chunks are decrypted. There is always at least one chunk (empty for an empty plaintext). <br>
+ * A SeekableCipherFile object is a thread-safe reader of such a file.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class SeekableCipherFile implements AutoCloseable {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.SymCipherEng
+	 * 		2. util.CipherEngUtil
+	 * 		3. util.ConcurrentUtil
+	 * </code>
+	 */
+
+	/**
+	 * The magic number at the start of every file (i.e., "SCF" followed by a zero byte).
+	 */
+	public static final int MAGIC = 0x53434600;
+
+	/**
+	 * The version of the file format.
+	 */
+	public static final byte VERSION = 1;
+
+	/**
+	 * The header size in bytes.
+	 */
+	public static final int HEADER_SIZE = 20;
+
+	/**
+	 * The GCM authentication tag size in bytes.
+	 */
+	public static final int TAG_SIZE = SymCipherEng.GCM_TAG_LENGTH / Byte.SIZE;
+
+	/**
+	 * The default chunk size in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Source of randomness of the chunk nonces.
+	 */
+	private static final SecureRandom NONCE_RANDOM = new SecureRandom();
+
+	/**
+	 * The file channel.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The AES key.
+	 */
+	private final byte[] key;
+
+	/**
+	 * The header bytes (which are authenticated along with every chunk).
+	 */
+	private final byte[] header;
+
+	/**
+	 * The chunk size in bytes. <br>
+	 * <code>0 < this.chunkSize</code>.
+	 */
+	private final int chunkSize;
+
+	/**
+	 * The plaintext length in bytes.
+	 */
+	private final long length;
+
+	/**
+	 * The nonces of all of the chunks (concatenated).
+	 */
+	private final byte[] nonces;
+
+	/**
+	 * Open the given file for reading with the given AES key. Only the header and the index are read
+	 * (and checked for consistency with the size of the file); the chunks are authenticated when read.
+	 * 
+	 * @param key
+	 *            the given AES key
+	 * 
+	 * @param file
+	 *            the given file
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(key == null) || (file == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs or if the file is not a valid seekable encrypted file
+	 */
+	public SeekableCipherFile(byte[] key, Path file) throws NullPointerException, IOException {
+		if ((key == null) || (file == null)) {
+			throw new NullPointerException();
+		}
+		this.key = key.clone();
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			final ByteBuffer header = ByteBuffer.allocate(SeekableCipherFile.HEADER_SIZE);
+			SeekableCipherFile.readFully(this.channel, header, 0);
+			header.flip();
+			if ((header.getInt() != SeekableCipherFile.MAGIC) || (header.get() != SeekableCipherFile.VERSION)) {
+				throw new IOException("Not a seekable encrypted file.");
+			}
+			header.position(header.position() + 3); // reserved
+			this.chunkSize = header.getInt();
+			this.length = header.getLong();
+			this.header = header.array();
+			if ((this.chunkSize <= 0) || (this.length < 0)) {
+				throw new IOException("Corrupted header.");
+			}
+
+			final long chunks = SeekableCipherFile.chunkCount(this.length, this.chunkSize);
+			if (Integer.MAX_VALUE / SymCipherEng.GCM_NONCE_LENGTH < chunks) {
+				throw new IOException("Corrupted header.");
+			}
+			// Check the size before allocating the index, whose size comes from the (untrusted) header.
+			if (this.channel.size() != SeekableCipherFile.fileSize(this.length, this.chunkSize)) {
+				throw new IOException("Truncated or extended file.");
+			}
+			final ByteBuffer index = ByteBuffer.allocate((int) chunks * SymCipherEng.GCM_NONCE_LENGTH);
+			SeekableCipherFile.readFully(this.channel, index, SeekableCipherFile.HEADER_SIZE);
+			this.nonces = index.array();
+		} catch (IOException | RuntimeException ex) {
+			this.channel.close();
+			throw ex;
+		}
+	}
+
+	@Override
+	protected Object clone() throws CloneNotSupportedException { // semi-copy
+		throw new CloneNotSupportedException();
+	}
+
+	/**
+	 * Close the underlying file channel.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * @return <code>this.length</code>, i.e., the plaintext length in bytes.
+	 */
+	public long length() {
+		return this.length;
+	}
+
+	/**
+	 * @return <code>this.chunkSize</code>.
+	 */
+	public int chunkSize() {
+		return this.chunkSize;
+	}
+
+	/**
+	 * @return The number of chunks.
+	 */
+	public int chunkCount() {
+		return (int) SeekableCipherFile.chunkCount(this.length, this.chunkSize);
+	}
+
+	/**
+	 * Encrypt the given plaintext file into the given seekable encrypted file (which is created or
+	 * truncated) with the given AES key and chunk size, encrypting the chunks concurrently on the given
+	 * pool with positional reads and writes.
+	 * 
+	 * @param key
+	 *            the given AES key
+	 * 
+	 * @param in
+	 *            the given plaintext file
+	 * 
+	 * @param out
+	 *            the given seekable encrypted file
+	 * 
+	 * @param chunkSize
+	 *            the given chunk size in bytes
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @return The size of the seekable encrypted file in bytes.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(key == null) || (in == null) || (out == null) || (pool == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>chunkSize <= 0</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             If <code>key</code> is not a valid AES key
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static long encrypt(byte[] key, Path in, Path out, int chunkSize, ExecutorService pool)
+			throws NullPointerException, IllegalArgumentException, IOException, InvalidKeyException,
+			CancellationException {
+		if ((key == null) || (in == null) || (out == null) || (pool == null)) {
+			throw new NullPointerException();
+		} else if (chunkSize <= 0) {
+			throw new IllegalArgumentException();
+		}
+
+		try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+				FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			final long length = src.size();
+			final long chunks = SeekableCipherFile.chunkCount(length, chunkSize);
+			if (Integer.MAX_VALUE / SymCipherEng.GCM_NONCE_LENGTH < chunks) {
+				throw new IllegalArgumentException();
+			}
+
+			// Write the header and the index.
+			final ByteBuffer head = ByteBuffer
+					.allocate(SeekableCipherFile.HEADER_SIZE + (int) chunks * SymCipherEng.GCM_NONCE_LENGTH);
+			head.putInt(SeekableCipherFile.MAGIC).put(SeekableCipherFile.VERSION).put(new byte[3]);
+			head.putInt(chunkSize).putLong(length);
+			final byte[] header = new byte[SeekableCipherFile.HEADER_SIZE];
+			System.arraycopy(head.array(), 0, header, 0, header.length);
+			final byte[] nonces = new byte[(int) chunks * SymCipherEng.GCM_NONCE_LENGTH];
+			SeekableCipherFile.NONCE_RANDOM.nextBytes(nonces);
+			head.put(nonces).flip();
+			SeekableCipherFile.writeFully(dst, head, 0);
+
+			// Encrypt the chunks.
+			try {
+				ConcurrentUtil.parallelFor(pool, 0, (int) chunks, ConcurrentUtil.DEFAULT_NUM_THREADS, (i) -> {
+					final long offset = (long) i * chunkSize;
+					final ByteBuffer plaintext = ByteBuffer.allocate((int) Math.min(chunkSize, length - offset));
+					try (SymCipherEng engine = SeekableCipherFile.engine(key, nonces, i)) {
+						SeekableCipherFile.readFully(src, plaintext, offset);
+						final byte[] ciphertext = engine.encrypt(plaintext.array(), SeekableCipherFile.aad(header, i));
+						SeekableCipherFile.writeFully(dst, ByteBuffer.wrap(ciphertext),
+								SeekableCipherFile.chunkPosition(length, chunkSize, i));
+					} catch (IOException | InvalidKeyException | InvalidAlgorithmParameterException
+							| IllegalBlockSizeException | BadPaddingException ex) {
+						throw new IllegalStateException(ex);
+					}
+				});
+			} catch (IllegalStateException ex) {
+				if (ex.getCause() instanceof IOException) {
+					throw (IOException) ex.getCause();
+				} else if (ex.getCause() instanceof InvalidKeyException) {
+					throw (InvalidKeyException) ex.getCause();
+				}
+				throw ex;
+			}
+			return dst.size();
+		}
+	}
+
+	/**
+	 * @param key
+	 *            the given AES key
+	 * 
+	 * @param in
+	 *            the given plaintext file
+	 * 
+	 * @param out
+	 *            the given seekable encrypted file
+	 * 
+	 * @return
+	 *         <code>SeekableCipherFile.encrypt(key, in, out, SeekableCipherFile.DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool())</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(key == null) || (in == null) || (out == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             If <code>key</code> is not a valid AES key
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public static long encrypt(byte[] key, Path in, Path out)
+			throws NullPointerException, IOException, InvalidKeyException, CancellationException {
+		return SeekableCipherFile.encrypt(key, in, out, SeekableCipherFile.DEFAULT_CHUNK_SIZE,
+				ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Read and decrypt <code>length</code> plaintext bytes starting at the given plaintext offset. Only the
+	 * chunks covering the range are read (with positional reads) and decrypted, concurrently on the given
+	 * pool if there are several of them.
+	 * 
+	 * Postcondition: <code>Result.length == length</code>
+	 * 
+	 * @param offset
+	 *            the given plaintext offset
+	 * 
+	 * @param length
+	 *            the given number of bytes
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @return The plaintext bytes in <code>[offset, offset + length)</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>pool == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(offset < 0) || (length < 0) || (this.length() < offset + length)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             If the key is not a valid AES key
+	 * 
+	 * @throws AEADBadTagException
+	 *             If a chunk (or the header) fails authentication, e.g., because of a wrong key or a
+	 *             modified file
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[] readRange(long offset, int length, ExecutorService pool)
+			throws NullPointerException, IllegalArgumentException, IOException, InvalidKeyException,
+			AEADBadTagException, CancellationException {
+		if (pool == null) {
+			throw new NullPointerException();
+		} else if ((offset < 0) || (length < 0) || (this.length - length < offset)) {
+			throw new IllegalArgumentException();
+		}
+		final byte[] result = new byte[length];
+		if (length == 0) {
+			return result;
+		}
+		// 0 < length
+
+		final int first = (int) (offset / this.chunkSize);
+		final int last = (int) ((offset + length - 1) / this.chunkSize);
+		try {
+			ConcurrentUtil.parallelFor(pool, first, last + 1, ConcurrentUtil.DEFAULT_NUM_THREADS, (i) -> {
+				final byte[] plaintext;
+				try {
+					plaintext = this.chunk(i);
+				} catch (IOException | InvalidKeyException | AEADBadTagException ex) {
+					throw new IllegalStateException(ex);
+				}
+				// Copy the intersection of the chunk with the range.
+				final long chunkStart = (long) i * this.chunkSize;
+				final long from = Math.max(offset, chunkStart);
+				final long to = Math.min(offset + length, chunkStart + plaintext.length);
+				System.arraycopy(plaintext, (int) (from - chunkStart), result, (int) (from - offset), (int) (to - from));
+			});
+		} catch (IllegalStateException ex) {
+			SeekableCipherFile.rethrow(ex);
+		}
+		return result;
+	}
+
+	/**
+	 * @param offset
+	 *            the given plaintext offset
+	 * 
+	 * @param length
+	 *            the given number of bytes
+	 * 
+	 * @return <code>this.readRange(offset, length, ForkJoinPool.commonPool())</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>(offset < 0) || (length < 0) || (this.length() < offset + length)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             If the key is not a valid AES key
+	 * 
+	 * @throws AEADBadTagException
+	 *             If a chunk (or the header) fails authentication
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public byte[] readRange(long offset, int length) throws IllegalArgumentException, IOException,
+			InvalidKeyException, AEADBadTagException, CancellationException {
+		return this.readRange(offset, length, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Decrypt the whole file into the given plaintext file (which is created or truncated), decrypting the
+	 * chunks concurrently on the given pool with positional reads and writes.
+	 * 
+	 * @param out
+	 *            the given plaintext file
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @return The number of plaintext bytes written.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(out == null) || (pool == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             If the key is not a valid AES key
+	 * 
+	 * @throws AEADBadTagException
+	 *             If a chunk (or the header) fails authentication
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public long decrypt(Path out, ExecutorService pool) throws NullPointerException, IOException,
+			InvalidKeyException, AEADBadTagException, CancellationException {
+		if ((out == null) || (pool == null)) {
+			throw new NullPointerException();
+		}
+		try (FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			try {
+				ConcurrentUtil.parallelFor(pool, 0, this.chunkCount(), ConcurrentUtil.DEFAULT_NUM_THREADS, (i) -> {
+					try {
+						SeekableCipherFile.writeFully(dst, ByteBuffer.wrap(this.chunk(i)), (long) i * this.chunkSize);
+					} catch (IOException | InvalidKeyException | AEADBadTagException ex) {
+						throw new IllegalStateException(ex);
+					}
+				});
+			} catch (IllegalStateException ex) {
+				SeekableCipherFile.rethrow(ex);
+			}
+			return dst.size();
+		}
+	}
+
+	/**
+	 * @param out
+	 *            the given plaintext file
+	 * 
+	 * @return <code>this.decrypt(out, ForkJoinPool.commonPool())</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>out == null</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             If the key is not a valid AES key
+	 * 
+	 * @throws AEADBadTagException
+	 *             If a chunk (or the header) fails authentication
+	 * 
+	 * @throws CancellationException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	public long decrypt(Path out)
+			throws NullPointerException, IOException, InvalidKeyException, AEADBadTagException, CancellationException {
+		return this.decrypt(out, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Read and decrypt the given chunk.
+	 * 
+	 * @param index
+	 *            the given chunk index
+	 * 
+	 * @return The plaintext of the given chunk.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             If the key is not a valid AES key
+	 * 
+	 * @throws AEADBadTagException
+	 *             If the chunk (or the header) fails authentication
+	 */
+	private byte[] chunk(int index) throws IOException, InvalidKeyException, AEADBadTagException {
+		final long offset = (long) index * this.chunkSize;
+		final ByteBuffer ciphertext = ByteBuffer
+				.allocate((int) Math.min(this.chunkSize, this.length - offset) + SeekableCipherFile.TAG_SIZE);
+		SeekableCipherFile.readFully(this.channel, ciphertext,
+				SeekableCipherFile.chunkPosition(this.length, this.chunkSize, index));
+		try (SymCipherEng engine = SeekableCipherFile.engine(this.key, this.nonces, index)) {
+			return engine.decrypt(ciphertext.array(), SeekableCipherFile.aad(this.header, index));
+		} catch (AEADBadTagException ex) {
+			throw ex;
+		} catch (InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException ex) {
+			// Cannot happen since the nonce length and the ciphertext length are valid for GCM.
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * @param key
+	 *            the given AES key
+	 * 
+	 * @param nonces
+	 *            the nonces of all of the chunks
+	 * 
+	 * @param index
+	 *            the given chunk index
+	 * 
+	 * @return A new AES-GCM SymCipherEng object (whose engine is borrowed from the engine pool) set to
+	 *         the nonce of the given chunk.
+	 */
+	private static SymCipherEng engine(byte[] key, byte[] nonces, int index) {
+		final byte[] nonce = new byte[SymCipherEng.GCM_NONCE_LENGTH];
+		System.arraycopy(nonces, index * SymCipherEng.GCM_NONCE_LENGTH, nonce, 0, nonce.length);
+		return new SymCipherEng(SymCipherEng.ALGO_SYM.AES, key, CipherEngUtil.OPMODE.GCM,
+				CipherEngUtil.PADDING.NoPadding, nonce);
+	}
+
+	/**
+	 * @param header
+	 *            the given header bytes
+	 * 
+	 * @param index
+	 *            the given chunk index
+	 * 
+	 * @return The additional authenticated data of the given chunk, i.e., the header followed by the
+	 *         chunk index (as a big-endian long).
+	 */
+	private static byte[] aad(byte[] header, int index) {
+		return ByteBuffer.allocate(header.length + Long.BYTES).put(header).putLong(index).array();
+	}
+
+	/**
+	 * @param length
+	 *            the given plaintext length
+	 * 
+	 * @param chunkSize
+	 *            the given chunk size
+	 * 
+	 * @return The number of chunks, i.e., <code>max(1, ceil(length / chunkSize))</code>.
+	 */
+	private static long chunkCount(long length, int chunkSize) {
+		return Math.max(1, (length + chunkSize - 1) / chunkSize);
+	}
+
+	/**
+	 * @param length
+	 *            the given plaintext length
+	 * 
+	 * @param chunkSize
+	 *            the given chunk size
+	 * 
+	 * @param index
+	 *            the given chunk index
+	 * 
+	 * @return The position of the given chunk in the file.
+	 */
+	private static long chunkPosition(long length, int chunkSize, int index) {
+		final long chunks = SeekableCipherFile.chunkCount(length, chunkSize);
+		return SeekableCipherFile.HEADER_SIZE + chunks * SymCipherEng.GCM_NONCE_LENGTH
+				+ index * ((long) chunkSize + SeekableCipherFile.TAG_SIZE);
+	}
+
+	/**
+	 * @param length
+	 *            the given plaintext length
+	 * 
+	 * @param chunkSize
+	 *            the given chunk size
+	 * 
+	 * @return The size of the file.
+	 */
+	private static long fileSize(long length, int chunkSize) {
+		final long chunks = SeekableCipherFile.chunkCount(length, chunkSize);
+		return SeekableCipherFile.HEADER_SIZE + chunks * (SymCipherEng.GCM_NONCE_LENGTH + SeekableCipherFile.TAG_SIZE)
+				+ length;
+	}
+
+	/**
+	 * Fill the remaining bytes of the given buffer from the given channel starting at the given position.
+	 * 
+	 * @param channel
+	 *            the given channel
+	 * 
+	 * @param buffer
+	 *            the given buffer
+	 * 
+	 * @param position
+	 *            the given position
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs or if the end of the channel is reached first
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		for (final long start = position - buffer.position(); buffer.hasRemaining();) {
+			if (channel.read(buffer, start + buffer.position()) == -1) {
+				throw new IOException("Unexpected end of file.");
+			}
+		}
+	}
+
+	/**
+	 * Write the remaining bytes of the given buffer to the given channel starting at the given position.
+	 * 
+	 * @param channel
+	 *            the given channel
+	 * 
+	 * @param buffer
+	 *            the given buffer
+	 * 
+	 * @param position
+	 *            the given position
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		for (final long start = position - buffer.position(); buffer.hasRemaining();) {
+			channel.write(buffer, start + buffer.position());
+		}
+	}
+
+	/**
+	 * Rethrow the checked cause of the given exception (which wraps the failure of a chunk).
+	 * 
+	 * @param ex
+	 *            the given exception
+	 * 
+	 * @throws IOException
+	 *             If the cause is an IOException
+	 * 
+	 * @throws InvalidKeyException
+	 *             If the cause is an InvalidKeyException
+	 * 
+	 * @throws AEADBadTagException
+	 *             If the cause is an AEADBadTagException
+	 * 
+	 * @throws IllegalStateException
+	 *             Otherwise, i.e., <code>ex</code> itself
+	 */
+	private static void rethrow(IllegalStateException ex)
+			throws IOException, InvalidKeyException, AEADBadTagException, IllegalStateException {
+		final Throwable cause = ex.getCause();
+		if (cause instanceof IOException) {
+			throw (IOException) cause;
+		} else if (cause instanceof InvalidKeyException) {
+			throw (InvalidKeyException) cause;
+		} else if (cause instanceof AEADBadTagException) {
+			throw (AEADBadTagException) cause;
+		}
+		throw ex;
+	}
+}
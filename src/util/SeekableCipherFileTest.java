@@ -0,0 +1,256 @@
+package util;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import javax.crypto.AEADBadTagException;
+
+import org.junit.Test;
+
+/**
+ * JUnit4 tests for SeekableCipherFile.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class SeekableCipherFileTest {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.SeekableCipherFile
+	 * 		2. util.SymCipherEng
+	 * </code>
+	 */
+
+	private static final boolean PRINT = false;
+
+	/**
+	 * The shared 128-bit AES key.
+	 */
+	private static final byte[] KEY = { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B,
+			0x0C, 0x0D, 0x0E, 0x0F };
+
+	/**
+	 * The (small) chunk size of the tests, so that the files span several chunks.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	/**
+	 * The plaintext of the tests: five full chunks and a partial one.
+	 */
+	private static final byte[] PLAINTEXT = SeekableCipherFileTest.data(5 * SeekableCipherFileTest.CHUNK_SIZE + 123);
+
+	/**
+	 * @param length
+	 *            the given length
+	 * 
+	 * @return A new byte array of the given length whose <code>i^th</code> byte is <code>(byte) (7 * i)</code>.
+	 */
+	private static byte[] data(int length) {
+		final byte[] result = new byte[length];
+		for (int i = 0; i != length; ++i) {
+			result[i] = (byte) (7 * i);
+		}
+		return result;
+	}
+
+	/**
+	 * @param dir
+	 *            the given directory
+	 * 
+	 * @return A new seekable encrypted file of <code>SeekableCipherFileTest.PLAINTEXT</code> in the given
+	 *         directory.
+	 * 
+	 * @throws IOException
+	 *             Thrown by <code>SeekableCipherFile.encrypt</code>
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SeekableCipherFile.encrypt</code>
+	 */
+	private static Path encrypted(Path dir) throws IOException, GeneralSecurityException {
+		final Path in = dir.resolve("plain.bin");
+		final Path out = dir.resolve("cipher.bin");
+		Files.write(in, SeekableCipherFileTest.PLAINTEXT);
+		SeekableCipherFile.encrypt(SeekableCipherFileTest.KEY, in, out, SeekableCipherFileTest.CHUNK_SIZE,
+				ForkJoinPool.commonPool());
+		return out;
+	}
+
+	/**
+	 * @param index
+	 *            the given chunk index
+	 * 
+	 * @return The offset in the seekable encrypted file of <code>SeekableCipherFileTest.PLAINTEXT</code> of
+	 *         the ciphertext of the given (full) chunk.
+	 */
+	private static long chunkOffset(int index) {
+		final int chunks = (SeekableCipherFileTest.PLAINTEXT.length + SeekableCipherFileTest.CHUNK_SIZE - 1)
+				/ SeekableCipherFileTest.CHUNK_SIZE;
+		return SeekableCipherFile.HEADER_SIZE + (long) chunks * SymCipherEng.GCM_NONCE_LENGTH
+				+ (long) index * (SeekableCipherFileTest.CHUNK_SIZE + SeekableCipherFile.TAG_SIZE);
+	}
+
+	/**
+	 * @param dir
+	 *            the given directory
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	private static void delete(Path dir) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			for (final Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(dir);
+	}
+
+	/**
+	 * @param key
+	 *            the given AES key
+	 * 
+	 * @param file
+	 *            the given seekable encrypted file
+	 * 
+	 * @param offset
+	 *            the given plaintext offset
+	 * 
+	 * @param length
+	 *            the given number of bytes
+	 * 
+	 * @return <code>true</code> if and only if opening the given file or reading the given range of it is
+	 *         rejected (i.e., throws IOException or AEADBadTagException).
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SeekableCipherFile.readRange</code>, other than AEADBadTagException
+	 */
+	private static boolean rejected(byte[] key, Path file, long offset, int length) throws GeneralSecurityException {
+		try (SeekableCipherFile reader = new SeekableCipherFile(key, file)) {
+			reader.readRange(offset, length);
+		} catch (IOException | AEADBadTagException ex) {
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Testing SeekableCipherFile::readRange(long, int) on ranges within a chunk, across chunk boundaries,
+	 * at both ends, and of the whole file, and SeekableCipherFile::decrypt(Path).
+	 * 
+	 * @throws IOException
+	 *             Thrown by the file operations
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SeekableCipherFile.encrypt</code> or
+	 *             <code>SeekableCipherFile.readRange</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test01() throws IOException, GeneralSecurityException {
+		final int chunk = SeekableCipherFileTest.CHUNK_SIZE;
+		final int total = SeekableCipherFileTest.PLAINTEXT.length;
+		final int[][] ranges = { { 0, 0 }, { 0, 1 }, { 10, 100 }, { chunk - 1, 2 }, { chunk, chunk },
+				{ chunk / 2, 3 * chunk }, { total - 1, 1 }, { total - 200, 200 }, { total, 0 }, { 0, total } };
+
+		final Path dir = Files.createTempDirectory("seekable-test");
+		try {
+			final Path file = SeekableCipherFileTest.encrypted(dir);
+			try (SeekableCipherFile reader = new SeekableCipherFile(SeekableCipherFileTest.KEY, file)) {
+				assertTrue("Correct length", reader.length() == total);
+				assertTrue("Correct chunkCount", reader.chunkCount() == 6);
+				for (final int[] range : ranges) {
+					final byte[] expected = Arrays.copyOfRange(SeekableCipherFileTest.PLAINTEXT, range[0],
+							range[0] + range[1]);
+					assertTrue("Correct range", Arrays.equals(reader.readRange(range[0], range[1]), expected));
+
+					if (SeekableCipherFileTest.PRINT) {
+						System.out.println("test01 read [" + range[0] + ", " + (range[0] + range[1]) + ")");
+					}
+				}
+
+				final Path out = dir.resolve("decrypted.bin");
+				assertTrue("Correct decrypt length", reader.decrypt(out) == total);
+				assertTrue("Correct decryptedText",
+						Arrays.equals(Files.readAllBytes(out), SeekableCipherFileTest.PLAINTEXT));
+			}
+		} finally {
+			SeekableCipherFileTest.delete(dir);
+		}
+	}
+
+	/**
+	 * Testing SeekableCipherFile::readRange(long, int) on a modified chunk (only the reads covering it are
+	 * rejected), on swapped chunks, on a modified header, on a truncated file, and with a wrong key.
+	 * 
+	 * @throws IOException
+	 *             Thrown by the file operations
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SeekableCipherFile.encrypt</code> or
+	 *             <code>SeekableCipherFile.readRange</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test02() throws IOException, GeneralSecurityException {
+		final int chunk = SeekableCipherFileTest.CHUNK_SIZE;
+		final Path dir = Files.createTempDirectory("seekable-test");
+		try {
+			final Path file = SeekableCipherFileTest.encrypted(dir);
+			final byte[] original = Files.readAllBytes(file);
+			assertTrue("Untouched file accepted", !SeekableCipherFileTest.rejected(SeekableCipherFileTest.KEY, file,
+					0, SeekableCipherFileTest.PLAINTEXT.length));
+
+			// Flip one ciphertext bit of chunk 2.
+			byte[] bytes = original.clone();
+			bytes[(int) SeekableCipherFileTest.chunkOffset(2) + 5] ^= 0x01;
+			Files.write(file, bytes);
+			assertTrue("Other chunks still readable",
+					!SeekableCipherFileTest.rejected(SeekableCipherFileTest.KEY, file, 0, 2 * chunk)
+							&& !SeekableCipherFileTest.rejected(SeekableCipherFileTest.KEY, file, 3 * chunk, chunk));
+			assertTrue("Modified chunk rejected",
+					SeekableCipherFileTest.rejected(SeekableCipherFileTest.KEY, file, 2 * chunk + 7, 1));
+			assertTrue("Range over modified chunk rejected",
+					SeekableCipherFileTest.rejected(SeekableCipherFileTest.KEY, file, chunk, 3 * chunk));
+
+			// Swap the (equally long) chunks 0 and 1, along with their nonces.
+			bytes = original.clone();
+			final int chunkBytes = chunk + SeekableCipherFile.TAG_SIZE;
+			final int nonce = SymCipherEng.GCM_NONCE_LENGTH;
+			final int first = (int) SeekableCipherFileTest.chunkOffset(0);
+			System.arraycopy(original, first, bytes, first + chunkBytes, chunkBytes);
+			System.arraycopy(original, first + chunkBytes, bytes, first, chunkBytes);
+			System.arraycopy(original, SeekableCipherFile.HEADER_SIZE, bytes, SeekableCipherFile.HEADER_SIZE + nonce,
+					nonce);
+			System.arraycopy(original, SeekableCipherFile.HEADER_SIZE + nonce, bytes, SeekableCipherFile.HEADER_SIZE,
+					nonce);
+			Files.write(file, bytes);
+			assertTrue("Swapped chunks rejected",
+					SeekableCipherFileTest.rejected(SeekableCipherFileTest.KEY, file, 0, 1)
+							&& SeekableCipherFileTest.rejected(SeekableCipherFileTest.KEY, file, chunk, 1));
+
+			// Modify a reserved header byte, which only the authentication of the chunks covers.
+			bytes = original.clone();
+			bytes[5] ^= 0x01;
+			Files.write(file, bytes);
+			assertTrue("Modified header rejected",
+					SeekableCipherFileTest.rejected(SeekableCipherFileTest.KEY, file, 0, 1));
+
+			Files.write(file, Arrays.copyOf(original, original.length - 1));
+			assertTrue("Truncated file rejected",
+					SeekableCipherFileTest.rejected(SeekableCipherFileTest.KEY, file, 0, 1));
+
+			Files.write(file, original);
+			final byte[] wrongKey = SeekableCipherFileTest.KEY.clone();
+			wrongKey[0] ^= 0x01;
+			assertTrue("Wrong key rejected", SeekableCipherFileTest.rejected(wrongKey, file, 0, 1));
+		} finally {
+			SeekableCipherFileTest.delete(dir);
+		}
+	}
+}
@@ -1,29 +1,50 @@
 package util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.KeyGenerator;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 /**
  * Symmetric Cipher Engine. A simple wrapper over Java's Cipher class which only supports the
- * Symmetric Ciphers.
+ * Symmetric Ciphers. <br>
+ * The engine is borrowed from the engine pool of CipherEngUtil and given back by <code>close</code>.
  * 
  * @author Ashkan Moatamed
  */
-public class SymCipherEng {
+public class SymCipherEng implements AutoCloseable {
 	/**
 	 * Dependencies: <code>
 	 * 		1. util.CipherEngUtil
+	 * 		2. util.BlockMode
 	 * </code>
 	 */
 
@@ -42,6 +63,44 @@ public class SymCipherEng {
 	 */
 	public static final int BLOWFISH_BLOCK_SIZE = 8;
 
+	/**
+	 * The default size in bytes of the chunks read by the streaming methods.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The size in bytes of the segments processed concurrently by the parallel CTR methods.
+	 */
+	public static final int PARALLEL_SEGMENT_SIZE = 1 << 20;
+
+	/**
+	 * GCM authentication tag length in bits.
+	 */
+	public static final int GCM_TAG_LENGTH = 128;
+
+	/**
+	 * GCM nonce (i.e., initialization vector) length in bytes.
+	 */
+	public static final int GCM_NONCE_LENGTH = 12;
+
+	/**
+	 * Source of randomness of the generated initialization vectors.
+	 */
+	private static final SecureRandom IV_RANDOM = new SecureRandom();
+
+	/**
+	 * The random fixed field of the GCM nonces generated by <code>this.ivNext()</code>, chosen once per
+	 * process.
+	 */
+	private static final byte[] NONCE_PREFIX = SymCipherEng.randomBytes(SymCipherEng.GCM_NONCE_LENGTH - 8);
+
+	/**
+	 * The invocation field of the next GCM nonce generated by <code>this.ivNext()</code>, shared by all of
+	 * the SymCipherEng objects of the process (so that objects under the same key, including copies, never
+	 * generate the same nonce).
+	 */
+	private static final AtomicLong NONCE_COUNTER = new AtomicLong();
+
 	/**
 	 * Cipher engine.
 	 */
@@ -103,6 +162,57 @@ public class SymCipherEng {
 	 */
 	protected IvParameterSpec iv;
 
+	/**
+	 * The size in bytes of the chunks read by the streaming methods. <br>
+	 * <code>0 < this.bufferSize</code>.
+	 */
+	private int bufferSize = SymCipherEng.DEFAULT_BUFFER_SIZE;
+
+	/**
+	 * Input buffer reused by the streaming methods (allocated when first needed). <br>
+	 * <code>(this.inBuffer == null) || (this.inBuffer.length == this.bufferSize)</code>.
+	 */
+	private byte[] inBuffer = null;
+
+	/**
+	 * Output buffer reused by the streaming methods (allocated when first needed and grown as needed).
+	 */
+	private byte[] outBuffer = null;
+
+	/**
+	 * The direction (i.e., <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>) for
+	 * which <code>this.engine</code> is known to be initialized, or 0 if it is not known to be initialized
+	 * (e.g., before the first operation or after a failed one). Since <code>Cipher.doFinal</code> resets
+	 * the engine to its initialized state, an operation can skip <code>Cipher.init</code> (and the key
+	 * schedule it implies) when the direction, key, and initialization vector are unchanged.
+	 */
+	private int initMode = 0;
+
+	/**
+	 * The key <code>this.engine</code> was last initialized with (compared by reference).
+	 */
+	private SecretKey initKey = null;
+
+	/**
+	 * The initialization vector <code>this.engine</code> was last initialized with (compared by
+	 * reference).
+	 */
+	private IvParameterSpec initIv = null;
+
+	/**
+	 * The initialization vector last used for a GCM or CTR encryption or decryption (compared by
+	 * reference). Since these modes must never encrypt twice under the same key and nonce (i.e., initial
+	 * counter block), a GCM or CTR encryption with <code>this.iv == this.usedNonce</code> first moves on to
+	 * the next nonce.
+	 */
+	private IvParameterSpec usedNonce = null;
+
+	/**
+	 * The direction of the incremental operation in progress (see <code>this.start</code>), or 0 if there
+	 * is none.
+	 */
+	private int streamMode = 0;
+
 	/**
 	 * Construct a SymCipherEng object from the given attributes.
 	 * 
@@ -130,7 +240,7 @@ public class SymCipherEng {
 		try {
 			// The following is meant to be an assignment of
 			// this.engine, this.algo, this.opmode, and this.padding.
-			this.engine = CipherEngUtil.getEngine((this.algo = algo).name(), this.opmode = opmode,
+			this.engine = CipherEngUtil.borrowEngine((this.algo = algo).name(), this.opmode = opmode,
 					this.padding = padding);
 		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
 			throw new ExceptionInInitializerError();
@@ -163,7 +273,7 @@ public class SymCipherEng {
 		try {
 			// The following is meant to be an assignment of
 			// this.engine, this.algo, this.opmode, and this.padding.
-			this.engine = CipherEngUtil.getEngine((this.algo = algo).name(), this.opmode = opmode,
+			this.engine = CipherEngUtil.borrowEngine((this.algo = algo).name(), this.opmode = opmode,
 					this.padding = padding);
 		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
 			throw new ExceptionInInitializerError();
@@ -217,12 +327,22 @@ public class SymCipherEng {
 	 *             If <code>other == null</code>
 	 */
 	public SymCipherEng(SymCipherEng other) throws NullPointerException {
-		this.engine = other.engine; // Since Cipher is singleton (accessed through getInstance).
 		this.algo = other.algo; // Since enum type assignment is a deep enough copy.
 		this.key = SymCipherEng.key(other.key.getEncoded(), this.algo);
 		this.opmode = other.opmode; // Since enum type assignment is a deep enough copy.
 		this.padding = other.padding; // Since enum type assignment is a deep enough copy.
 		this.iv = (other.iv == null) ? null : new IvParameterSpec(other.iv.getIV());
+		this.usedNonce = this.iv; // The copied nonce may already have been used by other.
+		this.bufferSize = other.bufferSize; // The buffers themselves are never shared.
+		/*
+		 * A Cipher object is stateful (and the initialization state is cached per SymCipherEng object), so
+		 * the copy gets its own engine.
+		 */
+		try {
+			this.engine = CipherEngUtil.borrowEngine(this.algo.name(), this.opmode, this.padding);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+			throw new ExceptionInInitializerError();
+		}
 	}
 
 	@Override
@@ -238,6 +358,34 @@ public class SymCipherEng {
 		this.opmode = null;
 		this.padding = null;
 		this.iv = null;
+		this.inBuffer = this.outBuffer = null;
+		this.initKey = null;
+		this.initIv = null;
+		this.usedNonce = null;
+	}
+
+	/**
+	 * Give the calling object's engine back to the engine pool of CipherEngUtil. Every later operation
+	 * throws an IllegalStateException, except for setting the mode of operation or the padding algorithm
+	 * which borrows a new engine. Closing an already closed object has no effect.
+	 */
+	@Override
+	public void close() {
+		if (this.engine != null) {
+			CipherEngUtil.returnEngine(this.engine);
+			this.engine = null;
+			this.initMode = this.streamMode = 0;
+		}
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             If the calling object is closed
+	 */
+	private void checkOpen() throws IllegalStateException {
+		if (this.engine == null) {
+			throw new IllegalStateException("The cipher engine is closed.");
+		}
 	}
 
 	/**
@@ -433,13 +581,15 @@ public class SymCipherEng {
 	 *             If <code>opmode == null</code>
 	 */
 	public void opmode(CipherEngUtil.OPMODE opmode) throws NullPointerException {
+		this.close(); // Give the current engine back before borrowing the new one.
 		// The following is meant to be an assignment of this.engine and this.opmode.
 		try {
-			this.engine = CipherEngUtil.getEngine(this.algo.name(), opmode, this.padding);
+			this.engine = CipherEngUtil.borrowEngine(this.algo.name(), opmode, this.padding);
 		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
 			throw new ExceptionInInitializerError();
 		}
 		this.opmode = opmode;
+		this.initMode = 0; // The new engine is not initialized.
 	}
 
 	/**
@@ -459,13 +609,15 @@ public class SymCipherEng {
 	 *             If <code>padding == null</code>
 	 */
 	public void padding(CipherEngUtil.PADDING padding) throws NullPointerException {
+		this.close(); // Give the current engine back before borrowing the new one.
 		// The following is meant to be an assignment of this.engine, and this.padding.
 		try {
-			this.engine = CipherEngUtil.getEngine(this.algo.name(), this.opmode, padding);
+			this.engine = CipherEngUtil.borrowEngine(this.algo.name(), this.opmode, padding);
 		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
 			throw new ExceptionInInitializerError();
 		}
 		this.padding = padding;
+		this.initMode = 0; // The new engine is not initialized.
 	}
 
 	/**
@@ -491,6 +643,91 @@ public class SymCipherEng {
 		this.iv = new IvParameterSpec(iv);
 	}
 
+	/**
+	 * @return A copy of the calling object's initialization vector, or <code>null</code> if it is not set.
+	 *         Note that in GCM and CTR modes every encryption may move on to a new nonce (see
+	 *         <code>this.ivNext()</code>), which must then be sent along with the ciphertext.
+	 */
+	public byte[] iv() {
+		return (this.iv == null) ? null : this.iv.getIV();
+	}
+
+	/**
+	 * Set the calling object's initialization vector to a new one. In GCM mode, the result is a
+	 * <code>SymCipherEng.GCM_NONCE_LENGTH</code>-byte nonce made of a random 4-byte fixed field (chosen
+	 * once per process) followed by an 8-byte big-endian invocation counter shared by all of the objects
+	 * of the process (i.e., the deterministic construction of NIST SP 800-38D), so no two nonces generated
+	 * in the same process are equal, however many objects use the same key. Processes sharing a key only
+	 * differ by their random fixed fields. In any other mode, the result is a random block-sized
+	 * initialization vector.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the mode of operation is not GCM and the calling object is closed
+	 */
+	public void ivNext() throws IllegalStateException {
+		this.iv = new IvParameterSpec(this.nextIv());
+	}
+
+	/**
+	 * @return A new initialization vector (see <code>this.ivNext()</code>).
+	 * 
+	 * @throws IllegalStateException
+	 *             If the mode of operation is not GCM and the calling object is closed
+	 */
+	private byte[] nextIv() throws IllegalStateException {
+		final byte[] result;
+		if (this.opmode == CipherEngUtil.OPMODE.GCM) {
+			final long counter = SymCipherEng.NONCE_COUNTER.getAndIncrement();
+			result = Arrays.copyOf(SymCipherEng.NONCE_PREFIX, SymCipherEng.GCM_NONCE_LENGTH);
+			for (int i = result.length - 1, j = 0; j != 8; --i, ++j) {
+				result[i] = (byte) (counter >>> (j << 3));
+			}
+		} else {
+			this.checkOpen();
+			result = SymCipherEng.randomBytes(this.engine.getBlockSize());
+		}
+		return result;
+	}
+
+	/**
+	 * @param length
+	 *            the given length
+	 * 
+	 * @return A new byte array of the given length filled by <code>SymCipherEng.IV_RANDOM</code>.
+	 */
+	private static byte[] randomBytes(int length) {
+		final byte[] result = new byte[length];
+		SymCipherEng.IV_RANDOM.nextBytes(result);
+		return result;
+	}
+
+	/**
+	 * @return <code>this.bufferSize</code>.
+	 */
+	public int bufferSize() {
+		return this.bufferSize;
+	}
+
+	/**
+	 * Set the size of the chunks read by the streaming methods. The memory used by the streaming methods
+	 * is proportional to it regardless of the length of the streamed data.
+	 * 
+	 * @param bufferSize
+	 *            the given buffer size in bytes
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If <code>bufferSize <= 0</code>
+	 */
+	public void bufferSize(int bufferSize) throws IllegalArgumentException {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException();
+		}
+		if (bufferSize != this.bufferSize) {
+			this.bufferSize = bufferSize;
+			this.inBuffer = this.outBuffer = null; // Reallocated when next needed.
+		}
+	}
+
 	/**
 	 * Since Cipher, SecretKey, and IvParameterSpec do not redeclare toString, hashCode, and equals then
 	 * neither will SymCipherEng.
@@ -522,12 +759,10 @@ public class SymCipherEng {
 	 */
 	public byte[] encrypt(byte[] p) throws NullPointerException, InvalidKeyException,
 			InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
-		if (this.iv == null) {
-			this.engine.init(Cipher.ENCRYPT_MODE, this.key);
-		} else {
-			this.engine.init(Cipher.ENCRYPT_MODE, this.key, this.iv);
-		}
-		return this.engine.doFinal(p);
+		this.init(Cipher.ENCRYPT_MODE);
+		final byte[] result = this.engine.doFinal(p);
+		this.initMode = Cipher.ENCRYPT_MODE; // doFinal reset the engine to its initialized state.
+		return result;
 	}
 
 	/**
@@ -556,11 +791,1830 @@ public class SymCipherEng {
 	 */
 	public byte[] decrypt(byte[] c) throws NullPointerException, InvalidKeyException,
 			InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
-		if (this.iv == null) {
-			this.engine.init(Cipher.DECRYPT_MODE, this.key);
-		} else {
-			this.engine.init(Cipher.DECRYPT_MODE, this.key, this.iv);
+		this.init(Cipher.DECRYPT_MODE);
+		final byte[] result = this.engine.doFinal(c);
+		this.initMode = Cipher.DECRYPT_MODE; // doFinal reset the engine to its initialized state.
+		return result;
+	}
+
+	/**
+	 * Encrypt the given plaintext byte array and authenticate it along with the given additional
+	 * authenticated data (which is not encrypted) in a single pass. Only meaningful in GCM mode, where the
+	 * result ends with the authentication tag and is encrypted under a fresh nonce (see
+	 * <code>this.iv()</code>).
+	 * 
+	 * @param p
+	 *            the given plaintext byte array
+	 * 
+	 * @param aad
+	 *            the given additional authenticated data
+	 * 
+	 * @return The encrypted ciphertext byte array (followed by the authentication tag).
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(p == null) || (aad == null)</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             Thrown by <code>Cipher.updateAAD</code> if the mode of operation is not authenticated
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(p)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(p)</code>
+	 */
+	public byte[] encrypt(byte[] p, byte[] aad) throws NullPointerException, IllegalStateException,
+			InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		this.start(true);
+		this.updateAAD(aad);
+		return this.doFinal(p);
+	}
+
+	/**
+	 * Decrypt the given ciphertext byte array and verify its authentication tag against the ciphertext
+	 * and the given additional authenticated data in a single pass. Only meaningful in GCM mode.
+	 * 
+	 * @param c
+	 *            the given ciphertext byte array (followed by the authentication tag)
+	 * 
+	 * @param aad
+	 *            the given additional authenticated data
+	 * 
+	 * @return The decrypted plaintext byte array.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(c == null) || (aad == null)</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             Thrown by <code>Cipher.updateAAD</code> if the mode of operation is not authenticated
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(c)</code>, in particular an AEADBadTagException object
+	 *             if the tag does not match
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(c)</code>
+	 */
+	public byte[] decrypt(byte[] c, byte[] aad) throws NullPointerException, IllegalStateException,
+			InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		this.start(false);
+		this.updateAAD(aad);
+		return this.doFinal(c);
+	}
+
+	/**
+	 * Start an incremental operation: the additional authenticated data (if any) is then supplied through
+	 * <code>this.updateAAD</code>, the data through <code>this.update</code>, and the last chunk through
+	 * <code>this.doFinal</code>, which (in GCM mode) appends the authentication tag when encrypting and
+	 * verifies it when decrypting. Any other operation on the calling object abandons the incremental
+	 * operation in progress. <br>
+	 * Note that when decrypting in GCM mode, no plaintext is released before the tag is verified, i.e.,
+	 * <code>this.update</code> returns empty arrays and <code>this.doFinal</code> returns the whole
+	 * plaintext.
+	 * 
+	 * @param encrypt
+	 *            specifies whether to encrypt (or decrypt)
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	public void start(boolean encrypt) throws InvalidKeyException, InvalidAlgorithmParameterException {
+		final int mode = encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE;
+		this.init(mode);
+		this.streamMode = mode;
+	}
+
+	/**
+	 * Supply the given additional authenticated data to the incremental operation in progress. Must be
+	 * called before any data is supplied, and may be called repeatedly to stream the additional
+	 * authenticated data.
+	 * 
+	 * @param aad
+	 *            the given additional authenticated data
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>aad == null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If there is no incremental operation in progress, or if thrown by
+	 *             <code>Cipher.updateAAD</code> (e.g., after <code>this.update</code>)
+	 */
+	public void updateAAD(byte[] aad) throws NullPointerException, IllegalStateException {
+		this.updateAAD(aad, 0, aad.length);
+	}
+
+	/**
+	 * Supply the given range of the given additional authenticated data to the incremental operation in
+	 * progress.
+	 * 
+	 * @param aad
+	 *            the given additional authenticated data
+	 * 
+	 * @param offset
+	 *            the offset of the range in <code>aad</code>
+	 * 
+	 * @param length
+	 *            the length of the range
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>aad == null</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             Thrown by <code>Cipher.updateAAD</code> if the range is out of bounds
+	 * 
+	 * @throws IllegalStateException
+	 *             If there is no incremental operation in progress, or if thrown by
+	 *             <code>Cipher.updateAAD</code> (e.g., after <code>this.update</code>)
+	 */
+	public void updateAAD(byte[] aad, int offset, int length)
+			throws NullPointerException, IllegalArgumentException, IllegalStateException {
+		if (aad == null) {
+			throw new NullPointerException();
+		}
+		this.checkStream();
+		this.engine.updateAAD(aad, offset, length);
+	}
+
+	/**
+	 * Supply the remaining bytes of the given buffer as additional authenticated data to the incremental
+	 * operation in progress. On return, the position of <code>aad</code> is its limit.
+	 * 
+	 * @param aad
+	 *            the given additional authenticated data
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>aad == null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If there is no incremental operation in progress, or if thrown by
+	 *             <code>Cipher.updateAAD</code> (e.g., after <code>this.update</code>)
+	 */
+	public void updateAAD(ByteBuffer aad) throws NullPointerException, IllegalStateException {
+		if (aad == null) {
+			throw new NullPointerException();
+		}
+		this.checkStream();
+		this.engine.updateAAD(aad);
+	}
+
+	/**
+	 * Supply the given chunk to the incremental operation in progress.
+	 * 
+	 * Postcondition: <code>Result != null</code>
+	 * 
+	 * @param chunk
+	 *            the given chunk
+	 * 
+	 * @return The output produced so far (possibly empty).
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>chunk == null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If there is no incremental operation in progress
+	 */
+	public byte[] update(byte[] chunk) throws NullPointerException, IllegalStateException {
+		if (chunk == null) {
+			throw new NullPointerException();
+		}
+		this.checkStream();
+		final byte[] result = this.engine.update(chunk);
+		return (result == null) ? new byte[0] : result;
+	}
+
+	/**
+	 * Supply the given last chunk to the incremental operation in progress and complete it. In GCM mode,
+	 * the authentication tag is appended when encrypting and verified when decrypting.
+	 * 
+	 * Postcondition: <code>Result != null</code>
+	 * 
+	 * @param chunk
+	 *            the given last chunk (possibly empty)
+	 * 
+	 * @return The rest of the output.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>chunk == null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If there is no incremental operation in progress
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(chunk)</code>, in particular an AEADBadTagException
+	 *             object if the tag does not match
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(chunk)</code>
+	 */
+	public byte[] doFinal(byte[] chunk)
+			throws NullPointerException, IllegalStateException, IllegalBlockSizeException, BadPaddingException {
+		if (chunk == null) {
+			throw new NullPointerException();
+		}
+		this.checkStream();
+		final int mode = this.streamMode;
+		this.streamMode = 0;
+		final byte[] result = this.engine.doFinal(chunk);
+		this.initMode = mode; // doFinal reset the engine to its initialized state.
+		return result;
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             If there is no incremental operation in progress
+	 */
+	private void checkStream() throws IllegalStateException {
+		if (this.streamMode == 0) {
+			throw new IllegalStateException("No incremental operation in progress, call start first.");
+		}
+	}
+
+	/**
+	 * Run the given custom block mode in place over <code>buf[off, off + len)</code> on top of the calling
+	 * object's engine, which must be in ECB mode with no padding (see <code>BlockMode.apply</code>).
+	 * 
+	 * @param mode
+	 *            the given block mode
+	 * 
+	 * @param encrypt
+	 *            specifies whether the block cipher encrypts (or decrypts)
+	 * 
+	 * @param chain
+	 *            the chaining block of the first block (i.e., the initialization vector), updated to the
+	 *            chaining block of the block following the last one
+	 * 
+	 * @param buf
+	 *            the given buffer
+	 * 
+	 * @param off
+	 *            the offset of the first block in <code>buf</code>
+	 * 
+	 * @param len
+	 *            the number of bytes to transform
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(mode == null) || (chain == null) || (buf == null)</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             Thrown by <code>BlockMode.apply</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If
+	 *             <code>(this.opmode != CipherEngUtil.OPMODE.ECB) || (this.padding != CipherEngUtil.PADDING.NoPadding)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	public void apply(BlockMode mode, boolean encrypt, byte[] chain, byte[] buf, int off, int len)
+			throws NullPointerException, IllegalArgumentException, IllegalStateException, InvalidKeyException,
+			InvalidAlgorithmParameterException {
+		if (mode == null) {
+			throw new NullPointerException();
+		}
+		if ((this.opmode != CipherEngUtil.OPMODE.ECB) || (this.padding != CipherEngUtil.PADDING.NoPadding)) {
+			throw new IllegalStateException();
+		}
+		final int cipherMode = encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE;
+		this.init(cipherMode);
+		mode.apply(this.engine, chain, buf, off, len);
+		this.initMode = cipherMode; // Whole blocks with no padding leave nothing buffered in the engine.
+	}
+
+	/**
+	 * Encrypt the remaining bytes of the given input buffer into the given output buffer without any
+	 * intermediate copy (i.e., through <code>Cipher.doFinal(ByteBuffer, ByteBuffer)</code>), so that
+	 * direct buffers stay off the heap. On return, the position of <code>in</code> is its limit and the
+	 * position of <code>out</code> has advanced by the number of bytes written.
+	 * 
+	 * @param in
+	 *            the given plaintext buffer
+	 * 
+	 * @param out
+	 *            the given ciphertext buffer (must not be <code>in</code> itself, see
+	 *            <code>encryptInPlace</code>)
+	 * 
+	 * @return The number of bytes written to <code>out</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws ShortBufferException
+	 *             If <code>out.remaining() < this.engine.getOutputSize(in.remaining())</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 */
+	public int encrypt(ByteBuffer in, ByteBuffer out)
+			throws NullPointerException, InvalidKeyException, InvalidAlgorithmParameterException,
+			ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		if ((in == null) || (out == null)) {
+			throw new NullPointerException();
+		}
+		this.init(Cipher.ENCRYPT_MODE);
+		final int result = this.engine.doFinal(in, out);
+		this.initMode = Cipher.ENCRYPT_MODE; // doFinal reset the engine to its initialized state.
+		return result;
+	}
+
+	/**
+	 * Decrypt the remaining bytes of the given input buffer into the given output buffer without any
+	 * intermediate copy (i.e., through <code>Cipher.doFinal(ByteBuffer, ByteBuffer)</code>), so that
+	 * direct buffers stay off the heap. On return, the position of <code>in</code> is its limit and the
+	 * position of <code>out</code> has advanced by the number of bytes written.
+	 * 
+	 * @param in
+	 *            the given ciphertext buffer
+	 * 
+	 * @param out
+	 *            the given plaintext buffer (must not be <code>in</code> itself, see
+	 *            <code>decryptInPlace</code>)
+	 * 
+	 * @return The number of bytes written to <code>out</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws ShortBufferException
+	 *             If <code>out.remaining() < this.engine.getOutputSize(in.remaining())</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal(in, out)</code>
+	 */
+	public int decrypt(ByteBuffer in, ByteBuffer out)
+			throws NullPointerException, InvalidKeyException, InvalidAlgorithmParameterException,
+			ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		if ((in == null) || (out == null)) {
+			throw new NullPointerException();
+		}
+		this.init(Cipher.DECRYPT_MODE);
+		final int result = this.engine.doFinal(in, out);
+		this.initMode = Cipher.DECRYPT_MODE; // doFinal reset the engine to its initialized state.
+		return result;
+	}
+
+	/**
+	 * Encrypt the remaining bytes of the given buffer in place (i.e., the ciphertext overwrites the
+	 * plaintext starting at the same position). The buffer may grow up to its capacity to hold the
+	 * padding. On return, the position of <code>buffer</code> is unchanged and its limit marks the end of
+	 * the ciphertext (i.e., the buffer is ready to be read).
+	 * 
+	 * @param buffer
+	 *            the given plaintext buffer
+	 * 
+	 * @return The number of ciphertext bytes.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>buffer == null</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws ShortBufferException
+	 *             If <code>buffer.capacity() - buffer.position() < this.engine.getOutputSize(buffer.remaining())</code>
+	 *             (in which case <code>buffer</code> is left unchanged)
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 */
+	public int encryptInPlace(ByteBuffer buffer)
+			throws NullPointerException, InvalidKeyException, InvalidAlgorithmParameterException,
+			ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		this.init(Cipher.ENCRYPT_MODE);
+		final int result = this.doFinalInPlace(buffer);
+		this.initMode = Cipher.ENCRYPT_MODE; // doFinal reset the engine to its initialized state.
+		return result;
+	}
+
+	/**
+	 * Decrypt the remaining bytes of the given buffer in place (i.e., the plaintext overwrites the
+	 * ciphertext starting at the same position). On return, the position of <code>buffer</code> is
+	 * unchanged and its limit marks the end of the plaintext (i.e., the buffer is ready to be read).
+	 * 
+	 * @param buffer
+	 *            the given ciphertext buffer
+	 * 
+	 * @return The number of plaintext bytes.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>buffer == null</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws ShortBufferException
+	 *             If <code>buffer.capacity() - buffer.position() < this.engine.getOutputSize(buffer.remaining())</code>
+	 *             (in which case <code>buffer</code> is left unchanged)
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 */
+	public int decryptInPlace(ByteBuffer buffer)
+			throws NullPointerException, InvalidKeyException, InvalidAlgorithmParameterException,
+			ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		this.init(Cipher.DECRYPT_MODE);
+		final int result = this.doFinalInPlace(buffer);
+		this.initMode = Cipher.DECRYPT_MODE; // doFinal reset the engine to its initialized state.
+		return result;
+	}
+
+	/**
+	 * Body of <code>encryptInPlace</code> and <code>decryptInPlace</code>. <br>
+	 * Precondition: <code>this.engine</code> is initialized
+	 * 
+	 * @param buffer
+	 *            the given buffer
+	 * 
+	 * @return The number of output bytes.
+	 */
+	private int doFinalInPlace(ByteBuffer buffer) throws NullPointerException, ShortBufferException,
+			IllegalBlockSizeException, BadPaddingException {
+		final int start = buffer.position();
+		if (buffer.capacity() - start < this.engine.getOutputSize(buffer.remaining())) {
+			throw new ShortBufferException();
+		}
+		/*
+		 * Cipher rejects the very same ByteBuffer object as both input and output, but it is copy-safe for
+		 * distinct buffers sharing the same memory, so hand it two views of the buffer.
+		 */
+		final ByteBuffer in = buffer.duplicate();
+		final ByteBuffer out = buffer.duplicate();
+		out.limit(out.capacity());
+		final int result = this.engine.doFinal(in, out);
+		buffer.limit(start + result);
+		return result;
+	}
+
+	/**
+	 * Initialize <code>this.engine</code> for the given direction with <code>this.key</code> and (if
+	 * set) <code>this.iv</code>, unless it is already initialized that way. Marks the engine as not
+	 * known to be initialized until the calling operation completes successfully (and sets
+	 * <code>this.initMode</code> again) since a failed operation may leave data buffered in the engine.
+	 * 
+	 * @param mode
+	 *            either <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If the calling object is closed
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init(mode, this.key)</code> or
+	 *             <code>Cipher.init(mode, this.key, this.iv)</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init(mode, this.key, this.iv)</code>
+	 */
+	private void init(int mode) throws IllegalStateException, InvalidKeyException, InvalidAlgorithmParameterException {
+		this.checkOpen();
+		this.streamMode = 0; // Any incremental operation in progress is abandoned.
+		final boolean fresh = this.nonceNext(mode);
+		final boolean initialized = !fresh && (this.initMode == mode) && (this.initKey == this.key)
+				&& (this.initIv == this.iv);
+		this.initMode = 0;
+		if (!initialized) {
+			SymCipherEng.init(this.engine, mode, this.key, this.params());
+			this.initKey = this.key;
+			this.initIv = this.iv;
+		}
+	}
+
+	/**
+	 * In GCM and CTR modes, move on to the next nonce before an encryption if <code>this.iv</code> is not
+	 * set or has already been used for an encryption or a decryption, and mark <code>this.iv</code> as
+	 * used (so that a cached initialization is never reused for an encryption, which would repeat the key
+	 * stream). A nonce used for a decryption is consumed too, since it is typically the nonce of a peer
+	 * (or an earlier nonce of the calling object) and must not be reused for an encryption under the same
+	 * key. The caller is responsible for the uniqueness of a nonce set explicitly through
+	 * <code>this.iv(byte[])</code> for an encryption.
+	 * 
+	 * @param mode
+	 *            either <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * 
+	 * @return <code>true</code> if the engine has to be (re)initialized because of a GCM or CTR
+	 *         encryption.
+	 */
+	private boolean nonceNext(int mode) {
+		if ((this.opmode != CipherEngUtil.OPMODE.GCM) && (this.opmode != CipherEngUtil.OPMODE.CTR)) {
+			return false;
+		} else if (mode != Cipher.ENCRYPT_MODE) {
+			this.usedNonce = this.iv;
+			return false;
+		} else if ((this.iv == null) || (this.iv == this.usedNonce)) {
+			this.ivNext();
+		}
+		this.usedNonce = this.iv;
+		return true;
+	}
+
+	/**
+	 * @return The algorithm parameters the engine is initialized with, i.e., <code>null</code> if
+	 *         <code>this.iv == null</code>, a GCMParameterSpec object with a
+	 *         <code>SymCipherEng.GCM_TAG_LENGTH</code>-bit tag in GCM mode, or <code>this.iv</code>
+	 *         otherwise.
+	 */
+	private AlgorithmParameterSpec params() {
+		return this.params(this.iv);
+	}
+
+	/**
+	 * @param iv
+	 *            the given initialization vector (may be <code>null</code>)
+	 * 
+	 * @return The algorithm parameters of the given initialization vector (see <code>this.params()</code>).
+	 */
+	private AlgorithmParameterSpec params(IvParameterSpec iv) {
+		if (iv == null) {
+			return null;
+		} else if (this.opmode == CipherEngUtil.OPMODE.GCM) {
+			return new GCMParameterSpec(SymCipherEng.GCM_TAG_LENGTH, iv.getIV());
+		}
+		return iv;
+	}
+
+	/**
+	 * Initialize the given engine for the given direction with the given key and (if not
+	 * <code>null</code>) algorithm parameters.
+	 * 
+	 * @param engine
+	 *            the given engine
+	 * 
+	 * @param mode
+	 *            either <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * 
+	 * @param key
+	 *            the given cipher secret key
+	 * 
+	 * @param params
+	 *            the given algorithm parameters (may be <code>null</code>)
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init(mode, key)</code> or <code>Cipher.init(mode, key, params)</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init(mode, key, params)</code>
+	 */
+	private static void init(Cipher engine, int mode, SecretKey key, AlgorithmParameterSpec params)
+			throws InvalidKeyException, InvalidAlgorithmParameterException {
+		if (params == null) {
+			engine.init(mode, key);
+		} else {
+			engine.init(mode, key, params);
+		}
+	}
+
+	/**
+	 * Encrypt everything read from the given input stream (until its end) and write the ciphertext to the
+	 * given output stream. The input is processed in chunks of <code>this.bufferSize()</code> bytes through
+	 * <code>Cipher.update</code> and reused buffers, so the memory used does not depend on the length of
+	 * the input. Neither stream is closed.
+	 * 
+	 * @param in
+	 *            the given plaintext input stream
+	 * 
+	 * @param out
+	 *            the given ciphertext output stream
+	 * 
+	 * @return The number of ciphertext bytes written.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 */
+	public long encrypt(InputStream in, OutputStream out) throws NullPointerException, IOException,
+			InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		return this.transfer(Cipher.ENCRYPT_MODE, in, out);
+	}
+
+	/**
+	 * Decrypt everything read from the given input stream (until its end) and write the plaintext to the
+	 * given output stream. The input is processed in chunks of <code>this.bufferSize()</code> bytes through
+	 * <code>Cipher.update</code> and reused buffers, so the memory used does not depend on the length of
+	 * the input. Neither stream is closed.
+	 * 
+	 * @param in
+	 *            the given ciphertext input stream
+	 * 
+	 * @param out
+	 *            the given plaintext output stream
+	 * 
+	 * @return The number of plaintext bytes written.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 */
+	public long decrypt(InputStream in, OutputStream out) throws NullPointerException, IOException,
+			InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		return this.transfer(Cipher.DECRYPT_MODE, in, out);
+	}
+
+	/**
+	 * Encrypt everything read from the given channel (until its end) and write the ciphertext to the given
+	 * channel. Same as <code>this.encrypt(InputStream, OutputStream)</code> but for channels. Neither
+	 * channel is closed.
+	 * 
+	 * @param in
+	 *            the given plaintext channel
+	 * 
+	 * @param out
+	 *            the given ciphertext channel
+	 * 
+	 * @return The number of ciphertext bytes written.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 */
+	public long encrypt(ReadableByteChannel in, WritableByteChannel out) throws NullPointerException, IOException,
+			InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		return this.transfer(Cipher.ENCRYPT_MODE, in, out);
+	}
+
+	/**
+	 * Decrypt everything read from the given channel (until its end) and write the plaintext to the given
+	 * channel. Same as <code>this.decrypt(InputStream, OutputStream)</code> but for channels. Neither
+	 * channel is closed.
+	 * 
+	 * @param in
+	 *            the given ciphertext channel
+	 * 
+	 * @param out
+	 *            the given plaintext channel
+	 * 
+	 * @return The number of plaintext bytes written.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws BadPaddingException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             Thrown by <code>Cipher.doFinal</code>
+	 */
+	public long decrypt(ReadableByteChannel in, WritableByteChannel out) throws NullPointerException, IOException,
+			InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		return this.transfer(Cipher.DECRYPT_MODE, in, out);
+	}
+
+	/**
+	 * Wrap the given input stream so that reading from the result yields the encryption (if
+	 * <code>encrypt</code>) or the decryption of what is read from the given input stream. The result uses
+	 * its own Cipher object, initialized with the current key and initialization vector, except that an
+	 * encryption in GCM or CTR mode always uses a new nonce of its own (reported by the <code>iv</code>
+	 * method of the result) and leaves <code>this.iv</code> as is. The Cipher object goes back to the
+	 * engine pool of CipherEngUtil once the result is closed.
+	 * 
+	 * @param in
+	 *            the given input stream
+	 * 
+	 * @param encrypt
+	 *            specifies whether to encrypt (or decrypt) the given input stream
+	 * 
+	 * @return The resulting PooledCipherInputStream object.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>in == null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If the calling object is closed
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	public PooledCipherInputStream cipherInputStream(InputStream in, boolean encrypt) throws NullPointerException,
+			IllegalStateException, InvalidKeyException, InvalidAlgorithmParameterException {
+		if (in == null) {
+			throw new NullPointerException();
+		}
+		return new PooledCipherInputStream(in,
+				this.streamEngine(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE));
+	}
+
+	/**
+	 * Wrap the given output stream so that writing to the result writes the encryption (if
+	 * <code>encrypt</code>) or the decryption of the written bytes to the given output stream. The final
+	 * block is only written once the result is closed. The result uses its own Cipher object, initialized
+	 * with the current key and initialization vector, except that an encryption in GCM or CTR mode always
+	 * uses a new nonce of its own (reported by the <code>iv</code> method of the result) and leaves
+	 * <code>this.iv</code> as is. The Cipher object goes back to the engine pool of CipherEngUtil once the
+	 * result is closed.
+	 * 
+	 * @param out
+	 *            the given output stream
+	 * 
+	 * @param encrypt
+	 *            specifies whether to encrypt (or decrypt) the bytes written to the result
+	 * 
+	 * @return The resulting PooledCipherOutputStream object.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>out == null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If the calling object is closed
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	public PooledCipherOutputStream cipherOutputStream(OutputStream out, boolean encrypt)
+			throws NullPointerException, IllegalStateException, InvalidKeyException,
+			InvalidAlgorithmParameterException {
+		if (out == null) {
+			throw new NullPointerException();
+		}
+		return new PooledCipherOutputStream(out,
+				this.streamEngine(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE));
+	}
+
+	/**
+	 * The Cipher object of a stream, initialized with the current key and initialization vector, except
+	 * that an encryption in GCM or CTR mode always uses a new nonce of its own (see
+	 * <code>this.ivNext()</code>), which the stream reports through its <code>iv</code> method. The
+	 * initialization vector of the calling object is left as is, so the stream is not affected by later
+	 * calls on the calling object and vice versa. Like <code>this.decrypt</code>, a decryption in GCM or
+	 * CTR mode marks <code>this.iv</code> as used, so that a later encryption moves on to a new nonce.
+	 * 
+	 * @param mode
+	 *            either <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * 
+	 * @return A new Cipher object for the calling object's transformation initialized for the given
+	 *         direction.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the calling object is closed
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	private Cipher streamEngine(int mode)
+			throws IllegalStateException, InvalidKeyException, InvalidAlgorithmParameterException {
+		this.checkOpen();
+		if (mode != Cipher.ENCRYPT_MODE) {
+			this.nonceNext(mode); // Only marks this.iv as used.
+		} else if ((this.opmode == CipherEngUtil.OPMODE.GCM) || (this.opmode == CipherEngUtil.OPMODE.CTR)) {
+			return this.newEngine(mode, new IvParameterSpec(this.nextIv()));
+		}
+		return this.newEngine(mode, this.iv);
+	}
+
+	/**
+	 * @param mode
+	 *            either <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * 
+	 * @param iv
+	 *            the given initialization vector (may be <code>null</code>)
+	 * 
+	 * @return A Cipher object borrowed from the engine pool of CipherEngUtil for the calling object's
+	 *         transformation, initialized for the given direction with the current key and the given
+	 *         initialization vector. It is given back to the pool if the initialization fails.
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	private Cipher newEngine(int mode, IvParameterSpec iv)
+			throws InvalidKeyException, InvalidAlgorithmParameterException {
+		final Cipher result;
+		try {
+			result = CipherEngUtil.borrowEngine(this.algo.name(), this.opmode, this.padding);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+			throw new ExceptionInInitializerError();
+		}
+		try {
+			SymCipherEng.init(result, mode, this.key, this.params(iv));
+		} catch (InvalidKeyException | InvalidAlgorithmParameterException | RuntimeException ex) {
+			CipherEngUtil.returnEngine(result);
+			throw ex;
+		}
+		return result;
+	}
+
+	/**
+	 * CipherInputStream whose Cipher object is borrowed from the engine pool of CipherEngUtil and given
+	 * back by <code>close</code>.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	public static final class PooledCipherInputStream extends CipherInputStream {
+		/**
+		 * The Cipher object, or <code>null</code> once it has been given back.
+		 */
+		private Cipher engine;
+
+		/**
+		 * The initialization vector the Cipher object is initialized with, or <code>null</code> if there is
+		 * none.
+		 */
+		private final byte[] iv;
+
+		/**
+		 * Construct a PooledCipherInputStream object from the given attributes.
+		 * 
+		 * @param in
+		 *            the given input stream
+		 * 
+		 * @param engine
+		 *            the given initialized Cipher object
+		 */
+		PooledCipherInputStream(InputStream in, Cipher engine) {
+			super(in, engine);
+			this.engine = engine;
+			this.iv = engine.getIV();
+		}
+
+		/**
+		 * @return A copy of the initialization vector (i.e., the nonce in GCM mode) of the stream, or
+		 *         <code>null</code> if there is none.
+		 */
+		public byte[] iv() {
+			return (this.iv == null) ? null : this.iv.clone();
+		}
+
+		/**
+		 * Close the stream and give its Cipher object back to the engine pool of CipherEngUtil.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				if (this.engine != null) {
+					CipherEngUtil.returnEngine(this.engine);
+					this.engine = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * CipherOutputStream whose Cipher object is borrowed from the engine pool of CipherEngUtil and given
+	 * back by <code>close</code> (after the final block is written).
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	public static final class PooledCipherOutputStream extends CipherOutputStream {
+		/**
+		 * The Cipher object, or <code>null</code> once it has been given back.
+		 */
+		private Cipher engine;
+
+		/**
+		 * The initialization vector the Cipher object is initialized with, or <code>null</code> if there is
+		 * none.
+		 */
+		private final byte[] iv;
+
+		/**
+		 * Construct a PooledCipherOutputStream object from the given attributes.
+		 * 
+		 * @param out
+		 *            the given output stream
+		 * 
+		 * @param engine
+		 *            the given initialized Cipher object
+		 */
+		PooledCipherOutputStream(OutputStream out, Cipher engine) {
+			super(out, engine);
+			this.engine = engine;
+			this.iv = engine.getIV();
+		}
+
+		/**
+		 * @return A copy of the initialization vector (i.e., the nonce in GCM mode) of the stream, or
+		 *         <code>null</code> if there is none.
+		 */
+		public byte[] iv() {
+			return (this.iv == null) ? null : this.iv.clone();
+		}
+
+		/**
+		 * Write the final block, close the stream, and give its Cipher object back to the engine pool of
+		 * CipherEngUtil.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				if (this.engine != null) {
+					CipherEngUtil.returnEngine(this.engine);
+					this.engine = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return <code>this.inBuffer</code> (allocated if needed).
+	 */
+	private byte[] inBuffer() {
+		if (this.inBuffer == null) {
+			this.inBuffer = new byte[this.bufferSize];
+		}
+		return this.inBuffer;
+	}
+
+	/**
+	 * @param length
+	 *            the given minimum length
+	 * 
+	 * @return <code>this.outBuffer</code> (allocated or grown if needed) where
+	 *         <code>length <= this.outBuffer.length</code>.
+	 */
+	private byte[] outBuffer(int length) {
+		if ((this.outBuffer == null) || (this.outBuffer.length < length)) {
+			this.outBuffer = new byte[length];
+		}
+		return this.outBuffer;
+	}
+
+	/**
+	 * Stream-to-stream body of the streaming methods.
+	 * 
+	 * @param mode
+	 *            either <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * 
+	 * @param in
+	 *            the given input stream
+	 * 
+	 * @param out
+	 *            the given output stream
+	 * 
+	 * @return The number of bytes written.
+	 */
+	private long transfer(int mode, InputStream in, OutputStream out) throws NullPointerException, IOException,
+			InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		if ((in == null) || (out == null)) {
+			throw new NullPointerException();
+		}
+		this.init(mode);
+
+		final byte[] input = this.inBuffer();
+		long result = 0;
+		try {
+			for (int n = in.read(input); n != -1; n = in.read(input)) {
+				final byte[] output = this.outBuffer(this.engine.getOutputSize(n));
+				final int length = this.engine.update(input, 0, n, output, 0);
+				out.write(output, 0, length);
+				result += length;
+			}
+			final byte[] output = this.outBuffer(this.engine.getOutputSize(0));
+			final int length = this.engine.doFinal(output, 0);
+			this.initMode = mode; // doFinal reset the engine to its initialized state.
+			out.write(output, 0, length);
+			return (result + length);
+		} catch (ShortBufferException ex) {
+			// Cannot happen since every output buffer has at least Cipher.getOutputSize bytes.
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Channel-to-channel body of the streaming methods.
+	 * 
+	 * @param mode
+	 *            either <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * 
+	 * @param in
+	 *            the given input channel
+	 * 
+	 * @param out
+	 *            the given output channel
+	 * 
+	 * @return The number of bytes written.
+	 */
+	private long transfer(int mode, ReadableByteChannel in, WritableByteChannel out) throws NullPointerException,
+			IOException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException,
+			BadPaddingException {
+		if ((in == null) || (out == null)) {
+			throw new NullPointerException();
+		}
+		this.init(mode);
+
+		final ByteBuffer input = ByteBuffer.wrap(this.inBuffer());
+		long result = 0;
+		try {
+			for (int n = in.read(input); n != -1; n = in.read(input)) {
+				input.flip();
+				final ByteBuffer output = ByteBuffer.wrap(this.outBuffer(this.engine.getOutputSize(input.remaining())));
+				this.engine.update(input, output);
+				result += SymCipherEng.drain(output, out);
+				input.clear();
+			}
+			final ByteBuffer output = ByteBuffer.wrap(this.outBuffer(this.engine.getOutputSize(0)));
+			this.engine.doFinal(input.flip(), output); // input is empty here
+			this.initMode = mode; // doFinal reset the engine to its initialized state.
+			return (result + SymCipherEng.drain(output, out));
+		} catch (ShortBufferException ex) {
+			// Cannot happen since every output buffer has at least Cipher.getOutputSize bytes.
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Write everything between the start and the position of the given buffer to the given channel.
+	 * 
+	 * @param buffer
+	 *            the given buffer
+	 * 
+	 * @param out
+	 *            the given channel
+	 * 
+	 * @return The number of bytes written.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	private static int drain(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		buffer.flip();
+		final int result = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		return result;
+	}
+
+	/**
+	 * Encrypt the given plaintext byte array in CTR mode by splitting it into counter-aligned segments of
+	 * <code>SymCipherEng.PARALLEL_SEGMENT_SIZE</code> bytes and encrypting them concurrently on the given
+	 * pool, every segment with its own Cipher object whose counter starts at
+	 * <code>this.iv + offset / blockSize</code>. The result is byte-identical to
+	 * <code>this.encrypt(p)</code>, and like it, first moves on to a new initialization vector if the
+	 * current one has already been used (see <code>this.iv()</code>).
+	 * 
+	 * @param p
+	 *            the given plaintext byte array
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @return The encrypted ciphertext byte array.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(p == null) || (pool == null)</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If <code>(this.opmode != CipherEngUtil.OPMODE.CTR) || (this.iv == null)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	public byte[] encryptParallel(byte[] p, ForkJoinPool pool) throws NullPointerException, IllegalStateException,
+			InvalidKeyException, InvalidAlgorithmParameterException {
+		if ((p == null) || (pool == null)) {
+			throw new NullPointerException();
+		}
+		this.checkParallel(false);
+		return this.ctrParallel(p, pool);
+	}
+
+	/**
+	 * Body of <code>this.encryptParallel(byte[], ForkJoinPool)</code> and of the CTR mode of
+	 * <code>this.decryptParallel(byte[], ForkJoinPool)</code>. <br>
+	 * Precondition: <code>this.checkParallel</code> has been called
+	 * 
+	 * @param p
+	 *            the given input byte array
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @return The output byte array.
+	 */
+	private byte[] ctrParallel(byte[] p, ForkJoinPool pool) {
+		final byte[] result = new byte[p.length];
+		final int segmentSize = SymCipherEng.PARALLEL_SEGMENT_SIZE;
+		pool.invoke(new SegmentTask(this, 0, (p.length + segmentSize - 1) / segmentSize, (engine, index) -> {
+			final int offset = (int) (index * segmentSize);
+			engine.doFinal(p, offset, Math.min(segmentSize, p.length - offset), result, offset);
+		}));
+		return result;
+	}
+
+	/**
+	 * @param p
+	 *            the given plaintext byte array
+	 * 
+	 * @return <code>this.encryptParallel(p, ForkJoinPool.commonPool())</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>p == null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If <code>(this.opmode != CipherEngUtil.OPMODE.CTR) || (this.iv == null)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	public byte[] encryptParallel(byte[] p)
+			throws NullPointerException, IllegalStateException, InvalidKeyException, InvalidAlgorithmParameterException {
+		return this.encryptParallel(p, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Decrypt the given ciphertext byte array by splitting it into segments of
+	 * <code>SymCipherEng.PARALLEL_SEGMENT_SIZE</code> bytes and decrypting them concurrently on the given
+	 * pool. In CTR mode, decryption is the same operation as encryption (under <code>this.iv</code> as is,
+	 * see <code>this.encryptParallel(c, pool)</code>). In CBC mode, every plaintext block only depends on
+	 * <code>C[i - 1]</code> and <code>D(C[i])</code>, so every segment is decrypted by its own Cipher object
+	 * in ECB mode and then xored with the ciphertext shifted by one block (the first block with
+	 * <code>this.iv</code>), and the padding (if any) is removed from the last segment. The result is
+	 * byte-identical to <code>this.decrypt(c)</code>.
+	 * 
+	 * @param c
+	 *            the given ciphertext byte array
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @return The decrypted plaintext byte array.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(c == null) || (pool == null)</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If
+	 *             <code>((this.opmode != CipherEngUtil.OPMODE.CTR) && (this.opmode != CipherEngUtil.OPMODE.CBC)) || (this.iv == null)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             In CBC mode, if <code>c.length</code> is not a multiple of the block size (or is 0 with
+	 *             padding)
+	 * 
+	 * @throws BadPaddingException
+	 *             In CBC mode, if the padding of the last block is invalid
+	 */
+	public byte[] decryptParallel(byte[] c, ForkJoinPool pool) throws NullPointerException, IllegalStateException,
+			InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		if ((c == null) || (pool == null)) {
+			throw new NullPointerException();
+		}
+		this.checkParallel(true);
+		if (this.opmode == CipherEngUtil.OPMODE.CTR) {
+			return this.ctrParallel(c, pool);
+		}
+		// this.opmode == CipherEngUtil.OPMODE.CBC
+
+		final int blockSize = this.engine.getBlockSize();
+		this.checkCbcLength(c.length, blockSize);
+		final byte[] iv = this.iv.getIV();
+		final byte[] result = new byte[c.length];
+		final int segmentSize = SymCipherEng.PARALLEL_SEGMENT_SIZE;
+		pool.invoke(new SegmentTask(this, 0, (c.length + segmentSize - 1) / segmentSize, (engine, index) -> {
+			final int offset = (int) (index * segmentSize);
+			final int length = Math.min(segmentSize, c.length - offset);
+			engine.doFinal(c, offset, length, result, offset);
+			// The chaining block of the first block of the segment.
+			final byte[] chain = (offset == 0) ? iv : c;
+			final int chainOff = (offset == 0) ? 0 : (offset - blockSize);
+			for (int i = 0; i != blockSize; ++i) {
+				result[offset + i] ^= chain[chainOff + i];
+			}
+			// The chaining block of every other block is the previous ciphertext block.
+			for (int i = blockSize; i != length; ++i) {
+				result[offset + i] ^= c[offset + i - blockSize];
+			}
+		}));
+		return (this.padding == CipherEngUtil.PADDING.NoPadding) ? result
+				: Arrays.copyOf(result, result.length - SymCipherEng.padLength(result, result.length, blockSize));
+	}
+
+	/**
+	 * @param c
+	 *            the given ciphertext byte array
+	 * 
+	 * @return <code>this.decryptParallel(c, ForkJoinPool.commonPool())</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>c == null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If
+	 *             <code>((this.opmode != CipherEngUtil.OPMODE.CTR) && (this.opmode != CipherEngUtil.OPMODE.CBC)) || (this.iv == null)</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             In CBC mode, if <code>c.length</code> is not a multiple of the block size (or is 0 with
+	 *             padding)
+	 * 
+	 * @throws BadPaddingException
+	 *             In CBC mode, if the padding of the last block is invalid
+	 */
+	public byte[] decryptParallel(byte[] c) throws NullPointerException, IllegalStateException, InvalidKeyException,
+			InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		return this.decryptParallel(c, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Encrypt (or, equivalently, decrypt) the given file in CTR mode into the given file by processing
+	 * counter-aligned segments of <code>SymCipherEng.PARALLEL_SEGMENT_SIZE</code> bytes concurrently on
+	 * the given pool with positional reads and writes. The output file is created or truncated, and its
+	 * content is byte-identical to encrypting the whole input file at once. Like
+	 * <code>this.encrypt(byte[])</code>, it first moves on to a new initialization vector if the current
+	 * one has already been used (see <code>this.iv()</code>).
+	 * 
+	 * @param in
+	 *            the given input file
+	 * 
+	 * @param out
+	 *            the given output file
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @return The number of bytes written.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null) || (pool == null)</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If <code>(this.opmode != CipherEngUtil.OPMODE.CTR) || (this.iv == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	public long encryptParallel(Path in, Path out, ForkJoinPool pool) throws NullPointerException,
+			IllegalStateException, IOException, InvalidKeyException, InvalidAlgorithmParameterException {
+		if ((in == null) || (out == null) || (pool == null)) {
+			throw new NullPointerException();
+		}
+		this.checkParallel(false);
+		return this.ctrParallel(in, out, pool);
+	}
+
+	/**
+	 * Body of <code>this.encryptParallel(Path, Path, ForkJoinPool)</code> and of the CTR mode of
+	 * <code>this.decryptParallel(Path, Path, ForkJoinPool)</code>. <br>
+	 * Precondition: <code>this.checkParallel</code> has been called
+	 * 
+	 * @param in
+	 *            the given input file
+	 * 
+	 * @param out
+	 *            the given output file
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @return The number of bytes written.
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 */
+	private long ctrParallel(Path in, Path out, ForkJoinPool pool) throws IOException {
+		try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+				FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			final long size = src.size();
+			final int segmentSize = SymCipherEng.PARALLEL_SEGMENT_SIZE;
+			try {
+				pool.invoke(new SegmentTask(this, 0, (size + segmentSize - 1) / segmentSize, (engine, index) -> {
+					final long offset = index * segmentSize;
+					final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(segmentSize, size - offset));
+					while (buffer.hasRemaining()) {
+						if (src.read(buffer, offset + buffer.position()) == -1) {
+							throw new IOException("File shrank while being encrypted");
+						}
+					}
+					buffer.flip();
+					engine.doFinal(buffer.duplicate(), buffer); // copy-safe on the same memory
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						dst.write(buffer, offset + buffer.position());
+					}
+				}));
+			} catch (IllegalStateException ex) {
+				if (ex.getCause() instanceof IOException) {
+					throw (IOException) ex.getCause();
+				}
+				throw ex;
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * @param in
+	 *            the given input file
+	 * 
+	 * @param out
+	 *            the given output file
+	 * 
+	 * @return <code>this.encryptParallel(in, out, ForkJoinPool.commonPool())</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If <code>(this.opmode != CipherEngUtil.OPMODE.CTR) || (this.iv == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	public long encryptParallel(Path in, Path out) throws NullPointerException, IllegalStateException, IOException,
+			InvalidKeyException, InvalidAlgorithmParameterException {
+		return this.encryptParallel(in, out, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Decrypt the given file into the given file by processing segments of
+	 * <code>SymCipherEng.PARALLEL_SEGMENT_SIZE</code> bytes concurrently on the given pool with positional
+	 * reads and writes (see <code>this.decryptParallel(byte[], ForkJoinPool)</code>). In CBC mode, every
+	 * segment also reads the last ciphertext block of the previous segment. The output file is created or
+	 * truncated, and its content is byte-identical to decrypting the whole input file at once.
+	 * 
+	 * @param in
+	 *            the given ciphertext file
+	 * 
+	 * @param out
+	 *            the given plaintext file
+	 * 
+	 * @param pool
+	 *            the given pool
+	 * 
+	 * @return The number of bytes written.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null) || (pool == null)</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If
+	 *             <code>((this.opmode != CipherEngUtil.OPMODE.CTR) && (this.opmode != CipherEngUtil.OPMODE.CBC)) || (this.iv == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             In CBC mode, if the size of the input file is not a multiple of the block size (or is 0
+	 *             with padding)
+	 * 
+	 * @throws BadPaddingException
+	 *             In CBC mode, if the padding of the last block is invalid
+	 */
+	public long decryptParallel(Path in, Path out, ForkJoinPool pool)
+			throws NullPointerException, IllegalStateException, IOException, InvalidKeyException,
+			InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		if ((in == null) || (out == null) || (pool == null)) {
+			throw new NullPointerException();
+		}
+		this.checkParallel(true);
+		if (this.opmode == CipherEngUtil.OPMODE.CTR) {
+			return this.ctrParallel(in, out, pool);
+		}
+		// this.opmode == CipherEngUtil.OPMODE.CBC
+
+		final int blockSize = this.engine.getBlockSize();
+		final byte[] iv = this.iv.getIV();
+		final boolean padded = (this.padding != CipherEngUtil.PADDING.NoPadding);
+		try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+				FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			final long size = src.size();
+			this.checkCbcLength(size, blockSize);
+			final int segmentSize = SymCipherEng.PARALLEL_SEGMENT_SIZE;
+			final long segments = (size + segmentSize - 1) / segmentSize;
+			try {
+				pool.invoke(new SegmentTask(this, 0, segments, (engine, index) -> {
+					final long offset = index * segmentSize;
+					final int length = (int) Math.min(segmentSize, size - offset);
+					// buffer[0, blockSize) is the chaining block of the first block of the segment.
+					final ByteBuffer buffer = ByteBuffer.allocate(blockSize + length);
+					if (offset == 0) {
+						buffer.put(iv);
+					}
+					while (buffer.hasRemaining()) {
+						if (src.read(buffer, offset - blockSize + buffer.position()) == -1) {
+							throw new IOException("File shrank while being decrypted");
+						}
+					}
+					final byte[] c = buffer.array();
+					final byte[] p = engine.doFinal(c, blockSize, length);
+					for (int i = 0; i != length; ++i) {
+						p[i] ^= c[i];
+					}
+					final int pad = (padded && (index == segments - 1)) ? SymCipherEng.padLength(p, length, blockSize)
+							: 0;
+					final ByteBuffer output = ByteBuffer.wrap(p, 0, length - pad);
+					while (output.hasRemaining()) {
+						dst.write(output, offset + output.position());
+					}
+				}));
+			} catch (IllegalStateException ex) {
+				if (ex.getCause() instanceof IOException) {
+					throw (IOException) ex.getCause();
+				} else if (ex.getCause() instanceof BadPaddingException) {
+					throw (BadPaddingException) ex.getCause();
+				}
+				throw ex;
+			}
+			return dst.size();
+		}
+	}
+
+	/**
+	 * @param in
+	 *            the given ciphertext file
+	 * 
+	 * @param out
+	 *            the given plaintext file
+	 * 
+	 * @return <code>this.decryptParallel(in, out, ForkJoinPool.commonPool())</code>.
+	 * 
+	 * @throws NullPointerException
+	 *             If <code>(in == null) || (out == null)</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             If
+	 *             <code>((this.opmode != CipherEngUtil.OPMODE.CTR) && (this.opmode != CipherEngUtil.OPMODE.CBC)) || (this.iv == null)</code>
+	 * 
+	 * @throws IOException
+	 *             If an I/O error occurs
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             In CBC mode, if the size of the input file is not a multiple of the block size (or is 0
+	 *             with padding)
+	 * 
+	 * @throws BadPaddingException
+	 *             In CBC mode, if the padding of the last block is invalid
+	 */
+	public long decryptParallel(Path in, Path out) throws NullPointerException, IllegalStateException, IOException,
+			InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+		return this.decryptParallel(in, out, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param decrypt
+	 *            specifies whether the parallel operation decrypts (which CBC mode also supports)
+	 * 
+	 * @throws IllegalStateException
+	 *             If the mode of operation is neither CTR nor (if <code>decrypt</code>) CBC, or if
+	 *             <code>this.iv == null</code>
+	 * 
+	 * @throws InvalidKeyException
+	 *             Thrown by <code>Cipher.init</code>
+	 * 
+	 * @throws InvalidAlgorithmParameterException
+	 *             Thrown by <code>Cipher.init</code>
+	 */
+	private void checkParallel(boolean decrypt)
+			throws IllegalStateException, InvalidKeyException, InvalidAlgorithmParameterException {
+		if (((this.opmode != CipherEngUtil.OPMODE.CTR) && (!decrypt || (this.opmode != CipherEngUtil.OPMODE.CBC)))
+				|| (this.iv == null)) {
+			throw new IllegalStateException();
+		}
+		this.checkOpen();
+		final int mode = decrypt ? Cipher.DECRYPT_MODE : Cipher.ENCRYPT_MODE;
+		this.nonceNext(mode);
+		// Initialize once on the calling thread so that an invalid key or IV is reported as such.
+		CipherEngUtil.returnEngine(this.newEngine(mode, this.iv));
+	}
+
+	/**
+	 * @param length
+	 *            the given ciphertext length in bytes
+	 * 
+	 * @param blockSize
+	 *            the block size in bytes
+	 * 
+	 * @throws IllegalBlockSizeException
+	 *             If <code>length</code> is not a multiple of <code>blockSize</code> (or is 0 with
+	 *             padding)
+	 */
+	private void checkCbcLength(long length, int blockSize) throws IllegalBlockSizeException {
+		if (((length % blockSize) != 0) || ((length == 0) && (this.padding != CipherEngUtil.PADDING.NoPadding))) {
+			throw new IllegalBlockSizeException("Input length must be a multiple of " + blockSize
+					+ " when decrypting with padded cipher");
+		}
+	}
+
+	/**
+	 * Postcondition: <code>(0 < Result) && (Result <= blockSize)</code>
+	 * 
+	 * @param p
+	 *            the given padded plaintext
+	 * 
+	 * @param length
+	 *            the length of the padded plaintext in <code>p</code>
+	 * 
+	 * @param blockSize
+	 *            the block size in bytes
+	 * 
+	 * @return The length of the PKCS5 padding at the end of <code>p[0, length)</code>.
+	 * 
+	 * @throws BadPaddingException
+	 *             If the padding is invalid
+	 */
+	private static int padLength(byte[] p, int length, int blockSize) throws BadPaddingException {
+		final int result = p[length - 1] & 0xFF;
+		if ((result == 0) || (blockSize < result) || (length < result)) {
+			throw new BadPaddingException("Given final block not properly padded");
+		}
+		for (int i = length - result; i != length; ++i) {
+			if ((p[i] & 0xFF) != result) {
+				throw new BadPaddingException("Given final block not properly padded");
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Postcondition: <code>Result != null</code> <br>
+	 * Postcondition: <code>Result.length == iv.length</code>
+	 * 
+	 * @param iv
+	 *            the given initial counter block
+	 * 
+	 * @param blockIndex
+	 *            the given (non-negative) block index
+	 * 
+	 * @return The counter block of the given block index, i.e., <code>iv + blockIndex</code> as a
+	 *         big-endian integer modulo <code>2<sup>8 * iv.length</sup></code> (which is how the CTR mode
+	 *         increments the counter).
+	 */
+	protected static byte[] counterBlock(byte[] iv, long blockIndex) {
+		final byte[] result = iv.clone();
+		long carry = blockIndex;
+		for (int i = result.length - 1; (i != -1) && (carry != 0); --i) {
+			final long sum = (result[i] & 0xFF) + (carry & 0xFF);
+			result[i] = (byte) sum;
+			carry = (carry >>> 8) + (sum >>> 8);
+		}
+		return result;
+	}
+
+	/**
+	 * The work done on a single segment of a parallel operation.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	@FunctionalInterface
+	private static interface Segment {
+		/**
+		 * @param engine
+		 *            a Cipher object initialized for the segment, i.e., in CTR mode with the counter block
+		 *            of the first byte of the segment, or in ECB mode with no padding for decryption in CBC
+		 *            mode
+		 * 
+		 * @param index
+		 *            the index of the segment
+		 * 
+		 * @throws Exception
+		 *             If the segment cannot be processed
+		 */
+		void process(Cipher engine, long index) throws Exception;
+	}
+
+	/**
+	 * Fork/join task which processes the segments in <code>[lo, hi)</code> by recursively splitting the
+	 * range in halves, every segment with its own Cipher object. Exceptions are rethrown as
+	 * IllegalStateException objects whose cause is the original exception.
+	 * 
+	 * @author Ashkan Moatamed
+	 */
+	private static final class SegmentTask extends RecursiveAction {
+		/**
+		 * Serial version UID.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The SymCipherEng object whose transformation, key, and initialization vector are used (it is only
+		 * read, never modified).
+		 */
+		private final SymCipherEng owner;
+
+		/**
+		 * The first segment index (inclusive).
+		 */
+		private final long lo;
+
+		/**
+		 * The last segment index (exclusive).
+		 */
+		private final long hi;
+
+		/**
+		 * The work done on every segment.
+		 */
+		private final Segment segment;
+
+		/**
+		 * Construct a SegmentTask object from the given attributes.
+		 * 
+		 * @param owner
+		 *            the given SymCipherEng object
+		 * 
+		 * @param lo
+		 *            the first segment index (inclusive)
+		 * 
+		 * @param hi
+		 *            the last segment index (exclusive)
+		 * 
+		 * @param segment
+		 *            the work done on every segment
+		 */
+		SegmentTask(SymCipherEng owner, long lo, long hi, Segment segment) {
+			this.owner = owner;
+			this.lo = lo;
+			this.hi = hi;
+			this.segment = segment;
+		}
+
+		@Override
+		protected void compute() {
+			final long length = this.hi - this.lo;
+			if (length <= 0) {
+				return;
+			} else if (1 < length) {
+				final long mid = this.lo + (length >>> 1);
+				RecursiveAction.invokeAll(new SegmentTask(this.owner, this.lo, mid, this.segment),
+						new SegmentTask(this.owner, mid, this.hi, this.segment));
+				return;
+			}
+			// length == 1
+
+			try {
+				final Cipher engine;
+				if (this.owner.opmode == CipherEngUtil.OPMODE.CTR) {
+					try {
+						engine = CipherEngUtil.borrowEngine(this.owner.algo.name(), this.owner.opmode,
+								this.owner.padding);
+					} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+						throw new ExceptionInInitializerError();
+					}
+					final byte[] iv = this.owner.iv.getIV();
+					final long firstBlock = (this.lo * SymCipherEng.PARALLEL_SEGMENT_SIZE) / iv.length;
+					engine.init(Cipher.ENCRYPT_MODE, this.owner.key,
+							new IvParameterSpec(SymCipherEng.counterBlock(iv, firstBlock)));
+				} else { // i.e., CBC decryption
+					try {
+						engine = CipherEngUtil.borrowEngine(this.owner.algo.name(), CipherEngUtil.OPMODE.ECB,
+								CipherEngUtil.PADDING.NoPadding);
+					} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+						throw new ExceptionInInitializerError();
+					}
+					engine.init(Cipher.DECRYPT_MODE, this.owner.key);
+				}
+				try {
+					this.segment.process(engine, this.lo);
+				} finally {
+					CipherEngUtil.returnEngine(engine);
+				}
+			} catch (RuntimeException ex) {
+				throw ex;
+			} catch (Exception ex) {
+				throw new IllegalStateException(ex);
+			}
 		}
-		return this.engine.doFinal(c);
 	}
 }
@@ -0,0 +1,412 @@
+package util;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.crypto.BadPaddingException;
+
+import org.junit.Test;
+
+/**
+ * JUnit4 tests for SymCipherEng.
+ * 
+ * @author Ashkan Moatamed
+ */
+public class SymCipherEngTest {
+	/**
+	 * Dependencies: <code>
+	 * 		1. util.SymCipherEng
+	 * 		2. util.CipherEngUtil
+	 * 		3. util.Hex
+	 * 		4. util.Binary
+	 * </code>
+	 */
+
+	private static final boolean PRINT = false;
+
+	/**
+	 * The shared 128-bit AES key.
+	 */
+	private static final byte[] KEY = { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B,
+			0x0C, 0x0D, 0x0E, 0x0F };
+
+	/**
+	 * @return A new SymCipherEng object in AES/GCM/NoPadding with <code>SymCipherEngTest.KEY</code>.
+	 */
+	private static SymCipherEng gcm() {
+		return new SymCipherEng(SymCipherEng.ALGO_SYM.AES, SymCipherEngTest.KEY, CipherEngUtil.OPMODE.GCM,
+				CipherEngUtil.PADDING.NoPadding);
+	}
+
+	/**
+	 * @return A new SymCipherEng object in AES/CTR/NoPadding with <code>SymCipherEngTest.KEY</code>.
+	 */
+	private static SymCipherEng ctr() {
+		return new SymCipherEng(SymCipherEng.ALGO_SYM.AES, SymCipherEngTest.KEY, CipherEngUtil.OPMODE.CTR,
+				CipherEngUtil.PADDING.NoPadding);
+	}
+
+	/**
+	 * The shared 128-bit initialization vector of the CBC tests.
+	 */
+	private static final byte[] IV = { 0x0F, 0x0E, 0x0D, 0x0C, 0x0B, 0x0A, 0x09, 0x08, 0x07, 0x06, 0x05, 0x04,
+			0x03, 0x02, 0x01, 0x00 };
+
+	/**
+	 * @param length
+	 *            the given length
+	 * 
+	 * @return A new byte array of the given length whose <code>i^th</code> byte is <code>(byte) i</code>.
+	 */
+	private static byte[] data(int length) {
+		final byte[] result = new byte[length];
+		for (int i = 0; i != length; ++i) {
+			result[i] = (byte) i;
+		}
+		return result;
+	}
+
+	/**
+	 * @param padding
+	 *            the given padding algorithm
+	 * 
+	 * @return A new SymCipherEng object in AES/CBC/padding with <code>SymCipherEngTest.KEY</code> and
+	 *         <code>SymCipherEngTest.IV</code>.
+	 */
+	private static SymCipherEng cbc(CipherEngUtil.PADDING padding) {
+		return new SymCipherEng(SymCipherEng.ALGO_SYM.AES, SymCipherEngTest.KEY, CipherEngUtil.OPMODE.CBC, padding,
+				SymCipherEngTest.IV);
+	}
+
+	/**
+	 * Testing SymCipherEng::encrypt(byte[]) in GCM mode after decrypting with the nonce of a peer sharing
+	 * the key (i.e., encrypt, iv(peerNonce), decrypt, encrypt).
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encrypt</code> or <code>SymCipherEng.decrypt</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test01() throws GeneralSecurityException {
+		final byte[] plaintext = "attack at dawn".getBytes();
+		try (SymCipherEng self = SymCipherEngTest.gcm(); SymCipherEng peer = SymCipherEngTest.gcm()) {
+			self.encrypt(plaintext);
+			final byte[] ownNonce = self.iv();
+
+			final byte[] peerCiphertext = peer.encrypt(plaintext);
+			final byte[] peerNonce = peer.iv();
+			self.iv(peerNonce);
+			assertTrue("Correct decryptedText", Arrays.equals(self.decrypt(peerCiphertext), plaintext));
+
+			final byte[] ciphertext = self.encrypt(plaintext);
+			final byte[] nonce = self.iv();
+			assertTrue("Peer's nonce not reused", !Arrays.equals(nonce, peerNonce));
+			assertTrue("Own nonce not reused", !Arrays.equals(nonce, ownNonce));
+
+			peer.iv(nonce);
+			assertTrue("Correct decryptedText by peer", Arrays.equals(peer.decrypt(ciphertext), plaintext));
+
+			if (SymCipherEngTest.PRINT) {
+				System.out.println("test01");
+				System.out.println("peer nonce is " + Hex.toString(peerNonce));
+				System.out.println("next nonce is " + Hex.toString(nonce));
+				System.out.println();
+			}
+		}
+	}
+
+	/**
+	 * Testing SymCipherEng::encrypt(byte[]) in GCM mode after decrypting with an earlier nonce of the same
+	 * object (i.e., encrypt, iv(ownNonce), decrypt, encrypt).
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encrypt</code> or <code>SymCipherEng.decrypt</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test02() throws GeneralSecurityException {
+		final byte[] plaintext = "attack at dusk".getBytes();
+		try (SymCipherEng eng = SymCipherEngTest.gcm()) {
+			final byte[] first = eng.encrypt(plaintext);
+			final byte[] firstNonce = eng.iv();
+			eng.encrypt(plaintext);
+
+			eng.iv(firstNonce);
+			assertTrue("Correct decryptedText", Arrays.equals(eng.decrypt(first), plaintext));
+
+			final byte[] ciphertext = eng.encrypt(plaintext);
+			final byte[] nonce = eng.iv();
+			assertTrue("Earlier nonce not reused", !Arrays.equals(nonce, firstNonce));
+			assertTrue("Correct decryptedText", Arrays.equals(eng.decrypt(ciphertext), plaintext));
+		}
+	}
+
+	/**
+	 * Testing SymCipherEng::encrypt(byte[]) twice in CTR mode on the same object, whose key streams must
+	 * differ (i.e., the xor of the ciphertexts must not be the xor of the plaintexts).
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encrypt</code> or <code>SymCipherEng.decrypt</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test03() throws GeneralSecurityException {
+		final byte[] p1 = "the first message of forty bytes exactly".getBytes();
+		final byte[] p2 = "the other message, also forty bytes long".getBytes();
+		try (SymCipherEng eng = SymCipherEngTest.ctr()) {
+			final byte[] c1 = eng.encrypt(p1);
+			final byte[] iv1 = eng.iv();
+			final byte[] c2 = eng.encrypt(p2);
+			final byte[] iv2 = eng.iv();
+			assertTrue("Counter not reused", !Arrays.equals(iv1, iv2));
+			assertTrue("Key stream not reused", !Arrays.equals(Binary.xor(c1, c2), Binary.xor(p1, p2)));
+
+			eng.iv(iv2);
+			assertTrue("Correct decryptedText", Arrays.equals(eng.decrypt(c2), p2));
+			eng.iv(iv1);
+			assertTrue("Correct decryptedText", Arrays.equals(eng.decrypt(c1), p1));
+
+			// The counter consumed by the decryption is not reused either.
+			final byte[] c3 = eng.encrypt(p2);
+			assertTrue("Counter not reused", !Arrays.equals(eng.iv(), iv1));
+			assertTrue("Key stream not reused", !Arrays.equals(Binary.xor(c1, c3), Binary.xor(p1, p2)));
+
+			if (SymCipherEngTest.PRINT) {
+				System.out.println("test03");
+				System.out.println("first counter is " + Hex.toString(iv1));
+				System.out.println("next counter is " + Hex.toString(iv2));
+				System.out.println();
+			}
+		}
+	}
+
+	/**
+	 * Testing SymCipherEng::encryptParallel(byte[]) twice in CTR mode on the same object, and
+	 * SymCipherEng::encrypt(byte[]) after it.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encryptParallel</code> or <code>SymCipherEng.decrypt</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test04() throws GeneralSecurityException {
+		final byte[] p = new byte[SymCipherEng.PARALLEL_SEGMENT_SIZE + 100];
+		for (int i = 0; i != p.length; ++i) {
+			p[i] = (byte) i;
+		}
+		try (SymCipherEng eng = SymCipherEngTest.ctr()) {
+			eng.ivNext();
+			final byte[] c1 = eng.encryptParallel(p);
+			final byte[] iv1 = eng.iv();
+			final byte[] c2 = eng.encryptParallel(p);
+			final byte[] iv2 = eng.iv();
+			final byte[] c3 = eng.encrypt(p);
+			assertTrue("Counter not reused", !Arrays.equals(iv1, iv2) && !Arrays.equals(iv2, eng.iv()));
+			assertTrue("Key stream not reused", !Arrays.equals(c1, c2) && !Arrays.equals(c2, c3));
+
+			eng.iv(iv1);
+			assertTrue("Correct decryptedText", Arrays.equals(eng.decryptParallel(c1), p));
+			eng.iv(iv2);
+			assertTrue("Correct decryptedText", Arrays.equals(eng.decrypt(c2), p));
+		}
+	}
+
+	/**
+	 * Testing SymCipherEng::encrypt(byte[]) in GCM mode on several objects under the same key (two
+	 * objects, a copy, and many short-lived objects), whose nonces must all differ.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encrypt</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test05() throws GeneralSecurityException {
+		final byte[] plaintext = "attack at noon".getBytes();
+		final Set<String> nonces = new HashSet<String>();
+		int count = 0;
+		try (SymCipherEng a = SymCipherEngTest.gcm(); SymCipherEng b = SymCipherEngTest.gcm()) {
+			a.encrypt(plaintext);
+			try (SymCipherEng copy = new SymCipherEng(a)) {
+				for (int i = 0; i != 100; ++i) {
+					for (final SymCipherEng eng : new SymCipherEng[] { a, b, copy }) {
+						eng.encrypt(plaintext);
+						nonces.add(Hex.toString(eng.iv()));
+						++count;
+					}
+				}
+			}
+		}
+		for (int i = 0; i != 1000; ++i) {
+			try (SymCipherEng eng = SymCipherEngTest.gcm()) {
+				eng.encrypt(plaintext);
+				nonces.add(Hex.toString(eng.iv()));
+				++count;
+			}
+		}
+		assertTrue("All nonces distinct", nonces.size() == count);
+	}
+
+	/**
+	 * Testing SymCipherEng::cipherOutputStream(OutputStream, boolean) and
+	 * SymCipherEng::cipherInputStream(InputStream, boolean) in GCM mode, which must leave the initialization
+	 * vector of the calling object as is and give their Cipher objects back to the engine pool once
+	 * closed.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.cipherOutputStream</code>,
+	 *             <code>SymCipherEng.cipherInputStream</code>, or <code>SymCipherEng.encrypt</code>
+	 * 
+	 * @throws IOException
+	 *             Thrown by the streams
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test06() throws GeneralSecurityException, IOException {
+		final byte[] plaintext = "streamed across more than one block".getBytes();
+		try (SymCipherEng eng = SymCipherEngTest.gcm()) {
+			final byte[] nonce = new byte[SymCipherEng.GCM_NONCE_LENGTH];
+			eng.iv(nonce);
+			final int idle = CipherEngUtil.poolSize("AES", CipherEngUtil.OPMODE.GCM, CipherEngUtil.PADDING.NoPadding);
+
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final byte[] streamNonce;
+			try (SymCipherEng.PooledCipherOutputStream out = eng.cipherOutputStream(bytes, true)) {
+				out.write(plaintext);
+				streamNonce = out.iv();
+			}
+			assertTrue("Own nonce left as is", Arrays.equals(eng.iv(), nonce));
+			assertTrue("Stream nonce is new", !Arrays.equals(streamNonce, nonce));
+			// The stream borrowed an idle engine (or a new one if there was none) and gave it back.
+			assertTrue("Engine given back", CipherEngUtil.poolSize("AES", CipherEngUtil.OPMODE.GCM,
+					CipherEngUtil.PADDING.NoPadding) == Math.max(idle, 1));
+
+			eng.encrypt(plaintext);
+			assertTrue("Own nonce used by encrypt", Arrays.equals(eng.iv(), nonce));
+
+			eng.iv(streamNonce);
+			try (SymCipherEng.PooledCipherInputStream in = eng
+					.cipherInputStream(new ByteArrayInputStream(bytes.toByteArray()), false)) {
+				assertTrue("Correct decryptedText", Arrays.equals(in.readAllBytes(), plaintext));
+			}
+		}
+	}
+
+	/**
+	 * Testing SymCipherEng::decryptParallel(byte[]) in CBC mode with PKCS5 padding and with no padding,
+	 * against SymCipherEng::decrypt(byte[]), on ciphertexts of one block, of less than a segment, of
+	 * exactly one segment, and of several segments.
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encrypt</code>, <code>SymCipherEng.decrypt</code>, or
+	 *             <code>SymCipherEng.decryptParallel</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test07() throws GeneralSecurityException {
+		final int segmentSize = SymCipherEng.PARALLEL_SEGMENT_SIZE;
+		final int[] lengths = { 16, 4096, segmentSize, 2 * segmentSize + 48 };
+		for (final CipherEngUtil.PADDING padding : CipherEngUtil.PADDING.values()) {
+			try (SymCipherEng eng = SymCipherEngTest.cbc(padding)) {
+				for (final int length : lengths) {
+					// With padding, a plaintext 5 bytes short of the length is padded up to the length.
+					final byte[] p = SymCipherEngTest
+							.data((padding == CipherEngUtil.PADDING.NoPadding) ? length : (length - 5));
+					final byte[] c = eng.encrypt(p);
+					assertTrue("Ciphertext length", c.length == length);
+					assertTrue("Correct decryptedText", Arrays.equals(eng.decryptParallel(c), p));
+					assertTrue("Same as decrypt", Arrays.equals(eng.decryptParallel(c), eng.decrypt(c)));
+					assertTrue("Initialization vector left as is", Arrays.equals(eng.iv(), SymCipherEngTest.IV));
+
+					if (SymCipherEngTest.PRINT) {
+						System.out.println("test07 " + padding + " " + p.length + " bytes");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Testing SymCipherEng::decryptParallel(byte[]) in CBC mode with PKCS5 padding on ciphertexts whose
+	 * last block is not properly padded (a zero pad length, a pad length larger than the block, and
+	 * inconsistent pad bytes), which must throw BadPaddingException like SymCipherEng::decrypt(byte[]).
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encrypt</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test08() throws GeneralSecurityException {
+		final byte[][] tails = { { 0x00 }, { 0x11 }, { 0x01, 0x02 } };
+		try (SymCipherEng raw = SymCipherEngTest.cbc(CipherEngUtil.PADDING.NoPadding);
+				SymCipherEng eng = SymCipherEngTest.cbc(CipherEngUtil.PADDING.PKCS5Padding)) {
+			for (final byte[] tail : tails) {
+				// Encrypt a badly padded plaintext without padding, so that it decrypts to the bad padding.
+				final byte[] p = SymCipherEngTest.data(SymCipherEng.PARALLEL_SEGMENT_SIZE + 32);
+				System.arraycopy(tail, 0, p, p.length - tail.length, tail.length);
+				final byte[] c = raw.encrypt(p);
+
+				boolean parallelThrown = false, serialThrown = false;
+				try {
+					eng.decryptParallel(c);
+				} catch (BadPaddingException ex) {
+					parallelThrown = true;
+				}
+				try {
+					eng.decrypt(c);
+				} catch (BadPaddingException ex) {
+					serialThrown = true;
+				}
+				assertTrue("BadPaddingException thrown", parallelThrown && serialThrown);
+			}
+		}
+	}
+
+	/**
+	 * Testing SymCipherEng::encryptParallel(byte[]) and SymCipherEng::decryptParallel(byte[]) in CTR mode,
+	 * against SymCipherEng::decrypt(byte[]), on lengths which are not a multiple of the block size and
+	 * with counters which wrap around (within the first block, and exactly at a segment boundary).
+	 * 
+	 * @throws GeneralSecurityException
+	 *             Thrown by <code>SymCipherEng.encryptParallel</code>, <code>SymCipherEng.decrypt</code>,
+	 *             or <code>SymCipherEng.decryptParallel</code>
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void test09() throws GeneralSecurityException {
+		final byte[] allOnes = new byte[16];
+		Arrays.fill(allOnes, (byte) 0xFF);
+		// The low 64 bits are 0xFFFFFFFFFFFF0000, so the counter of the second segment carries into the high 64.
+		final byte[] segmentWrap = new byte[16];
+		Arrays.fill(segmentWrap, 8, 14, (byte) 0xFF);
+		final byte[][] ivs = { allOnes, segmentWrap, SymCipherEngTest.IV };
+
+		final int segmentSize = SymCipherEng.PARALLEL_SEGMENT_SIZE;
+		final int[] lengths = { 1, 15, 17, segmentSize + 1, 2 * segmentSize + 37 };
+		try (SymCipherEng eng = SymCipherEngTest.ctr()) {
+			for (final byte[] iv : ivs) {
+				for (final int length : lengths) {
+					final byte[] p = SymCipherEngTest.data(length);
+					eng.iv(iv);
+					final byte[] c = eng.encryptParallel(p);
+					assertTrue("Counter used as given", Arrays.equals(eng.iv(), iv));
+
+					eng.iv(iv);
+					assertTrue("Correct decryptedText", Arrays.equals(eng.decrypt(c), p));
+					eng.iv(iv);
+					assertTrue("Correct parallel decryptedText", Arrays.equals(eng.decryptParallel(c), p));
+
+					if (SymCipherEngTest.PRINT) {
+						System.out.println("test09 " + Hex.toString(iv) + " " + length + " bytes");
+					}
+				}
+			}
+		}
+	}
+}